@@ -0,0 +1,356 @@
+package project2;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+import javax.sql.DataSource;
+
+/*
+    The AsyncFakebookOracle class runs the ten queries without blocking the caller. Each
+    ...Async function hands its query to <executor> and returns a CompletableFuture at
+    once; the query borrows a connection from <pool> when it starts, runs against an
+    oracle made by <factory>, and completes the future from the executor thread. The
+    futures compose like any other CompletableFuture, so a caller can fan out several
+    queries and combine them with thenCombine() or allOf() instead of waiting on each.
+
+    JDBC calls block, so a running query still occupies one executor thread. The
+    executor built by fromSettings() has one thread per pooled connection and a bounded
+    queue in front of them, so the number of threads stays fixed however many queries
+    are in flight; a query submitted while the queue is full completes exceptionally
+    with a RejectedExecutionException.
+
+    Cancelling a future returned here, or completing it exceptionally (which is what
+    withTimeout() does once its deadline passes), aborts the statement its query is
+    executing with Statement.cancel(), through the FakebookStatementCache of the
+    borrowed connection (see QueryGuard), and a query that has not started yet never
+    runs. Heavy queries wait for a permit from the shared QueryAdmission without holding
+    a thread, so they cannot fill the executor and hold back cheap ones. Work an oracle
+    does outside JDBC, such as the in-memory graph algorithms, polls the same QueryGuard
+    and stops early, and its result is dropped. Futures derived from these with thenApply() and the like are
+    independent of them: cancelling a derived future does not reach the query.
+*/
+public final class AsyncFakebookOracle implements AutoCloseable {
+    // [Constructor]
+    // REQUIRES: <pool>, <factory>, and <executor> are not NULL and <timeoutMillis> >= 0
+    // EFFECTS:  creates an oracle that runs its queries on <executor>, which it shuts down
+    //   when closed, and gives each of them <timeoutMillis> to complete, or as long as it
+    //   takes if <timeoutMillis> is 0
+    public AsyncFakebookOracle(DataSource pool, FakebookOracleFactory factory, ExecutorService executor,
+                               long timeoutMillis) {
+        this.pool = pool;
+        this.factory = factory;
+        this.executor = executor;
+        this.timeoutMillis = timeoutMillis;
+        admission = QueryAdmission.shared();
+    }
+
+    // [Settings Factory Function]
+    // EFFECTS:  returns an oracle over <pool> and <factory> configured by the settings
+    //   "fakebook.async.threads" (default: fakebook.pool.maxSize, or 10),
+    //   "fakebook.async.queueSize" (default 1000), and "fakebook.async.timeoutMillis"
+    //   (default 0, no timeout)
+    public static AsyncFakebookOracle fromSettings(DataSource pool, FakebookOracleFactory factory) {
+        int threads = Math.max(1, FakebookSettings.getInt("fakebook.async.threads",
+            FakebookSettings.getInt("fakebook.pool.maxSize", 10)));
+        ExecutorService executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<Runnable>(Math.max(1, FakebookSettings.getInt("fakebook.async.queueSize", 1000))),
+            threads("fakebook-async"));
+        return new AsyncFakebookOracle(pool, factory, executor,
+            FakebookSettings.getLong("fakebook.async.timeoutMillis", 0L));
+    }
+
+    // [Query Functions]
+    // EFFECTS:  submit the query of the same name without the "Async" suffix and return
+    //   the future of its result
+    public CompletableFuture<BirthMonthInfo> findMonthOfBirthInfoAsync() {
+        return submit(new Call<BirthMonthInfo>(0, "findMonthOfBirthInfo") {
+            BirthMonthInfo call(FakebookOracle oracle) throws SQLException {
+                return oracle.findMonthOfBirthInfo();
+            }
+        });
+    }
+
+    public CompletableFuture<FirstNameInfo> findNameInfoAsync() {
+        return submit(new Call<FirstNameInfo>(1, "findNameInfo") {
+            FirstNameInfo call(FakebookOracle oracle) throws SQLException {
+                return oracle.findNameInfo();
+            }
+        });
+    }
+
+    public CompletableFuture<FakebookUserList> lonelyUsersAsync() {
+        return submit(new Call<FakebookUserList>(2, "lonelyUsers") {
+            FakebookUserList call(FakebookOracle oracle) throws SQLException {
+                return oracle.lonelyUsersCompact();
+            }
+        });
+    }
+
+    public CompletableFuture<FakebookUserList> liveAwayFromHomeAsync() {
+        return submit(new Call<FakebookUserList>(3, "liveAwayFromHome") {
+            FakebookUserList call(FakebookOracle oracle) throws SQLException {
+                return oracle.liveAwayFromHomeCompact();
+            }
+        });
+    }
+
+    public CompletableFuture<FakebookArrayList<TaggedPhotoInfo>> findPhotosWithMostTagsAsync(final int num) {
+        return submit(new Call<FakebookArrayList<TaggedPhotoInfo>>(4, "findPhotosWithMostTags") {
+            FakebookArrayList<TaggedPhotoInfo> call(FakebookOracle oracle) throws SQLException {
+                return oracle.findPhotosWithMostTags(num);
+            }
+        });
+    }
+
+    public CompletableFuture<FakebookArrayList<MatchPair>> matchMakerAsync(final int num, final int yearDiff) {
+        return submit(new Call<FakebookArrayList<MatchPair>>(5, "matchMaker") {
+            FakebookArrayList<MatchPair> call(FakebookOracle oracle) throws SQLException {
+                return oracle.matchMaker(num, yearDiff);
+            }
+        });
+    }
+
+    public CompletableFuture<FakebookArrayList<UsersPair>> suggestFriendsAsync(final int num) {
+        return submit(new Call<FakebookArrayList<UsersPair>>(6, "suggestFriends") {
+            FakebookArrayList<UsersPair> call(FakebookOracle oracle) throws SQLException {
+                return oracle.suggestFriends(num);
+            }
+        });
+    }
+
+    public CompletableFuture<EventStateInfo> findEventStatesAsync() {
+        return submit(new Call<EventStateInfo>(7, "findEventStates") {
+            EventStateInfo call(FakebookOracle oracle) throws SQLException {
+                return oracle.findEventStates();
+            }
+        });
+    }
+
+    public CompletableFuture<AgeInfo> findAgeInfoAsync(final long userID) {
+        return submit(new Call<AgeInfo>(8, "findAgeInfo") {
+            AgeInfo call(FakebookOracle oracle) throws SQLException {
+                return oracle.findAgeInfo(userID);
+            }
+        });
+    }
+
+    public CompletableFuture<FakebookSiblingList> findPotentialSiblingsAsync() {
+        return submit(new Call<FakebookSiblingList>(9, "findPotentialSiblings") {
+            FakebookSiblingList call(FakebookOracle oracle) throws SQLException {
+                return oracle.findPotentialSiblingsCompact();
+            }
+        });
+    }
+
+    // [Timeout Function]
+    // REQUIRES: <millis> > 0
+    // MODIFIES: <future>
+    // EFFECTS:  completes <future> exceptionally with a TimeoutException if it is not
+    //   done within <millis> milliseconds, which cancels its query if <future> was
+    //   returned by this oracle, and returns <future>
+    public <T> CompletableFuture<T> withTimeout(final CompletableFuture<T> future, final long millis) {
+        final ScheduledFuture<?> deadline = QueryGuard.timer().schedule(new Runnable() {
+            public void run() {
+                future.completeExceptionally(new TimeoutException("Query timed out after " + millis + " ms"));
+            }
+        }, millis, TimeUnit.MILLISECONDS);
+        future.whenComplete(new BiConsumer<T, Throwable>() {
+            public void accept(T value, Throwable failure) {
+                deadline.cancel(false);
+            }
+        });
+        return future;
+    }
+
+    // [Close Function]
+    // EFFECTS:  stops accepting queries and lets the ones already submitted finish
+    public void close() {
+        executor.shutdown();
+    }
+
+    // EFFECTS:  submits <call> to the executor and returns its future, which already
+    //   failed if the executor rejected it
+    private <T> CompletableFuture<T> submit(Call<T> call) {
+        Task<T> task = new Task<T>(call);
+        try {
+            executor.execute(task);
+        }
+        catch (RejectedExecutionException e) {
+            task.completeExceptionally(e);
+            return task;
+        }
+        return timeoutMillis > 0 ? withTimeout(task, timeoutMillis) : task;
+    }
+
+    // EFFECTS:  returns a factory of daemon threads named <name>-1, <name>-2, and so on
+    private static ThreadFactory threads(final String name) {
+        final AtomicInteger count = new AtomicInteger();
+        return new ThreadFactory() {
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, name + "-" + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        };
+    }
+
+    /*
+        A Call runs one query, numbered and named as in FakebookQueryRunner so that its
+        JDBC metrics are recorded like those of a synchronous run.
+    */
+    private abstract static class Call<T> {
+        Call(int query, String method) {
+            this.query = query;
+            this.method = method;
+        }
+
+        // EFFECTS:  returns the result of the query on <oracle>
+        abstract T call(FakebookOracle oracle) throws SQLException;
+
+        final int query;
+        final String method;
+    }
+
+    /*
+        A Task is the future of one Call and the Runnable that computes it. A heavy call
+        first asks the QueryAdmission for a permit; if it has to wait, the task leaves
+        its thread and is submitted again once the permit is handed to it. While the
+        call runs, <guard> watches its connection, so that a task completed from outside
+        cancels what it is executing, or is about to execute.
+    */
+    private final class Task<T> extends CompletableFuture<T> implements Runnable {
+        Task(Call<T> call) {
+            this.call = call;
+            admitted = false;
+        }
+
+        @Override
+        public void run() {
+            if (!admitted) {
+                if (isDone()) {
+                    return;                                   // cancelled while queued
+                }
+                admitted = true;
+                if (!admission.admit(call.query, new Runnable() {
+                    public void run() {
+                        resume();
+                    }
+                })) {
+                    return;
+                }
+            }
+            try {
+                if (!isDone()) {
+                    compute();
+                }
+            }
+            finally {
+                admission.release(call.query);
+            }
+        }
+
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            boolean cancelled = super.cancel(mayInterruptIfRunning);
+            if (cancelled) {
+                abort();
+            }
+            return cancelled;
+        }
+
+        @Override
+        public boolean completeExceptionally(Throwable failure) {
+            boolean completed = super.completeExceptionally(failure);
+            if (completed) {
+                abort();
+            }
+            return completed;
+        }
+
+        // EFFECTS:  runs the call on a borrowed connection, or on none if the factory's
+        //   oracles do not need one, and completes this future
+        private void compute() {
+            JdbcMetrics metrics = JdbcMetrics.enabled() ? JdbcMetrics.begin(call.query, call.method) : null;
+            try {
+                try (Connection connection = factory.needsConnection() ? pool.getConnection() : null) {
+                    if (start(connection)) {
+                        try {
+                            complete(call.call(factory.create(connection)));
+                        }
+                        finally {
+                            finish();
+                        }
+                    }
+                }
+            }
+            catch (Throwable e) {                             // the future must complete whatever happens
+                completeExceptionally(e);
+            }
+            finally {
+                if (metrics != null) {
+                    metrics.end();
+                }
+            }
+        }
+
+        // EFFECTS:  submits this admitted task again, giving its permit back if the
+        //   executor rejects it
+        private void resume() {
+            try {
+                executor.execute(this);
+            }
+            catch (RejectedExecutionException e) {
+                completeExceptionally(e);
+                admission.release(call.query);
+            }
+        }
+
+        // MODIFIES: <guard>
+        // EFFECTS:  starts watching the call about to run on <connection>, which is NULL
+        //   if it runs without one, and returns true, or returns false if the task is
+        //   already done
+        private synchronized boolean start(Connection connection) throws SQLException {
+            if (isDone()) {
+                return false;
+            }
+            guard = QueryGuard.start(connection, 0L);
+            return true;
+        }
+
+        // MODIFIES: <guard>
+        // EFFECTS:  stops watching the call, lifting any cancellation from the
+        //   connection before it is returned to the pool
+        private synchronized void finish() {
+            guard.finish();
+            guard = null;
+        }
+
+        // EFFECTS:  cancels the call, if it is running
+        private synchronized void abort() {
+            if (guard != null) {
+                guard.cancel();
+            }
+        }
+
+        private final Call<T> call;
+        private volatile boolean admitted;
+        private QueryGuard guard;
+    }
+
+    // Member Variables
+    private final DataSource pool;
+    private final FakebookOracleFactory factory;
+    private final ExecutorService executor;
+    private final QueryAdmission admission;
+    private final long timeoutMillis;
+}
@@ -0,0 +1,556 @@
+package project2;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/*
+    The CachingFakebookOracle class is derived from the FakebookOracle class and
+    remembers the results of another FakebookOracle, keyed by query and arguments, so
+    that repeating a query returns the earlier result without going to the database.
+    Results expire <ttlMillis> milliseconds after they were computed, and once more than
+    <maxEntries> results are held the least recently used one is evicted.
+
+    Every query is known to read a fixed set of tables. Calling invalidate() with the
+    name of a table (one of the table names in FakebookOracleConstants) drops every
+    cached result that was computed from it. Each table also carries a version number
+    that invalidate() increments; a result records the versions it was computed
+    against, so a result computed by a query that was still running when one of its
+    tables was invalidated is never served. Nor is a result returned by a call during
+    which the other oracle counted a failure (FakebookOracle.failures()), as it may be
+    a placeholder such as the ERROR AgeInfo or a partial list.
+
+    The results are held in a Results object, which factory() shares between all the
+    oracles it creates, one per connection, so that a query repeated on another
+    connection is still answered from the cache. Cached results are shared between
+    callers and must not be modified.
+*/
+public final class CachingFakebookOracle extends FakebookOracle {
+    // [Constructor]
+    // REQUIRES: <oracle> is not NULL, <ttlMillis> > 0, and <maxEntries> > 0
+    public CachingFakebookOracle(FakebookOracle oracle, long ttlMillis, int maxEntries) {
+        this(oracle, new Results(ttlMillis, maxEntries));
+    }
+
+    // REQUIRES: <oracle> and <results> are not NULL
+    private CachingFakebookOracle(FakebookOracle oracle, Results results) {
+        this.oracle = oracle;
+        this.results = results;
+    }
+
+    // [Settings Factory Function]
+    // EFFECTS:  returns a cache in front of <oracle> configured by the settings
+    //   "fakebook.cache.ttlMillis" (default 60000) and "fakebook.cache.maxEntries"
+    //   (default 1000)
+    public static CachingFakebookOracle fromSettings(FakebookOracle oracle) {
+        return new CachingFakebookOracle(oracle,
+            FakebookSettings.getLong("fakebook.cache.ttlMillis", 60000L),
+            FakebookSettings.getInt("fakebook.cache.maxEntries", 1000));
+    }
+
+    // [Factory Function]
+    // REQUIRES: <ttlMillis> > 0 and <maxEntries> > 0
+    // EFFECTS:  returns a factory whose oracles all answer from one cache, which holds up
+    //   to <maxEntries> results for <ttlMillis> milliseconds, and ask the oracles of
+    //   <oracles> for the results it lacks
+    public static FakebookOracleFactory factory(final FakebookOracleFactory oracles, long ttlMillis, int maxEntries) {
+        final Results results = new Results(ttlMillis, maxEntries);
+        return new FakebookOracleFactory() {
+            public FakebookOracle create(Connection connection) {
+                return new CachingFakebookOracle(oracles.create(connection), results);
+            }
+
+            public boolean needsConnection() {
+                return oracles.needsConnection();
+            }
+        };
+    }
+
+    // EFFECTS:  returns factory(<oracles>, ...) configured by the same settings as
+    //   fromSettings()
+    public static FakebookOracleFactory factory(FakebookOracleFactory oracles) {
+        return factory(oracles,
+            FakebookSettings.getLong("fakebook.cache.ttlMillis", 60000L),
+            FakebookSettings.getInt("fakebook.cache.maxEntries", 1000));
+    }
+
+    @Override
+    public BirthMonthInfo findMonthOfBirthInfo() throws SQLException {
+        Key key = new Key(0, 0L, 0L);
+        BirthMonthInfo value = (BirthMonthInfo) lookup(key);
+        if (value == null) {
+            long[] snapshot = snapshot();
+            long failures = oracle.failures();
+            value = oracle.findMonthOfBirthInfo();
+            store(key, value, snapshot, failures);
+        }
+        return value;
+    }
+
+    @Override
+    public FirstNameInfo findNameInfo() throws SQLException {
+        Key key = new Key(1, 0L, 0L);
+        FirstNameInfo value = (FirstNameInfo) lookup(key);
+        if (value == null) {
+            long[] snapshot = snapshot();
+            long failures = oracle.failures();
+            value = oracle.findNameInfo();
+            store(key, value, snapshot, failures);
+        }
+        return value;
+    }
+
+    @Override
+    public FakebookArrayList<UserInfo> lonelyUsers() throws SQLException {
+        return lonelyUsersCompact().toArrayList();
+    }
+
+    @Override
+    public FakebookUserList lonelyUsersCompact() throws SQLException {
+        Key key = new Key(2, 0L, 0L);
+        FakebookUserList value = (FakebookUserList) lookup(key);
+        if (value == null) {
+            long[] snapshot = snapshot();
+            long failures = oracle.failures();
+            value = oracle.lonelyUsersCompact();
+            store(key, value, snapshot, failures);
+        }
+        return value;
+    }
+
+    @Override
+    public FakebookArrayList<UserInfo> liveAwayFromHome() throws SQLException {
+        return liveAwayFromHomeCompact().toArrayList();
+    }
+
+    @Override
+    public FakebookUserList liveAwayFromHomeCompact() throws SQLException {
+        Key key = new Key(3, 0L, 0L);
+        FakebookUserList value = (FakebookUserList) lookup(key);
+        if (value == null) {
+            long[] snapshot = snapshot();
+            long failures = oracle.failures();
+            value = oracle.liveAwayFromHomeCompact();
+            store(key, value, snapshot, failures);
+        }
+        return value;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public FakebookArrayList<TaggedPhotoInfo> findPhotosWithMostTags(int num) throws SQLException {
+        Key key = new Key(4, num, 0L);
+        FakebookArrayList<TaggedPhotoInfo> value = (FakebookArrayList<TaggedPhotoInfo>) lookup(key);
+        if (value == null) {
+            long[] snapshot = snapshot();
+            long failures = oracle.failures();
+            value = oracle.findPhotosWithMostTags(num);
+            store(key, value, snapshot, failures);
+        }
+        return value;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public FakebookArrayList<MatchPair> matchMaker(int num, int yearDiff) throws SQLException {
+        Key key = new Key(5, num, yearDiff);
+        FakebookArrayList<MatchPair> value = (FakebookArrayList<MatchPair>) lookup(key);
+        if (value == null) {
+            long[] snapshot = snapshot();
+            long failures = oracle.failures();
+            value = oracle.matchMaker(num, yearDiff);
+            store(key, value, snapshot, failures);
+        }
+        return value;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public FakebookArrayList<UsersPair> suggestFriends(int num) throws SQLException {
+        Key key = new Key(6, num, 0L);
+        FakebookArrayList<UsersPair> value = (FakebookArrayList<UsersPair>) lookup(key);
+        if (value == null) {
+            long[] snapshot = snapshot();
+            long failures = oracle.failures();
+            value = oracle.suggestFriends(num);
+            store(key, value, snapshot, failures);
+        }
+        return value;
+    }
+
+    @Override
+    public EventStateInfo findEventStates() throws SQLException {
+        Key key = new Key(7, 0L, 0L);
+        EventStateInfo value = (EventStateInfo) lookup(key);
+        if (value == null) {
+            long[] snapshot = snapshot();
+            long failures = oracle.failures();
+            value = oracle.findEventStates();
+            store(key, value, snapshot, failures);
+        }
+        return value;
+    }
+
+    @Override
+    public AgeInfo findAgeInfo(long userID) throws SQLException {
+        Key key = new Key(8, userID, 0L);
+        AgeInfo value = (AgeInfo) lookup(key);
+        if (value == null) {
+            long[] snapshot = snapshot();
+            long failures = oracle.failures();
+            value = oracle.findAgeInfo(userID);
+            store(key, value, snapshot, failures);
+        }
+        return value;
+    }
+
+    @Override
+    // Users whose results are cached are answered from the cache; the others are looked
+    // up with a single batch call to the underlying oracle, and their results cached
+    public Map<Long, AgeInfo> findAgeInfo(long[] userIDs) throws SQLException {
+        Map<Long, AgeInfo> answers = new LinkedHashMap<Long, AgeInfo>();
+        long[] missing = new long[userIDs.length];
+        int count = 0;
+        for (long userID : userIDs) {
+            AgeInfo value = (AgeInfo) lookup(new Key(8, userID, 0L));
+            answers.put(userID, value);
+            if (value == null) {
+                missing[count++] = userID;
+            }
+        }
+
+        if (count != 0) {
+            long[] snapshot = snapshot();
+            long failures = oracle.failures();
+            Map<Long, AgeInfo> found = oracle.findAgeInfo(Arrays.copyOf(missing, count));
+            for (Map.Entry<Long, AgeInfo> entry : found.entrySet()) {
+                answers.put(entry.getKey(), entry.getValue());
+                store(new Key(8, entry.getKey(), 0L), entry.getValue(), snapshot, failures);
+            }
+        }
+        return answers;
+    }
+
+    @Override
+    public FakebookArrayList<SiblingInfo> findPotentialSiblings() throws SQLException {
+        return findPotentialSiblingsCompact().toArrayList();
+    }
+
+    @Override
+    public FakebookSiblingList findPotentialSiblingsCompact() throws SQLException {
+        Key key = new Key(9, 0L, 0L);
+        FakebookSiblingList value = (FakebookSiblingList) lookup(key);
+        if (value == null) {
+            long[] snapshot = snapshot();
+            long failures = oracle.failures();
+            value = oracle.findPotentialSiblingsCompact();
+            store(key, value, snapshot, failures);
+        }
+        return value;
+    }
+
+    // [Failure Count Function]
+    // EFFECTS:  returns the number of failures counted by the oracle behind the cache
+    @Override
+    public long failures() {
+        return oracle.failures();
+    }
+
+    // [Invalidate Function]
+    // REQUIRES: <table> is one of the table names in FakebookOracleConstants
+    // MODIFIES: this
+    // EFFECTS:  drops every cached result that was computed from <table>
+    public void invalidate(String table) {
+        results.invalidate(table);
+    }
+
+    // [Invalidate All Function]
+    // MODIFIES: this
+    // EFFECTS:  drops every cached result
+    public void invalidateAll() {
+        results.invalidateAll();
+    }
+
+    // [Statistics Accessors]
+    public long hits() {
+        return results.hits();
+    }
+
+    public long misses() {
+        return results.misses();
+    }
+
+    public long evictions() {
+        return results.evictions();
+    }
+
+    public long expirations() {
+        return results.expirations();
+    }
+
+    public long invalidations() {
+        return results.invalidations();
+    }
+
+    public int size() {
+        return results.size();
+    }
+
+    // EFFECTS:  returns the fraction of lookups that were answered from the cache
+    public double hitRate() {
+        return results.hitRate();
+    }
+
+    // [Statistics Report Function]
+    // EFFECTS:  returns a one-line summary of the cache's statistics
+    public String report() {
+        return results.report();
+    }
+
+    // EFFECTS:  returns the cached result for <key>, or NULL (counting a miss) if there
+    //   is none or it has expired or been invalidated
+    private Object lookup(Key key) {
+        return results.lookup(key);
+    }
+
+    // EFFECTS:  returns a copy of the current table versions
+    private long[] snapshot() {
+        return results.snapshot();
+    }
+
+    // MODIFIES: this
+    // EFFECTS:  caches <value> for <key>, unless the oracle counted a failure since its
+    //   count was <failures> or one of the tables the value was read from has been
+    //   invalidated since <snapshot> was taken
+    private void store(Key key, Object value, long[] snapshot, long failures) {
+        if (oracle.failures() == failures) {
+            results.store(key, value, snapshot);
+        }
+    }
+
+    // EFFECTS:  returns the bit set holding the bit of each table index in <tables>
+    private static int tables(int... tables) {
+        int mask = 0;
+        for (int table : tables) {
+            mask |= 1 << table;
+        }
+        return mask;
+    }
+
+    /*
+        The Results class is the cache itself: the results by key in least recently used
+        order, the version of every table, and the statistics. Every method is
+        synchronized, as the oracles sharing it may run on different threads.
+    */
+    private static final class Results {
+        Results(long ttlMillis, int maxEntries) {
+            this.ttlNanos = ttlMillis * 1000000L;
+            this.maxEntries = maxEntries;
+            entries = new LinkedHashMap<Key, Entry>(16, 0.75f, true);
+            versions = new long[FakebookSchema.Tables.length];
+        }
+
+        // MODIFIES: this
+        // EFFECTS:  drops every cached result that was computed from <table>
+        synchronized void invalidate(String table) {
+            int idx = 0;
+            while (idx < FakebookSchema.Tables.length && !FakebookSchema.Tables[idx].equals(table)) {
+                idx++;
+            }
+            if (idx == FakebookSchema.Tables.length) {
+                throw new IllegalArgumentException("Unknown table: " + table);
+            }
+
+            versions[idx]++;
+            Iterator<Entry> it = entries.values().iterator();
+            while (it.hasNext()) {
+                if ((QueryTables[it.next().query] & (1 << idx)) != 0) {
+                    it.remove();
+                    invalidations++;
+                }
+            }
+        }
+
+        // MODIFIES: this
+        // EFFECTS:  drops every cached result
+        synchronized void invalidateAll() {
+            for (int idx = 0; idx < versions.length; idx++) {
+                versions[idx]++;
+            }
+            invalidations += entries.size();
+            entries.clear();
+        }
+
+        synchronized long hits() {
+            return hits;
+        }
+
+        synchronized long misses() {
+            return misses;
+        }
+
+        synchronized long evictions() {
+            return evictions;
+        }
+
+        synchronized long expirations() {
+            return expirations;
+        }
+
+        synchronized long invalidations() {
+            return invalidations;
+        }
+
+        synchronized int size() {
+            return entries.size();
+        }
+
+        synchronized double hitRate() {
+            return hits + misses == 0 ? 0.0 : (double) hits / (hits + misses);
+        }
+
+        synchronized String report() {
+            return String.format("Result cache: %d hit(s), %d miss(es), hit rate %.1f%%, %d entr(ies), "
+                + "%d eviction(s), %d expiration(s), %d invalidation(s)",
+                hits, misses, 100.0 * hitRate(), entries.size(), evictions, expirations, invalidations);
+        }
+
+        // MODIFIES: this
+        // EFFECTS:  returns the cached result for <key>, or NULL (counting a miss) if
+        //   there is none or it has expired or been invalidated
+        synchronized Object lookup(Key key) {
+            Entry entry = entries.get(key);
+            if (entry != null) {
+                if (System.nanoTime() - entry.expiresAt >= 0) {
+                    entries.remove(key);
+                    expirations++;
+                }
+                else if (current(entry)) {
+                    hits++;
+                    return entry.value;
+                }
+                else {
+                    entries.remove(key);
+                }
+            }
+            misses++;
+            return null;
+        }
+
+        // EFFECTS:  returns a copy of the current table versions
+        synchronized long[] snapshot() {
+            return versions.clone();
+        }
+
+        // MODIFIES: this
+        // EFFECTS:  caches <value> for <key> unless one of the tables it was read from
+        //   has been invalidated since <snapshot> was taken, evicting the least recently
+        //   used result if the cache is full
+        synchronized void store(Key key, Object value, long[] snapshot) {
+            Entry entry = new Entry(key.query, value, System.nanoTime() + ttlNanos, snapshot);
+            if (!current(entry)) {
+                return;
+            }
+            entries.put(key, entry);
+            Iterator<Entry> it = entries.values().iterator();
+            while (entries.size() > maxEntries) {
+                it.next();
+                it.remove();
+                evictions++;
+            }
+        }
+
+        // EFFECTS:  returns true if no table read by <entry>'s query has been
+        //   invalidated since <entry> was computed
+        private boolean current(Entry entry) {
+            int tables = QueryTables[entry.query];
+            for (int idx = 0; idx < versions.length; idx++) {
+                if ((tables & (1 << idx)) != 0 && entry.versions[idx] != versions[idx]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        // Member Variables
+        private final long ttlNanos;
+        private final int maxEntries;
+        private final LinkedHashMap<Key, Entry> entries;
+        private final long[] versions;
+        private long hits;
+        private long misses;
+        private long evictions;
+        private long expirations;
+        private long invalidations;
+    }
+
+    /*
+        The Key class identifies a cached result by its query number and up to two
+        arguments.
+    */
+    private static final class Key {
+        Key(int query, long first, long second) {
+            this.query = query;
+            this.first = first;
+            this.second = second;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (!(other instanceof Key)) {
+                return false;
+            }
+            Key key = (Key) other;
+            return query == key.query && first == key.first && second == key.second;
+        }
+
+        @Override
+        public int hashCode() {
+            return (int) (31 * (31 * query + first) + second);
+        }
+
+        // Member Variables
+        private final int query;
+        private final long first;
+        private final long second;
+    }
+
+    /*
+        The Entry class holds a cached result together with the time it expires and the
+        table versions it was computed against.
+    */
+    private static final class Entry {
+        Entry(int query, Object value, long expiresAt, long[] versions) {
+            this.query = query;
+            this.value = value;
+            this.expiresAt = expiresAt;
+            this.versions = versions;
+        }
+
+        // Member Variables
+        private final int query;
+        private final Object value;
+        private final long expiresAt;
+        private final long[] versions;
+    }
+
+    // Member Variables
+    private static final int[] QueryTables = {
+        tables(FakebookSchema.Users),
+        tables(FakebookSchema.Users),
+        tables(FakebookSchema.Users, FakebookSchema.Friends),
+        tables(FakebookSchema.Users, FakebookSchema.CurrentCities, FakebookSchema.HometownCities),
+        tables(FakebookSchema.Users, FakebookSchema.Albums, FakebookSchema.Photos, FakebookSchema.Tags),
+        tables(FakebookSchema.Users, FakebookSchema.Friends, FakebookSchema.Albums, FakebookSchema.Photos,
+            FakebookSchema.Tags),
+        tables(FakebookSchema.Users, FakebookSchema.Friends),
+        tables(FakebookSchema.Events, FakebookSchema.Cities),
+        tables(FakebookSchema.Users, FakebookSchema.Friends),
+        tables(FakebookSchema.Users, FakebookSchema.Friends, FakebookSchema.HometownCities)
+    };
+    private final FakebookOracle oracle;
+    private final Results results;
+}
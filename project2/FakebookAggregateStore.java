@@ -0,0 +1,514 @@
+package project2;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/*
+    The AggregateStore class keeps the aggregates behind Queries 0 and 7 materialized, so
+    that answering either query costs a walk over the months or the states instead of a
+    GROUP BY over every user or every event. The users with a birth month are held in
+    primitive arrays, sorted by month and then by ID, with the offset at which each
+    month starts, so a month's users are a contiguous run. Their names are
+    dictionary-encoded through a FakebookNameTable, and UserInfo objects are only made
+    for the users of the months in the answer. For each state, NULL included, the store
+    holds the number of events held in its cities, in the order in which the database
+    sorts the state names, as the SQL version of Query 7 lists them, and it maps every
+    event to its state so that the event can be taken back out.
+
+    open() keeps one store per database in the process and loads it from the Users,
+    User_Events, and Cities tables the first time it is asked for. From then on the store
+    does not read the tables again: like CachingFakebookOracle.invalidate(), code that
+    changes those tables must report the rows it added or deleted through addUser(),
+    removeUser(), addEvent(), and removeEvent(). A removed user is only marked in the
+    sorted arrays, and an added one goes to a small unsorted buffer, which monthInfo()
+    merges with the run of its month. Once the marks and the buffer hold more than
+    MergeLimit users, they are folded into new sorted arrays. Calling drop() discards the
+    store of a database, so that the next open() loads it again. Every method is
+    synchronized.
+*/
+final class AggregateStore {
+    // [Constructor]
+    // EFFECTS:  loads the store of the database reachable through <connection>
+    private AggregateStore(Connection connection) throws SQLException {
+        names = new FakebookNameTable();
+        FakebookStatementCache statements = FakebookStatementCache.forConnection(connection);
+
+        // Step 1: the users with a birth month, by month and then by ID
+        int[] monthList = new int[16];
+        int[] startList = new int[17];
+        long[] ids = new long[1024];
+        int[] firsts = new int[1024];
+        int[] lasts = new int[1024];
+        int numMonths = 0;
+        int numUsers = 0;
+        ResultSet rst = statements.prepare("Memory.aggregates.users",
+            "SELECT month_of_birth, user_id, first_name, last_name " +
+            "FROM " + FakebookOracleConstants.UsersTable + " " +
+            "WHERE month_of_birth IS NOT NULL " +
+            "ORDER BY month_of_birth, user_id").executeQuery();
+        try {
+            while (rst.next()) {
+                int month = rst.getInt(1);
+                if (numMonths == 0 || monthList[numMonths - 1] != month) {
+                    if (numMonths == monthList.length) {
+                        monthList = Arrays.copyOf(monthList, numMonths * 2);
+                        startList = Arrays.copyOf(startList, numMonths * 2 + 1);
+                    }
+                    monthList[numMonths] = month;
+                    startList[numMonths++] = numUsers;
+                }
+                if (numUsers == ids.length) {
+                    ids = Arrays.copyOf(ids, numUsers * 2);
+                    firsts = Arrays.copyOf(firsts, numUsers * 2);
+                    lasts = Arrays.copyOf(lasts, numUsers * 2);
+                }
+                ids[numUsers] = rst.getLong(2);
+                firsts[numUsers] = names.encode(rst.getString(3));
+                lasts[numUsers++] = names.encode(rst.getString(4));
+            }
+        }
+        finally {
+            rst.close();
+        }
+        addedIDs = new long[16];
+        addedMonths = new int[16];
+        addedFirstNames = new int[16];
+        addedLastNames = new int[16];
+        install(monthList, startList, numMonths, ids, firsts, lasts, numUsers);
+
+        // Step 2: the state of every event, in the order of the state names
+        int[] stateList = new int[64];
+        long[] countList = new long[64];
+        int numStates = 0;
+        eventStates = new LongIntMap();
+        rst = statements.prepare("Memory.aggregates.events",
+            "SELECT C.state_name, E.event_id " +
+            "FROM " + FakebookOracleConstants.EventsTable + " E " +
+            "JOIN " + FakebookOracleConstants.CitiesTable + " C ON C.city_id = E.event_city_id " +
+            "ORDER BY C.state_name ASC").executeQuery();
+        try {
+            while (rst.next()) {
+                int state = names.encode(rst.getString(1));
+                if (numStates == 0 || stateList[numStates - 1] != state) {
+                    if (numStates == stateList.length) {
+                        stateList = Arrays.copyOf(stateList, numStates * 2);
+                        countList = Arrays.copyOf(countList, numStates * 2);
+                    }
+                    stateList[numStates++] = state;
+                }
+                countList[numStates - 1]++;
+                eventStates.put(rst.getLong(2), state + 2);       // NULL is -1 and values must be positive
+            }
+        }
+        finally {
+            rst.close();
+        }
+        states = Arrays.copyOf(stateList, numStates);
+        stateCounts = Arrays.copyOf(countList, numStates);
+    }
+
+    // [Open Function]
+    // REQUIRES: <connection> is a valid JDBC connection
+    // EFFECTS:  returns the store of the database reachable through <connection>, loading
+    //   it from the tables if the process has none yet
+    public static synchronized AggregateStore open(Connection connection) throws SQLException {
+        String key = key(connection);
+        AggregateStore store = Stores.get(key);
+        if (store == null) {
+            store = new AggregateStore(connection);
+            Stores.put(key, store);
+        }
+        return store;
+    }
+
+    // [Drop Function]
+    // REQUIRES: <connection> is a valid JDBC connection
+    // EFFECTS:  forgets the store of the database reachable through <connection>, if any
+    public static synchronized void drop(Connection connection) throws SQLException {
+        Stores.remove(key(connection));
+    }
+
+    // [User Update Functions]
+    // MODIFIES: this
+    // EFFECTS:  addUser() records the user <userID>, born in <month>, and returns true, or
+    //   returns false if the user was already recorded in that month; a user recorded in
+    //   another month is moved. removeUser() takes the user <userID> back out and returns
+    //   true, or returns false if the user was not recorded. Users without a birth month
+    //   are never recorded, since Query 0 does not count them
+    public synchronized boolean addUser(long userID, String firstName, String lastName, int month) {
+        int position = findSorted(userID);
+        if (position >= 0) {
+            if (months[monthIndex(position)] == month) {
+                return false;
+            }
+            removeSorted(position);
+        }
+        else {
+            int added = findAdded(userID);
+            if (added >= 0) {
+                if (addedMonths[added] == month) {
+                    return false;
+                }
+                removeAdded(added);
+            }
+        }
+
+        if (numAdded == addedIDs.length) {
+            addedIDs = Arrays.copyOf(addedIDs, numAdded * 2);
+            addedMonths = Arrays.copyOf(addedMonths, numAdded * 2);
+            addedFirstNames = Arrays.copyOf(addedFirstNames, numAdded * 2);
+            addedLastNames = Arrays.copyOf(addedLastNames, numAdded * 2);
+        }
+        addedIDs[numAdded] = userID;
+        addedMonths[numAdded] = month;
+        addedFirstNames[numAdded] = names.encode(firstName);
+        addedLastNames[numAdded++] = names.encode(lastName);
+        totalUsers++;
+
+        // a month the arrays do not have yet gets its run by merging at once
+        int idx = Arrays.binarySearch(months, month);
+        if (idx < 0 || numAdded + numRemoved > MergeLimit) {
+            merge();
+        }
+        else {
+            sizes[idx]++;
+        }
+        return true;
+    }
+
+    public synchronized boolean removeUser(long userID) {
+        int position = findSorted(userID);
+        if (position >= 0) {
+            removeSorted(position);
+        }
+        else {
+            int added = findAdded(userID);
+            if (added < 0) {
+                return false;
+            }
+            removeAdded(added);
+        }
+        if (numAdded + numRemoved > MergeLimit) {
+            merge();
+        }
+        return true;
+    }
+
+    // [Event Update Functions]
+    // MODIFIES: this
+    // EFFECTS:  addEvent() records the event <eventID>, held in a city of <state> (NULL
+    //   if the city has none), and returns true, or returns false if the event was
+    //   already recorded in that state; an event recorded in another state is moved.
+    //   removeEvent() takes the event <eventID> back out and returns true, or returns
+    //   false if it was not recorded. Events whose city is not in the Cities table must
+    //   not be recorded, since Query 7 joins them away. A state the store has not seen
+    //   is placed after the states that String.compareTo() puts before it, and NULL last
+    public synchronized boolean addEvent(long eventID, String state) {
+        int code = names.encode(state);
+        int recorded = eventStates.get(eventID);
+        if (recorded == code + 2) {
+            return false;
+        }
+        if (recorded != 0) {
+            removeEvent(eventID);
+        }
+        stateCounts[stateIndex(code)]++;
+        eventStates.put(eventID, code + 2);
+        return true;
+    }
+
+    public synchronized boolean removeEvent(long eventID) {
+        int recorded = eventStates.remove(eventID);
+        if (recorded == 0) {
+            return false;
+        }
+        stateCounts[stateIndex(recorded - 2)]--;
+        return true;
+    }
+
+    // [Month Info Function]
+    // EFFECTS:  returns the answer to Query 0; ties for the most popular month go to the
+    //   earliest month and ties for the least popular month to the latest one
+    public synchronized BirthMonthInfo monthInfo() {
+        int most = -1;
+        int least = -1;
+        for (int idx = 0; idx < months.length; idx++) {
+            if (sizes[idx] == 0) {
+                continue;                                         // every user of the month was removed
+            }
+            if (most < 0 || sizes[idx] > sizes[most]) {
+                most = idx;
+            }
+            if (least < 0 || sizes[idx] <= sizes[least]) {
+                least = idx;
+            }
+        }
+        if (most < 0) {
+            return new BirthMonthInfo(0, 0, 0);
+        }
+        Integer[] added = addedInOrder();
+        BirthMonthInfo info = new BirthMonthInfo(totalUsers, months[most], months[least]);
+        for (UserInfo user : users(most, added)) {
+            info.addMostPopularBirthMonthUser(user);
+        }
+        for (UserInfo user : users(least, added)) {
+            info.addLeastPopularBirthMonthUser(user);
+        }
+        return info;
+    }
+
+    // [State Info Function]
+    // EFFECTS:  returns the answer to Query 7, listing tied states in the order of their
+    //   names, or NULL if there are no events in known cities
+    public synchronized EventStateInfo stateInfo() {
+        long most = 0;
+        for (long count : stateCounts) {
+            most = Math.max(most, count);
+        }
+        if (most == 0) {
+            return null;
+        }
+        EventStateInfo info = new EventStateInfo(most);
+        for (int idx = 0; idx < states.length; idx++) {
+            if (stateCounts[idx] == most) {
+                info.addState(names.decode(states[idx]));
+            }
+        }
+        return info;
+    }
+
+    // EFFECTS:  returns the users of months[<idx>] ordered by ID, merging the run of the
+    //   month in the sorted arrays with the added users, <added> in addedInOrder() order
+    private List<UserInfo> users(int idx, Integer[] added) {
+        List<UserInfo> users = new ArrayList<UserInfo>(sizes[idx]);
+        int next = 0;
+        while (next < added.length && addedMonths[added[next]] < months[idx]) {
+            next++;
+        }
+        int position = starts[idx];
+        while (true) {
+            while (position < starts[idx + 1] && removed[position]) {
+                position++;
+            }
+            boolean sorted = position < starts[idx + 1];
+            boolean buffered = next < added.length && addedMonths[added[next]] == months[idx];
+            if (sorted && (!buffered || userIDs[position] < addedIDs[added[next]])) {
+                users.add(new UserInfo(userIDs[position], names.decode(firstNames[position]),
+                    names.decode(lastNames[position])));
+                position++;
+            }
+            else if (buffered) {
+                int user = added[next++];
+                users.add(new UserInfo(addedIDs[user], names.decode(addedFirstNames[user]),
+                    names.decode(addedLastNames[user])));
+            }
+            else {
+                return users;
+            }
+        }
+    }
+
+    // MODIFIES: this
+    // EFFECTS:  folds the added users into new sorted arrays and leaves out the removed
+    //   ones, so that the buffer and the marks are empty again
+    private void merge() {
+        Integer[] added = addedInOrder();
+        int[] monthList = new int[months.length + added.length];
+        int[] startList = new int[months.length + added.length + 1];
+        long[] ids = new long[totalUsers];
+        int[] firsts = new int[totalUsers];
+        int[] lasts = new int[totalUsers];
+        int numMonths = 0;
+        int numUsers = 0;
+        int idx = 0;
+        int position = 0;
+        int next = 0;
+        while (true) {
+            while (position < userIDs.length && removed[position]) {
+                position++;
+            }
+            while (position < userIDs.length && starts[idx + 1] <= position) {
+                idx++;
+            }
+            boolean sorted = position < userIDs.length;
+            boolean buffered = next < added.length;
+            if (!sorted && !buffered) {
+                break;
+            }
+            int month;
+            if (sorted && (!buffered || months[idx] < addedMonths[added[next]]
+                    || (months[idx] == addedMonths[added[next]] && userIDs[position] < addedIDs[added[next]]))) {
+                month = months[idx];
+                ids[numUsers] = userIDs[position];
+                firsts[numUsers] = firstNames[position];
+                lasts[numUsers] = lastNames[position++];
+            }
+            else {
+                int user = added[next++];
+                month = addedMonths[user];
+                ids[numUsers] = addedIDs[user];
+                firsts[numUsers] = addedFirstNames[user];
+                lasts[numUsers] = addedLastNames[user];
+            }
+            if (numMonths == 0 || monthList[numMonths - 1] != month) {
+                monthList[numMonths] = month;
+                startList[numMonths++] = numUsers;
+            }
+            numUsers++;
+        }
+        install(monthList, startList, numMonths, ids, firsts, lasts, numUsers);
+    }
+
+    // MODIFIES: this
+    // EFFECTS:  makes the first <numUsers> users of <ids>, <firsts> and <lasts>, in the
+    //   first <numMonths> months of <monthList> starting at the offsets of <startList>,
+    //   the sorted arrays, with no user removed or added
+    private void install(int[] monthList, int[] startList, int numMonths, long[] ids, int[] firsts, int[] lasts,
+                         int numUsers) {
+        startList[numMonths] = numUsers;
+        months = Arrays.copyOf(monthList, numMonths);
+        starts = Arrays.copyOf(startList, numMonths + 1);
+        userIDs = Arrays.copyOf(ids, numUsers);
+        firstNames = Arrays.copyOf(firsts, numUsers);
+        lastNames = Arrays.copyOf(lasts, numUsers);
+        removed = new boolean[numUsers];
+        sizes = new int[numMonths];
+        for (int idx = 0; idx < numMonths; idx++) {
+            sizes[idx] = starts[idx + 1] - starts[idx];
+        }
+        totalUsers = numUsers;
+        numRemoved = 0;
+        numAdded = 0;
+    }
+
+    // EFFECTS:  returns the position of the user <userID> in the sorted arrays, or -1 if
+    //   the user is not there or was removed
+    private int findSorted(long userID) {
+        for (int idx = 0; idx < months.length; idx++) {
+            int position = Arrays.binarySearch(userIDs, starts[idx], starts[idx + 1], userID);
+            if (position >= 0 && !removed[position]) {
+                return position;
+            }
+        }
+        return -1;
+    }
+
+    // EFFECTS:  returns the position of the user <userID> in the buffer of added users,
+    //   or -1 if the user is not there
+    private int findAdded(long userID) {
+        for (int user = 0; user < numAdded; user++) {
+            if (addedIDs[user] == userID) {
+                return user;
+            }
+        }
+        return -1;
+    }
+
+    // REQUIRES: the user at <position> of the sorted arrays was not removed
+    // MODIFIES: this
+    // EFFECTS:  marks the user at <position> of the sorted arrays as removed
+    private void removeSorted(int position) {
+        removed[position] = true;
+        sizes[monthIndex(position)]--;
+        numRemoved++;
+        totalUsers--;
+    }
+
+    // REQUIRES: 0 <= <user> < numAdded
+    // MODIFIES: this
+    // EFFECTS:  takes the user at <user> out of the buffer of added users
+    private void removeAdded(int user) {
+        sizes[Arrays.binarySearch(months, addedMonths[user])]--;
+        numAdded--;
+        addedIDs[user] = addedIDs[numAdded];
+        addedMonths[user] = addedMonths[numAdded];
+        addedFirstNames[user] = addedFirstNames[numAdded];
+        addedLastNames[user] = addedLastNames[numAdded];
+        totalUsers--;
+    }
+
+    // EFFECTS:  returns the index into months of the month of the user at <position> of
+    //   the sorted arrays; every month has at least one user there
+    private int monthIndex(int position) {
+        int idx = Arrays.binarySearch(starts, 0, months.length, position);
+        return idx >= 0 ? idx : -idx - 2;
+    }
+
+    // EFFECTS:  returns the positions in the buffer of the added users, ordered by month
+    //   and then by ID
+    private Integer[] addedInOrder() {
+        Integer[] order = new Integer[numAdded];
+        for (int user = 0; user < numAdded; user++) {
+            order[user] = user;
+        }
+        Arrays.sort(order, new Comparator<Integer>() {
+            public int compare(Integer user1, Integer user2) {
+                if (addedMonths[user1] != addedMonths[user2]) {
+                    return Integer.compare(addedMonths[user1], addedMonths[user2]);
+                }
+                return Long.compare(addedIDs[user1], addedIDs[user2]);
+            }
+        });
+        return order;
+    }
+
+    // MODIFIES: this
+    // EFFECTS:  returns the index of the state whose name has code <code>, adding it with
+    //   no events if the store has not seen it
+    private int stateIndex(int code) {
+        int position = states.length;
+        for (int idx = 0; idx < states.length; idx++) {
+            if (states[idx] == code) {
+                return idx;
+            }
+            if (position == states.length && code >= 0
+                    && (states[idx] < 0 || names.decode(states[idx]).compareTo(names.decode(code)) > 0)) {
+                position = idx;
+            }
+        }
+        int[] stateList = new int[states.length + 1];
+        long[] countList = new long[states.length + 1];
+        System.arraycopy(states, 0, stateList, 0, position);
+        System.arraycopy(stateCounts, 0, countList, 0, position);
+        System.arraycopy(states, position, stateList, position + 1, states.length - position);
+        System.arraycopy(stateCounts, position, countList, position + 1, states.length - position);
+        stateList[position] = code;
+        states = stateList;
+        stateCounts = countList;
+        return position;
+    }
+
+    // EFFECTS:  returns the key under which the store of <connection>'s database is kept
+    private static String key(Connection connection) throws SQLException {
+        return connection.getMetaData().getURL() + " " + connection.getMetaData().getUserName();
+    }
+
+    // Member Variables
+    private final FakebookNameTable names;
+    private int[] months;
+    private int[] starts;                                      // months[idx] runs from starts[idx] to starts[idx + 1]
+    private long[] userIDs;
+    private int[] firstNames;
+    private int[] lastNames;
+    private boolean[] removed;
+    private int[] sizes;                                       // users of months[idx] not removed, added ones included
+    private int totalUsers;
+    private int numRemoved;
+    private long[] addedIDs;
+    private int[] addedMonths;
+    private int[] addedFirstNames;
+    private int[] addedLastNames;
+    private int numAdded;
+    private int[] states;
+    private long[] stateCounts;
+    private final LongIntMap eventStates;                      // event ID to the code of its state plus 2
+    private static final Map<String, AggregateStore> Stores = new HashMap<String, AggregateStore>();
+    private static final int MergeLimit = 1024;
+}
@@ -0,0 +1,275 @@
+package project2;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/*
+    The CoTagIndex class counts, for every pair of users tagged in a common photo, how
+    many photos they share, so that Query 5 becomes a filtered top-N over the pairs
+    instead of a self-join of the Tags table. Users and photos are numbered densely in
+    the order they are first seen. Each photo keeps the users tagged in it, each user
+    keeps the photos they are tagged in, and a LongIntMap holds the count of each pair
+    under the key (smaller user number << 32 | larger user number). The photos a pair
+    shares are only listed when asked for, by walking the photos of one of the users.
+
+    Adding a tag touches nothing but the pairs it creates with the other users of its
+    photo, so the index is updated incrementally. open() keeps one index per database in
+    the process and checks it against the PairFingerprint of the Tags table: when rows
+    have only been added since the index was last brought up to date, the table is
+    scanned for the tags the index lacks and only those are added; a table whose
+    fingerprint changed in any other way is indexed from scratch. Every method is
+    synchronized, and a caller that reads several values that must agree should hold the
+    index's lock.
+*/
+final class CoTagIndex {
+    // [Constructor]
+    public CoTagIndex() {
+        userNumbers = new LongIntMap();
+        userIDs = new long[16];
+        userPhotos = new int[16][];
+        userPhotoCounts = new int[16];
+        photoNumbers = new LongIntMap();
+        photoIDs = new long[16];
+        photoUsers = new int[16][];
+        photoUserCounts = new int[16];
+        pairs = new LongIntMap();
+        fingerprint = new long[3];
+    }
+
+    // [Open Function]
+    // REQUIRES: <connection> is a valid JDBC connection
+    // EFFECTS:  returns the index of the Tags table reachable through <connection>,
+    //   first bringing it up to date with the table if needed
+    public static synchronized CoTagIndex open(Connection connection) throws SQLException {
+        long[] current = PairFingerprint.read(connection, "Memory.tags.fingerprint",
+            FakebookOracleConstants.TagsTable, "tag_photo_id", "tag_subject_id");
+        String key = connection.getMetaData().getURL() + " " + connection.getMetaData().getUserName();
+        CoTagIndex index = Indexes.get(key);
+        if (index != null && !Arrays.equals(index.fingerprint(), current) && !index.refresh(connection, current)) {
+            index = null;
+        }
+        if (index == null) {
+            index = new CoTagIndex();
+            index.refresh(connection, current);
+            Indexes.put(key, index);
+        }
+        return index;
+    }
+
+    // [Add Function]
+    // MODIFIES: this
+    // EFFECTS:  records that <userID> is tagged in <photoID>, adds the tag to the
+    //   fingerprint this index is up to date with, and returns true, or returns false if
+    //   that tag was already recorded. Code that inserts a tag into the Tags table can
+    //   report it here, so that the next open() does not scan the table for it
+    public synchronized boolean add(long photoID, long userID) {
+        int u = userNumber(userID);
+        int p = photoNumbers.get(photoID) - 1;
+        if (p < 0) {
+            p = number(photoNumbers, photoID);
+        }
+        else {
+            for (int idx = 0; idx < photoUserCounts[p]; idx++) {
+                if (photoUsers[p][idx] == u) {
+                    return false;
+                }
+            }
+        }
+        if (u < 0) {
+            u = number(userNumbers, userID);
+        }
+
+        for (int idx = 0; idx < photoUserCounts[p]; idx++) {
+            int v = photoUsers[p][idx];
+            pairs.increment(u < v ? pairKey(u, v) : pairKey(v, u));
+        }
+        photoUsers[p] = append(photoUsers[p], photoUserCounts[p]++, u);
+        userPhotos[u] = append(userPhotos[u], userPhotoCounts[u]++, p);
+        PairFingerprint.add(fingerprint, photoID, userID);
+        return true;
+    }
+
+    // [User Accessors]
+    // EFFECTS:  users() is the number of users tagged in some photo; userNumber(<userID>)
+    //   is the number of the user <userID>, or -1 if they are not tagged in any photo;
+    //   userID(<user>) is the ID of the user numbered <user>
+    public synchronized int users() {
+        return userNumbers.size();
+    }
+
+    public synchronized int userNumber(long userID) {
+        return userNumbers.get(userID) - 1;
+    }
+
+    public synchronized long userID(int user) {
+        return userIDs[user];
+    }
+
+    // [Pair Accessors]
+    // REQUIRES: 0 <= <slot> < pairSlots()
+    // EFFECTS:  pairCount(<slot>) is the number of photos shared by the pair in <slot>, or
+    //   0 if the slot is free; pairFirst(<slot>) and pairSecond(<slot>) are the smaller and
+    //   the larger user number of that pair
+    public synchronized int pairSlots() {
+        return pairs.capacity();
+    }
+
+    public synchronized int pairCount(int slot) {
+        return pairs.valueAt(slot);
+    }
+
+    public synchronized int pairFirst(int slot) {
+        return (int) (pairs.keyAt(slot) >>> 32);
+    }
+
+    public synchronized int pairSecond(int slot) {
+        return (int) pairs.keyAt(slot);
+    }
+
+    // [Shared Photos Function]
+    // EFFECTS:  returns the IDs of the photos in which both the users numbered <u> and
+    //   <v> are tagged, in ascending order
+    public synchronized long[] sharedPhotos(int u, int v) {
+        if (userPhotoCounts[u] > userPhotoCounts[v]) {
+            int swap = u;
+            u = v;
+            v = swap;
+        }
+        LongList shared = new LongList();
+        for (int idx = 0; idx < userPhotoCounts[u]; idx++) {
+            int p = userPhotos[u][idx];
+            for (int other = 0; other < photoUserCounts[p]; other++) {
+                if (photoUsers[p][other] == v) {
+                    shared.add(photoIDs[p]);
+                    break;
+                }
+            }
+        }
+        long[] photos = shared.toArray();
+        Arrays.sort(photos);
+        return photos;
+    }
+
+    // [Refresh Function]
+    // MODIFIES: this
+    // EFFECTS:  if the Tags table now fingerprints as <current> only because rows were
+    //   added since this index was last brought up to date, adds those rows and returns
+    //   true; otherwise returns false and leaves this index unchanged
+    private boolean refresh(Connection connection, long[] current) throws SQLException {
+        long[] next = fingerprint();
+        if (current[0] <= next[0]) {
+            return false;
+        }
+
+        LongList photos = new LongList();
+        LongList subjects = new LongList();
+        ResultSet rst = FakebookStatementCache.forConnection(connection).prepare("Memory.tags",
+            "SELECT tag_photo_id, tag_subject_id FROM " + FakebookOracleConstants.TagsTable).executeQuery();
+        try {
+            while (rst.next()) {
+                long photoID = rst.getLong(1);
+                long userID = rst.getLong(2);
+                if (!contains(photoID, userID)) {
+                    photos.add(photoID);
+                    subjects.add(userID);
+                    PairFingerprint.add(next, photoID, userID);
+                }
+            }
+        }
+        finally {
+            rst.close();
+        }
+
+        // a tag that was removed or repeated leaves the fingerprints apart; otherwise
+        // adding the missing tags brings the index's fingerprint to <current>
+        if (!Arrays.equals(next, current)) {
+            return false;
+        }
+        synchronized (this) {
+            for (int idx = 0; idx < photos.size(); idx++) {
+                add(photos.get(idx), subjects.get(idx));
+            }
+        }
+        return true;
+    }
+
+    // EFFECTS:  returns the fingerprint of the Tags table this index is up to date with
+    private synchronized long[] fingerprint() {
+        return fingerprint.clone();
+    }
+
+    // EFFECTS:  returns true if the tag of <userID> in <photoID> is recorded
+    private synchronized boolean contains(long photoID, long userID) {
+        int u = userNumbers.get(userID) - 1;
+        int p = photoNumbers.get(photoID) - 1;
+        if (u < 0 || p < 0) {
+            return false;
+        }
+        for (int idx = 0; idx < photoUserCounts[p]; idx++) {
+            if (photoUsers[p][idx] == u) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // MODIFIES: this
+    // EFFECTS:  numbers <id>, which must not be numbered yet, in <numbers> and returns
+    //   its number, growing the arrays indexed by the numbers of <numbers> as needed
+    private int number(LongIntMap numbers, long id) {
+        int number = numbers.size();
+        numbers.put(id, number + 1);
+        if (numbers == userNumbers) {
+            if (number == userIDs.length) {
+                userIDs = Arrays.copyOf(userIDs, 2 * number);
+                userPhotos = Arrays.copyOf(userPhotos, 2 * number);
+                userPhotoCounts = Arrays.copyOf(userPhotoCounts, 2 * number);
+            }
+            userIDs[number] = id;
+        }
+        else {
+            if (number == photoIDs.length) {
+                photoIDs = Arrays.copyOf(photoIDs, 2 * number);
+                photoUsers = Arrays.copyOf(photoUsers, 2 * number);
+                photoUserCounts = Arrays.copyOf(photoUserCounts, 2 * number);
+            }
+            photoIDs[number] = id;
+        }
+        return number;
+    }
+
+    // EFFECTS:  stores <value> at <size> in <values>, which holds <size> values, and
+    //   returns <values> or a larger copy of it
+    private static int[] append(int[] values, int size, int value) {
+        if (values == null) {
+            values = new int[2];
+        }
+        else if (size == values.length) {
+            values = Arrays.copyOf(values, 2 * size);
+        }
+        values[size] = value;
+        return values;
+    }
+
+    // EFFECTS:  returns the key of the pair of user numbers <u> < <v>
+    private static long pairKey(int u, int v) {
+        return ((long) u << 32) | v;
+    }
+
+    // Member Variables
+    private final LongIntMap userNumbers;
+    private long[] userIDs;
+    private int[][] userPhotos;
+    private int[] userPhotoCounts;
+    private final LongIntMap photoNumbers;
+    private long[] photoIDs;
+    private int[][] photoUsers;
+    private int[] photoUserCounts;
+    private final LongIntMap pairs;
+    private long[] fingerprint;
+    private static final Map<String, CoTagIndex> Indexes = new HashMap<String, CoTagIndex>();
+}
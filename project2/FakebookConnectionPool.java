@@ -0,0 +1,443 @@
+package project2;
+
+import java.io.PrintWriter;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.util.ArrayDeque;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Logger;
+import javax.sql.DataSource;
+
+/*
+    The ConnectionFactory interface opens new physical JDBC connections. The connection
+    pool only ever talks to the database through one of these, so tests and embedded
+    databases can supply their own.
+*/
+interface ConnectionFactory {
+    // EFFECTS:  returns a newly opened connection
+    Connection connect() throws SQLException;
+}
+
+/*
+    The DriverManagerConnectionFactory class opens connections through DriverManager.
+    The Oracle thin driver is loaded explicitly for jdbc:oracle URLs because ojdbc6
+    predates JDBC 4 driver auto-registration; any other driver (for example an embedded
+    H2 or Derby database) only needs to be on the classpath, or can be named with the
+    "fakebook.jdbc.driver" setting.
+*/
+final class DriverManagerConnectionFactory implements ConnectionFactory {
+    // [Constructor]
+    // REQUIRES: <url> is a JDBC URL; <user> and <password> may be NULL for databases
+    //           that do not authenticate
+    public DriverManagerConnectionFactory(String url, String user, String password, String driver) {
+        this.url = url;
+        this.user = user;
+        this.password = password;
+        if (driver == null && url.startsWith("jdbc:oracle:")) {
+            driver = "oracle.jdbc.driver.OracleDriver";
+        }
+        this.driver = driver;
+    }
+
+    @Override
+    public Connection connect() throws SQLException {
+        if (driver != null) {
+            try {
+                Class.forName(driver);
+            }
+            catch (ClassNotFoundException e) {
+                throw new SQLException("JDBC driver " + driver + " is not on the classpath", e);
+            }
+        }
+        if (user == null) {
+            return DriverManager.getConnection(url);
+        }
+        return DriverManager.getConnection(url, user, password);
+    }
+
+    @Override
+    public String toString() {
+        return url;
+    }
+
+    // Member Variables
+    private final String url;
+    private final String user;
+    private final String password;
+    private final String driver;
+}
+
+/*
+    The FakebookConnectionPool class is a DataSource that hands out connections from a
+    bounded pool of physical connections. Calling close() on a borrowed connection
+    returns it to the pool instead of closing it. The pool opens <warmUp> connections
+    up front, never holds more than <maxSize>, and validates a connection with
+    Connection.isValid before lending it out if it has sat idle for longer than
+    <idleValidationMillis>. Borrowers that find the pool exhausted wait up to
+    <borrowTimeoutMillis> for a connection to be returned.
+*/
+final class FakebookConnectionPool implements DataSource, AutoCloseable {
+    // [Constructor]
+    // REQUIRES: <factory> is not NULL, 0 <= <warmUp> <= <maxSize>, and <maxSize> > 0
+    public FakebookConnectionPool(ConnectionFactory factory, int maxSize, int warmUp,
+                                  long idleValidationMillis, int validationTimeoutSeconds,
+                                  long borrowTimeoutMillis) throws SQLException {
+        if (maxSize <= 0 || warmUp < 0 || warmUp > maxSize) {
+            throw new IllegalArgumentException("Pool sizes must satisfy 0 <= warmUp <= maxSize and maxSize > 0");
+        }
+        this.factory = factory;
+        this.maxSize = maxSize;
+        this.idleValidationMillis = idleValidationMillis;
+        this.validationTimeoutSeconds = validationTimeoutSeconds;
+        this.borrowTimeoutMillis = borrowTimeoutMillis;
+        idle = new ArrayDeque<PooledConnection>();
+        lock = new ReentrantLock();
+        returned = lock.newCondition();
+        open = 0;
+        closed = false;
+
+        try {
+            for (int idx = 0; idx < warmUp; idx++) {
+                idle.push(new PooledConnection(factory.connect()));
+                open++;
+            }
+        }
+        catch (SQLException e) {
+            close();
+            throw e;
+        }
+    }
+
+    // [Settings Factory Function]
+    // EFFECTS:  returns a pool configured from FakebookSettings, using <defaultUser> and
+    //   <defaultPassword> when no credentials are configured; the recognized settings are
+    //   fakebook.jdbc.url, fakebook.jdbc.user, fakebook.jdbc.password,
+    //   fakebook.jdbc.driver, fakebook.pool.maxSize, fakebook.pool.warmUp,
+    //   fakebook.pool.idleValidationMillis, fakebook.pool.validationTimeoutSeconds, and
+    //   fakebook.pool.borrowTimeoutMillis
+    public static FakebookConnectionPool fromSettings(String defaultUser, String defaultPassword) throws SQLException {
+        return fromSettings(defaultUser, defaultPassword, 1);
+    }
+
+    // [Settings Factory Function]
+    // EFFECTS:  returns a pool configured like fromSettings(<defaultUser>,
+    //   <defaultPassword>), but opening <defaultWarmUp> connections up front unless
+    //   fakebook.pool.warmUp is set
+    public static FakebookConnectionPool fromSettings(String defaultUser, String defaultPassword,
+                                                      int defaultWarmUp) throws SQLException {
+        String url = FakebookSettings.get("fakebook.jdbc.url", DefaultUrl);
+        String user = FakebookSettings.get("fakebook.jdbc.user", url.equals(DefaultUrl) ? defaultUser : null);
+        String password = FakebookSettings.get("fakebook.jdbc.password", url.equals(DefaultUrl) ? defaultPassword : null);
+        ConnectionFactory factory = new DriverManagerConnectionFactory(url, user, password,
+            FakebookSettings.get("fakebook.jdbc.driver", null));
+
+        return new FakebookConnectionPool(factory,
+            FakebookSettings.getInt("fakebook.pool.maxSize", 10),
+            FakebookSettings.getInt("fakebook.pool.warmUp", defaultWarmUp),
+            FakebookSettings.getLong("fakebook.pool.idleValidationMillis", 30000L),
+            FakebookSettings.getInt("fakebook.pool.validationTimeoutSeconds", 5),
+            FakebookSettings.getLong("fakebook.pool.borrowTimeoutMillis", 30000L));
+    }
+
+    @Override
+    // [Borrow Function]
+    // EFFECTS:  returns a pooled connection, opening a new one if none is idle and the
+    //   pool is not full; throws an SQLException if the pool is closed or no connection
+    //   becomes available within <borrowTimeoutMillis>
+    public Connection getConnection() throws SQLException {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(borrowTimeoutMillis);
+        while (true) {
+            PooledConnection candidate = null;
+            boolean mayOpen = false;
+
+            lock.lock();
+            try {
+                while (!closed && idle.isEmpty() && open >= maxSize) {
+                    long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0L) {
+                        throw new SQLException("Timed out after " + borrowTimeoutMillis +
+                            " ms waiting for one of " + maxSize + " pooled connections");
+                    }
+                    try {
+                        returned.awaitNanos(remaining);
+                    }
+                    catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new SQLException("Interrupted while waiting for a pooled connection", e);
+                    }
+                }
+                if (closed) {
+                    throw new SQLException("Connection pool is closed");
+                }
+                if (!idle.isEmpty()) {
+                    candidate = idle.pop();
+                }
+                else {
+                    open++;
+                    mayOpen = true;
+                }
+            }
+            finally {
+                lock.unlock();
+            }
+
+            // Physical I/O (connecting and validating) happens outside the lock
+            if (mayOpen) {
+                try {
+                    return new PooledConnection(factory.connect()).lend();
+                }
+                catch (SQLException | RuntimeException e) {
+                    discard(null);
+                    throw e;
+                }
+            }
+            if (isHealthy(candidate)) {
+                return candidate.lend();
+            }
+            discard(candidate);
+        }
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        throw new SQLFeatureNotSupportedException("Pooled connections use the configured credentials");
+    }
+
+    // [Close Function]
+    // MODIFIES: this
+    // EFFECTS:  closes every idle connection; connections that are still borrowed are
+    //   closed when they are returned
+    public void close() {
+        lock.lock();
+        try {
+            closed = true;
+            while (!idle.isEmpty()) {
+                idle.pop().closePhysical();
+                open--;
+            }
+            returned.signalAll();
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    // [Statistics Accessors]
+    public int openConnections() {
+        lock.lock();
+        try {
+            return open;
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    public int idleConnections() {
+        lock.lock();
+        try {
+            return idle.size();
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return String.format("FakebookConnectionPool[%s, %d/%d open, %d idle]",
+            factory, openConnections(), maxSize, idleConnections());
+    }
+
+    // [DataSource Boilerplate]
+    @Override
+    public PrintWriter getLogWriter() {
+        return logWriter;
+    }
+
+    @Override
+    public void setLogWriter(PrintWriter out) {
+        logWriter = out;
+    }
+
+    @Override
+    public void setLoginTimeout(int seconds) {
+        DriverManager.setLoginTimeout(seconds);
+    }
+
+    @Override
+    public int getLoginTimeout() {
+        return DriverManager.getLoginTimeout();
+    }
+
+    @Override
+    public Logger getParentLogger() throws SQLFeatureNotSupportedException {
+        throw new SQLFeatureNotSupportedException();
+    }
+
+    @Override
+    public <T> T unwrap(Class<T> iface) throws SQLException {
+        if (iface.isInstance(this)) {
+            return iface.cast(this);
+        }
+        throw new SQLException("Not a wrapper for " + iface.getName());
+    }
+
+    @Override
+    public boolean isWrapperFor(Class<?> iface) {
+        return iface.isInstance(this);
+    }
+
+    // EFFECTS:  returns true if <candidate> may be lent out without further checks, or
+    //   if it has been idle too long and passes Connection.isValid
+    private boolean isHealthy(PooledConnection candidate) {
+        if (System.currentTimeMillis() - candidate.idleSince <= idleValidationMillis) {
+            return true;
+        }
+        try {
+            return candidate.physical.isValid(validationTimeoutSeconds);
+        }
+        catch (SQLException e) {
+            return false;
+        }
+    }
+
+    // EFFECTS:  closes <connection> (if not NULL) and frees its slot in the pool
+    private void discard(PooledConnection connection) {
+        if (connection != null) {
+            connection.closePhysical();
+        }
+        lock.lock();
+        try {
+            open--;
+            returned.signal();
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    // EFFECTS:  puts <connection> back on the idle stack, or closes it if the pool has
+    //   been closed or the connection can no longer be reused
+    private void giveBack(PooledConnection connection) {
+        boolean reusable;
+        try {
+            reusable = !connection.physical.isClosed();
+            if (reusable && !connection.physical.getAutoCommit()) {
+                connection.physical.rollback();
+                connection.physical.setAutoCommit(true);
+            }
+        }
+        catch (SQLException e) {
+            reusable = false;
+        }
+
+        lock.lock();
+        try {
+            if (reusable && !closed) {
+                connection.idleSince = System.currentTimeMillis();
+                idle.push(connection);
+                returned.signal();
+                return;
+            }
+        }
+        finally {
+            lock.unlock();
+        }
+        discard(connection);
+    }
+
+    /*
+        A PooledConnection owns one physical connection and lends it out through a
+        dynamic proxy whose close() method hands the connection back to the pool. Each
+        loan gets a fresh proxy, so a borrower that keeps using a connection after
+        closing it gets an SQLException instead of silently sharing it with the next
+        borrower.
+    */
+    private final class PooledConnection {
+        PooledConnection(Connection physical) {
+            this.physical = physical;
+            idleSince = System.currentTimeMillis();
+        }
+
+        Connection lend() {
+            Loan loan = new Loan();
+            return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                new Class<?>[] { Connection.class }, loan);
+        }
+
+        void closePhysical() {
+            try {
+                physical.close();
+            }
+            catch (SQLException e) {
+                System.err.println(e.getMessage());
+            }
+        }
+
+        private final class Loan implements InvocationHandler {
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                String name = method.getName();
+                if (name.equals("close")) {
+                    if (!returnedToPool) {
+                        returnedToPool = true;
+                        giveBack(PooledConnection.this);
+                    }
+                    return null;
+                }
+                if (name.equals("isClosed")) {
+                    return returnedToPool || physical.isClosed();
+                }
+                if (name.equals("equals")) {
+                    return proxy == args[0];
+                }
+                if (name.equals("hashCode")) {
+                    return System.identityHashCode(proxy);
+                }
+                if (name.equals("toString")) {
+                    return "Pooled " + physical;
+                }
+                if (name.equals("unwrap") && ((Class<?>) args[0]).isInstance(physical)) {
+                    return physical;
+                }
+                if (returnedToPool) {
+                    throw new SQLException("Connection has been returned to the pool");
+                }
+                try {
+                    return method.invoke(physical, args);
+                }
+                catch (InvocationTargetException e) {
+                    throw e.getCause();
+                }
+            }
+
+            private boolean returnedToPool = false;
+        }
+
+        final Connection physical;
+        long idleSince;
+    }
+
+    // Member Variables
+    private static final String DefaultUrl = "jdbc:oracle:thin:@forktail.dsc.umich.edu:1521:COURSEDB";
+    private final ConnectionFactory factory;
+    private final int maxSize;
+    private final long idleValidationMillis;
+    private final int validationTimeoutSeconds;
+    private final long borrowTimeoutMillis;
+    private final ArrayDeque<PooledConnection> idle;
+    private final ReentrantLock lock;
+    private final Condition returned;
+    private int open;
+    private boolean closed;
+    private PrintWriter logWriter;
+}
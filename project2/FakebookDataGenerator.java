@@ -0,0 +1,425 @@
+package project2;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/*
+    The FakebookDataGenerator class produces a synthetic Fakebook database of <users>
+    users, with IDs 0 through <users> - 1, shaped so that every query has realistic work
+    to do:
+        - Users come in blocks of BlockSize consecutive IDs, and the first one to four
+          users of each block form a family that shares a last name and a hometown and
+          was born within a dozen years; family members are usually friends, which is
+          what Query 9 looks for.
+        - First names, last names, cities and programs are drawn with a Zipf-like skew,
+          so a few names and cities are very common and most are rare.
+        - Each user befriends a number of users with smaller IDs that follows a power
+          law, mostly from a window of nearby IDs (a community) and otherwise with a
+          bias towards the earliest users, so both the number of friends a user adds
+          and the number of times a user is added are heavy-tailed. About LonelyPercent
+          percent of the users have no friends at all.
+        - The users tagged in a photo are drawn from a small circle of IDs around the
+          photo's owner, so the same pairs of users are tagged together again and again.
+
+    The output depends only on <users> and <seed>: every block of users draws from a
+    generator reseeded from (<seed>, block number), so the rows are the same whatever
+    the chunk size and however many threads produce them. Chunks of users are generated
+    independently and streamed to a FakebookDataSink row by row, so memory use does not
+    grow with <users>.
+*/
+final class FakebookDataGenerator {
+    // [Constructor]
+    // REQUIRES: <users> > 0
+    public FakebookDataGenerator(long users, long seed) {
+        this.users = users;
+        this.seed = seed;
+        cities = Math.max(10L, Math.min(users / 1000, 1000000L));
+        programs = Math.max(20L, Math.min(users / 5000, 100000L));
+    }
+
+    // [Generate Function]
+    // REQUIRES: <threads> > 0 and <chunkSize> > 0
+    // MODIFIES: <sink>
+    // EFFECTS:  generates every row, <chunkSize> users (rounded up to a whole number of
+    //   blocks) per chunk, on <threads> threads, and writes them to <sink>; the Cities
+    //   and Programs tables are written as one extra chunk after the last chunk of users
+    public void generate(FakebookDataSink sink, int threads, long chunkSize) throws SQLException, IOException {
+        final long size = (chunkSize + BlockSize - 1) / BlockSize * BlockSize;
+        final long chunks = (users + size - 1) / size;
+        final FakebookDataSink output = sink;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<Void>> futures = new ArrayList<Future<Void>>();
+            for (long chunk = 0; chunk <= chunks; chunk++) {
+                final long number = chunk;
+                futures.add(executor.submit(new Callable<Void>() {
+                    public Void call() throws SQLException, IOException {
+                        if (number == chunks) {
+                            generateReferenceTables(output, number);
+                        }
+                        else {
+                            generateUsers(output, number, number * size, Math.min(users, (number + 1) * size));
+                        }
+                        return null;
+                    }
+                }));
+            }
+            for (Future<Void> future : futures) {
+                future.get();
+            }
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Data generation was interrupted");
+        }
+        catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof SQLException) {
+                throw (SQLException) cause;
+            }
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw (Error) cause;
+        }
+        finally {
+            executor.shutdownNow();
+        }
+    }
+
+    // [Main Function]
+    // Generates a database configured through FakebookSettings:
+    //   fakebook.gen.users       number of users (default 1000)
+    //   fakebook.gen.seed        seed (default 42)
+    //   fakebook.gen.csv         directory to write CSV files to instead of loading the
+    //                            database configured by the fakebook.jdbc.* settings
+    //   fakebook.gen.create      whether to drop and recreate the tables before loading
+    //                            them (default true)
+    //   fakebook.gen.threads     number of generating threads (default: the number of
+    //                            processors, at most fakebook.pool.maxSize when loading)
+    //   fakebook.gen.chunkSize   users per chunk (default 65536)
+    public static void main(String[] args) {
+        FakebookDataGenerator generator = new FakebookDataGenerator(
+            FakebookSettings.getLong("fakebook.gen.users", 1000L),
+            FakebookSettings.getLong("fakebook.gen.seed", 42L));
+        long chunkSize = FakebookSettings.getLong("fakebook.gen.chunkSize", DefaultChunkSize);
+        int processors = Runtime.getRuntime().availableProcessors();
+        String csv = FakebookSettings.get("fakebook.gen.csv", null);
+        long begin = System.nanoTime();
+
+        try {
+            if (csv != null) {
+                int threads = FakebookSettings.getInt("fakebook.gen.threads", processors);
+                generator.generate(new CsvDataSink(new File(csv)), threads, chunkSize);
+            }
+            else {
+                try (FakebookConnectionPool pool = FakebookConnectionPool.fromSettings(null, null)) {
+                    if (FakebookSettings.getBoolean("fakebook.gen.create", true)) {
+                        try (Connection connection = pool.getConnection()) {
+                            FakebookSchema.drop(connection);
+                            FakebookSchema.create(connection);
+                        }
+                    }
+                    int threads = FakebookSettings.getInt("fakebook.gen.threads",
+                        Math.min(processors, FakebookSettings.getInt("fakebook.pool.maxSize", 10)));
+                    generator.generate(new JdbcDataSink(pool), threads, chunkSize);
+                }
+            }
+            System.out.println(String.format("Generated %d user(s) in %.3f s", generator.users, (System.nanoTime() - begin) / 1.0e9));
+        }
+        catch (SQLException e) {
+            e.printStackTrace();
+        }
+        catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    // EFFECTS:  writes the Cities and Programs tables as chunk <chunk>
+    private void generateReferenceTables(FakebookDataSink sink, long chunk) throws SQLException, IOException {
+        SplitMix random = new SplitMix();
+        try (FakebookChunkWriter out = sink.open(chunk)) {
+            random.reseed(seed, -1L);
+            for (long city = 0; city < cities; city++) {
+                out.add(FakebookSchema.Cities, city, "City " + city,
+                    States[random.nextInt(States.length)], "United States");
+            }
+            random.reseed(seed, -2L);
+            for (long program = 0; program < programs; program++) {
+                out.add(FakebookSchema.Programs, program, "University " + (program / Concentrations.length),
+                    Concentrations[(int) (program % Concentrations.length)], Degrees[random.nextInt(Degrees.length)]);
+            }
+        }
+    }
+
+    // EFFECTS:  writes every row that belongs to users <first> through <last> - 1 as
+    //   chunk <chunk>; <first> is a multiple of BlockSize
+    private void generateUsers(FakebookDataSink sink, long chunk, long first, long last) throws SQLException, IOException {
+        SplitMix random = new SplitMix();
+        long[] scratch = new long[MaxFriendsAdded];
+        try (FakebookChunkWriter out = sink.open(chunk)) {
+            for (long start = first; start < last; start += BlockSize) {
+                generateBlock(out, random, start, Math.min(last, start + BlockSize), scratch);
+            }
+        }
+    }
+
+    // EFFECTS:  writes every row that belongs to users <start> through <end> - 1, which
+    //   form one block
+    private void generateBlock(FakebookChunkWriter out, SplitMix random, long start, long end, long[] scratch)
+            throws SQLException, IOException {
+        random.reseed(seed, start / BlockSize);
+        int roll = random.nextInt(100);
+        long familySize = Math.min(end - start, roll < 45 ? 1 : roll < 65 ? 2 : roll < 82 ? 3 : 4);
+        String familyName = LastNames[(int) zipf(random, LastNames.length)];
+        long familyHometown = zipf(random, cities);
+        int familyYear = 1940 + random.nextInt(60);
+
+        for (long user = start; user < end; user++) {
+            boolean inFamily = user - start < familySize;
+
+            // Users
+            Integer year = random.nextInt(50) == 0 ? null
+                : Integer.valueOf(inFamily ? familyYear + random.nextInt(13) : 1940 + random.nextInt(70));
+            Integer month = random.nextInt(20) == 0 ? null : Integer.valueOf(1 + random.nextInt(12));
+            out.add(FakebookSchema.Users, user,
+                FirstNames[(int) zipf(random, FirstNames.length)],
+                inFamily ? familyName : LastNames[(int) zipf(random, LastNames.length)],
+                year, month, 1 + random.nextInt(28), random.nextBoolean() ? "female" : "male");
+
+            // User_Hometown_Cities and User_Current_Cities
+            long hometown = inFamily ? familyHometown : zipf(random, cities);
+            long current = random.nextInt(5) < 2 ? hometown : zipf(random, cities);
+            if (random.nextInt(12) != 0) {
+                out.add(FakebookSchema.HometownCities, user, hometown);
+            }
+            if (random.nextInt(12) != 0) {
+                out.add(FakebookSchema.CurrentCities, user, current);
+            }
+
+            // Friends
+            if (!lonely(user)) {
+                for (long relative = start; inFamily && relative < user; relative++) {
+                    if (!lonely(relative) && random.nextInt(10) < 8) {
+                        out.add(FakebookSchema.Friends, relative, user);
+                    }
+                }
+                addFriends(out, random, user, start, scratch);
+            }
+
+            // Programs
+            if (random.nextInt(5) < 3) {
+                out.add(FakebookSchema.Education, user, zipf(random, programs),
+                    (year == null ? 1990 : year) + 18 + random.nextInt(8));
+            }
+
+            // User_Events
+            if (random.nextInt(20) == 0) {
+                Timestamp begins = timestamp(random);
+                out.add(FakebookSchema.Events, user, user, "Event " + user, "Be there", "A Fakebook event",
+                    "Host " + user, EventTypes[random.nextInt(EventTypes.length)], "General",
+                    user + " Main Street", random.nextBoolean() ? current : zipf(random, cities),
+                    begins, new Timestamp(begins.getTime() + (1 + random.nextInt(6)) * 3600000L));
+            }
+
+            // Albums, Photos and Tags
+            int albums = random.nextInt(10) < 3 ? 1 + random.nextInt(AlbumsPerUser) : 0;
+            for (int idx = 0; idx < albums; idx++) {
+                addAlbum(out, random, user, user * AlbumsPerUser + idx, scratch);
+            }
+        }
+    }
+
+    // EFFECTS:  writes the friendships between <user> and a power-law distributed number
+    //   of users with IDs below <start>, none of whom are lonely
+    private void addFriends(FakebookChunkWriter out, SplitMix random, long user, long start, long[] scratch)
+            throws SQLException, IOException {
+        if (start == 0) {
+            return;
+        }
+        double degree = DegreeScale * (Math.pow(1.0 - random.nextDouble(), -1.0 / DegreeExponent) - 1.0);
+        int wanted = (int) Math.min(Math.min(degree, MaxFriendsAdded), start);
+        int count = 0;
+        for (int idx = 0; idx < wanted; idx++) {
+            long friend;
+            if (random.nextInt(10) < 7) {
+                friend = start - 1 - (long) (random.nextDouble() * Math.min(start, CommunitySize));
+            }
+            else {
+                double position = random.nextDouble();
+                friend = (long) (position * position * start);
+            }
+            if (!lonely(friend)) {
+                scratch[count++] = friend;
+            }
+        }
+        Arrays.sort(scratch, 0, count);
+        for (int idx = 0; idx < count; idx++) {
+            if (idx == 0 || scratch[idx] != scratch[idx - 1]) {
+                out.add(FakebookSchema.Friends, scratch[idx], user);
+            }
+        }
+    }
+
+    // EFFECTS:  writes album <album> of <owner>, its photos, and their tags
+    private void addAlbum(FakebookChunkWriter out, SplitMix random, long owner, long album, long[] scratch)
+            throws SQLException, IOException {
+        long firstPhoto = album * PhotosPerAlbum;
+        int photos = 1 + random.nextInt(PhotosPerAlbum);
+        Timestamp created = timestamp(random);
+        out.add(FakebookSchema.Albums, album, owner, AlbumNames[random.nextInt(AlbumNames.length)],
+            created, created, "http://www.fakebook.com/albums/" + album,
+            Visibilities[random.nextInt(Visibilities.length)], firstPhoto);
+
+        for (long photo = firstPhoto; photo < firstPhoto + photos; photo++) {
+            out.add(FakebookSchema.Photos, photo, album, "Photo " + photo, created, created,
+                "http://www.fakebook.com/photos/" + photo);
+
+            int count = 0;
+            while (count < MaxTagsPerPhoto && random.nextInt(3) != 0) {
+                long subject = random.nextInt(4) == 0 ? owner : owner + random.nextInt(2 * TagCircle + 1) - TagCircle;
+                if (subject >= 0 && subject < users) {
+                    scratch[count] = subject;
+                }
+                else {
+                    scratch[count] = owner;
+                }
+                count++;
+            }
+            Arrays.sort(scratch, 0, count);
+            for (int idx = 0; idx < count; idx++) {
+                if (idx == 0 || scratch[idx] != scratch[idx - 1]) {
+                    out.add(FakebookSchema.Tags, photo, scratch[idx], created,
+                        (long) random.nextInt(100), (long) random.nextInt(100));
+                }
+            }
+        }
+    }
+
+    // EFFECTS:  returns true if <user> has no friends; this depends only on <seed> and
+    //   <user>, so every block can tell without generating the others
+    private boolean lonely(long user) {
+        return Long.remainderUnsigned(SplitMix.mix(seed ^ SplitMix.mix(user + LonelySalt)), 100) < LonelyPercent;
+    }
+
+    // EFFECTS:  returns a number in [0, <n>), where k is about k + 1 times as likely as
+    //   0 to be drawn
+    private static long zipf(SplitMix random, long n) {
+        long rank = (long) Math.exp(random.nextDouble() * Math.log(n + 1.0)) - 1;
+        return Math.min(Math.max(rank, 0L), n - 1);
+    }
+
+    // EFFECTS:  returns a time within the three years following Epoch
+    private static Timestamp timestamp(SplitMix random) {
+        return new Timestamp(Epoch + random.nextInt(3 * 365 * 24) * 3600000L);
+    }
+
+    // EFFECTS:  returns 1000 last names built from common stems and endings
+    private static String[] lastNames() {
+        String[] stems = { "SMITH", "JOHN", "WILLIAM", "BROWN", "JONES", "GARC", "MILL", "DAV", "RODRIG",
+            "MART", "HERN", "LOP", "GONZ", "WIL", "ANDER", "THOM", "TAYL", "MOOR", "JACK", "WHIT",
+            "HARR", "CLARK", "LEW", "ROBIN", "WALK" };
+        String[] endings = { "", "S", "SON", "SEN", "ER", "ERS", "MAN", "EZ", "IA", "ES", "ON", "EN",
+            "IN", "INS", "ELL", "ETT", "LEY", "TON", "FORD", "WOOD", "FIELD", "BERG", "STEIN", "SKI",
+            "OV", "AK", "AS", "IS", "OS", "US", "O", "A", "I", "E", "Y", "EY", "IE", "LE", "LY", "WORTH" };
+        String[] names = new String[stems.length * endings.length];
+        for (int ending = 0; ending < endings.length; ending++) {
+            for (int stem = 0; stem < stems.length; stem++) {
+                names[ending * stems.length + stem] = stems[stem] + endings[ending];
+            }
+        }
+        return names;
+    }
+
+    /*
+        The SplitMix class is the SplitMix64 pseudo-random number generator. Unlike
+        java.util.SplittableRandom it can be reseeded in place, so one instance serves
+        every block of a chunk without allocating.
+    */
+    private static final class SplitMix {
+        // [Reseed Function]
+        // EFFECTS:  restarts the generator at the stream identified by (<seed>, <stream>)
+        void reseed(long seed, long stream) {
+            state = mix(seed ^ mix(stream * Golden));
+        }
+
+        long nextLong() {
+            state += Golden;
+            return mix(state);
+        }
+
+        // REQUIRES: <bound> > 0
+        int nextInt(int bound) {
+            return (int) (((nextLong() >>> 33) * bound) >>> 31);
+        }
+
+        double nextDouble() {
+            return (nextLong() >>> 11) * 0x1.0p-53;
+        }
+
+        boolean nextBoolean() {
+            return nextLong() < 0;
+        }
+
+        // EFFECTS:  returns the SplitMix64 finalization of <z>
+        static long mix(long z) {
+            z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+            z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+            return z ^ (z >>> 31);
+        }
+
+        // Member Variables
+        private static final long Golden = 0x9e3779b97f4a7c15L;
+        private long state;
+    }
+
+    // Member Variables
+    public static final long DefaultChunkSize = 65536L;
+    private static final int BlockSize = 4;
+    private static final int LonelyPercent = 3;
+    private static final long LonelySalt = 0x4c6f6e656c79L;
+    private static final double DegreeScale = 3.0;
+    private static final double DegreeExponent = 1.6;
+    private static final int MaxFriendsAdded = 5000;
+    private static final long CommunitySize = 1000L;
+    private static final int AlbumsPerUser = 4;
+    private static final int PhotosPerAlbum = 8;
+    private static final int MaxTagsPerPhoto = 8;
+    private static final int TagCircle = 8;
+    private static final long Epoch = 1577836800000L;                   // 2020-01-01 UTC
+    private static final String[] FirstNames = { "James", "Mary", "John", "Patricia", "Robert", "Jennifer",
+        "Michael", "Linda", "William", "Elizabeth", "David", "Barbara", "Richard", "Susan", "Joseph", "Jessica",
+        "Thomas", "Sarah", "Charles", "Karen", "Christopher", "Nancy", "Daniel", "Lisa", "Matthew", "Margaret",
+        "Anthony", "Betty", "Mark", "Sandra", "Donald", "Ashley", "Steven", "Dorothy", "Paul", "Kimberly",
+        "Andrew", "Emily", "Joshua", "Donna", "Bo", "Eowyn", "Alexandria", "Maximilian" };
+    private static final String[] LastNames = lastNames();
+    private static final String[] States = { "Michigan", "Ohio", "Indiana", "Illinois", "Wisconsin",
+        "Minnesota", "New York", "California", "Texas", "Florida", "Georgia", "Washington", "Oregon",
+        "Colorado", "Arizona", "Massachusetts", "Pennsylvania", "Virginia", "North Carolina", "Tennessee" };
+    private static final String[] Concentrations = { "Computer Science", "Mathematics", "Physics",
+        "Economics", "History", "Biology", "Chemistry", "English", "Music", "Psychology" };
+    private static final String[] Degrees = { "BS", "BA", "MS", "MA", "PhD" };
+    private static final String[] EventTypes = { "Party", "Meeting", "Concert", "Sports", "Study Group" };
+    private static final String[] AlbumNames = { "Profile Pictures", "Mobile Uploads", "Vacation",
+        "Friends", "Family", "Cover Photos" };
+    private static final String[] Visibilities = { "EVERYONE", "FRIENDS", "FRIENDS_OF_FRIENDS", "MYSELF" };
+    private final long users;
+    private final long seed;
+    private final long cities;
+    private final long programs;
+}
@@ -0,0 +1,212 @@
+package project2;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import javax.sql.DataSource;
+
+/*
+    The FakebookDataSink interface receives the rows produced by FakebookDataGenerator.
+    The generator splits its output into independent chunks that may be produced on
+    different threads at the same time; each chunk is written through its own
+    FakebookChunkWriter, so implementations only need to make open() thread-safe.
+*/
+interface FakebookDataSink {
+    // [Open Function]
+    // EFFECTS:  returns a writer for the rows of chunk number <chunk>
+    FakebookChunkWriter open(long chunk) throws SQLException, IOException;
+}
+
+/*
+    The FakebookChunkWriter interface writes the rows of one chunk of generated data. A
+    writer is used by a single thread and is closed once the whole chunk has been added.
+*/
+interface FakebookChunkWriter extends AutoCloseable {
+    // [Add Function]
+    // REQUIRES: 0 <= <table> < FakebookSchema.Tables.length and <values> holds one
+    //           value per column of that table, in column order
+    // EFFECTS:  writes the row <values> to the table FakebookSchema.Tables[<table>]
+    void add(int table, Object... values) throws SQLException, IOException;
+
+    // [Close Function]
+    // EFFECTS:  makes every added row durable and releases the writer's resources
+    void close() throws SQLException, IOException;
+}
+
+/*
+    The JdbcDataSink class bulk-loads generated rows into the database behind <pool>.
+    Each chunk borrows its own connection, inserts its rows with batched
+    PreparedStatements, BatchSize rows per round trip, and commits once at the end, so
+    chunks on different threads load in parallel over different connections.
+*/
+final class JdbcDataSink implements FakebookDataSink {
+    // [Constructor]
+    // REQUIRES: the tables of FakebookSchema exist in the database behind <pool>
+    public JdbcDataSink(DataSource pool) {
+        this.pool = pool;
+    }
+
+    @Override
+    public FakebookChunkWriter open(long chunk) throws SQLException {
+        return new JdbcChunkWriter(pool.getConnection());
+    }
+
+    private static final class JdbcChunkWriter implements FakebookChunkWriter {
+        // [Constructor]
+        JdbcChunkWriter(Connection connection) throws SQLException {
+            this.connection = connection;
+            autoCommit = connection.getAutoCommit();
+            connection.setAutoCommit(false);
+            statements = new PreparedStatement[FakebookSchema.Tables.length];
+            pending = new int[FakebookSchema.Tables.length];
+        }
+
+        @Override
+        public void add(int table, Object... values) throws SQLException {
+            PreparedStatement stmt = statements[table];
+            if (stmt == null) {
+                StringBuilder sql = new StringBuilder("INSERT INTO ").append(FakebookSchema.Tables[table]).append(" VALUES (");
+                for (int idx = 0; idx < FakebookSchema.columns(table); idx++) {
+                    sql.append(idx == 0 ? "?" : ", ?");
+                }
+                stmt = statements[table] = connection.prepareStatement(sql.append(")").toString());
+            }
+            for (int idx = 0; idx < values.length; idx++) {
+                stmt.setObject(idx + 1, values[idx]);
+            }
+            stmt.addBatch();
+            if (++pending[table] == BatchSize) {
+                stmt.executeBatch();
+                pending[table] = 0;
+            }
+        }
+
+        @Override
+        public void close() throws SQLException {
+            try {
+                for (int table = 0; table < statements.length; table++) {
+                    if (statements[table] != null && pending[table] != 0) {
+                        statements[table].executeBatch();
+                    }
+                }
+                connection.commit();
+            }
+            finally {
+                for (PreparedStatement stmt : statements) {
+                    if (stmt != null) {
+                        stmt.close();
+                    }
+                }
+                connection.setAutoCommit(autoCommit);
+                connection.close();
+            }
+        }
+
+        // Member Variables
+        private final Connection connection;
+        private final boolean autoCommit;
+        private final PreparedStatement[] statements;
+        private final int[] pending;
+    }
+
+    // Member Variables
+    private static final int BatchSize = 1000;
+    private final DataSource pool;
+}
+
+/*
+    The CsvDataSink class writes generated rows as comma-separated flat files in
+    <directory>, one file per table and chunk named <table>.<chunk>.csv (for example
+    PUBLIC_Users.00003.csv), so that chunks can be written in parallel and loaded with
+    any bulk loader. NULL values are written as empty fields, and fields containing a
+    comma, quote, or line break are quoted.
+*/
+final class CsvDataSink implements FakebookDataSink {
+    // [Constructor]
+    // REQUIRES: <directory> exists or can be created
+    public CsvDataSink(File directory) {
+        this.directory = directory;
+    }
+
+    @Override
+    public FakebookChunkWriter open(long chunk) throws IOException {
+        if (!directory.isDirectory() && !directory.mkdirs() && !directory.isDirectory()) {
+            throw new IOException("Could not create directory " + directory);
+        }
+        return new CsvChunkWriter(directory, chunk);
+    }
+
+    private static final class CsvChunkWriter implements FakebookChunkWriter {
+        // [Constructor]
+        CsvChunkWriter(File directory, long chunk) {
+            this.directory = directory;
+            this.chunk = chunk;
+            files = new Writer[FakebookSchema.Tables.length];
+        }
+
+        @Override
+        public void add(int table, Object... values) throws IOException {
+            Writer out = files[table];
+            if (out == null) {
+                String name = String.format("%s.%05d.csv", FakebookSchema.shortName(table), chunk);
+                out = files[table] = new BufferedWriter(new FileWriter(new File(directory, name)), 1 << 16);
+            }
+            for (int idx = 0; idx < values.length; idx++) {
+                if (idx != 0) {
+                    out.write(',');
+                }
+                if (values[idx] != null) {
+                    writeField(out, values[idx].toString());
+                }
+            }
+            out.write('\n');
+        }
+
+        @Override
+        public void close() throws IOException {
+            IOException failure = null;
+            for (Writer out : files) {
+                try {
+                    if (out != null) {
+                        out.close();
+                    }
+                }
+                catch (IOException e) {
+                    failure = e;
+                }
+            }
+            if (failure != null) {
+                throw failure;
+            }
+        }
+
+        // EFFECTS:  writes <field> to <out>, quoting it if it needs to be
+        private static void writeField(Writer out, String field) throws IOException {
+            boolean quote = false;
+            for (int idx = 0; idx < field.length() && !quote; idx++) {
+                char c = field.charAt(idx);
+                quote = c == ',' || c == '"' || c == '\n' || c == '\r';
+            }
+            if (!quote) {
+                out.write(field);
+                return;
+            }
+            out.write('"');
+            out.write(field.replace("\"", "\"\""));
+            out.write('"');
+        }
+
+        // Member Variables
+        private final File directory;
+        private final long chunk;
+        private final Writer[] files;
+    }
+
+    // Member Variables
+    private final File directory;
+}
@@ -0,0 +1,462 @@
+package project2;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/*
+    The FriendIndex class is a FriendAdjacency kept in a file and memory-mapped, so the
+    Friends table is read and sorted into compressed sparse row form once instead of once
+    per process. After the first build, finding a user's friends costs a binary search
+    over the mapped IDs and O(degree) reads, and a user who has no friends is one whose ID
+    is not a vertex, which a scan of the Users table in ID order can check in O(1) per
+    user. The file is laid out as
+        magic "FBADJ002"                                    8 bytes
+        row count, two sums of row hashes                   3 x 8 bytes
+        vertex count, neighbor count                        2 x 4 bytes
+        vertex IDs                                          8 bytes each
+        neighbor offsets (one more than the vertices)       4 bytes each
+        neighbors                                           4 bytes each
+    and each array is mapped in chunks of at most 1 GiB, so the index is not limited by
+    the 2 GiB a single mapping can hold.
+
+    The three numbers at the start are the PairFingerprint of the Friends table the index
+    was built from. open() reuses the file while the fingerprint still matches the table,
+    which costs one aggregate scan of the table but no transfer of its rows. If rows have
+    only been added since, the table is scanned for the friendships the index lacks and
+    those are merged into the existing lists, which are already sorted, instead of
+    sorting every friendship again. A table whose fingerprint changed in any other way is
+    indexed from scratch; a change that leaves the fingerprint as it was goes unnoticed,
+    which PairFingerprint makes unlikely but cannot rule out. A new index is written to a
+    temporary file and renamed over the old one, so
+    a process that still maps the old file is unaffected. Every caller in the process
+    that opens the same file shares one instance.
+*/
+final class FriendIndex implements FriendAdjacency {
+    // [Constructor]
+    private FriendIndex(long[] fingerprint, int vertices, LongBuffer[] ids, IntBuffer[] offsets,
+                        IntBuffer[] neighbors) {
+        this.fingerprint = fingerprint;
+        this.vertices = vertices;
+        this.ids = ids;
+        this.offsets = offsets;
+        this.neighbors = neighbors;
+    }
+
+    // [Open Function]
+    // REQUIRES: <connection> is a valid JDBC connection
+    // MODIFIES: the file <file>
+    // EFFECTS:  returns the index of the Friends table reachable through <connection>
+    //   kept in <file>, first bringing the file up to date with the table if needed
+    public static synchronized FriendIndex open(Connection connection, File file) throws SQLException, IOException {
+        long[] current = PairFingerprint.read(connection, "Memory.friends.fingerprint",
+            FakebookOracleConstants.FriendsTable, "user1_id", "user2_id");
+        String key = file.getAbsolutePath();
+        FriendIndex index = Indexes.get(key);
+        if (index == null && file.isFile()) {
+            try {
+                index = map(file);
+            }
+            catch (IOException e) {
+                System.err.println(e.getMessage());
+            }
+        }
+
+        if (index != null && !Arrays.equals(index.fingerprint, current)) {
+            index = index.refresh(connection, file, current);
+        }
+        if (index == null) {
+            index = write(file, FriendGraph.load(connection), Empty, current);
+        }
+        Indexes.put(key, index);
+        return index;
+    }
+
+    // [Append Function]
+    // REQUIRES: <user1> and <user2> have the same length and hold friendships that were
+    //           just added to the Friends table this index was built from
+    // MODIFIES: the file <file>
+    // EFFECTS:  writes to <file> an index that also holds the friendships
+    //   (user1[i], user2[i]) and returns it, without reading the Friends table again
+    public FriendIndex append(File file, long[] user1, long[] user2) throws IOException {
+        long[] next = fingerprint.clone();
+        for (int idx = 0; idx < user1.length; idx++) {
+            PairFingerprint.add(next, user1[idx], user2[idx]);
+        }
+        synchronized (FriendIndex.class) {
+            FriendIndex index = write(file, this, FriendGraph.build(user1, user2), next);
+            Indexes.put(file.getAbsolutePath(), index);
+            return index;
+        }
+    }
+
+    @Override
+    public int size() {
+        return vertices;
+    }
+
+    @Override
+    public long idOf(int v) {
+        return ids[v >>> LongChunkBits].get(v & LongChunkMask);
+    }
+
+    @Override
+    public int indexOf(long userID) {
+        int lo = 0;
+        int hi = vertices - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            long id = idOf(mid);
+            if (id < userID) {
+                lo = mid + 1;
+            }
+            else if (id > userID) {
+                hi = mid - 1;
+            }
+            else {
+                return mid;
+            }
+        }
+        return -(lo + 1);
+    }
+
+    @Override
+    public int begin(int v) {
+        return offsets[v >>> IntChunkBits].get(v & IntChunkMask);
+    }
+
+    @Override
+    public int end(int v) {
+        return begin(v + 1);
+    }
+
+    @Override
+    public int neighbor(int position) {
+        return neighbors[position >>> IntChunkBits].get(position & IntChunkMask);
+    }
+
+    // [Refresh Function]
+    // MODIFIES: the file <file>
+    // EFFECTS:  if the Friends table now fingerprints as <current> only because rows were
+    //   added to the table this index was built from, merges those rows into a new index
+    //   in <file> and returns it; otherwise returns NULL
+    private FriendIndex refresh(Connection connection, File file, long[] current) throws SQLException, IOException {
+        if (current[0] <= fingerprint[0]) {
+            return null;
+        }
+
+        LongList user1 = new LongList();
+        LongList user2 = new LongList();
+        long[] next = fingerprint.clone();
+        ResultSet rst = FakebookStatementCache.forConnection(connection).prepare("Memory.friends",
+            "SELECT user1_id, user2_id FROM " + FakebookOracleConstants.FriendsTable).executeQuery();
+        try {
+            while (rst.next()) {
+                long id1 = rst.getLong(1);
+                long id2 = rst.getLong(2);
+                int u = indexOf(id1);
+                int v = indexOf(id2);
+                if (u < 0 || v < 0 || !adjacent(u, v)) {
+                    user1.add(id1);
+                    user2.add(id2);
+                    PairFingerprint.add(next, id1, id2);
+                }
+            }
+        }
+        finally {
+            rst.close();
+        }
+
+        // a friendship that was removed or repeated leaves the fingerprints apart
+        if (!Arrays.equals(next, current)) {
+            return null;
+        }
+        return write(file, this, FriendGraph.build(user1.toArray(), user2.toArray()), current);
+    }
+
+    // [Write Function]
+    // MODIFIES: the file <file>
+    // EFFECTS:  writes the union of <base> and <extra>, fingerprinted as <fingerprint>, to
+    //   a temporary file that then replaces <file>, and returns the new index; the
+    //   neighbor lists of both are already sorted and renumbering keeps them so, so every
+    //   list of the union is a single merge
+    private static FriendIndex write(File file, FriendAdjacency base, FriendAdjacency extra, long[] fingerprint)
+        throws IOException {
+        // Step 1: number the vertices of the union. Vertex <v> of <base> moves up by the
+        // number of IDs only <extra> has below it; <extra> is small, so those IDs are
+        // kept in an array, and each of its vertices is renumbered up front
+        long[] added = new long[extra.size()];
+        int numAdded = 0;
+        int[] renumbered = new int[extra.size()];
+        for (int d = 0; d < extra.size(); d++) {
+            int v = base.indexOf(extra.idOf(d));
+            if (v >= 0) {
+                renumbered[d] = v + numAdded;
+            }
+            else {
+                renumbered[d] = -(v + 1) + numAdded;
+                added[numAdded++] = extra.idOf(d);
+            }
+        }
+        added = Arrays.copyOf(added, numAdded);
+        int total = base.size() + numAdded;
+
+        File directory = file.getAbsoluteFile().getParentFile();
+        File temp = File.createTempFile(file.getName() + ".new", null, directory);
+        try {
+            try (FileChannel channel = FileChannel.open(temp.toPath(), StandardOpenOption.WRITE)) {
+                DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel), 1 << 16));
+                out.write(new byte[HeaderSize]);
+
+                // Step 2: the IDs, merged in ascending order
+                int v = 0;
+                int d = 0;
+                for (int idx = 0; idx < total; idx++) {
+                    if (d < extra.size() && renumbered[d] == idx) {
+                        out.writeLong(extra.idOf(d++));
+                        if (v < base.size() && base.idOf(v) == extra.idOf(d - 1)) {
+                            v++;
+                        }
+                    }
+                    else {
+                        out.writeLong(base.idOf(v++));
+                    }
+                }
+
+                // Step 3: the offsets, then the neighbors, each list merged from both sides
+                long entries = 0L;
+                for (int pass = 0; pass < 2; pass++) {
+                    v = 0;
+                    d = 0;
+                    for (int idx = 0; idx < total; idx++) {
+                        int x = -1;
+                        int y = -1;
+                        if (d < extra.size() && renumbered[d] == idx) {
+                            y = d++;
+                            if (v < base.size() && base.idOf(v) == extra.idOf(y)) {
+                                x = v++;
+                            }
+                        }
+                        else {
+                            x = v++;
+                        }
+                        if (pass == 0) {
+                            out.writeInt((int) entries);
+                            entries += merge(base, x, added, extra, y, renumbered, null);
+                        }
+                        else {
+                            merge(base, x, added, extra, y, renumbered, out);
+                        }
+                    }
+                    if (pass == 0) {
+                        if (entries > Integer.MAX_VALUE) {
+                            throw new IOException("Too many friendships to index: " + entries);
+                        }
+                        out.writeInt((int) entries);
+                    }
+                }
+                out.flush();
+
+                ByteBuffer header = ByteBuffer.allocate(HeaderSize);
+                header.put(Magic);
+                for (long value : fingerprint) {
+                    header.putLong(value);
+                }
+                header.putInt(total);
+                header.putInt((int) entries);
+                header.flip();
+                channel.write(header, 0L);
+            }
+            Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+        finally {
+            temp.delete();
+        }
+        return map(file);
+    }
+
+    // [Merge Function]
+    // REQUIRES: <x> is a vertex of <base> or -1, <y> is a vertex of <extra> or -1
+    // MODIFIES: <out>
+    // EFFECTS:  renumbers the neighbors of <x> and <y> into the union, writes the sorted
+    //   union of the two lists to <out> unless it is NULL, and returns its length
+    private static int merge(FriendAdjacency base, int x, long[] added, FriendAdjacency extra, int y,
+                             int[] renumbered, DataOutputStream out) throws IOException {
+        int i = x < 0 ? 0 : base.begin(x);
+        int iEnd = x < 0 ? 0 : base.end(x);
+        int j = y < 0 ? 0 : extra.begin(y);
+        int jEnd = y < 0 ? 0 : extra.end(y);
+        int count = 0;
+        while (i < iEnd || j < jEnd) {
+            int a = Integer.MAX_VALUE;
+            int b = Integer.MAX_VALUE;
+            if (i < iEnd) {
+                int w = base.neighbor(i);
+                a = added.length == 0 ? w : w - Arrays.binarySearch(added, base.idOf(w)) - 1;
+            }
+            if (j < jEnd) {
+                b = renumbered[extra.neighbor(j)];
+            }
+            if (a <= b) {
+                i++;
+            }
+            if (b <= a) {
+                j++;
+            }
+            if (out != null) {
+                out.writeInt(Math.min(a, b));
+            }
+            count++;
+        }
+        return count;
+    }
+
+    // [Map Function]
+    // EFFECTS:  memory-maps the index kept in <file>
+    private static FriendIndex map(File file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(HeaderSize);
+            if (channel.read(header, 0L) != HeaderSize) {
+                throw new IOException(file + " is not a friends index");
+            }
+            header.flip();
+            byte[] magic = new byte[Magic.length];
+            header.get(magic);
+            long[] fingerprint = new long[] { header.getLong(), header.getLong(), header.getLong() };
+            int vertices = header.getInt();
+            int entries = header.getInt();
+            long position = HeaderSize;
+            if (!Arrays.equals(magic, Magic) || vertices < 0 || entries < 0
+                    || channel.size() != position + 8L * vertices + 4L * (vertices + 1) + 4L * entries) {
+                throw new IOException(file + " is not a friends index");
+            }
+
+            LongBuffer[] ids = new LongBuffer[chunks(vertices, LongChunkBits)];
+            for (int idx = 0; idx < ids.length; idx++) {
+                long count = Math.min(vertices - ((long) idx << LongChunkBits), 1L << LongChunkBits);
+                ids[idx] = channel.map(FileChannel.MapMode.READ_ONLY, position, 8L * count).asLongBuffer();
+                position += 8L * count;
+            }
+            IntBuffer[] offsets = mapInts(channel, position, vertices + 1L);
+            position += 4L * (vertices + 1L);
+            IntBuffer[] neighbors = mapInts(channel, position, entries);
+            return new FriendIndex(fingerprint, vertices, ids, offsets, neighbors);
+        }
+    }
+
+    // EFFECTS:  maps <count> ints starting at <position> of <channel>, in chunks
+    private static IntBuffer[] mapInts(FileChannel channel, long position, long count) throws IOException {
+        IntBuffer[] chunks = new IntBuffer[chunks(count, IntChunkBits)];
+        for (int idx = 0; idx < chunks.length; idx++) {
+            long length = Math.min(count - ((long) idx << IntChunkBits), 1L << IntChunkBits);
+            chunks[idx] = channel.map(FileChannel.MapMode.READ_ONLY, position, 4L * length).asIntBuffer();
+            position += 4L * length;
+        }
+        return chunks;
+    }
+
+    // EFFECTS:  returns the number of chunks of 2^<bits> elements that <count> fill
+    private static int chunks(long count, int bits) {
+        return (int) ((count + (1L << bits) - 1) >>> bits);
+    }
+
+    // Member Variables
+    private final long[] fingerprint;
+    private final int vertices;
+    private final LongBuffer[] ids;
+    private final IntBuffer[] offsets;
+    private final IntBuffer[] neighbors;
+    private static final Map<String, FriendIndex> Indexes = new HashMap<String, FriendIndex>();
+    private static final FriendGraph Empty = FriendGraph.build(new long[0], new long[0]);
+    private static final byte[] Magic = { 'F', 'B', 'A', 'D', 'J', '0', '0', '2' };
+    private static final int HeaderSize = 8 + 3 * 8 + 2 * 4;
+    private static final int IntChunkBits = 28;
+    private static final int IntChunkMask = (1 << IntChunkBits) - 1;
+    private static final int LongChunkBits = 27;
+    private static final int LongChunkMask = (1 << LongChunkBits) - 1;
+}
+
+/*
+    The PairFingerprint class fingerprints a table of ID pairs, such as Friends or Tags,
+    so that an index built from it can tell whether the table changed. A fingerprint is
+    the row count and, for two different sets of constants, the sum over all rows of a
+    hash of the row's two IDs. The hash multiplies two linear combinations of the IDs
+    modulo a prime, so moving IDs between rows changes it even when the sums of the IDs
+    stay the same, and summing makes the fingerprint independent of row order, so adding
+    rows adds their hashes. The database computes the fingerprint of a table in one
+    aggregate statement. The prime is small enough that every intermediate value of the
+    hash fits in a 32-bit integer, so the statement needs no casts, runs in the native
+    integer arithmetic of an INTEGER column, and gives the same result on Oracle and H2
+    as hash() does in Java. This class cannot be instantiated directly.
+*/
+final class PairFingerprint {
+    // [Constructor]
+    private PairFingerprint() {
+    }
+
+    // [Read Function]
+    // REQUIRES: <connection> is a valid JDBC connection and <table> has the non-negative
+    //           ID columns <column1> and <column2>
+    // EFFECTS:  returns the fingerprint of <table>, computed by the database
+    public static long[] read(Connection connection, String queryID, String table, String column1, String column2)
+        throws SQLException {
+        ResultSet rst = FakebookStatementCache.forConnection(connection).prepare(queryID,
+            "SELECT COUNT(*), SUM(" + hash(column1, column2, A1, B1) + "), SUM(" + hash(column1, column2, A2, B2) + ") " +
+            "FROM " + table).executeQuery();
+        try {
+            rst.next();
+            return new long[] { rst.getLong(1), rst.getLong(2), rst.getLong(3) };
+        }
+        finally {
+            rst.close();
+        }
+    }
+
+    // [Add Function]
+    // MODIFIES: <fingerprint>
+    // EFFECTS:  updates <fingerprint> for the row (<id1>, <id2>) being added to its table
+    public static void add(long[] fingerprint, long id1, long id2) {
+        fingerprint[0]++;
+        fingerprint[1] += hash(id1, id2, A1, B1);
+        fingerprint[2] += hash(id1, id2, A2, B2);
+    }
+
+    // [Hash Function]
+    // EFFECTS:  returns ((x * <a> + y) mod Prime) * ((y * <b> + x) mod Prime), where x
+    //   and y are <id1> and <id2> mod Prime; the result is below Prime^2 < 2^31
+    static long hash(long id1, long id2, long a, long b) {
+        long x = id1 % Prime;
+        long y = id2 % Prime;
+        return ((x * a + y) % Prime) * ((y * b + x) % Prime);
+    }
+
+    // EFFECTS:  returns the SQL expression for hash(<column1>, <column2>, <a>, <b>)
+    private static String hash(String column1, String column2, long a, long b) {
+        String x = "MOD(" + column1 + ", " + Prime + ")";
+        String y = "MOD(" + column2 + ", " + Prime + ")";
+        return "MOD(" + x + " * " + a + " + " + y + ", " + Prime + ") * MOD(" + y + " * " + b + " + " + x + ", " +
+            Prime + ")";
+    }
+
+    // Member Variables
+    private static final long Prime = 46337L;               // the largest prime below sqrt(2^31)
+    private static final long A1 = 40503L;
+    private static final long B1 = 31321L;
+    private static final long A2 = 17389L;
+    private static final long B2 = 25867L;
+}
@@ -0,0 +1,333 @@
+package project2;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/*
+    The JdbcMetrics class records where the time of one query goes on the client side of
+    JDBC: how many round trips it makes, how many rows and roughly how many bytes it
+    reads, and how long it spends preparing statements, waiting for them to execute,
+    and waiting for rows to be fetched. Whatever remains of the query's wall time is
+    spent in client code, mostly building the result objects.
+
+    Instrumentation is switched on by the fakebook.metrics setting, or implicitly by
+    fakebook.metrics.file or fakebook.metrics.port. FakebookStatementCache then wraps
+    every statement it prepares in a dynamic proxy, and the result sets those statements
+    return in another, and the proxies add to the metrics that FakebookQueryRunner bound
+    to the calling thread for the duration of the query. Cached statements are shared by
+    the successive queries run on a pooled connection, which is why the metrics follow
+    the thread rather than the statement. The counts are approximate in two ways: a
+    round trip is counted for every execution and for every further batch of fetch-size
+    rows, which is how the Oracle driver fetches, and bytes are estimated from the
+    values the client actually reads, not from what the server sends.
+
+    Every query recorded in the process is kept, up to History queries, so that a run
+    can be exported as JSON or CSV and watched live over HTTP.
+*/
+final class JdbcMetrics {
+    // [Constructor]
+    // REQUIRES: 0 <= <query> <= 9
+    private JdbcMetrics(int query, String method) {
+        this.query = query;
+        this.method = method;
+        started = System.nanoTime();
+    }
+
+    // [Enabled Check Function]
+    // EFFECTS:  returns true if JDBC calls are instrumented in this process
+    public static boolean enabled() {
+        return Enabled;
+    }
+
+    // [Begin Function]
+    // REQUIRES: 0 <= <query> <= 9
+    // EFFECTS:  starts recording <query>, answered by <method>, for the calling thread
+    //   and returns its metrics
+    public static JdbcMetrics begin(int query, String method) {
+        JdbcMetrics metrics = new JdbcMetrics(query, method);
+        synchronized (Recorded) {
+            if (Recorded.size() == History) {
+                Recorded.removeFirst();
+            }
+            Recorded.addLast(metrics);
+        }
+        Current.set(metrics);
+        return metrics;
+    }
+
+    // [End Function]
+    // MODIFIES: this
+    // EFFECTS:  stops recording this query and fixes its wall time
+    public void end() {
+        totalNanos = System.nanoTime() - started;
+        if (Current.get() == this) {
+            Current.remove();
+        }
+    }
+
+    // [Statement Instrumentation Function]
+    // REQUIRES: <stmt> was prepared <prepareNanos> nanoseconds ago
+    // EFFECTS:  adds <prepareNanos> to the metrics of the calling thread and returns
+    //   <stmt> wrapped so that its executions and results are recorded, or <stmt> itself
+    //   if instrumentation is off
+    public static PreparedStatement instrument(PreparedStatement stmt, long prepareNanos) {
+        if (!Enabled) {
+            return stmt;
+        }
+        JdbcMetrics metrics = Current.get();
+        if (metrics != null) {
+            metrics.prepareNanos.addAndGet(prepareNanos);
+        }
+        return (PreparedStatement) Proxy.newProxyInstance(PreparedStatement.class.getClassLoader(),
+            new Class<?>[] { PreparedStatement.class }, new StatementRecorder(stmt));
+    }
+
+    // [Report Writing Function]
+    // REQUIRES: <path> is not NULL
+    // EFFECTS:  writes <metrics> to the file <path>, as a JSON array if its name ends
+    //   with ".json" and as CSV otherwise
+    public static void write(String path, List<JdbcMetrics> metrics) throws IOException {
+        try (Writer writer = new FileWriter(path)) {
+            if (path.endsWith(".json")) {
+                writer.write(toJson(metrics));
+                writer.write(FakebookOracleConstants.NewLine);
+                return;
+            }
+            writer.write("query,method,round_trips,executions,rows,bytes,prepare_ns,execute_ns,fetch_ns,client_ns,total_ns");
+            writer.write(FakebookOracleConstants.NewLine);
+            for (JdbcMetrics m : metrics) {
+                long total = m.totalNanos();
+                writer.write(String.format("%d,%s,%d,%d,%d,%d,%d,%d,%d,%d,%d", m.query, m.method,
+                    m.roundTrips.get(), m.executions.get(), m.rows.get(), m.bytes.get(), m.prepareNanos.get(),
+                    m.executeNanos.get(), m.fetchNanos.get(), m.clientNanos(total), total));
+                writer.write(FakebookOracleConstants.NewLine);
+            }
+        }
+    }
+
+    // [Server Function]
+    // EFFECTS:  starts serving every recorded query as a JSON array at
+    //   http://localhost:<port>/metrics and returns the server, which the caller stops
+    public static HttpServer serve(int port) throws IOException {
+        HttpServer server = HttpServer.create(new InetSocketAddress(port), 0);
+        server.createContext("/metrics", new HttpHandler() {
+            public void handle(HttpExchange exchange) throws IOException {
+                byte[] body = toJson(recorded()).getBytes(StandardCharsets.UTF_8);
+                exchange.getResponseHeaders().set("Content-Type", "application/json");
+                exchange.sendResponseHeaders(200, body.length);
+                try (OutputStream out = exchange.getResponseBody()) {
+                    out.write(body);
+                }
+            }
+        });
+        server.start();
+        return server;
+    }
+
+    // [Recorded Queries Function]
+    // EFFECTS:  returns the metrics of the queries recorded so far, oldest first
+    public static List<JdbcMetrics> recorded() {
+        synchronized (Recorded) {
+            return new ArrayList<JdbcMetrics>(Recorded);
+        }
+    }
+
+    // [Summary Function]
+    // EFFECTS:  returns a one-line, human-readable summary of this query
+    public String summary() {
+        long total = totalNanos();
+        return String.format("%d round trip(s), %d row(s), ~%d byte(s); prepare %.3f ms, execute %.3f ms, "
+            + "fetch %.3f ms, client %.3f ms", roundTrips.get(), rows.get(), bytes.get(),
+            prepareNanos.get() / 1.0e6, executeNanos.get() / 1.0e6, fetchNanos.get() / 1.0e6,
+            clientNanos(total) / 1.0e6);
+    }
+
+    // EFFECTS:  returns <metrics> as a JSON array of objects, one per query
+    private static String toJson(List<JdbcMetrics> metrics) {
+        StringBuilder json = new StringBuilder("[");
+        for (JdbcMetrics m : metrics) {
+            long total = m.totalNanos();
+            json.append(json.length() == 1 ? "" : ",").append(String.format(
+                "{\"query\":%d,\"method\":\"%s\",\"running\":%b,\"roundTrips\":%d,\"executions\":%d,"
+                + "\"rows\":%d,\"bytes\":%d,\"prepareNanos\":%d,\"executeNanos\":%d,\"fetchNanos\":%d,"
+                + "\"clientNanos\":%d,\"totalNanos\":%d}", m.query, m.method, m.totalNanos == 0L,
+                m.roundTrips.get(), m.executions.get(), m.rows.get(), m.bytes.get(), m.prepareNanos.get(),
+                m.executeNanos.get(), m.fetchNanos.get(), m.clientNanos(total), total));
+        }
+        return json.append("]").toString();
+    }
+
+    // EFFECTS:  returns the wall time of this query, so far if it is still running
+    private long totalNanos() {
+        return totalNanos != 0L ? totalNanos : System.nanoTime() - started;
+    }
+
+    // EFFECTS:  returns the part of <total> not spent waiting on JDBC
+    private long clientNanos(long total) {
+        return Math.max(0L, total - prepareNanos.get() - executeNanos.get() - fetchNanos.get());
+    }
+
+    // EFFECTS:  calls <method> on <target> with <args>, rethrowing what it throws
+    private static Object forward(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        }
+        catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    // EFFECTS:  returns roughly how many bytes the value <result> returned by the
+    //   ResultSet getter <name> took on the wire
+    private static long sizeOf(String name, Object result) {
+        if (result == null) {
+            return 1L;
+        }
+        if (result instanceof String) {
+            return ((String) result).length();
+        }
+        if (result instanceof byte[]) {
+            return ((byte[]) result).length;
+        }
+        if (name.equals("getInt") || name.equals("getFloat")) {
+            return 4L;
+        }
+        if (name.equals("getShort") || name.equals("getByte") || name.equals("getBoolean")) {
+            return 2L;
+        }
+        if (name.equals("getTimestamp")) {
+            return 11L;
+        }
+        if (name.equals("getDate") || name.equals("getTime")) {
+            return 7L;
+        }
+        return 8L;
+    }
+
+    /*
+        A StatementRecorder forwards every call to a prepared statement, timing its
+        executions and wrapping the result sets it returns in a ResultSetRecorder.
+    */
+    private static final class StatementRecorder implements InvocationHandler {
+        StatementRecorder(PreparedStatement stmt) {
+            this.stmt = stmt;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            if (name.equals("equals")) {
+                return proxy == args[0];
+            }
+            if (name.equals("hashCode")) {
+                return System.identityHashCode(proxy);
+            }
+            if (!name.startsWith("execute") && !name.equals("getResultSet")) {
+                return forward(stmt, method, args);
+            }
+
+            long begin = System.nanoTime();
+            Object result = forward(stmt, method, args);
+            JdbcMetrics metrics = Current.get();
+            if (metrics != null && !name.equals("getResultSet")) {
+                metrics.executeNanos.addAndGet(System.nanoTime() - begin);
+                metrics.executions.incrementAndGet();
+                metrics.roundTrips.incrementAndGet();
+            }
+            if (result instanceof ResultSet) {
+                result = Proxy.newProxyInstance(ResultSet.class.getClassLoader(), new Class<?>[] { ResultSet.class },
+                    new ResultSetRecorder((ResultSet) result, Math.max(1, stmt.getFetchSize())));
+            }
+            return result;
+        }
+
+        private final PreparedStatement stmt;
+    }
+
+    /*
+        A ResultSetRecorder forwards every call to a result set, timing the calls to
+        next() and counting the rows, round trips, and bytes they bring in.
+    */
+    private static final class ResultSetRecorder implements InvocationHandler {
+        ResultSetRecorder(ResultSet rst, int fetchSize) {
+            this.rst = rst;
+            this.fetchSize = fetchSize;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            if (name.equals("equals")) {
+                return proxy == args[0];
+            }
+            if (name.equals("hashCode")) {
+                return System.identityHashCode(proxy);
+            }
+
+            JdbcMetrics metrics = Current.get();
+            if (metrics == null) {
+                return forward(rst, method, args);
+            }
+            if (name.equals("next")) {
+                long begin = System.nanoTime();
+                Object result = forward(rst, method, args);
+                metrics.fetchNanos.addAndGet(System.nanoTime() - begin);
+                // the first batch arrives with the execution; every later one is a round trip
+                if (rows > 0 && rows % fetchSize == 0) {
+                    metrics.roundTrips.incrementAndGet();
+                }
+                if ((Boolean) result) {
+                    rows++;
+                    metrics.rows.incrementAndGet();
+                }
+                return result;
+            }
+            Object result = forward(rst, method, args);
+            if (name.startsWith("get") && args != null && args.length == 1
+                    && !name.equals("getMetaData") && !name.equals("getStatement")) {
+                metrics.bytes.addAndGet(sizeOf(name, result));
+            }
+            return result;
+        }
+
+        private final ResultSet rst;
+        private final int fetchSize;
+        private long rows = 0L;
+    }
+
+    // Member Variables
+    private final int query;
+    private final String method;
+    private final long started;
+    private volatile long totalNanos;
+    private final AtomicLong roundTrips = new AtomicLong();
+    private final AtomicLong executions = new AtomicLong();
+    private final AtomicLong rows = new AtomicLong();
+    private final AtomicLong bytes = new AtomicLong();
+    private final AtomicLong prepareNanos = new AtomicLong();
+    private final AtomicLong executeNanos = new AtomicLong();
+    private final AtomicLong fetchNanos = new AtomicLong();
+    private static final boolean Enabled = FakebookSettings.getBoolean("fakebook.metrics", false)
+        || FakebookSettings.get("fakebook.metrics.file", null) != null
+        || FakebookSettings.get("fakebook.metrics.port", null) != null;
+    private static final ThreadLocal<JdbcMetrics> Current = new ThreadLocal<JdbcMetrics>();
+    private static final ArrayDeque<JdbcMetrics> Recorded = new ArrayDeque<JdbcMetrics>();
+    private static final int History = 1000;
+}
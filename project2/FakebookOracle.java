@@ -3,6 +3,10 @@ package project2;
 import java.sql.SQLException;
 import java.io.IOException;
 import java.io.Writer;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
 
 public abstract class FakebookOracle {
     // Abstract Query Functions to be Implemented
@@ -17,74 +21,224 @@ public abstract class FakebookOracle {
     public abstract AgeInfo findAgeInfo(long userID) throws SQLException;
     public abstract FakebookArrayList<SiblingInfo> findPotentialSiblings() throws SQLException;
     
+    // Compact Query Functions
+    // Queries 2, 3, and 9 return one row per user or pair of users, so they can also
+    // return their rows as columnar lists, which print exactly the same but hold each
+    // user as an ID and two name codes instead of a UserInfo and two Strings. These
+    // defaults copy the result of the functions above; implementations that build their
+    // results row by row should override them and derive the functions above from them
+    public FakebookUserList lonelyUsersCompact() throws SQLException {
+        FakebookUserList results = new FakebookUserList(", ");
+        results.addAll(lonelyUsers());
+        return results;
+    }
+    
+    public FakebookUserList liveAwayFromHomeCompact() throws SQLException {
+        FakebookUserList results = new FakebookUserList(", ");
+        results.addAll(liveAwayFromHome());
+        return results;
+    }
+    
+    public FakebookSiblingList findPotentialSiblingsCompact() throws SQLException {
+        FakebookSiblingList results = new FakebookSiblingList("\n");
+        results.addAll(findPotentialSiblings());
+        return results;
+    }
+    
+    // Batch Query Functions
+    // findAgeInfo(<userIDs>) maps every ID in <userIDs> to what findAgeInfo would return
+    // for it, in the order the IDs are given. This default asks for each user in turn;
+    // implementations should override it to answer the whole batch in a few round trips
+    public Map<Long, AgeInfo> findAgeInfo(long[] userIDs) throws SQLException {
+        Map<Long, AgeInfo> results = new LinkedHashMap<Long, AgeInfo>();
+        for (long userID : userIDs) {
+            if (!results.containsKey(userID)) {
+                results.put(userID, findAgeInfo(userID));
+            }
+        }
+        return results;
+    }
+    
+    // Streaming Query Functions
+    // Queries 2, 3, and 9 can return results as large as the Users or Friends table, so
+    // they can also hand their rows to a FakebookRowSink one at a time, after the number
+    // of rows has been counted up front for the header. These defaults materialize the
+    // result through the compact functions above; implementations that can produce rows straight
+    // from a cursor should override them so that memory use does not grow with the result
+    public long countLonelyUsers() throws SQLException {
+        return lonelyUsersCompact().size();
+    }
+    
+    public void lonelyUsers(FakebookRowSink<UserInfo> sink) throws SQLException, IOException {
+        forward(lonelyUsersCompact(), sink);
+    }
+    
+    public long countLiveAwayFromHome() throws SQLException {
+        return liveAwayFromHomeCompact().size();
+    }
+    
+    public void liveAwayFromHome(FakebookRowSink<UserInfo> sink) throws SQLException, IOException {
+        forward(liveAwayFromHomeCompact(), sink);
+    }
+    
+    public long countPotentialSiblings() throws SQLException {
+        return findPotentialSiblingsCompact().size();
+    }
+    
+    public void findPotentialSiblings(FakebookRowSink<SiblingInfo> sink) throws SQLException, IOException {
+        forward(findPotentialSiblingsCompact(), sink);
+    }
+    
+    // Failure Reporting Functions
+    // A query function that catches an SQLException prints it and returns what it has,
+    // which may be a placeholder such as an ERROR AgeInfo or a partial list, so that a
+    // run goes on to the next query. It reports the exception through failed(), which
+    // also counts it, so that a caller such as CachingFakebookOracle can tell that a
+    // result is not an answer by comparing failures() before and after the call
+    public long failures() {
+        return failures.get();
+    }
+    
+    protected void failed(SQLException e) {
+        System.err.println(e.getMessage());
+        failures.incrementAndGet();
+    }
+    
     // Query Result Printing Functions
+    // Each function writes the query's header and then streams the result to <writer>
+    // through FakebookRenderable.appendTo, so no String holding the whole result is built.
+    // Queries 2, 3, and 9 can be printed from either kind of list
     public void printQuery0(Writer writer, BirthMonthInfo results) throws IOException {
-        String output = String.format("%sQuery 0%s%n%s%n%n",
-            FakebookOracleConstants.PrintDecoration, FakebookOracleConstants.PrintDecoration, results);
-        writer.write(output);
-        writer.flush();
+        printResults(writer, String.format("%sQuery 0%s%n",
+            FakebookOracleConstants.PrintDecoration, FakebookOracleConstants.PrintDecoration), results);
     }
     
     public void printQuery1(Writer writer, FirstNameInfo results) throws IOException {
-        String output = String.format("%sQuery 1%s%n%s%n%n",
-            FakebookOracleConstants.PrintDecoration, FakebookOracleConstants.PrintDecoration, results);
-        writer.write(output);
-        writer.flush();
+        printResults(writer, String.format("%sQuery 1%s%n",
+            FakebookOracleConstants.PrintDecoration, FakebookOracleConstants.PrintDecoration), results);
     }
     
     public void printQuery2(Writer writer, FakebookArrayList<UserInfo> results) throws IOException {
-        String output = String.format("%sQuery 2%s%nNumber of lonely users: %d%nLonely users are: %s%n%n",
-            FakebookOracleConstants.PrintDecoration, FakebookOracleConstants.PrintDecoration, results.size(), results);
-        writer.write(output);
-        writer.flush();
+        printLonelyUsers(writer, results);
+    }
+    
+    public void printQuery2(Writer writer, FakebookUserList results) throws IOException {
+        printLonelyUsers(writer, results);
     }
     
     public void printQuery3(Writer writer, FakebookArrayList<UserInfo> results) throws IOException {
-        String output = String.format("%sQuery 3%s%nNumber of users who live away from home: %d%nThose users are: %s%n%n",
-            FakebookOracleConstants.PrintDecoration, FakebookOracleConstants.PrintDecoration, results.size(), results);
-        writer.write(output);
-        writer.flush();
+        printAwayFromHome(writer, results);
+    }
+    
+    public void printQuery3(Writer writer, FakebookUserList results) throws IOException {
+        printAwayFromHome(writer, results);
     }
     
     public void printQuery4(Writer writer, FakebookArrayList<TaggedPhotoInfo> results) throws IOException {
-        String output = String.format("%sQuery 4%s%nThe following are the top %d photo(s) with the most tags:%n%s%n%n",
-            FakebookOracleConstants.PrintDecoration, FakebookOracleConstants.PrintDecoration, results.size(), results);
-        writer.write(output);
-        writer.flush();
+        printResults(writer, String.format("%sQuery 4%s%nThe following are the top %d photo(s) with the most tags:%n",
+            FakebookOracleConstants.PrintDecoration, FakebookOracleConstants.PrintDecoration, results.size()), results);
     }
     
     public void printQuery5(Writer writer, FakebookArrayList<MatchPair> results) throws IOException {
-        String output = String.format("%sQuery 5%s%nTop %d match(es):%n%s%n%n",
-            FakebookOracleConstants.PrintDecoration, FakebookOracleConstants.PrintDecoration, results.size(), results);
-        writer.write(output);
-        writer.flush();
+        printResults(writer, String.format("%sQuery 5%s%nTop %d match(es):%n",
+            FakebookOracleConstants.PrintDecoration, FakebookOracleConstants.PrintDecoration, results.size()), results);
     }
     
     public void printQuery6(Writer writer, FakebookArrayList<UsersPair> results) throws IOException {
-        String output = String.format("%sQuery 6%s%n%s%n%n",
-            FakebookOracleConstants.PrintDecoration, FakebookOracleConstants.PrintDecoration, results);
-        writer.write(output);
-        writer.flush();
+        printResults(writer, String.format("%sQuery 6%s%n",
+            FakebookOracleConstants.PrintDecoration, FakebookOracleConstants.PrintDecoration), results);
     }
     
     public void printQuery7(Writer writer, EventStateInfo results) throws IOException {
-        String output = String.format("%sQuery 7%s%n%s%n%n",
-            FakebookOracleConstants.PrintDecoration, FakebookOracleConstants.PrintDecoration, results);
-        writer.write(output);
-        writer.flush();
+        printResults(writer, String.format("%sQuery 7%s%n",
+            FakebookOracleConstants.PrintDecoration, FakebookOracleConstants.PrintDecoration), results);
     }
     
     public void printQuery8(Writer writer, AgeInfo results) throws IOException {
-        String output = String.format("%sQuery 8%s%n%s%n%n",
-            FakebookOracleConstants.PrintDecoration, FakebookOracleConstants.PrintDecoration, results);
-        writer.write(output);
-        writer.flush();
+        printResults(writer, String.format("%sQuery 8%s%n",
+            FakebookOracleConstants.PrintDecoration, FakebookOracleConstants.PrintDecoration), results);
     }
     
     public void printQuery9(Writer writer, FakebookArrayList<SiblingInfo> results) throws IOException {
-        String output = String.format("%sQuery 9%s%n%d pair(s) of potential siblings:%n%s%n%n",
-            FakebookOracleConstants.PrintDecoration, FakebookOracleConstants.PrintDecoration, results.size(), results);
-        writer.write(output);
+        printSiblings(writer, results);
+    }
+    
+    public void printQuery9(Writer writer, FakebookSiblingList results) throws IOException {
+        printSiblings(writer, results);
+    }
+    
+    // Streaming Query Printing Functions
+    // Each function runs the query and writes exactly what the matching printQueryN
+    // function would, but writes every row as soon as the query produces it
+    public void streamQuery2(Writer writer) throws SQLException, IOException {
+        writer.write(String.format("%sQuery 2%s%nNumber of lonely users: %d%nLonely users are: ",
+            FakebookOracleConstants.PrintDecoration, FakebookOracleConstants.PrintDecoration, countLonelyUsers()));
+        DelimitedRowWriter<UserInfo> rows = new DelimitedRowWriter<UserInfo>(writer, ", ");
+        lonelyUsers(rows);
+        finishResults(writer, rows);
+    }
+    
+    public void streamQuery3(Writer writer) throws SQLException, IOException {
+        writer.write(String.format("%sQuery 3%s%nNumber of users who live away from home: %d%nThose users are: ",
+            FakebookOracleConstants.PrintDecoration, FakebookOracleConstants.PrintDecoration, countLiveAwayFromHome()));
+        DelimitedRowWriter<UserInfo> rows = new DelimitedRowWriter<UserInfo>(writer, ", ");
+        liveAwayFromHome(rows);
+        finishResults(writer, rows);
+    }
+    
+    public void streamQuery9(Writer writer) throws SQLException, IOException {
+        writer.write(String.format("%sQuery 9%s%n%d pair(s) of potential siblings:%n",
+            FakebookOracleConstants.PrintDecoration, FakebookOracleConstants.PrintDecoration, countPotentialSiblings()));
+        DelimitedRowWriter<SiblingInfo> rows = new DelimitedRowWriter<SiblingInfo>(writer, "\n");
+        findPotentialSiblings(rows);
+        finishResults(writer, rows);
+    }
+    
+    // [List Printing Helpers]
+    // EFFECTS:  print <results> as printQuery2, printQuery3, and printQuery9 do
+    private static void printLonelyUsers(Writer writer, List<UserInfo> results) throws IOException {
+        printResults(writer, String.format("%sQuery 2%s%nNumber of lonely users: %d%nLonely users are: ",
+            FakebookOracleConstants.PrintDecoration, FakebookOracleConstants.PrintDecoration, results.size()), results);
+    }
+    
+    private static void printAwayFromHome(Writer writer, List<UserInfo> results) throws IOException {
+        printResults(writer, String.format("%sQuery 3%s%nNumber of users who live away from home: %d%nThose users are: ",
+            FakebookOracleConstants.PrintDecoration, FakebookOracleConstants.PrintDecoration, results.size()), results);
+    }
+    
+    private static void printSiblings(Writer writer, List<SiblingInfo> results) throws IOException {
+        printResults(writer, String.format("%sQuery 9%s%n%d pair(s) of potential siblings:%n",
+            FakebookOracleConstants.PrintDecoration, FakebookOracleConstants.PrintDecoration, results.size()), results);
+    }
+    
+    // [Row Forwarding Helper]
+    // MODIFIES: <sink>
+    // EFFECTS:  hands every element of <results> to <sink>, in order
+    private static <T> void forward(List<T> results, FakebookRowSink<T> sink) throws IOException {
+        for (T row : results) {
+            sink.accept(row);
+        }
+    }
+    
+    // [Streamed Result Finishing Helper]
+    // EFFECTS:  completes the rows written by <rows>, then writes a blank line to <writer>
+    private static void finishResults(Writer writer, DelimitedRowWriter<?> rows) throws IOException {
+        rows.finish();
+        writer.write(FakebookOracleConstants.NewLine);
+        writer.write(FakebookOracleConstants.NewLine);
         writer.flush();
     }
+    
+    // [Result Printing Helper]
+    // EFFECTS:  writes <header>, then <results>, then a blank line to <writer>
+    private static void printResults(Writer writer, String header, Object results) throws IOException {
+        writer.write(header);
+        FakebookRenderable.append(writer, results);
+        writer.write(FakebookOracleConstants.NewLine);
+        writer.write(FakebookOracleConstants.NewLine);
+        writer.flush();
+    }
+    
+    // Member Variables
+    private final AtomicLong failures = new AtomicLong();
 }
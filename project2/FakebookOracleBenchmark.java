@@ -0,0 +1,202 @@
+package project2;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/*
+    The FakebookOracleBenchmark class measures how long each query of each FakebookOracle
+    engine takes against a local database, so that performance can be compared between
+    changes without access to the course server. For every scale factor it recreates the
+    PUBLIC_* tables with FakebookSchema, loads them with FakebookDataGenerator, and then
+    runs every selected query a number of untimed warm-up iterations (so that the JIT,
+    the statement cache and the database's own caches settle) followed by timed
+    measurement iterations. Each iteration creates a fresh oracle on the same connection,
+    exactly as one run of FakebookOracleMain does, and reports the minimum, mean,
+    percentiles and maximum of the measured times.
+
+    The benchmark is configured through FakebookSettings:
+        fakebook.bench.url          JDBC URL (default: an in-memory H2 database in
+                                    Oracle mode; the H2 jar must be on the classpath)
+        fakebook.bench.user         user name (default "sa")
+        fakebook.bench.password     password (default "")
+        fakebook.bench.scales       comma-separated numbers of users (default 1000)
+        fakebook.bench.seed         seed of the generated data (default 42)
+        fakebook.bench.loadThreads  threads loading the generated data in parallel
+                                    (default: the number of processors)
+        fakebook.bench.engines      comma-separated engines (default "student,memory"); the
+                                    "snapshot" engine is measured against a snapshot exported
+                                    to a temporary file right after each scale is loaded, and
+                                    an engine named with "cached:" in front is measured behind
+                                    a CachingFakebookOracle cache that all its iterations share
+        fakebook.bench.queries      comma-separated query numbers (default all ten)
+        fakebook.bench.warmup       warm-up iterations per query (default 5)
+        fakebook.bench.iterations   measured iterations per query (default 20)
+        fakebook.bench.csv          file to also write the results to as CSV
+*/
+public final class FakebookOracleBenchmark {
+    // [Main Function]
+    public static void main(String[] args) {
+        String url = FakebookSettings.get("fakebook.bench.url", DefaultUrl);
+        ConnectionFactory factory = new DriverManagerConnectionFactory(url,
+            FakebookSettings.get("fakebook.bench.user", "sa"),
+            FakebookSettings.get("fakebook.bench.password", ""),
+            FakebookSettings.get("fakebook.jdbc.driver", null));
+        int warmUp = FakebookSettings.getInt("fakebook.bench.warmup", 5);
+        int iterations = FakebookSettings.getInt("fakebook.bench.iterations", 20);
+        long seed = FakebookSettings.getLong("fakebook.bench.seed", 42L);
+        String[] engines = FakebookSettings.get("fakebook.bench.engines", "student,memory").split(",");
+        int[] queries = parseQueries(FakebookSettings.get("fakebook.bench.queries", null));
+        int loadThreads = FakebookSettings.getInt("fakebook.bench.loadThreads", Runtime.getRuntime().availableProcessors());
+        List<String> rows = new ArrayList<String>();
+
+        try (Connection connection = factory.connect()) {
+            OutputStreamWriter out = new OutputStreamWriter(System.out);
+            out.write(String.format("%-8s %10s %5s %10s %10s %10s %10s %10s %10s%n",
+                "Engine", "Users", "Query", "Min(ms)", "Mean(ms)", "p50(ms)", "p90(ms)", "p99(ms)", "Max(ms)"));
+            out.flush();
+
+            for (String scale : FakebookSettings.get("fakebook.bench.scales", "1000").split(",")) {
+                long users = Long.parseLong(scale.trim());
+                long begin = System.nanoTime();
+                FakebookSchema.drop(connection);
+                FakebookSchema.create(connection);
+                try (FakebookConnectionPool loaders = new FakebookConnectionPool(factory, loadThreads, 0, 30000L, 5, 30000L)) {
+                    new FakebookDataGenerator(users, seed).generate(new JdbcDataSink(loaders), loadThreads,
+                        FakebookDataGenerator.DefaultChunkSize);
+                }
+                System.err.println(String.format("Seeded %d user(s) in %.3f s", users, (System.nanoTime() - begin) / 1.0e9));
+
+                for (String engine : engines) {
+                    FakebookOracleFactory oracles = factory(connection, engine.trim());
+                    for (int query : queries) {
+                        long[] samples = measure(connection, oracles, query, warmUp, iterations);
+                        out.write(String.format("%-8s %10d %5d %10.3f %10.3f %10.3f %10.3f %10.3f %10.3f%n",
+                            engine.trim(), users, query, millis(samples[0]), millis(mean(samples)),
+                            millis(percentile(samples, 50)), millis(percentile(samples, 90)),
+                            millis(percentile(samples, 99)), millis(samples[samples.length - 1])));
+                        out.flush();
+                        rows.add(csvRow(engine.trim(), users, query, samples));
+                    }
+                }
+            }
+
+            String csv = FakebookSettings.get("fakebook.bench.csv", null);
+            if (csv != null) {
+                writeCsv(csv, rows);
+            }
+        }
+        catch (SQLException e) {
+            e.printStackTrace();
+        }
+        catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    // [Measure Function]
+    // REQUIRES: <iterations> > 0
+    // EFFECTS:  runs <query> <warmUp> times without timing it, then <iterations> times
+    //   with timing, and returns the measured times in nanoseconds in ascending order
+    static long[] measure(Connection connection, FakebookOracleFactory oracles, int query,
+                          int warmUp, int iterations) throws SQLException {
+        for (int idx = 0; idx < warmUp; idx++) {
+            consume(FakebookQueryRunner.execute(oracles.create(connection), query));
+        }
+        long[] samples = new long[iterations];
+        for (int idx = 0; idx < iterations; idx++) {
+            long begin = System.nanoTime();
+            consume(FakebookQueryRunner.execute(oracles.create(connection), query));
+            samples[idx] = System.nanoTime() - begin;
+        }
+        Arrays.sort(samples);
+        return samples;
+    }
+
+    // EFFECTS:  returns the factory of <engine>; for the "snapshot" engine, first exports
+    //   the tables reachable through <connection> to a temporary snapshot file
+    private static FakebookOracleFactory factory(Connection connection, String engine)
+        throws SQLException, IOException {
+        if (engine.startsWith(FakebookOracleFactory.CachedPrefix)) {
+            return CachingFakebookOracle.factory(
+                factory(connection, engine.substring(FakebookOracleFactory.CachedPrefix.length())));
+        }
+        if (!engine.equals("snapshot")) {
+            return FakebookOracleFactory.forEngine(engine);
+        }
+        File file = File.createTempFile("fakebook", ".snapshot");
+        file.deleteOnExit();
+        FakebookSnapshot.export(connection, file);
+        return SnapshotFakebookOracle.factory(file);
+    }
+
+    // [Percentile Function]
+    // REQUIRES: <sorted> is non-empty and in ascending order; 0 < <percent> <= 100
+    // EFFECTS:  returns the nearest-rank <percent>th percentile of <sorted>
+    static long percentile(long[] sorted, double percent) {
+        int rank = (int) Math.ceil(percent / 100.0 * sorted.length);
+        return sorted[Math.max(0, Math.min(sorted.length, rank) - 1)];
+    }
+
+    // EFFECTS:  returns the arithmetic mean of <samples>
+    private static long mean(long[] samples) {
+        long total = 0L;
+        for (long sample : samples) {
+            total += sample;
+        }
+        return total / samples.length;
+    }
+
+    // EFFECTS:  converts <nanos> to milliseconds
+    private static double millis(long nanos) {
+        return nanos / 1.0e6;
+    }
+
+    // EFFECTS:  keeps <value> reachable so the query that produced it cannot be
+    //   optimized away
+    private static void consume(Object value) {
+        sink = value;
+    }
+
+    // EFFECTS:  returns the query numbers listed in <list>, or all ten if it is NULL
+    private static int[] parseQueries(String list) {
+        if (list == null) {
+            return new int[] { 0, 1, 2, 3, 4, 5, 6, 7, 8, 9 };
+        }
+        String[] items = list.split(",");
+        int[] queries = new int[items.length];
+        for (int idx = 0; idx < items.length; idx++) {
+            queries[idx] = Integer.parseInt(items[idx].trim());
+        }
+        return queries;
+    }
+
+    // EFFECTS:  returns one CSV line holding the statistics of <samples>, in nanoseconds
+    private static String csvRow(String engine, long users, int query, long[] samples) {
+        return String.format("%s,%d,%d,%d,%d,%d,%d,%d,%d,%d", engine, users, query, samples.length,
+            samples[0], mean(samples), percentile(samples, 50), percentile(samples, 90),
+            percentile(samples, 99), samples[samples.length - 1]);
+    }
+
+    // EFFECTS:  writes a header and <rows> to the file <path>
+    private static void writeCsv(String path, List<String> rows) throws IOException {
+        try (Writer writer = new FileWriter(path)) {
+            writer.write(String.format("engine,users,query,samples,min_ns,mean_ns,p50_ns,p90_ns,p99_ns,max_ns%n"));
+            for (String row : rows) {
+                writer.write(row);
+                writer.write(FakebookOracleConstants.NewLine);
+            }
+        }
+    }
+
+    // Member Variables
+    private static final String DefaultUrl = "jdbc:h2:mem:fakebook;MODE=Oracle;DB_CLOSE_DELAY=-1";
+    private static volatile Object sink;
+}
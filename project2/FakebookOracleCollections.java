@@ -0,0 +1,1025 @@
+package project2;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.AbstractList;
+import java.util.Arrays;
+
+/*
+    The LongList class is a growable list of primitive longs. It is used when streaming
+    ID columns out of a ResultSet, where boxing every value into a java.lang.Long
+    would dominate both the heap and the garbage collector for large tables.
+*/
+final class LongList {
+    // [Constructor]
+    public LongList() {
+        values = new long[16];
+        count = 0;
+    }
+
+    // [Add Function]
+    // MODIFIES: <values>, <count>
+    // EFFECTS:  appends <value> to the end of the list
+    public void add(long value) {
+        if (count == values.length) {
+            values = Arrays.copyOf(values, values.length * 2);
+        }
+        values[count++] = value;
+    }
+
+    // [Get Function]
+    // REQUIRES: 0 <= <idx> < size()
+    public long get(int idx) {
+        return values[idx];
+    }
+
+    // [Size Function]
+    public int size() {
+        return count;
+    }
+
+    // [Array Converter]
+    // EFFECTS:  returns a copy of the list's contents trimmed to its size
+    public long[] toArray() {
+        return Arrays.copyOf(values, count);
+    }
+
+    // Member Variables
+    private long[] values;
+    private int count;
+}
+
+/*
+    The TopPairHeap class keeps the best <capacity> (count, first, second) triples
+    offered to it, where a triple is better than another if it has a larger count, then
+    a smaller first element, then a smaller second element. Internally it is a min-heap
+    whose root is the worst triple kept so far, so a full heap rejects most candidates
+    with a single comparison and never holds more than <capacity> entries.
+*/
+final class TopPairHeap {
+    // [Constructor]
+    // REQUIRES: <capacity> >= 0
+    public TopPairHeap(int capacity) {
+        this.capacity = capacity;
+        counts = new int[capacity];
+        firsts = new int[capacity];
+        seconds = new int[capacity];
+        size = 0;
+    }
+
+    // [Offer Function]
+    // MODIFIES: this
+    // EFFECTS:  keeps the triple (<count>, <first>, <second>) if it is among the best
+    //   <capacity> triples offered so far
+    public void offer(int count, int first, int second) {
+        if (size < capacity) {
+            counts[size] = count;
+            firsts[size] = first;
+            seconds[size] = second;
+            siftUp(size++);
+        }
+        else if (capacity > 0 && worse(counts[0], firsts[0], seconds[0], count, first, second)) {
+            counts[0] = count;
+            firsts[0] = first;
+            seconds[0] = second;
+            siftDown(0);
+        }
+    }
+
+    // [Admission Check Function]
+    // EFFECTS:  returns true if a triple with <count> could still be kept by this heap;
+    //   callers use it to skip work for candidates that cannot make the cut
+    public boolean admits(int count) {
+        return size < capacity || (capacity > 0 && count >= counts[0]);
+    }
+
+    // [Threshold Function]
+    // EFFECTS:  returns the smallest count a triple must have to be kept, which is 0
+    //   until the heap holds <capacity> triples
+    public int threshold() {
+        if (size < capacity) {
+            return 0;
+        }
+        return capacity > 0 ? counts[0] : Integer.MAX_VALUE;
+    }
+
+    // [Sort Function]
+    // MODIFIES: this
+    // EFFECTS:  reorders the kept triples from best to worst; the heap must not be
+    //   offered any more triples afterwards
+    public void sortBestFirst() {
+        int remaining = size;
+        while (remaining > 1) {
+            swap(0, --remaining);
+            siftDown(0, remaining);
+        }
+    }
+
+    // [Accessors]
+    public int size() {
+        return size;
+    }
+
+    public int count(int idx) {
+        return counts[idx];
+    }
+
+    public int first(int idx) {
+        return firsts[idx];
+    }
+
+    public int second(int idx) {
+        return seconds[idx];
+    }
+
+    // EFFECTS:  returns true if triple (c1, f1, s1) ranks below triple (c2, f2, s2)
+    private static boolean worse(int c1, int f1, int s1, int c2, int f2, int s2) {
+        if (c1 != c2) {
+            return c1 < c2;
+        }
+        if (f1 != f2) {
+            return f1 > f2;
+        }
+        return s1 > s2;
+    }
+
+    private boolean worse(int i, int j) {
+        return worse(counts[i], firsts[i], seconds[i], counts[j], firsts[j], seconds[j]);
+    }
+
+    private void siftUp(int idx) {
+        while (idx > 0) {
+            int parent = (idx - 1) / 2;
+            if (!worse(idx, parent)) {
+                return;
+            }
+            swap(idx, parent);
+            idx = parent;
+        }
+    }
+
+    private void siftDown(int idx) {
+        siftDown(idx, size);
+    }
+
+    private void siftDown(int idx, int limit) {
+        while (true) {
+            int child = 2 * idx + 1;
+            if (child >= limit) {
+                return;
+            }
+            if (child + 1 < limit && worse(child + 1, child)) {
+                child++;
+            }
+            if (!worse(child, idx)) {
+                return;
+            }
+            swap(idx, child);
+            idx = child;
+        }
+    }
+
+    private void swap(int i, int j) {
+        int count = counts[i];
+        int first = firsts[i];
+        int second = seconds[i];
+        counts[i] = counts[j];
+        firsts[i] = firsts[j];
+        seconds[i] = seconds[j];
+        counts[j] = count;
+        firsts[j] = first;
+        seconds[j] = second;
+    }
+
+    // Member Variables
+    private final int capacity;
+    private int[] counts;
+    private int[] firsts;
+    private int[] seconds;
+    private int size;
+}
+
+/*
+    The LongIntMap class maps long keys to positive ints without boxing them, either
+    counting occurrences of each key or numbering keys densely. Keys and values are kept
+    in two parallel arrays that form an open-addressing hash table with linear probing,
+    doubled whenever it becomes half full. Values are always positive, so a slot is in
+    use exactly when its value is not zero, and callers walk the entries by slot from 0
+    to capacity() - 1. remove() closes the gap it leaves by moving later keys back, so
+    no slot is ever marked deleted.
+*/
+final class LongIntMap {
+    // [Constructor]
+    public LongIntMap() {
+        keys = new long[16];
+        values = new int[16];
+        count = 0;
+    }
+
+    // [Increment Function]
+    // MODIFIES: this
+    // EFFECTS:  adds one to the count of <key> and returns the new count
+    public int increment(long key) {
+        int mask = keys.length - 1;
+        int slot = mix(key) & mask;
+        while (values[slot] != 0) {
+            if (keys[slot] == key) {
+                return ++values[slot];
+            }
+            slot = (slot + 1) & mask;
+        }
+        keys[slot] = key;
+        values[slot] = 1;
+        if (++count * 2 > keys.length) {
+            rehash();
+        }
+        return 1;
+    }
+
+    // [Put Function]
+    // REQUIRES: <value> > 0
+    // MODIFIES: this
+    // EFFECTS:  maps <key> to <value>
+    public void put(long key, int value) {
+        int mask = keys.length - 1;
+        int slot = mix(key) & mask;
+        while (values[slot] != 0) {
+            if (keys[slot] == key) {
+                values[slot] = value;
+                return;
+            }
+            slot = (slot + 1) & mask;
+        }
+        keys[slot] = key;
+        values[slot] = value;
+        if (++count * 2 > keys.length) {
+            rehash();
+        }
+    }
+
+    // [Get Function]
+    // EFFECTS:  returns the value of <key>, or 0 if it has none
+    public int get(long key) {
+        int mask = keys.length - 1;
+        int slot = mix(key) & mask;
+        while (values[slot] != 0) {
+            if (keys[slot] == key) {
+                return values[slot];
+            }
+            slot = (slot + 1) & mask;
+        }
+        return 0;
+    }
+
+    // [Remove Function]
+    // MODIFIES: this
+    // EFFECTS:  removes <key> and returns its value, or returns 0 if it has none
+    public int remove(long key) {
+        int mask = keys.length - 1;
+        int slot = mix(key) & mask;
+        while (values[slot] != 0 && keys[slot] != key) {
+            slot = (slot + 1) & mask;
+        }
+        int value = values[slot];
+        if (value == 0) {
+            return 0;
+        }
+        // move back every later key of the run whose home slot is not between the freed
+        // slot and its own, so that get() still finds it
+        int free = slot;
+        for (int next = (free + 1) & mask; values[next] != 0; next = (next + 1) & mask) {
+            int home = mix(keys[next]) & mask;
+            if (((next - home) & mask) >= ((next - free) & mask)) {
+                keys[free] = keys[next];
+                values[free] = values[next];
+                free = next;
+            }
+        }
+        values[free] = 0;
+        count--;
+        return value;
+    }
+
+    // [Size Function]
+    // EFFECTS:  returns the number of distinct keys
+    public int size() {
+        return count;
+    }
+
+    // [Slot Accessors]
+    // REQUIRES: 0 <= <slot> < capacity()
+    // EFFECTS:  valueAt(<slot>) is the value of keyAt(<slot>), or 0 if the slot is free
+    public int capacity() {
+        return keys.length;
+    }
+
+    public long keyAt(int slot) {
+        return keys[slot];
+    }
+
+    public int valueAt(int slot) {
+        return values[slot];
+    }
+
+    // MODIFIES: <keys>, <values>
+    // EFFECTS:  doubles the hash table and reinserts every key
+    private void rehash() {
+        long[] oldKeys = keys;
+        int[] oldValues = values;
+        keys = new long[oldKeys.length * 2];
+        values = new int[oldValues.length * 2];
+        int mask = keys.length - 1;
+        for (int idx = 0; idx < oldKeys.length; idx++) {
+            if (oldValues[idx] != 0) {
+                int slot = mix(oldKeys[idx]) & mask;
+                while (values[slot] != 0) {
+                    slot = (slot + 1) & mask;
+                }
+                keys[slot] = oldKeys[idx];
+                values[slot] = oldValues[idx];
+            }
+        }
+    }
+
+    // EFFECTS:  spreads the bits of <key> so that consecutive IDs use distant slots
+    private static int mix(long key) {
+        key *= 0x9E3779B97F4A7C15L;
+        return (int) (key ^ (key >>> 32));
+    }
+
+    // Member Variables
+    private long[] keys;
+    private int[] values;
+    private int count;
+}
+
+/*
+    The TopCountHeap class keeps the best <capacity> (count, id) pairs offered to it,
+    where a pair is better than another if it has a larger count, then a smaller ID. Like
+    TopPairHeap, it is a min-heap whose root is the worst pair kept so far, so selecting
+    the best <capacity> of n pairs takes O(n log capacity) time and O(capacity) space.
+*/
+final class TopCountHeap {
+    // [Constructor]
+    // REQUIRES: <capacity> >= 0
+    public TopCountHeap(int capacity) {
+        this.capacity = capacity;
+        counts = new int[capacity];
+        ids = new long[capacity];
+        size = 0;
+    }
+
+    // [Offer Function]
+    // MODIFIES: this
+    // EFFECTS:  keeps the pair (<count>, <id>) if it is among the best <capacity> pairs
+    //   offered so far
+    public void offer(int count, long id) {
+        if (size < capacity) {
+            counts[size] = count;
+            ids[size] = id;
+            siftUp(size++);
+        }
+        else if (capacity > 0 && worse(counts[0], ids[0], count, id)) {
+            counts[0] = count;
+            ids[0] = id;
+            siftDown(0, size);
+        }
+    }
+
+    // [Admission Check Function]
+    // EFFECTS:  returns true if a pair with <count> could still be kept by this heap
+    public boolean admits(int count) {
+        return size < capacity || (capacity > 0 && count >= counts[0]);
+    }
+
+    // [Sort Function]
+    // MODIFIES: this
+    // EFFECTS:  reorders the kept pairs from best to worst; the heap must not be offered
+    //   any more pairs afterwards
+    public void sortBestFirst() {
+        int remaining = size;
+        while (remaining > 1) {
+            swap(0, --remaining);
+            siftDown(0, remaining);
+        }
+    }
+
+    // [Accessors]
+    public int size() {
+        return size;
+    }
+
+    public int count(int idx) {
+        return counts[idx];
+    }
+
+    public long id(int idx) {
+        return ids[idx];
+    }
+
+    // EFFECTS:  returns true if pair (c1, i1) ranks below pair (c2, i2)
+    private static boolean worse(int c1, long i1, int c2, long i2) {
+        if (c1 != c2) {
+            return c1 < c2;
+        }
+        return i1 > i2;
+    }
+
+    private boolean worse(int i, int j) {
+        return worse(counts[i], ids[i], counts[j], ids[j]);
+    }
+
+    private void siftUp(int idx) {
+        while (idx > 0) {
+            int parent = (idx - 1) / 2;
+            if (!worse(idx, parent)) {
+                return;
+            }
+            swap(idx, parent);
+            idx = parent;
+        }
+    }
+
+    private void siftDown(int idx, int limit) {
+        while (true) {
+            int child = 2 * idx + 1;
+            if (child >= limit) {
+                return;
+            }
+            if (child + 1 < limit && worse(child + 1, child)) {
+                child++;
+            }
+            if (!worse(child, idx)) {
+                return;
+            }
+            swap(idx, child);
+            idx = child;
+        }
+    }
+
+    private void swap(int i, int j) {
+        int count = counts[i];
+        long id = ids[i];
+        counts[i] = counts[j];
+        ids[i] = ids[j];
+        counts[j] = count;
+        ids[j] = id;
+    }
+
+    // Member Variables
+    private final int capacity;
+    private int[] counts;
+    private long[] ids;
+    private int size;
+}
+
+/*
+    The FakebookNameTable class dictionary-encodes strings: each distinct string added to
+    it is stored once and identified by a small int code, so that columns of names can be
+    kept as int[] instead of one String reference (and, for strings read from a
+    ResultSet, one String copy) per row. NULL is encoded as -1. Codes are looked up in an
+    open-addressing hash table of ints, so the table holds no per-entry objects.
+*/
+final class FakebookNameTable {
+    // [Constructor]
+    public FakebookNameTable() {
+        names = new String[16];
+        slots = new int[32];
+        count = 0;
+    }
+
+    // [Encode Function]
+    // MODIFIES: this
+    // EFFECTS:  returns the code of <name>, adding <name> to the table if it is new
+    public int encode(String name) {
+        if (name == null) {
+            return -1;
+        }
+        int mask = slots.length - 1;
+        int slot = mix(name.hashCode()) & mask;
+        while (slots[slot] != 0) {
+            if (names[slots[slot] - 1].equals(name)) {
+                return slots[slot] - 1;
+            }
+            slot = (slot + 1) & mask;
+        }
+        if (count == names.length) {
+            names = Arrays.copyOf(names, count * 2);
+        }
+        names[count] = name;
+        slots[slot] = ++count;
+        if (count * 2 > slots.length) {
+            rehash();
+        }
+        return count - 1;
+    }
+
+    // [Decode Function]
+    // REQUIRES: <code> was returned by encode()
+    // EFFECTS:  returns the string whose code is <code>
+    public String decode(int code) {
+        return code < 0 ? null : names[code];
+    }
+
+    // [Size Function]
+    // EFFECTS:  returns the number of distinct non-NULL strings in the table
+    public int size() {
+        return count;
+    }
+
+    // MODIFIES: <slots>
+    // EFFECTS:  doubles the hash table and reinserts every code
+    private void rehash() {
+        slots = new int[slots.length * 2];
+        int mask = slots.length - 1;
+        for (int code = 0; code < count; code++) {
+            int slot = mix(names[code].hashCode()) & mask;
+            while (slots[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            slots[slot] = code + 1;
+        }
+    }
+
+    // EFFECTS:  spreads the bits of <hash> so that similar strings use distant slots
+    private static int mix(int hash) {
+        hash *= 0x9E3779B9;
+        return hash ^ (hash >>> 16);
+    }
+
+    // Member Variables
+    private String[] names;
+    private int[] slots;                                       // code + 1, or 0 if the slot is free
+    private int count;
+}
+
+/*
+    The FakebookBitmap class is a compressed set of IDs in the style of a roaring bitmap.
+    Each ID is split into its low 16 bits and the bits above them, which pick one of a
+    sorted array of containers. A container holding at most 4096 values keeps them as a
+    sorted char[]; a fuller one becomes a 65536-bit long[], so no container takes more
+    than 8 KiB, a sparse set costs about 2 bytes per ID and a dense range 1 bit per ID.
+    Looking an ID up is a binary search over the containers followed by one probe, and
+    IDs added in ascending order are appended without any search. load() builds the
+    bitmap of the IDs in any column, such as the users that have friends, tags, or
+    events, so it can be used as a membership filter while another table is scanned.
+*/
+final class FakebookBitmap {
+    // [Constructor]
+    public FakebookBitmap() {
+        keys = new long[4];
+        sparse = new char[4][];
+        dense = new long[4][];
+        cardinalities = new int[4];
+        size = 0;
+        hint = 0;
+    }
+
+    // [Load Function]
+    // REQUIRES: <connection> is a valid JDBC connection and <sql> selects one column of IDs
+    // EFFECTS:  returns the bitmap of the non-NULL IDs selected by <sql>, which is
+    //   prepared through the statement cache as <id>
+    public static FakebookBitmap load(Connection connection, String id, String sql) throws SQLException {
+        FakebookBitmap bitmap = new FakebookBitmap();
+        ResultSet rst = FakebookStatementCache.forConnection(connection).prepare(id, sql).executeQuery();
+        try {
+            while (rst.next()) {
+                long value = rst.getLong(1);
+                if (!rst.wasNull()) {
+                    bitmap.add(value);
+                }
+            }
+        }
+        finally {
+            rst.close();
+        }
+        return bitmap;
+    }
+
+    // [Add Function]
+    // MODIFIES: this
+    // EFFECTS:  adds <value> to the set
+    public void add(long value) {
+        int idx = find(value >> 16);
+        if (idx < 0) {
+            idx = insert(-(idx + 1), value >> 16);
+        }
+        char low = (char) value;
+        if (dense[idx] != null) {
+            setBit(idx, low);
+            return;
+        }
+
+        char[] values = sparse[idx];
+        int count = cardinalities[idx];
+        int pos = count;
+        if (count > 0 && values[count - 1] >= low) {
+            pos = Arrays.binarySearch(values, 0, count, low);
+            if (pos >= 0) {
+                return;
+            }
+            pos = -(pos + 1);
+        }
+        if (count == ArrayLimit) {
+            long[] bits = new long[1 << 10];
+            for (int i = 0; i < count; i++) {
+                bits[values[i] >>> 6] |= 1L << values[i];
+            }
+            dense[idx] = bits;
+            sparse[idx] = null;
+            setBit(idx, low);
+            return;
+        }
+        if (count == values.length) {
+            values = Arrays.copyOf(values, Math.min(ArrayLimit, count * 2));
+            sparse[idx] = values;
+        }
+        System.arraycopy(values, pos, values, pos + 1, count - pos);
+        values[pos] = low;
+        cardinalities[idx]++;
+    }
+
+    // [Contains Function]
+    // EFFECTS:  returns true if <value> is in the set
+    public boolean contains(long value) {
+        int idx = find(value >> 16);
+        if (idx < 0) {
+            return false;
+        }
+        char low = (char) value;
+        if (dense[idx] != null) {
+            return (dense[idx][low >>> 6] & (1L << low)) != 0;
+        }
+        return Arrays.binarySearch(sparse[idx], 0, cardinalities[idx], low) >= 0;
+    }
+
+    // [Set Operation Functions]
+    // EFFECTS:  and() returns the IDs in both this set and <other>; andNot() returns the
+    //   IDs in this set that are not in <other>
+    public FakebookBitmap and(FakebookBitmap other) {
+        return filter(other, true);
+    }
+
+    public FakebookBitmap andNot(FakebookBitmap other) {
+        return filter(other, false);
+    }
+
+    // [Cardinality Function]
+    // EFFECTS:  returns the number of IDs in the set
+    public long cardinality() {
+        long total = 0L;
+        for (int idx = 0; idx < size; idx++) {
+            total += cardinalities[idx];
+        }
+        return total;
+    }
+
+    // [Memory Usage Function]
+    // EFFECTS:  returns the approximate number of bytes the containers take
+    public long sizeInBytes() {
+        long total = 8L * keys.length + 4L * cardinalities.length;
+        for (int idx = 0; idx < size; idx++) {
+            total += dense[idx] != null ? 8L * dense[idx].length : 2L * sparse[idx].length;
+        }
+        return total;
+    }
+
+    // EFFECTS:  returns the IDs of this set that <other> contains if <keep> is true, or
+    //   that it does not contain otherwise; they are visited in ascending order, so each
+    //   of them is appended to the result without a search
+    private FakebookBitmap filter(FakebookBitmap other, boolean keep) {
+        FakebookBitmap result = new FakebookBitmap();
+        for (int idx = 0; idx < size; idx++) {
+            long high = keys[idx] << 16;
+            if (dense[idx] != null) {
+                long[] bits = dense[idx];
+                for (int word = 0; word < bits.length; word++) {
+                    for (long rest = bits[word]; rest != 0L; rest &= rest - 1) {
+                        long value = high | (word << 6) | Long.numberOfTrailingZeros(rest);
+                        if (other.contains(value) == keep) {
+                            result.add(value);
+                        }
+                    }
+                }
+            }
+            else {
+                for (int i = 0; i < cardinalities[idx]; i++) {
+                    long value = high | sparse[idx][i];
+                    if (other.contains(value) == keep) {
+                        result.add(value);
+                    }
+                }
+            }
+        }
+        return result;
+    }
+
+    // MODIFIES: <hint>
+    // EFFECTS:  returns the index of the container for <key>, or -(insertion point) - 1;
+    //   the container found last is checked first, since IDs are mostly added and looked
+    //   up in ascending order. <hint> is only ever compared against <keys> before it is
+    //   used, so threads sharing a bitmap that is no longer changing may race on it
+    private int find(long key) {
+        int idx = hint;
+        if (idx < size && keys[idx] == key) {
+            return idx;
+        }
+        idx = Arrays.binarySearch(keys, 0, size, key);
+        if (idx >= 0) {
+            hint = idx;
+        }
+        return idx;
+    }
+
+    // MODIFIES: this
+    // EFFECTS:  inserts an empty container for <key> at index <idx> and returns <idx>
+    private int insert(int idx, long key) {
+        if (size == keys.length) {
+            keys = Arrays.copyOf(keys, size * 2);
+            sparse = Arrays.copyOf(sparse, size * 2);
+            dense = Arrays.copyOf(dense, size * 2);
+            cardinalities = Arrays.copyOf(cardinalities, size * 2);
+        }
+        System.arraycopy(keys, idx, keys, idx + 1, size - idx);
+        System.arraycopy(sparse, idx, sparse, idx + 1, size - idx);
+        System.arraycopy(dense, idx, dense, idx + 1, size - idx);
+        System.arraycopy(cardinalities, idx, cardinalities, idx + 1, size - idx);
+        keys[idx] = key;
+        sparse[idx] = new char[4];
+        dense[idx] = null;
+        cardinalities[idx] = 0;
+        size++;
+        return idx;
+    }
+
+    // MODIFIES: this
+    // EFFECTS:  sets bit <low> of the bitmap container <idx>
+    private void setBit(int idx, char low) {
+        long[] bits = dense[idx];
+        long mask = 1L << low;
+        if ((bits[low >>> 6] & mask) == 0L) {
+            bits[low >>> 6] |= mask;
+            cardinalities[idx]++;
+        }
+    }
+
+    // Member Variables
+    private long[] keys;                                       // the bits above the low 16
+    private char[][] sparse;                                   // sorted values, or NULL
+    private long[][] dense;                                    // 65536 bits, or NULL
+    private int[] cardinalities;
+    private int size;
+    private int hint;
+    private static final int ArrayLimit = 4096;
+}
+
+/*
+    The FakebookUserList class is a columnar list of UserInfo rows: user IDs are kept in
+    a long[] and first and last names as codes into a FakebookNameTable, so a row costs
+    16 bytes plus its share of the distinct names rather than a UserInfo object and two
+    Strings. Rows are materialized as UserInfo objects only when read through get();
+    appendTo() renders straight from the columns and prints exactly what a
+    FakebookArrayList<UserInfo> holding the same rows would. Several lists may share one
+    name table.
+*/
+final class FakebookUserList extends AbstractList<UserInfo> implements FakebookRenderable, FakebookEncodable {
+    // [Constructor]
+    public FakebookUserList(String delim) {
+        this(delim, new FakebookNameTable());
+    }
+
+    // [Constructor]
+    // REQUIRES: <names> is not NULL
+    public FakebookUserList(String delim, FakebookNameTable names) {
+        delimiter = delim;
+        this.names = names;
+        ids = new long[16];
+        firstNames = new int[16];
+        lastNames = new int[16];
+        count = 0;
+    }
+
+    // [Add Function]
+    // MODIFIES: this
+    // EFFECTS:  appends the row (<id>, <firstName>, <lastName>) to the end of the list
+    public void add(long id, String firstName, String lastName) {
+        if (count == ids.length) {
+            ids = Arrays.copyOf(ids, count * 2);
+            firstNames = Arrays.copyOf(firstNames, count * 2);
+            lastNames = Arrays.copyOf(lastNames, count * 2);
+        }
+        ids[count] = id;
+        firstNames[count] = names.encode(firstName);
+        lastNames[count] = names.encode(lastName);
+        count++;
+        modCount++;
+    }
+
+    @Override
+    // [Add Function]
+    // REQUIRES: <user> is not NULL
+    // MODIFIES: this
+    // EFFECTS:  appends the ID and names of <user> to the end of the list
+    public boolean add(UserInfo user) {
+        add(user.getUserID(), user.getFirstName(), user.getLastName());
+        return true;
+    }
+
+    @Override
+    // [Get Function]
+    // REQUIRES: 0 <= <idx> < size()
+    // EFFECTS:  returns a new UserInfo holding row <idx>
+    public UserInfo get(int idx) {
+        if (idx < 0 || idx >= count) {
+            throw new IndexOutOfBoundsException("Index: " + idx + ", Size: " + count);
+        }
+        return new UserInfo(ids[idx], names.decode(firstNames[idx]), names.decode(lastNames[idx]));
+    }
+
+    // [User ID Accessor]
+    // REQUIRES: 0 <= <idx> < size()
+    public long getUserID(int idx) {
+        return ids[idx];
+    }
+
+    @Override
+    public int size() {
+        return count;
+    }
+
+    @Override
+    // [String Converter Override]
+    public String toString() {
+        return FakebookRenderable.render(this);
+    }
+
+    // [Array List Converter]
+    // EFFECTS:  returns a FakebookArrayList holding a UserInfo for every row, which
+    //   prints the same as this list
+    public FakebookArrayList<UserInfo> toArrayList() {
+        FakebookArrayList<UserInfo> results = new FakebookArrayList<UserInfo>(delimiter);
+        results.addAll(this);
+        return results;
+    }
+
+    // [Append Function]
+    // MODIFIES: <out>
+    // EFFECTS:  appends every row to <out>, delimited by <delimiter>, or "[]" if the list
+    //   is empty
+    public void appendTo(Appendable out) throws IOException {
+        if (count == 0) {
+            out.append("[]");
+            return;
+        }
+        for (int idx = 0; idx < count; idx++) {
+            if (idx != 0) {
+                out.append(delimiter);
+            }
+            appendRow(out, idx);
+        }
+    }
+
+    // [Row Append Function]
+    // REQUIRES: 0 <= <idx> < size()
+    // MODIFIES: <out>
+    // EFFECTS:  appends row <idx> to <out> as UserInfo.appendTo would
+    void appendRow(Appendable out, int idx) throws IOException {
+        UserInfo.appendTo(out, ids[idx], names.decode(firstNames[idx]), names.decode(lastNames[idx]));
+    }
+
+    // [Encode Function]
+    // MODIFIES: <out>
+    // EFFECTS:  writes one record of <section> holding the number of rows, then every row
+    //   as a record of <section> + 1
+    public void encodeTo(FakebookRecordWriter out, int query, int section) throws IOException {
+        out.record(query, section, count);
+        encodeRows(out, query, section + 1);
+    }
+
+    // [Row Encode Function]
+    // MODIFIES: <out>
+    // EFFECTS:  writes every row as a record of <section> holding the user's ID, first
+    //   name, and last name, straight from the columns
+    public void encodeRows(FakebookRecordWriter out, int query, int section) throws IOException {
+        for (int idx = 0; idx < count; idx++) {
+            out.begin(query, section);
+            putRow(out, idx);
+            out.end();
+        }
+    }
+
+    // [Row Field Function]
+    // REQUIRES: 0 <= <idx> < size() and a record of <out> is open
+    // MODIFIES: <out>
+    // EFFECTS:  appends row <idx> to the open record as FakebookRecordWriter.putUser would
+    void putRow(FakebookRecordWriter out, int idx) throws IOException {
+        out.putUser(ids[idx], names.decode(firstNames[idx]), names.decode(lastNames[idx]));
+    }
+
+    // Member Variables
+    private final String delimiter;
+    private final FakebookNameTable names;
+    private long[] ids;
+    private int[] firstNames;
+    private int[] lastNames;
+    private int count;
+}
+
+/*
+    The FakebookSiblingList class is a columnar list of SiblingInfo rows, kept as two
+    FakebookUserList columns that share one name table (siblings share a last name, so
+    most pairs add only their first names to it). Like FakebookUserList, it renders
+    straight from the columns and prints exactly what a FakebookArrayList<SiblingInfo>
+    holding the same rows would.
+*/
+final class FakebookSiblingList extends AbstractList<SiblingInfo> implements FakebookRenderable, FakebookEncodable {
+    // [Constructor]
+    public FakebookSiblingList(String delim) {
+        FakebookNameTable names = new FakebookNameTable();
+        delimiter = delim;
+        firstUsers = new FakebookUserList(delim, names);
+        secondUsers = new FakebookUserList(delim, names);
+    }
+
+    @Override
+    // [Add Function]
+    // REQUIRES: <siblings> is not NULL
+    // MODIFIES: this
+    // EFFECTS:  appends the two users of <siblings> to the end of the list
+    public boolean add(SiblingInfo siblings) {
+        firstUsers.add(siblings.getUser1());
+        secondUsers.add(siblings.getUser2());
+        modCount++;
+        return true;
+    }
+
+    @Override
+    // [Get Function]
+    // REQUIRES: 0 <= <idx> < size()
+    // EFFECTS:  returns a new SiblingInfo holding row <idx>
+    public SiblingInfo get(int idx) {
+        return new SiblingInfo(firstUsers.get(idx), secondUsers.get(idx));
+    }
+
+    @Override
+    public int size() {
+        return firstUsers.size();
+    }
+
+    @Override
+    // [String Converter Override]
+    public String toString() {
+        return FakebookRenderable.render(this);
+    }
+
+    // [Array List Converter]
+    // EFFECTS:  returns a FakebookArrayList holding a SiblingInfo for every row, which
+    //   prints the same as this list
+    public FakebookArrayList<SiblingInfo> toArrayList() {
+        FakebookArrayList<SiblingInfo> results = new FakebookArrayList<SiblingInfo>(delimiter);
+        results.addAll(this);
+        return results;
+    }
+
+    // [Append Function]
+    // MODIFIES: <out>
+    // EFFECTS:  appends every row to <out>, delimited by <delimiter>, or "[]" if the list
+    //   is empty
+    public void appendTo(Appendable out) throws IOException {
+        int num = size();
+        if (num == 0) {
+            out.append("[]");
+            return;
+        }
+        for (int idx = 0; idx < num; idx++) {
+            if (idx != 0) {
+                out.append(delimiter);
+            }
+            firstUsers.appendRow(out, idx);
+            out.append(" and ");
+            secondUsers.appendRow(out, idx);
+        }
+    }
+
+    // [Encode Function]
+    // MODIFIES: <out>
+    // EFFECTS:  writes one record of <section> holding the number of rows, then every row
+    //   as a record of <section> + 1 holding both users, straight from the columns
+    public void encodeTo(FakebookRecordWriter out, int query, int section) throws IOException {
+        int num = size();
+        out.record(query, section, num);
+        for (int idx = 0; idx < num; idx++) {
+            out.begin(query, section + 1);
+            firstUsers.putRow(out, idx);
+            secondUsers.putRow(out, idx);
+            out.end();
+        }
+    }
+
+    // Member Variables
+    private final String delimiter;
+    private final FakebookUserList firstUsers;
+    private final FakebookUserList secondUsers;
+}
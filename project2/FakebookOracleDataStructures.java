@@ -1,12 +1,14 @@
 package project2;
 
+import java.io.IOException;
+
 /*
     The UserInfo class stores a subset of the information about Fakebook users;
     specifically, it stores user IDs, first names, and last names. Query 0,
     Query 2, Query 3, Query 4, Query 5, Query 6, Query 8, and Query 9 will use this data
     structure.
 */
-final class UserInfo {
+final class UserInfo implements FakebookRenderable, FakebookEncodable {
     // [Constructor]
     public UserInfo(long id, String fname, String lname) {
         userID = id;
@@ -17,7 +19,42 @@ final class UserInfo {
     // [UserInfo-to-String Converter]
     // EFFECTS:  returns a string representation of this UserInfo instance
     public String toString() {
-        return String.format("%s %s (%d)", firstName, lastName, userID);
+        return FakebookRenderable.render(this);
+    }
+    
+    // [UserInfo Append Function]
+    // EFFECTS:  appends "<firstName> <lastName> (<userID>)" to <out>
+    public void appendTo(Appendable out) throws IOException {
+        appendTo(out, userID, firstName, lastName);
+    }
+    
+    // [Column Append Function]
+    // EFFECTS:  appends "<fname> <lname> (<id>)" to <out>; used by FakebookUserList to
+    //   render rows it stores without a UserInfo object
+    static void appendTo(Appendable out, long id, String fname, String lname) throws IOException {
+        out.append(String.valueOf(fname)).append(' ').append(String.valueOf(lname))
+            .append(" (").append(Long.toString(id)).append(')');
+    }
+    
+    // [UserInfo Encode Function]
+    // EFFECTS:  writes one record of <section>: the ID, first name, and last name
+    public void encodeTo(FakebookRecordWriter out, int query, int section) throws IOException {
+        out.begin(query, section);
+        out.putUser(userID, firstName, lastName);
+        out.end();
+    }
+    
+    // [Accessors]
+    long getUserID() {
+        return userID;
+    }
+    
+    String getFirstName() {
+        return firstName;
+    }
+    
+    String getLastName() {
+        return lastName;
     }
     
     // Member Variables
@@ -32,7 +69,7 @@ final class UserInfo {
     latter two of which refer to the album that contains the photo in question).
     Query 4 and Query 5 will use this data structure.
 */
-final class PhotoInfo {
+final class PhotoInfo implements FakebookRenderable, FakebookEncodable {
     // [Constructor]
     public PhotoInfo(long pID, long aID, String link, String albName) {
         photoID = pID;
@@ -44,8 +81,28 @@ final class PhotoInfo {
     // [PhotoInfo-to-String Converter]
     // EFFECTS:  returns a string representation of this PhotoInfo instance
     public String toString() {
-        return String.format("(Photo #%d) from Album #%d (%s) at url '%s'",
-            photoID, albumID, albumName, link);
+        return FakebookRenderable.render(this);
+    }
+    
+    // [PhotoInfo Append Function]
+    // EFFECTS:  appends the string representation of this PhotoInfo instance to <out>
+    public void appendTo(Appendable out) throws IOException {
+        out.append("(Photo #").append(Long.toString(photoID))
+            .append(") from Album #").append(Long.toString(albumID))
+            .append(" (").append(String.valueOf(albumName))
+            .append(") at url '").append(String.valueOf(link)).append('\'');
+    }
+    
+    // [PhotoInfo Encode Function]
+    // EFFECTS:  writes one record of <section>: the photo ID, album ID, album name, and
+    //   link
+    public void encodeTo(FakebookRecordWriter out, int query, int section) throws IOException {
+        out.begin(query, section);
+        out.putLong(photoID);
+        out.putLong(albumID);
+        out.putString(albumName);
+        out.putString(link);
+        out.end();
     }
     
     // Member Variables
@@ -61,7 +118,7 @@ final class PhotoInfo {
     photo and a list of UserInfo instances identifying the users tagged in that
     photo. Query 4 will use this data structure.
 */
-final class TaggedPhotoInfo {
+final class TaggedPhotoInfo implements FakebookRenderable, FakebookEncodable {
     // [Constructor]
     // REQUIRES: <photo> is not NULL
     public TaggedPhotoInfo(PhotoInfo photo) {
@@ -80,7 +137,23 @@ final class TaggedPhotoInfo {
     // [TaggedPhotoInfo-to-String Converter]
     // EFFECTS:  returns a string representation of this TaggedPhotoInfo instance
     public String toString() {
-        return String.format("%s%n%d Tags%n%s", photo, usersTagged.size(), usersTagged);
+        return FakebookRenderable.render(this);
+    }
+    
+    // [TaggedPhotoInfo Append Function]
+    // EFFECTS:  appends the string representation of this TaggedPhotoInfo instance to <out>
+    public void appendTo(Appendable out) throws IOException {
+        FakebookRenderable.append(out, photo);
+        out.append(FakebookOracleConstants.NewLine).append(Integer.toString(usersTagged.size())).append(" Tags").append(FakebookOracleConstants.NewLine);
+        usersTagged.appendTo(out);
+    }
+    
+    // [TaggedPhotoInfo Encode Function]
+    // EFFECTS:  writes the photo as a record of <section>, then every tagged user as a
+    //   record of <section> + 1
+    public void encodeTo(FakebookRecordWriter out, int query, int section) throws IOException {
+        photo.encodeTo(out, query, section);
+        usersTagged.encodeRows(out, query, section + 1);
     }
     
     // Member Variables
@@ -94,7 +167,7 @@ final class TaggedPhotoInfo {
     user (plus each user's birth year) and a list of PhotoInfo instances identifying
     the photos in which they are both tagged. Query 5 will use this data structure.
 */
-final class MatchPair {
+final class MatchPair implements FakebookRenderable, FakebookEncodable {
     // [Constructor]
     // REQUIRES: neither <user1> nor <user2> is NULL
     public MatchPair(UserInfo user1, long user1yr, UserInfo user2, long user2yr) {
@@ -116,9 +189,33 @@ final class MatchPair {
     // [MatchPair-to-String Converter]
     // EFFECTS:  returns a string representation of this MatchPair instance
     public String toString() {
-        return String.format("%s born in %d / %s born in %d%n" +
-            "They are not Fakebook friends and are tagged in %d common photo(s)%n%s",
-            user1, user1Year, user2, user2Year, sharedPhotos.size(), sharedPhotos);
+        return FakebookRenderable.render(this);
+    }
+    
+    // [MatchPair Append Function]
+    // EFFECTS:  appends the string representation of this MatchPair instance to <out>
+    public void appendTo(Appendable out) throws IOException {
+        FakebookRenderable.append(out, user1);
+        out.append(" born in ").append(Long.toString(user1Year)).append(" / ");
+        FakebookRenderable.append(out, user2);
+        out.append(" born in ").append(Long.toString(user2Year)).append(FakebookOracleConstants.NewLine)
+            .append("They are not Fakebook friends and are tagged in ")
+            .append(Integer.toString(sharedPhotos.size())).append(" common photo(s)").append(FakebookOracleConstants.NewLine);
+        sharedPhotos.appendTo(out);
+    }
+    
+    // [MatchPair Encode Function]
+    // EFFECTS:  writes one record of <section>, the first user and birth year followed by
+    //   the second user and birth year, then every shared photo as a record of
+    //   <section> + 1
+    public void encodeTo(FakebookRecordWriter out, int query, int section) throws IOException {
+        out.begin(query, section);
+        out.putUser(user1);
+        out.putLong(user1Year);
+        out.putUser(user2);
+        out.putLong(user2Year);
+        out.end();
+        sharedPhotos.encodeRows(out, query, section + 1);
     }
     
     // Member Variables
@@ -135,7 +232,7 @@ final class MatchPair {
     users and a list of UserInfo instances identifying the two users' common
     friends. Query 6 will use this data structure.
 */
-final class UsersPair {
+final class UsersPair implements FakebookRenderable, FakebookEncodable {
     // [Constructor]
     // REQUIRES: neither <user1> nor <user2> is NULL
     public UsersPair(UserInfo user1, UserInfo user2) {
@@ -155,8 +252,29 @@ final class UsersPair {
     // [UserPair-to-String Converter]
     // EFFECTS:  returns a string representation of this UsersPair instance
     public String toString() {
-        return String.format("%s and %s are not Fakebook friends but share %d common friends:%n%s",
-            user1, user2, sharedFriends.size(), sharedFriends);
+        return FakebookRenderable.render(this);
+    }
+    
+    // [UsersPair Append Function]
+    // EFFECTS:  appends the string representation of this UsersPair instance to <out>
+    public void appendTo(Appendable out) throws IOException {
+        FakebookRenderable.append(out, user1);
+        out.append(" and ");
+        FakebookRenderable.append(out, user2);
+        out.append(" are not Fakebook friends but share ").append(Integer.toString(sharedFriends.size()))
+            .append(" common friends:").append(FakebookOracleConstants.NewLine);
+        sharedFriends.appendTo(out);
+    }
+    
+    // [UsersPair Encode Function]
+    // EFFECTS:  writes one record of <section> holding both users, then every shared
+    //   friend as a record of <section> + 1
+    public void encodeTo(FakebookRecordWriter out, int query, int section) throws IOException {
+        out.begin(query, section);
+        out.putUser(user1);
+        out.putUser(user2);
+        out.end();
+        sharedFriends.encodeRows(out, query, section + 1);
     }
     
     // Member Variables
@@ -170,7 +288,7 @@ final class UsersPair {
     siblings; specifically, it stores one UserInfo instance for each of th two
     users. Query 9 will use this data structure.
 */
-final class SiblingInfo {
+final class SiblingInfo implements FakebookRenderable, FakebookEncodable {
     // [Constructor]
     // REQUIRES: neither <user1> nor <user2> are NULL
     public SiblingInfo(UserInfo user1, UserInfo user2) {
@@ -181,7 +299,33 @@ final class SiblingInfo {
     // [SiblingInfo-to-String Converter]
     // EFFECTS:  returns a string representation of this SiblingInfo instance
     public String toString() {
-        return String.format("%s and %s", user1.toString(), user2.toString());
+        return FakebookRenderable.render(this);
+    }
+    
+    // [SiblingInfo Append Function]
+    // EFFECTS:  appends "<user1> and <user2>" to <out>
+    public void appendTo(Appendable out) throws IOException {
+        user1.appendTo(out);
+        out.append(" and ");
+        user2.appendTo(out);
+    }
+    
+    // [SiblingInfo Encode Function]
+    // EFFECTS:  writes one record of <section> holding both users
+    public void encodeTo(FakebookRecordWriter out, int query, int section) throws IOException {
+        out.begin(query, section);
+        out.putUser(user1);
+        out.putUser(user2);
+        out.end();
+    }
+    
+    // [Accessors]
+    UserInfo getUser1() {
+        return user1;
+    }
+    
+    UserInfo getUser2() {
+        return user2;
     }
     
     // Member Variables
@@ -194,16 +338,18 @@ final class SiblingInfo {
     specifically, it stores the total number of users that have birth month
     information, the month in which the most users were born and who those users
     are, and the month in which the fewest (but at least 1) users were born
-    and who those users are. Query 0 will use this data structure.
+    and who those users are. The two lists of users are columnar FakebookUserLists that
+    share one name table. Query 0 will use this data structure.
 */
-final class BirthMonthInfo {
+final class BirthMonthInfo implements FakebookRenderable, FakebookEncodable {
     // [Constructor]
     public BirthMonthInfo(long totalUsers, int mostPopularMonth, int leastPopularMonth) {
         usersWithBirthMonth = totalUsers;
         monthOfMostUsers = mostPopularMonth;
         monthOfLeastUsers = leastPopularMonth;
-        usersBornInMostPopularMonth = new FakebookArrayList<UserInfo>(", ");
-        usersBornInLeastPopularMonth = new FakebookArrayList<UserInfo>(", ");
+        FakebookNameTable names = new FakebookNameTable();
+        usersBornInMostPopularMonth = new FakebookUserList(", ", names);
+        usersBornInLeastPopularMonth = new FakebookUserList(", ", names);
     }
     
     // [Add User (Most Popular Month) Function]
@@ -225,20 +371,45 @@ final class BirthMonthInfo {
     // [BirthMonthInfo-to-String Converter]
     // EFFECTS:  returns a string representation of this BirthMonthInfo instance
     public String toString() {
-        return String.format("Users with birth month info: %d%n" +
-            "The most common birth month is %d (%d users)%nUsers: %s%n" +
-            "The least common birth month is %d (%d users)%nUsers: %s",
-            usersWithBirthMonth,
-			monthOfMostUsers, usersBornInMostPopularMonth.size(), usersBornInMostPopularMonth,
-			monthOfLeastUsers, usersBornInLeastPopularMonth.size(), usersBornInLeastPopularMonth);
+        return FakebookRenderable.render(this);
+    }
+    
+    // [BirthMonthInfo Append Function]
+    // EFFECTS:  appends the string representation of this BirthMonthInfo instance to <out>
+    public void appendTo(Appendable out) throws IOException {
+        out.append("Users with birth month info: ").append(Long.toString(usersWithBirthMonth)).append(FakebookOracleConstants.NewLine)
+            .append("The most common birth month is ").append(Integer.toString(monthOfMostUsers))
+            .append(" (").append(Integer.toString(usersBornInMostPopularMonth.size())).append(" users)").append(FakebookOracleConstants.NewLine)
+            .append("Users: ");
+        usersBornInMostPopularMonth.appendTo(out);
+        out.append(FakebookOracleConstants.NewLine)
+            .append("The least common birth month is ").append(Integer.toString(monthOfLeastUsers))
+            .append(" (").append(Integer.toString(usersBornInLeastPopularMonth.size())).append(" users)").append(FakebookOracleConstants.NewLine)
+            .append("Users: ");
+        usersBornInLeastPopularMonth.appendTo(out);
+    }
+    
+    // [BirthMonthInfo Encode Function]
+    // EFFECTS:  writes one record of <section>, the number of users with a birth month,
+    //   the most common month, and the least common month, then the users born in
+    //   the most common month as records of <section> + 1 and those born in the least
+    //   common month as records of <section> + 2
+    public void encodeTo(FakebookRecordWriter out, int query, int section) throws IOException {
+        out.begin(query, section);
+        out.putLong(usersWithBirthMonth);
+        out.putLong(monthOfMostUsers);
+        out.putLong(monthOfLeastUsers);
+        out.end();
+        usersBornInMostPopularMonth.encodeRows(out, query, section + 1);
+        usersBornInLeastPopularMonth.encodeRows(out, query, section + 2);
     }
     
     // Member Variables
     private long usersWithBirthMonth;
     private int monthOfMostUsers;
     private int monthOfLeastUsers;
-    private FakebookArrayList<UserInfo> usersBornInMostPopularMonth;
-    private FakebookArrayList<UserInfo> usersBornInLeastPopularMonth;
+    private FakebookUserList usersBornInMostPopularMonth;
+    private FakebookUserList usersBornInLeastPopularMonth;
 }
 
 /*
@@ -247,7 +418,7 @@ final class BirthMonthInfo {
     names with the fewest letters, and a list of the most commonly-held first names and
     how many users have that first name. Query 1 will use this data structure.
 */
-final class FirstNameInfo {
+final class FirstNameInfo implements FakebookRenderable, FakebookEncodable {
     // [Constructor]
     public FirstNameInfo() {
         commonCount = 0;
@@ -279,10 +450,30 @@ final class FirstNameInfo {
     // [FirstNameInfo-to-String Converter]
     // EFFECTS:  returns a string representation of this FirstNameInfo instance
     public String toString() {
-        return String.format("The longest first name(s) is (are) %s%n" +
-            "The shortest first name(s) is (are) %s%n" +
-            "The most common first name(s) is (are) %s - having %d users having each one",
-            longestFirstNames, shortestFirstNames, mostCommonFirstNames, commonCount);
+        return FakebookRenderable.render(this);
+    }
+    
+    // [FirstNameInfo Append Function]
+    // EFFECTS:  appends the string representation of this FirstNameInfo instance to <out>
+    public void appendTo(Appendable out) throws IOException {
+        out.append("The longest first name(s) is (are) ");
+        longestFirstNames.appendTo(out);
+        out.append(FakebookOracleConstants.NewLine).append("The shortest first name(s) is (are) ");
+        shortestFirstNames.appendTo(out);
+        out.append(FakebookOracleConstants.NewLine).append("The most common first name(s) is (are) ");
+        mostCommonFirstNames.appendTo(out);
+        out.append(" - having ").append(Long.toString(commonCount)).append(" users having each one");
+    }
+    
+    // [FirstNameInfo Encode Function]
+    // EFFECTS:  writes one record of <section> holding the number of users with each most
+    //   common name, then the longest, shortest, and most common names as records of
+    //   <section> + 1, + 2, and + 3
+    public void encodeTo(FakebookRecordWriter out, int query, int section) throws IOException {
+        out.record(query, section, commonCount);
+        longestFirstNames.encodeRows(out, query, section + 1);
+        shortestFirstNames.encodeRows(out, query, section + 2);
+        mostCommonFirstNames.encodeRows(out, query, section + 3);
     }
     
     // Member Variables
@@ -297,7 +488,7 @@ final class FirstNameInfo {
     held; specifically, it stores a list of the states in which the most events are
     held and the number of events therein held. Query 7 will use this data structure.
 */
-final class EventStateInfo {
+final class EventStateInfo implements FakebookRenderable, FakebookEncodable {
     // [Constructor]
     public EventStateInfo(long count) {
         eventCount = count;
@@ -312,9 +503,23 @@ final class EventStateInfo {
     // [EventStateInfo-to-String Converter]
     // EFFECTS:  returns a string representation of this EventStateInfo instance
     public String toString() {
-        return String.format("State(s) with the most events: %s%n" + 
-            "Number of events in that (those) state(s): %d",
-            popularStates, eventCount);
+        return FakebookRenderable.render(this);
+    }
+    
+    // [EventStateInfo Append Function]
+    // EFFECTS:  appends the string representation of this EventStateInfo instance to <out>
+    public void appendTo(Appendable out) throws IOException {
+        out.append("State(s) with the most events: ");
+        popularStates.appendTo(out);
+        out.append(FakebookOracleConstants.NewLine).append("Number of events in that (those) state(s): ").append(Long.toString(eventCount));
+    }
+    
+    // [EventStateInfo Encode Function]
+    // EFFECTS:  writes one record of <section> holding the number of events, then every
+    //   state as a record of <section> + 1
+    public void encodeTo(FakebookRecordWriter out, int query, int section) throws IOException {
+        out.record(query, section, eventCount);
+        popularStates.encodeRows(out, query, section + 1);
     }
     
     // Member Variables
@@ -327,7 +532,7 @@ final class EventStateInfo {
     though it does not store information about who that particular user is. Query 8 will
     use this data structure.
 */
-final class AgeInfo {
+final class AgeInfo implements FakebookRenderable, FakebookEncodable {
     // [Constructor]
     // REQUIRES: neither <oldest> nor <youngest> is NULL
     public AgeInfo(UserInfo oldest, UserInfo youngest) {
@@ -338,8 +543,25 @@ final class AgeInfo {
     // [AgeInfo-to-String Converter]
     // EFFECTS:  returns a string representation of this AgeInfo instance
     public String toString() {
-        return String.format("Oldest friend: %s%nYoungest friend: %s",
-            oldestFriend, youngestFriend);
+        return FakebookRenderable.render(this);
+    }
+    
+    // [AgeInfo Append Function]
+    // EFFECTS:  appends the string representation of this AgeInfo instance to <out>
+    public void appendTo(Appendable out) throws IOException {
+        out.append("Oldest friend: ");
+        FakebookRenderable.append(out, oldestFriend);
+        out.append(FakebookOracleConstants.NewLine).append("Youngest friend: ");
+        FakebookRenderable.append(out, youngestFriend);
+    }
+    
+    // [AgeInfo Encode Function]
+    // EFFECTS:  writes one record of <section> holding the oldest and the youngest friend
+    public void encodeTo(FakebookRecordWriter out, int query, int section) throws IOException {
+        out.begin(query, section);
+        out.putUser(oldestFriend);
+        out.putUser(youngestFriend);
+        out.end();
     }
     
     // Member Variabls
@@ -0,0 +1,649 @@
+package project2;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/*
+    The FriendAdjacency interface is a read-only, undirected view of the Friends table.
+    Every user ID that appears in at least one friendship is mapped to a dense vertex
+    index in ascending ID order, so comparing two vertex indices gives the same answer
+    as comparing the user IDs they stand for, and the neighbors of each vertex are kept
+    sorted and without duplicates. FriendGraph holds it on the heap; FriendIndex holds it
+    in a memory-mapped file that outlives the process.
+*/
+interface FriendAdjacency {
+    // [Vertex Count Function]
+    int size();
+
+    // [ID Lookup Function]
+    // REQUIRES: 0 <= <v> < size()
+    // EFFECTS:  returns the user ID of vertex <v>
+    long idOf(int v);
+
+    // [Vertex Lookup Function]
+    // EFFECTS:  returns the vertex index of <userID>, or a negative number if that user
+    //   has no friends
+    int indexOf(long userID);
+
+    // [Neighbor Range Functions]
+    // REQUIRES: 0 <= <v> < size()
+    // EFFECTS:  the neighbors of <v> are neighbor(begin(v)) through neighbor(end(v) - 1),
+    //   in ascending order
+    int begin(int v);
+
+    int end(int v);
+
+    int neighbor(int position);
+
+    // [Degree Function]
+    // REQUIRES: 0 <= <v> < size()
+    default int degree(int v) {
+        return end(v) - begin(v);
+    }
+
+    // [Adjacency Check Function]
+    // REQUIRES: 0 <= <u>, <v> < size()
+    // EFFECTS:  returns true if <u> and <v> are friends
+    default boolean adjacent(int u, int v) {
+        if (degree(u) > degree(v)) {
+            int tmp = u;
+            u = v;
+            v = tmp;
+        }
+        int lo = begin(u);
+        int hi = end(u);
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            int w = neighbor(mid);
+            if (w == v) {
+                return true;
+            }
+            if (w < v) {
+                lo = mid + 1;
+            }
+            else {
+                hi = mid;
+            }
+        }
+        return false;
+    }
+
+    // [Common Neighbors Function]
+    // REQUIRES: 0 <= <u>, <v> < size()
+    // EFFECTS:  returns the vertices adjacent to both <u> and <v>, in ascending order
+    default int[] commonNeighbors(int u, int v) {
+        int[] common = new int[Math.min(degree(u), degree(v))];
+        int count = 0;
+        int i = begin(u);
+        int j = begin(v);
+        while (i < end(u) && j < end(v)) {
+            int x = neighbor(i);
+            int y = neighbor(j);
+            if (x < y) {
+                i++;
+            }
+            else if (x > y) {
+                j++;
+            }
+            else {
+                common[count++] = x;
+                i++;
+                j++;
+            }
+        }
+        return Arrays.copyOf(common, count);
+    }
+}
+
+/*
+    The FriendGraph class is an immutable FriendAdjacency held on the heap in compressed
+    sparse row (CSR) form: the neighbors of vertex <v> are stored in
+    neighbors[offsets[v]] through neighbors[offsets[v + 1] - 1].
+*/
+final class FriendGraph implements FriendAdjacency {
+    // [Constructor]
+    // REQUIRES: <ids> is sorted and free of duplicates, <offsets> has ids.length + 1
+    //           entries, and each neighbor range is sorted and free of duplicates
+    FriendGraph(long[] ids, int[] offsets, int[] neighbors) {
+        this.ids = ids;
+        this.offsets = offsets;
+        this.neighbors = neighbors;
+    }
+
+    // [Load Function]
+    // REQUIRES: <connection> is a valid JDBC connection
+    // EFFECTS:  reads every row of the Friends table in a single forward-only pass and
+    //   returns the resulting graph
+    public static FriendGraph load(Connection connection) throws SQLException {
+        LongList user1 = new LongList();
+        LongList user2 = new LongList();
+        ResultSet rst = FakebookStatementCache.forConnection(connection).prepare("Memory.friends",
+            "SELECT user1_id, user2_id FROM " + FakebookOracleConstants.FriendsTable).executeQuery();
+        while (rst.next()) {
+            user1.add(rst.getLong(1));
+            user2.add(rst.getLong(2));
+        }
+        rst.close();
+        return build(user1.toArray(), user2.toArray());
+    }
+
+    // [Build Function]
+    // REQUIRES: <user1> and <user2> have the same length
+    // EFFECTS:  returns the graph containing the undirected edges (user1[i], user2[i]);
+    //   self-loops are ignored and repeated edges are collapsed
+    public static FriendGraph build(long[] user1, long[] user2) {
+        int edges = user1.length;
+
+        // Step 1: collect the distinct user IDs in ascending order
+        long[] all = new long[2 * edges];
+        System.arraycopy(user1, 0, all, 0, edges);
+        System.arraycopy(user2, 0, all, edges, edges);
+        Arrays.sort(all);
+        int distinct = 0;
+        for (int idx = 0; idx < all.length; idx++) {
+            if (idx == 0 || all[idx] != all[idx - 1]) {
+                all[distinct++] = all[idx];
+            }
+        }
+        long[] ids = Arrays.copyOf(all, distinct);
+        all = null;
+
+        // Step 2: translate each edge into dense vertex indices and count degrees
+        int[] src = new int[edges];
+        int[] dst = new int[edges];
+        int[] offsets = new int[distinct + 1];
+        for (int idx = 0; idx < edges; idx++) {
+            src[idx] = Arrays.binarySearch(ids, user1[idx]);
+            dst[idx] = Arrays.binarySearch(ids, user2[idx]);
+            if (src[idx] != dst[idx]) {
+                offsets[src[idx] + 1]++;
+                offsets[dst[idx] + 1]++;
+            }
+        }
+        for (int v = 0; v < distinct; v++) {
+            offsets[v + 1] += offsets[v];
+        }
+
+        // Step 3: scatter both directions of every edge into the neighbor array
+        int[] neighbors = new int[offsets[distinct]];
+        int[] cursor = Arrays.copyOf(offsets, distinct);
+        for (int idx = 0; idx < edges; idx++) {
+            if (src[idx] != dst[idx]) {
+                neighbors[cursor[src[idx]]++] = dst[idx];
+                neighbors[cursor[dst[idx]]++] = src[idx];
+            }
+        }
+        src = null;
+        dst = null;
+        cursor = null;
+
+        // Step 4: sort each neighbor range and squeeze out repeated edges in place
+        int write = 0;
+        int start = 0;
+        for (int v = 0; v < distinct; v++) {
+            int end = offsets[v + 1];
+            Arrays.sort(neighbors, start, end);
+            offsets[v] = write;
+            for (int idx = start; idx < end; idx++) {
+                if (idx == start || neighbors[idx] != neighbors[idx - 1]) {
+                    neighbors[write++] = neighbors[idx];
+                }
+            }
+            start = end;
+        }
+        offsets[distinct] = write;
+        if (write != neighbors.length) {
+            neighbors = Arrays.copyOf(neighbors, write);
+        }
+
+        return new FriendGraph(ids, offsets, neighbors);
+    }
+
+    @Override
+    public int size() {
+        return ids.length;
+    }
+
+    @Override
+    public long idOf(int v) {
+        return ids[v];
+    }
+
+    @Override
+    public int indexOf(long userID) {
+        return Arrays.binarySearch(ids, userID);
+    }
+
+    @Override
+    public int degree(int v) {
+        return offsets[v + 1] - offsets[v];
+    }
+
+    @Override
+    public int begin(int v) {
+        return offsets[v];
+    }
+
+    @Override
+    public int end(int v) {
+        return offsets[v + 1];
+    }
+
+    @Override
+    public int neighbor(int position) {
+        return neighbors[position];
+    }
+
+    @Override
+    public boolean adjacent(int u, int v) {
+        if (degree(u) > degree(v)) {
+            int tmp = u;
+            u = v;
+            v = tmp;
+        }
+        return Arrays.binarySearch(neighbors, offsets[u], offsets[u + 1], v) >= 0;
+    }
+
+    @Override
+    public int[] commonNeighbors(int u, int v) {
+        int[] common = new int[Math.min(degree(u), degree(v))];
+        int count = 0;
+        int i = offsets[u];
+        int j = offsets[v];
+        while (i < offsets[u + 1] && j < offsets[v + 1]) {
+            if (neighbors[i] < neighbors[j]) {
+                i++;
+            }
+            else if (neighbors[i] > neighbors[j]) {
+                j++;
+            }
+            else {
+                common[count++] = neighbors[i];
+                i++;
+                j++;
+            }
+        }
+        return Arrays.copyOf(common, count);
+    }
+
+    // Member Variables
+    private final long[] ids;
+    private final int[] offsets;
+    private final int[] neighbors;
+}
+
+/*
+    The MutualFriendCounter class finds the top <num> pairs of users who are not friends
+    but share the most friends, ordered by the number of shared friends (descending),
+    then by the first user's ID, then by the second user's ID. It walks every wedge
+    (u, w, v) with u < v exactly once, accumulating counts for the current <u> in a dense
+    array that is reset through a touched-list, so every count of a pair (u, v) is
+    complete as soon as <u> has been walked.
+
+    That makes the vertices independent units of work. Graphs of at least
+    ParallelThreshold vertices are counted by one fork/join task per thread of the
+    GraphTasks pool, or fewer if their scratch arrays would not fit in a quarter of the
+    heap. Each task has its own scratch arrays and its own heap of <num> entries and
+    repeatedly claims the next chunk of vertices, so the heaps only have to be merged at
+    the end. Vertices are claimed in order of descending degree: the hubs, which cost the
+    most, are spread over the tasks first instead of being left for the end, and the
+    pairs they form fill the heaps early. A pair can share no more friends than
+    either user has, so once any heap is full, its smallest count is published, and
+    every task skips the vertices whose degree is below it without walking them. Every
+    task stops at its next chunk once the QueryGuard of the calling thread is cancelled.
+*/
+final class MutualFriendCounter {
+    // [Constructor]
+    // REQUIRES: <graph> is not NULL
+    public MutualFriendCounter(FriendAdjacency graph) {
+        this.graph = graph;
+    }
+
+    // [Top Pairs Function]
+    // REQUIRES: <num> >= 0
+    // EFFECTS:  returns a heap, already sorted best-first, holding the top <num>
+    //   (count, u, v) triples where u < v are vertex indices of non-friends; throws an
+    //   SQLTimeoutException if the current QueryGuard is cancelled first
+    public TopPairHeap topPairs(final int num) throws SQLException {
+        TopPairHeap heap = new TopPairHeap(num);
+        int n = graph.size();
+        if (num == 0 || n == 0) {
+            return heap;
+        }
+
+        final int[] order = byDegree();
+        final AtomicInteger cursor = new AtomicInteger();
+        final AtomicInteger threshold = new AtomicInteger();
+        final QueryGuard guard = QueryGuard.current();
+        final List<Counter> counters = new ArrayList<Counter>();
+        // each task needs three ints of scratch per vertex; keep them within a quarter of the heap
+        long affordable = Runtime.getRuntime().maxMemory() / 4 / (12L * n);
+        int workers = n < ParallelThreshold ? 1 : (int) Math.max(1L, Math.min(GraphTasks.pool().getParallelism(), affordable));
+        for (int idx = 0; idx < workers; idx++) {
+            counters.add(new Counter(num, order, cursor, threshold, guard));
+        }
+        if (workers == 1) {
+            counters.get(0).compute();
+        }
+        else {
+            GraphTasks.pool().invoke(new RecursiveAction() {
+                protected void compute() {
+                    invokeAll(counters);
+                }
+            });
+        }
+        guard.check();
+
+        for (Counter counter : counters) {
+            for (int idx = 0; idx < counter.heap.size(); idx++) {
+                heap.offer(counter.heap.count(idx), counter.heap.first(idx), counter.heap.second(idx));
+            }
+        }
+        heap.sortBestFirst();
+        return heap;
+    }
+
+    // EFFECTS:  returns the vertices of the graph in order of descending degree, ties in
+    //   ascending order
+    private int[] byDegree() {
+        int n = graph.size();
+        int maxDegree = 0;
+        for (int u = 0; u < n; u++) {
+            maxDegree = Math.max(maxDegree, graph.degree(u));
+        }
+        int[] starts = new int[maxDegree + 2];
+        for (int u = 0; u < n; u++) {
+            starts[maxDegree - graph.degree(u) + 1]++;
+        }
+        for (int d = 1; d < starts.length; d++) {
+            starts[d] += starts[d - 1];
+        }
+        int[] order = new int[n];
+        for (int u = 0; u < n; u++) {
+            order[starts[maxDegree - graph.degree(u)]++] = u;
+        }
+        return order;
+    }
+
+    // EFFECTS:  returns the position of the first neighbor of <w> greater than <u>
+    private int firstAbove(int w, int u) {
+        int lo = graph.begin(w);
+        int hi = graph.end(w);
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (graph.neighbor(mid) <= u) {
+                lo = mid + 1;
+            }
+            else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    /*
+        A Counter walks the vertices it claims from <order> and keeps the best <num>
+        pairs it finds in its own heap.
+    */
+    private final class Counter extends RecursiveAction {
+        Counter(int num, int[] order, AtomicInteger cursor, AtomicInteger threshold, QueryGuard guard) {
+            this.heap = new TopPairHeap(num);
+            this.order = order;
+            this.cursor = cursor;
+            this.threshold = threshold;
+            this.guard = guard;
+        }
+
+        protected void compute() {
+            int n = graph.size();
+            int[] counts = new int[n];
+            int[] touched = new int[n];
+            int[] stamp = new int[n];
+
+            for (int begin = cursor.getAndAdd(ChunkSize); begin < n; begin = cursor.getAndAdd(ChunkSize)) {
+                if (guard.cancelled()) {
+                    return;
+                }
+                for (int idx = begin; idx < Math.min(begin + ChunkSize, n); idx++) {
+                    int u = order[idx];
+                    if (graph.degree(u) < threshold.get()) {
+                        // every later vertex has an even smaller degree
+                        cursor.set(n);
+                        return;
+                    }
+
+                    // mark the friends of <u> so they can be excluded below
+                    for (int p = graph.begin(u); p < graph.end(u); p++) {
+                        stamp[graph.neighbor(p)] = u + 1;
+                    }
+
+                    // count wedges u - w - v for every v > u
+                    int numTouched = 0;
+                    for (int p = graph.begin(u); p < graph.end(u); p++) {
+                        int w = graph.neighbor(p);
+                        for (int q = firstAbove(w, u); q < graph.end(w); q++) {
+                            int v = graph.neighbor(q);
+                            if (counts[v]++ == 0) {
+                                touched[numTouched++] = v;
+                            }
+                        }
+                    }
+
+                    for (int t = 0; t < numTouched; t++) {
+                        int v = touched[t];
+                        if (stamp[v] != u + 1 && heap.admits(counts[v])) {
+                            heap.offer(counts[v], u, v);
+                        }
+                        counts[v] = 0;
+                    }
+                    publish(heap.threshold());
+                }
+            }
+        }
+
+        // EFFECTS:  raises the shared threshold to <count> if it is lower
+        private void publish(int count) {
+            int current = threshold.get();
+            while (count > current && !threshold.compareAndSet(current, count)) {
+                current = threshold.get();
+            }
+        }
+
+        // Member Variables
+        private final TopPairHeap heap;
+        private final int[] order;
+        private final AtomicInteger cursor;
+        private final AtomicInteger threshold;
+        private final QueryGuard guard;
+        private static final long serialVersionUID = 1L;
+    }
+
+    // Member Variables
+    private final FriendAdjacency graph;
+    private static final int ParallelThreshold = 1 << 14;
+    private static final int ChunkSize = 64;
+}
+
+/*
+    The SiblingFinder class finds the pairs of friends with the same last name and the
+    same hometown who were born less than 10 years apart, without joining the users with
+    themselves. Each user is reduced to a row holding a partition key, which stands for
+    the pair (last name, hometown) and is equal for two users exactly when both are
+    equal, and a birth year. Rows are hash-partitioned by key into buckets, each bucket
+    is sorted by birth year, and a window sliding over it yields every pair of its rows
+    less than 10 years apart, which is kept only if the friend graph has the two users
+    as friends. The work is proportional to the number of rows plus the number of
+    same-bucket pairs within the window, instead of to the number of pairs of users with
+    the same last name.
+
+    Buckets are independent, so large inputs are split into ranges of buckets that the
+    GraphTasks pool checks in parallel, each into its own list of pairs. Every range
+    stops at its next bucket once the QueryGuard of the calling thread is cancelled.
+*/
+final class SiblingFinder {
+    // [Constructor]
+    // REQUIRES: <graph> is not NULL; <ids>, <keys>, and <years> have the same length
+    //           and <ids> is in ascending order
+    public SiblingFinder(FriendAdjacency graph, long[] ids, long[] keys, int[] years) {
+        this.graph = graph;
+        this.ids = ids;
+        this.keys = keys;
+        this.years = years;
+    }
+
+    // [Find Function]
+    // EFFECTS:  returns the pairs of rows (r1, r2) with r1 < r2 whose users are potential
+    //   siblings, each encoded as (r1 << 32 | r2), in ascending order, which is the order
+    //   of the user IDs; throws an SQLTimeoutException if the current QueryGuard is
+    //   cancelled first
+    public long[] find() throws SQLException {
+        // Step 1: number the buckets and lay out the rows of each contiguously
+        int n = ids.length;
+        LongIntMap numbers = new LongIntMap();
+        int[] bucketOf = new int[n];
+        int[] starts = new int[n + 2];
+        for (int row = 0; row < n; row++) {
+            int bucket = numbers.get(keys[row]) - 1;
+            if (bucket < 0) {
+                bucket = numbers.size();
+                numbers.put(keys[row], bucket + 1);
+            }
+            bucketOf[row] = bucket;
+            starts[bucket + 2]++;
+        }
+        int buckets = numbers.size();
+        for (int bucket = 0; bucket < buckets; bucket++) {
+            starts[bucket + 2] += starts[bucket + 1];
+        }
+        final int[] rows = new int[n];
+        for (int row = 0; row < n; row++) {
+            rows[starts[bucketOf[row] + 1]++] = row;
+        }
+        final int[] offsets = Arrays.copyOf(starts, buckets + 1);
+
+        // Step 2: check ranges of buckets, in parallel if there are enough rows
+        final QueryGuard guard = QueryGuard.current();
+        final List<BucketRange> ranges = new ArrayList<BucketRange>();
+        int tasks = n < ParallelThreshold ? 1 : 4 * GraphTasks.pool().getParallelism();
+        int first = 0;
+        for (int bucket = 0; bucket < buckets; bucket++) {
+            if (offsets[bucket + 1] - offsets[first] >= n / tasks || bucket == buckets - 1) {
+                ranges.add(new BucketRange(rows, offsets, first, bucket + 1, guard));
+                first = bucket + 1;
+            }
+        }
+        if (ranges.size() == 1) {
+            ranges.get(0).compute();
+        }
+        else if (!ranges.isEmpty()) {
+            GraphTasks.pool().invoke(new RecursiveAction() {
+                protected void compute() {
+                    invokeAll(ranges);
+                }
+            });
+        }
+        guard.check();
+
+        LongList pairs = new LongList();
+        for (BucketRange range : ranges) {
+            for (int idx = 0; idx < range.pairs.size(); idx++) {
+                pairs.add(range.pairs.get(idx));
+            }
+        }
+        long[] sorted = pairs.toArray();
+        Arrays.sort(sorted);
+        return sorted;
+    }
+
+    /*
+        A BucketRange sorts each of the buckets <first> through <last> - 1 by birth year
+        and keeps the pairs of friends in it that are less than 10 years apart.
+    */
+    private final class BucketRange extends RecursiveAction {
+        BucketRange(int[] rows, int[] offsets, int first, int last, QueryGuard guard) {
+            this.rows = rows;
+            this.offsets = offsets;
+            this.first = first;
+            this.last = last;
+            this.guard = guard;
+            pairs = new LongList();
+        }
+
+        protected void compute() {
+            for (int bucket = first; bucket < last && !guard.cancelled(); bucket++) {
+                int size = offsets[bucket + 1] - offsets[bucket];
+                if (size < 2) {
+                    continue;
+                }
+                long[] byYear = new long[size];
+                for (int idx = 0; idx < size; idx++) {
+                    int row = rows[offsets[bucket] + idx];
+                    byYear[idx] = ((long) years[row] << 32) | row;
+                }
+                Arrays.sort(byYear);
+
+                for (int i = 0; i < size; i++) {
+                    int r1 = (int) byYear[i];
+                    int u = graph.indexOf(ids[r1]);
+                    for (int j = i + 1; j < size && (long) years[(int) byYear[j]] - years[r1] < 10; j++) {
+                        int r2 = (int) byYear[j];
+                        int v = graph.indexOf(ids[r2]);
+                        if (u >= 0 && v >= 0 && graph.adjacent(u, v)) {
+                            pairs.add(r1 < r2 ? ((long) r1 << 32) | r2 : ((long) r2 << 32) | r1);
+                        }
+                    }
+                }
+            }
+        }
+
+        // Member Variables
+        private final int[] rows;
+        private final int[] offsets;
+        private final int first;
+        private final int last;
+        private final QueryGuard guard;
+        private final LongList pairs;
+        private static final long serialVersionUID = 1L;
+    }
+
+    // Member Variables
+    private final FriendAdjacency graph;
+    private final long[] ids;
+    private final long[] keys;
+    private final int[] years;
+    private static final int ParallelThreshold = 1 << 14;
+}
+
+/*
+    The GraphTasks class holds the fork/join pool that the in-memory graph algorithms
+    split their work over. The pool is created on first use, sized by the
+    fakebook.graph.threads setting (default: the number of processors), and shared by
+    every query running in the process, so concurrent queries do not each start threads.
+*/
+final class GraphTasks {
+    // [Pool Accessor]
+    // EFFECTS:  returns the shared pool, creating it on first use
+    public static synchronized ForkJoinPool pool() {
+        if (Pool == null) {
+            Pool = new ForkJoinPool(Math.max(1, FakebookSettings.getInt("fakebook.graph.threads",
+                Runtime.getRuntime().availableProcessors())));
+        }
+        return Pool;
+    }
+
+    // [Constructor]
+    // EFFECTS:  throws an AssertionError
+    private GraphTasks() {
+        throw new AssertionError();
+    }
+
+    // Member Variables
+    private static ForkJoinPool Pool;
+}
@@ -1,10 +1,15 @@
 package project2;
 
+import com.sun.net.httpserver.HttpServer;
 import java.io.IOException;
 import java.io.OutputStreamWriter;
 import java.sql.Connection;
-import java.sql.DriverManager;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
 public final class FakebookOracleMain {
     // Member Variables
@@ -14,7 +19,22 @@ public final class FakebookOracleMain {
     // [Main Function]
     // Expected Command Line Arguments:
     //  [0] either "all" or a digit 0-9, representing what query to run
-    //  [1] either "p" or "t", indicating "print results" and "time queries" respectively
+    //  [1] either "p", "s", "b", or "t", indicating "print results", "stream results",
+    //      "binary results", and "time queries" respectively; "s" prints the same output
+    //      as "p", but runs the queries one by one and writes the rows of Queries 2, 3,
+    //      and 9 as they arrive, so memory use does not grow with the size of those
+    //      results; "b" runs the queries the same way but writes the results as binary
+    //      records (see FakebookRecordWriter) instead of text
+    //  [2] for "b" only, the file to write the records to, or "-" for the standard
+    //      output; defaults to the "fakebook.binary.file" setting, then "fakebook.records"
+    //
+    // The FakebookOracle implementation is chosen with the "fakebook.engine" setting:
+    // "student" (the default), "memory", or "snapshot"; the snapshot engine reads the file
+    // named by "fakebook.snapshot.file" and opens no connections. Connections come from a
+    // FakebookConnectionPool configured through FakebookSettings; see
+    // FakebookConnectionPool.fromSettings for the "fakebook.jdbc.*" and "fakebook.pool.*"
+    // settings. When more than one query is run, the queries run concurrently on the
+    // executor chosen by "fakebook.executor"; see FakebookQueryRunner.newExecutor.
     public static void main(String[] args) {
         int start = 0;                                // inclusive
         int stop = 10;                                // exclusive
@@ -23,58 +43,41 @@ public final class FakebookOracleMain {
             stop = start + 1;
         }
 
-        boolean print = args[1].equals("p");
-        if (print) {
+        if (args[1].equals("p")) {
             query(start, stop);
         }
+        else if (args[1].equals("s")) {
+            stream(start, stop);
+        }
+        else if (args[1].equals("b")) {
+            encode(start, stop, args.length > 2 ? args[2]
+                : FakebookSettings.get("fakebook.binary.file", FakebookRecordWriter.DefaultFile));
+        }
         else {
             time(start, stop);
         }
     }
     
+    // [Query Function]
+    // EFFECTS:  runs queries <start> through <stop> - 1 concurrently, each on its own
+    //   pooled connection, and prints their results in query order; a query that fails
+    //   or misses its deadline is reported on stderr and the others are still printed
     private static void query(int start, int stop) {
-        try (Connection oracleConnection = getConnection()) {
-            FakebookOracle db = new StudentFakebookOracle(oracleConnection);
+        ExecutorService executor = FakebookQueryRunner.newExecutor();
+        FakebookOracleFactory factory = engine();
+        try (FakebookConnectionPool pool = pool(factory)) {
+            FakebookQueryRunner runner = new FakebookQueryRunner(pool, factory, executor);
             OutputStreamWriter out = new OutputStreamWriter(System.out);
             
-            for (int query = start; query < stop; query++) {
-                switch (query) {
-                    case 0:
-                        db.printQuery0(out, db.findMonthOfBirthInfo());
-                        break;
-                    case 1:
-                        db.printQuery1(out, db.findNameInfo());
-                        break;
-                    case 2:
-                        db.printQuery2(out, db.lonelyUsers());
-                        break;
-                    case 3:
-                        db.printQuery3(out, db.liveAwayFromHome());
-                        break;
-                    case 4:
-                        db.printQuery4(out, db.findPhotosWithMostTags(5));
-                        break;
-                    case 5:
-                        db.printQuery5(out, db.matchMaker(5, 2));
-                        break;
-                    case 6:
-                        db.printQuery6(out, db.suggestFriends(5));
-                        break;
-                    case 7:
-                        db.printQuery7(out, db.findEventStates());
-                        break;
-                    case 8:
-                        db.printQuery8(out, db.findAgeInfo(215L));
-                        break;
-                    case 9:
-                        db.printQuery9(out, db.findPotentialSiblings());
-                        break;
-                    default:
-                        break;
+            for (Future<QueryResult> result : runner.submit(start, stop)) {
+                try {
+                    result.get().print(out);
+                }
+                catch (ExecutionException e) {
+                    out.flush();
+                    System.err.println(e.getCause().getMessage());
                 }
             }
-            
-            oracleConnection.close();
         }
         catch (SQLException e) {
             e.printStackTrace();
@@ -82,59 +85,27 @@ public final class FakebookOracleMain {
         catch (IOException e) {
             e.printStackTrace();
         }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        finally {
+            executor.shutdownNow();
+        }
     }
     
-    private static void time(int start, int stop) {
-        long beginTime = 0L;
-        long endTime = 0L;
-        
-        try (Connection oracleConnection = getConnection()) {
-            FakebookOracle db = new StudentFakebookOracle(oracleConnection);
+    // [Stream Function]
+    // EFFECTS:  runs queries <start> through <stop> - 1 one by one on a single pooled
+    //   connection, writing each result as it is produced
+    private static void stream(int start, int stop) {
+        FakebookOracleFactory factory = engine();
+        try (FakebookConnectionPool pool = pool(factory);
+             Connection connection = factory.needsConnection() ? pool.getConnection() : null) {
+            FakebookOracle oracle = factory.create(connection);
             OutputStreamWriter out = new OutputStreamWriter(System.out);
             
             for (int query = start; query < stop; query++) {
-                beginTime = System.currentTimeMillis();
-                switch (query) {
-                    case 0:
-                        db.findMonthOfBirthInfo();
-                        break;
-                    case 1:
-                        db.findNameInfo();
-                        break;
-                    case 2:
-                        db.lonelyUsers();
-                        break;
-                    case 3:
-                        db.liveAwayFromHome();
-                        break;
-                    case 4:
-                        db.findPhotosWithMostTags(5);
-                        break;
-                    case 5:
-                        db.matchMaker(5, 2);
-                        break;
-                    case 6:
-                        db.suggestFriends(5);
-                        break;
-                    case 7:
-                        db.findEventStates();
-                        break;
-                    case 8:
-                        db.findAgeInfo(215L);
-                        break;
-                    case 9:
-                        db.findPotentialSiblings();
-                        break;
-                    default:
-                        break;
-                }
-                endTime = System.currentTimeMillis();
-                
-                out.write(String.format("Query %d Time: %.3f%n", query, (endTime - beginTime) / 1000.0));
-                out.flush();
+                FakebookQueryRunner.stream(oracle, out, query);
             }
-            
-            oracleConnection.close();
         }
         catch (SQLException e) {
             e.printStackTrace();
@@ -144,20 +115,108 @@ public final class FakebookOracleMain {
         }
     }
     
-    private static Connection getConnection() throws SQLException {
-        try {
-            Class.forName("oracle.jdbc.driver.OracleDriver").newInstance();
+    // [Encode Function]
+    // EFFECTS:  runs queries <start> through <stop> - 1 one by one on a single pooled
+    //   connection, writing each result to the file <file> as binary records as it is
+    //   produced
+    private static void encode(int start, int stop, String file) {
+        FakebookOracleFactory factory = engine();
+        try (FakebookConnectionPool pool = pool(factory);
+             Connection connection = factory.needsConnection() ? pool.getConnection() : null;
+             FakebookRecordWriter out = FakebookRecordWriter.open(file)) {
+            FakebookOracle oracle = factory.create(connection);
+            
+            for (int query = start; query < stop; query++) {
+                FakebookQueryRunner.encode(oracle, out, query);
+            }
         }
-        catch (InstantiationException e) {
+        catch (SQLException e) {
             e.printStackTrace();
         }
-        catch (IllegalAccessException e) {
+        catch (IOException e) {
             e.printStackTrace();
         }
-        catch (ClassNotFoundException e) {
+    }
+    
+    // [Time Function]
+    // EFFECTS:  runs queries <start> through <stop> - 1 concurrently and prints the time
+    //   each one took, followed by the wall time of the whole run. If JdbcMetrics is
+    //   enabled, what each query did over JDBC is printed below its time, served live at
+    //   the port named by "fakebook.metrics.port" while the queries run, and written to
+    //   the file named by "fakebook.metrics.file" at the end
+    private static void time(int start, int stop) {
+        ExecutorService executor = FakebookQueryRunner.newExecutor();
+        FakebookOracleFactory factory = engine();
+        HttpServer server = null;
+        try (FakebookConnectionPool pool = pool(factory)) {
+            FakebookQueryRunner runner = new FakebookQueryRunner(pool, factory, executor);
+            OutputStreamWriter out = new OutputStreamWriter(System.out);
+            List<JdbcMetrics> metrics = new ArrayList<JdbcMetrics>();
+            int port = FakebookSettings.getInt("fakebook.metrics.port", -1);
+            if (port >= 0) {
+                server = JdbcMetrics.serve(port);
+            }
+            
+            long beginTime = System.nanoTime();
+            for (Future<QueryResult> result : runner.submit(start, stop)) {
+                QueryResult done;
+                try {
+                    done = result.get();
+                }
+                catch (ExecutionException e) {
+                    out.flush();
+                    System.err.println(e.getCause().getMessage());
+                    continue;
+                }
+                out.write(String.format("Query %d Time: %.3f%n", done.query(), done.seconds()));
+                if (done.metrics() != null) {
+                    out.write(String.format("    %s%n", done.metrics().summary()));
+                    metrics.add(done.metrics());
+                }
+                out.flush();
+            }
+            long endTime = System.nanoTime();
+            
+            if (stop - start > 1) {
+                out.write(String.format("Total Time: %.3f%n", (endTime - beginTime) / 1.0e9));
+            }
+            out.write(String.format("%s%n", FakebookStatementCache.report()));
+            out.write(String.format("%s%n", QueryAdmission.shared().report()));
+            out.flush();
+            
+            String file = FakebookSettings.get("fakebook.metrics.file", null);
+            if (file != null) {
+                JdbcMetrics.write(file, metrics);
+            }
+        }
+        catch (SQLException e) {
             e.printStackTrace();
         }
-        
-        return DriverManager.getConnection("jdbc:oracle:thin:@forktail.dsc.umich.edu:1521:COURSEDB", username, password);
+        catch (IOException e) {
+            e.printStackTrace();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        finally {
+            executor.shutdownNow();
+            if (server != null) {
+                server.stop(0);
+            }
+        }
+    }
+    
+    // [Connection Pool Function]
+    // EFFECTS:  returns the connection pool configured by the "fakebook.jdbc.*" and
+    //   "fakebook.pool.*" settings; it opens no connections up front if the oracles of
+    //   <factory> do not need any
+    private static FakebookConnectionPool pool(FakebookOracleFactory factory) throws SQLException {
+        return FakebookConnectionPool.fromSettings(username, password, factory.needsConnection() ? 1 : 0);
+    }
+    
+    // [Oracle Factory Function]
+    // EFFECTS:  returns the factory of the engine named by the "fakebook.engine" setting
+    private static FakebookOracleFactory engine() {
+        return FakebookOracleFactory.forEngine(FakebookSettings.get("fakebook.engine", "student"));
     }
 }
@@ -0,0 +1,1124 @@
+package project2;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.channels.Channels;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeSet;
+
+/*
+    The FakebookOracleTests class checks the data structures the in-memory engines are
+    built on against straightforward reference implementations:
+        - FakebookBitmap, across the change of a container from a sorted array to a
+          bitmap and in its set operations,
+        - LongIntMap, across the resizes of its hash table,
+        - TopPairHeap and TopCountHeap, in the order they keep their entries,
+        - QueryAdmission, when a waiting query is interrupted as a permit is released,
+        - CachingFakebookOracle, in what it keeps, expires, evicts, and drops,
+        - FakebookRecordWriter and FakebookRecordReader, in the records read back from
+          what was written, and
+        - FriendIndex and CoTagIndex, when they are reopened after rows of the Friends and
+          Tags tables were added, swapped, or removed, and
+        - AggregateStore, when the users and events added, moved, and removed are reported
+          to it instead of being loaded again.
+    Finally, the in-memory, snapshot, and student engines answer the ten queries on
+    generated data, and their output is compared with each other and, for Query 6, with
+    mutual friends counted pair by pair.
+    The indexes and engines are tested against a scratch database whose PUBLIC_* tables are dropped
+    and recreated, configured through FakebookSettings:
+        fakebook.test.url       JDBC URL (default: an in-memory H2 database in Oracle
+                                mode; the H2 jar must be on the classpath)
+        fakebook.test.user      user name (default "sa")
+        fakebook.test.password  password (default "")
+    Every failed check is printed, and the process exits with status 1 if any failed.
+*/
+public final class FakebookOracleTests {
+    // [Main Function]
+    public static void main(String[] args) {
+        FakebookOracleTests tests = new FakebookOracleTests();
+        try {
+            tests.testBitmapContainers();
+            tests.testBitmapSetOperations();
+            tests.testLongIntMap();
+            tests.testTopPairHeap();
+            tests.testTopCountHeap();
+            tests.testAdmissionInterrupt();
+            tests.testCachingOracle();
+            tests.testRecords();
+
+            ConnectionFactory factory = new DriverManagerConnectionFactory(
+                FakebookSettings.get("fakebook.test.url", DefaultUrl),
+                FakebookSettings.get("fakebook.test.user", "sa"),
+                FakebookSettings.get("fakebook.test.password", ""),
+                FakebookSettings.get("fakebook.jdbc.driver", null));
+            try (Connection connection = factory.connect()) {
+                FakebookSchema.drop(connection);
+                FakebookSchema.create(connection);
+                tests.testFriendIndex(connection);
+                tests.testCoTagIndex(connection);
+                tests.testAggregateStore(connection);
+                tests.testEngines(factory, connection);
+            }
+        }
+        catch (SQLException e) {
+            e.printStackTrace();
+            tests.failures++;
+        }
+        catch (IOException e) {
+            e.printStackTrace();
+            tests.failures++;
+        }
+        catch (InterruptedException e) {
+            e.printStackTrace();
+            tests.failures++;
+        }
+
+        System.out.println(String.format("%d check(s), %d failure(s)", tests.checks, tests.failures));
+        if (tests.failures > 0) {
+            System.exit(1);
+        }
+    }
+
+    // [Bitmap Container Test]
+    // EFFECTS:  fills one container up to the array limit, past it, and with repeated
+    //   and out-of-order values, checking membership and cardinality after each step
+    void testBitmapContainers() {
+        FakebookBitmap bitmap = new FakebookBitmap();
+        Set<Long> expected = new TreeSet<Long>();
+        long base = 7L << 16;
+
+        // every other value of the container, so it stays an array up to 4096 values
+        for (long value = 0; value < 2 * 4096; value += 2) {
+            bitmap.add(base + value);
+            expected.add(base + value);
+        }
+        bitmap.add(base + 2);
+        check(bitmap.cardinality() == 4096, "bitmap: a repeated value is added once to a full array");
+        check(bitmap.sizeInBytes() < 8 * 1024 + 1024, "bitmap: a full array takes at most 8 KiB");
+        checkBitmap(bitmap, expected, base - 1, base + 2 * 4096 + 1, "bitmap: full array container");
+
+        // one more value turns the array into a bitmap
+        bitmap.add(base + 1);
+        expected.add(base + 1);
+        check(bitmap.cardinality() == 4097, "bitmap: the value that turns an array into a bitmap is kept");
+        checkBitmap(bitmap, expected, base - 1, base + 2 * 4096 + 1, "bitmap: bitmap container");
+
+        // values added out of order, into new containers on both sides and into the bitmap
+        long[] more = {base + 65535, base - 1, 3L << 16, base + 3, -5L, 0L, base + 3, 1L << 40, base + 65536};
+        for (long value : more) {
+            bitmap.add(value);
+            expected.add(value);
+        }
+        check(bitmap.cardinality() == expected.size(), "bitmap: cardinality after out-of-order adds");
+        for (long value : more) {
+            check(bitmap.contains(value), "bitmap: contains " + value + " after out-of-order adds");
+        }
+        checkBitmap(bitmap, expected, base - 2, base + 65537, "bitmap: after out-of-order adds");
+        check(!bitmap.contains(2L << 16) && !bitmap.contains(-4L) && !bitmap.contains((1L << 40) + 1),
+            "bitmap: values of missing containers are absent");
+    }
+
+    // [Bitmap Set Operation Test]
+    // EFFECTS:  checks and() and andNot() of random sets, sparse in some containers and
+    //   dense in others, against the same operations on java.util sets
+    void testBitmapSetOperations() {
+        Random random = new Random(15L);
+        FakebookBitmap left = new FakebookBitmap();
+        FakebookBitmap right = new FakebookBitmap();
+        Set<Long> leftSet = new HashSet<Long>();
+        Set<Long> rightSet = new HashSet<Long>();
+        for (int idx = 0; idx < 40000; idx++) {
+            long value = random.nextInt(4) == 0 ? random.nextInt(1 << 22) : random.nextInt(3 << 16);
+            if (random.nextBoolean()) {
+                left.add(value);
+                leftSet.add(value);
+            }
+            else {
+                right.add(value);
+                rightSet.add(value);
+            }
+        }
+
+        Set<Long> both = new HashSet<Long>(leftSet);
+        both.retainAll(rightSet);
+        Set<Long> leftOnly = new HashSet<Long>(leftSet);
+        leftOnly.removeAll(rightSet);
+        FakebookBitmap and = left.and(right);
+        FakebookBitmap andNot = left.andNot(right);
+        check(left.cardinality() == leftSet.size() && right.cardinality() == rightSet.size(),
+            "bitmap: cardinality of random sets");
+        check(and.cardinality() == both.size(), "bitmap: cardinality of and()");
+        check(andNot.cardinality() == leftOnly.size(), "bitmap: cardinality of andNot()");
+        int wrong = 0;
+        for (long value = 0; value < (1 << 22); value++) {
+            if (and.contains(value) != both.contains(value) || andNot.contains(value) != leftOnly.contains(value)) {
+                wrong++;
+            }
+        }
+        check(wrong == 0, "bitmap: and() and andNot() disagree with java.util sets on " + wrong + " value(s)");
+    }
+
+    // [Map Test]
+    // EFFECTS:  checks put(), increment(), remove() and get() of a LongIntMap against a
+    //   HashMap while its table is doubled many times, and checks that walking its slots
+    //   finds every entry exactly once
+    void testLongIntMap() {
+        LongIntMap map = new LongIntMap();
+        Map<Long, Integer> expected = new HashMap<Long, Integer>();
+        Random random = new Random(22L);
+        int initialCapacity = map.capacity();
+        for (int idx = 0; idx < 200000; idx++) {
+            // zero, negative keys, and keys that differ only in their high bits
+            long key = idx % 3 == 0 ? random.nextInt(1000) - 500 : ((long) random.nextInt(50000)) << 32;
+            if (idx % 7 == 0) {
+                Integer old = expected.remove(key);
+                check(map.remove(key) == (old == null ? 0 : old), "map: remove() returns the old value", false);
+            }
+            else if (random.nextBoolean()) {
+                int value = 1 + random.nextInt(1000);
+                map.put(key, value);
+                expected.put(key, value);
+            }
+            else {
+                Integer old = expected.get(key);
+                int value = old == null ? 1 : old + 1;
+                check(map.increment(key) == value, "map: increment() returns the new count", false);
+                expected.put(key, value);
+            }
+        }
+        check(map.capacity() > initialCapacity, "map: the table was resized");
+        check(map.size() == expected.size(), "map: size() is the number of distinct keys");
+        check(map.capacity() >= 2 * map.size() && Integer.bitCount(map.capacity()) == 1,
+            "map: the table stays at most half full and a power of two");
+        for (Map.Entry<Long, Integer> entry : expected.entrySet()) {
+            check(map.get(entry.getKey()) == entry.getValue(), "map: get() after resizes", false);
+        }
+        check(map.get(501L) == 0 && map.get(50000L << 32) == 0, "map: get() of a missing key is 0");
+
+        int used = 0;
+        for (int slot = 0; slot < map.capacity(); slot++) {
+            if (map.valueAt(slot) != 0) {
+                used++;
+                Integer value = expected.get(map.keyAt(slot));
+                check(value != null && value == map.valueAt(slot), "map: walking the slots", false);
+            }
+        }
+        check(used == expected.size(), "map: walking the slots finds every entry once");
+    }
+
+    // [Pair Heap Test]
+    // EFFECTS:  checks that TopPairHeap keeps the best triples of many with tied counts
+    //   and firsts, best first, and that it handles fewer triples than its capacity and a
+    //   capacity of 0
+    void testTopPairHeap() {
+        Random random = new Random(5L);
+        for (int capacity : new int[] {0, 1, 10, 100}) {
+            for (int offered : new int[] {0, 5, 1000}) {
+                TopPairHeap heap = new TopPairHeap(capacity);
+                List<int[]> triples = new ArrayList<int[]>();
+                for (int idx = 0; idx < offered; idx++) {
+                    int[] triple = {random.nextInt(10), random.nextInt(20), random.nextInt(20)};
+                    triples.add(triple);
+                    if (idx % 2 == 0 || heap.admits(triple[0])) {
+                        heap.offer(triple[0], triple[1], triple[2]);
+                    }
+                    check(heap.admits(triple[0]) == (triple[0] >= heap.threshold()),
+                        "pair heap: admits() agrees with threshold()", false);
+                }
+                Collections.sort(triples, new Comparator<int[]>() {
+                    public int compare(int[] a, int[] b) {
+                        return a[0] != b[0] ? b[0] - a[0] : a[1] != b[1] ? a[1] - b[1] : a[2] - b[2];
+                    }
+                });
+                heap.sortBestFirst();
+
+                String name = "pair heap (capacity " + capacity + ", " + offered + " offered)";
+                check(heap.size() == Math.min(capacity, offered), name + ": size()");
+                boolean same = true;
+                for (int idx = 0; idx < heap.size(); idx++) {
+                    int[] triple = triples.get(idx);
+                    same &= heap.count(idx) == triple[0] && heap.first(idx) == triple[1] && heap.second(idx) == triple[2];
+                }
+                check(same, name + ": keeps the best triples, best first");
+            }
+        }
+    }
+
+    // [Count Heap Test]
+    // EFFECTS:  checks that TopCountHeap keeps the best pairs of many with tied counts,
+    //   best first, and that it handles fewer pairs than its capacity and a capacity of 0
+    void testTopCountHeap() {
+        Random random = new Random(6L);
+        for (int capacity : new int[] {0, 1, 10, 100}) {
+            for (int offered : new int[] {0, 5, 1000}) {
+                TopCountHeap heap = new TopCountHeap(capacity);
+                List<long[]> pairs = new ArrayList<long[]>();
+                for (int idx = 0; idx < offered; idx++) {
+                    // distinct IDs, as every caller offers each ID once
+                    long[] pair = {random.nextInt(10), idx * 7919L % 1000 - 500};
+                    pairs.add(pair);
+                    if (idx % 2 == 0 || heap.admits((int) pair[0])) {
+                        heap.offer((int) pair[0], pair[1]);
+                    }
+                }
+                Collections.sort(pairs, new Comparator<long[]>() {
+                    public int compare(long[] a, long[] b) {
+                        return a[0] != b[0] ? Long.compare(b[0], a[0]) : Long.compare(a[1], b[1]);
+                    }
+                });
+                heap.sortBestFirst();
+
+                String name = "count heap (capacity " + capacity + ", " + offered + " offered)";
+                check(heap.size() == Math.min(capacity, offered), name + ": size()");
+                boolean same = true;
+                for (int idx = 0; idx < heap.size(); idx++) {
+                    same &= heap.count(idx) == pairs.get(idx)[0] && heap.id(idx) == pairs.get(idx)[1];
+                }
+                check(same, name + ": keeps the best pairs, best first");
+            }
+        }
+    }
+
+    // [Admission Interrupt Test]
+    // EFFECTS:  interrupts a query waiting for the only heavy query permit just before or
+    //   just after the permit is released from another thread, many times over, checking
+    //   that neither thread hangs and that the permit ends up free whichever came first
+    void testAdmissionInterrupt() throws SQLException, InterruptedException {
+        boolean[] heavy = new boolean[10];
+        heavy[4] = true;
+        boolean finished = true;
+        boolean freed = true;
+        boolean uncounted = true;
+        for (int round = 0; round < 500 && finished; round++) {
+            final QueryAdmission admission = new QueryAdmission(1, heavy);
+            admission.admit(4, 0L);
+            Thread waiter = new Thread(new Runnable() {
+                public void run() {
+                    try {
+                        admission.admit(4, 0L);
+                        admission.release(4);                 // admitted before the interrupt
+                    }
+                    catch (SQLException e) {
+                        // interrupted; the permit, if it came, was passed on
+                    }
+                }
+            });
+            Thread releaser = new Thread(new Runnable() {
+                public void run() {
+                    admission.release(4);
+                }
+            });
+            waiter.setDaemon(true);
+            releaser.setDaemon(true);
+            waiter.start();
+            while (admission.waiting() == 0) {
+                Thread.yield();
+            }
+            if (round % 2 == 0) {
+                waiter.interrupt();
+                releaser.start();
+            }
+            else {
+                releaser.start();
+                waiter.interrupt();
+            }
+            waiter.join(10000L);
+            releaser.join(10000L);
+            finished = !waiter.isAlive() && !releaser.isAlive();
+            if (finished) {                                   // a deadlock holds the controller
+                freed &= admission.running() == 0 && admission.waiting() == 0;
+                uncounted &= admission.timedOut() == 0;
+            }
+        }
+        check(finished, "admission: an interrupt racing a release does not deadlock");
+        check(freed, "admission: the permit is free once both threads are done");
+        check(uncounted, "admission: an interrupted waiter is not counted as timed out");
+    }
+
+    // [Result Cache Test]
+    // EFFECTS:  checks that CachingFakebookOracle answers a repeated query from the cache,
+    //   expires results after their time to live, evicts the least recently used result,
+    //   drops the results of an invalidated table even while they are being computed,
+    //   caches nothing from a call that failed, and shares one cache between the
+    //   oracles of its factory
+    void testCachingOracle() throws SQLException, InterruptedException {
+        final CountingOracle oracle = new CountingOracle();
+        CachingFakebookOracle cache = new CachingFakebookOracle(oracle, 60000L, 2);
+        AgeInfo first = cache.findAgeInfo(1L);
+        check(cache.findAgeInfo(1L) == first && oracle.calls == 1 && cache.hits() == 1,
+            "result cache: a repeated query is answered from the cache");
+
+        cache.findAgeInfo(2L);
+        cache.findAgeInfo(1L);
+        cache.findAgeInfo(3L);                                    // evicts 2, used least recently
+        int calls = oracle.calls;
+        cache.findAgeInfo(1L);
+        check(oracle.calls == calls && cache.size() == 2 && cache.evictions() == 1,
+            "result cache: a full cache keeps the most recently used results");
+        cache.findAgeInfo(2L);
+        check(oracle.calls == calls + 1, "result cache: a full cache evicts the least recently used result");
+
+        CachingFakebookOracle expiring = new CachingFakebookOracle(oracle, 200L, 10);
+        expiring.findAgeInfo(1L);
+        expiring.findAgeInfo(1L);
+        Thread.sleep(300L);
+        calls = oracle.calls;
+        expiring.findAgeInfo(1L);
+        check(oracle.calls == calls + 1 && expiring.hits() == 1 && expiring.expirations() == 1,
+            "result cache: a result expires after its time to live");
+
+        final CachingFakebookOracle invalidated = new CachingFakebookOracle(oracle, 60000L, 10);
+        invalidated.findAgeInfo(1L);
+        invalidated.findEventStates();
+        invalidated.invalidate(FakebookOracleConstants.UsersTable);
+        calls = oracle.calls;
+        invalidated.findEventStates();
+        invalidated.findAgeInfo(1L);
+        check(oracle.calls == calls + 1 && invalidated.invalidations() == 1,
+            "result cache: invalidating a table drops only the results computed from it");
+        oracle.during = new Runnable() {
+            public void run() {
+                invalidated.invalidate(FakebookOracleConstants.FriendsTable);
+            }
+        };
+        invalidated.findAgeInfo(2L);
+        oracle.during = null;
+        calls = oracle.calls;
+        invalidated.findAgeInfo(2L);
+        check(oracle.calls == calls + 1,
+            "result cache: a result whose table was invalidated while it was computed is not cached");
+
+        CachingFakebookOracle failing = new CachingFakebookOracle(oracle, 60000L, 10);
+        oracle.failing = true;
+        failing.findAgeInfo(1L);
+        failing.findAgeInfo(new long[] {2L, 3L});
+        oracle.failing = false;
+        calls = oracle.calls;
+        failing.findAgeInfo(1L);
+        failing.findAgeInfo(new long[] {2L, 3L});
+        check(oracle.calls == calls + 3 && failing.findAgeInfo(1L).toString().equals(first.toString()),
+            "result cache: what a failed call returned is not cached");
+
+        FakebookOracleFactory oracles = CachingFakebookOracle.factory(new FakebookOracleFactory() {
+            public FakebookOracle create(Connection connection) {
+                return oracle;
+            }
+        }, 60000L, 10);
+        oracles.create(null).findAgeInfo(1L);
+        calls = oracle.calls;
+        oracles.create(null).findAgeInfo(1L);
+        check(oracle.calls == calls, "result cache: the oracles of one factory share its cache");
+        check(FakebookOracleFactory.forEngine("cached:student").create(null) instanceof CachingFakebookOracle,
+            "result cache: a \"cached:\" engine puts the cache in front of the engine");
+    }
+
+    // [Record Round Trip Test]
+    // EFFECTS:  writes random records through a FakebookRecordWriter whose buffer is too
+    //   small for many of them, reads them back with a FakebookRecordReader, and checks
+    //   that every record comes back with its query, section, and fields; also checks
+    //   that the reader rejects a stream that is not one or that ends inside a record
+    void testRecords() throws IOException {
+        Random random = new Random(25L);
+        String[] strings = {
+            "", "Frodo", "Ren\u00e9e", "\u5f20\u4f1f", "\ud83d\ude00 smile", null, new String(new char[1000]).replace('\0', 'x')
+        };
+        long[] longs = { 0L, 1L, -1L, 215L, Long.MIN_VALUE, Long.MAX_VALUE, Integer.MIN_VALUE - 1L };
+        List<Object[]> written = new ArrayList<Object[]>();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        FakebookRecordWriter out = new FakebookRecordWriter(Channels.newChannel(bytes), 16);
+        for (int idx = 0; idx < 5000; idx++) {
+            Object[] record = new Object[2 + random.nextInt(6)];
+            record[0] = random.nextInt(10);
+            record[1] = random.nextInt(256);
+            out.begin((Integer) record[0], (Integer) record[1]);
+            for (int field = 2; field < record.length; field++) {
+                if (random.nextBoolean()) {
+                    record[field] = random.nextInt(4) == 0 ? longs[random.nextInt(longs.length)] : random.nextLong();
+                    out.putLong((Long) record[field]);
+                }
+                else {
+                    record[field] = strings[random.nextInt(strings.length)];
+                    out.putString((String) record[field]);
+                }
+            }
+            out.end();
+            written.add(record);
+        }
+        out.begin(9, 1);
+        out.putUser(null);
+        out.putString("\ud800 alone");
+        out.end();
+        written.add(new Object[] { 9, 1, null, null, null, "? alone" });
+        out.close();
+        check(out.records() == written.size() && out.bytes() == bytes.size(),
+            "records: the writer counts the records and bytes it wrote");
+
+        int read = 0;
+        boolean same = true;
+        FakebookRecordReader in = new FakebookRecordReader(
+            Channels.newChannel(new ByteArrayInputStream(bytes.toByteArray())));
+        while (in.next()) {
+            Object[] record = read < written.size() ? written.get(read) : new Object[2];
+            Object[] fields = new Object[2 + in.fields()];
+            fields[0] = in.query();
+            fields[1] = in.section();
+            for (int field = 0; field < in.fields(); field++) {
+                fields[2 + field] = in.field(field);
+            }
+            same &= Arrays.equals(record, fields);
+            read++;
+        }
+        in.close();
+        check(same && read == written.size(), "records: every record is read back as it was written");
+
+        byte[] truncated = Arrays.copyOf(bytes.toByteArray(), bytes.size() - 1);
+        boolean rejected = false;
+        try {
+            in = new FakebookRecordReader(Channels.newChannel(new ByteArrayInputStream(truncated)));
+            while (in.next()) {
+            }
+        }
+        catch (IOException e) {
+            rejected = true;
+        }
+        check(rejected, "records: a stream that ends inside a record is rejected");
+        rejected = false;
+        try {
+            new FakebookRecordReader(Channels.newChannel(new ByteArrayInputStream("FBREC000".getBytes("UTF-8"))));
+        }
+        catch (IOException e) {
+            rejected = true;
+        }
+        check(rejected, "records: a stream without the magic number is rejected");
+    }
+
+    // [Friend Index Test]
+    // REQUIRES: the PUBLIC_* tables behind <connection> exist and are empty
+    // MODIFIES: the Friends table behind <connection>
+    // EFFECTS:  builds a FriendIndex file, then reopens it after friendships are added,
+    //   swapped, and removed, and from a copy of the file, checking every time that it
+    //   holds the friendships in the table
+    void testFriendIndex(Connection connection) throws SQLException, IOException {
+        File directory = Files.createTempDirectory("fakebook").toFile();
+        File file = new File(directory, "fakebook.friends");
+        File copy = new File(directory, "copy.friends");
+        try {
+            Random random = new Random(14L);
+            Set<Long> friendships = new HashSet<Long>();
+            for (int idx = 0; idx < 2000; idx++) {
+                long id1 = random.nextInt(500);
+                long id2 = random.nextInt(500);
+                if (id1 < id2 && friendships.add(pair(id1, id2))) {
+                    insert(connection, FriendInsert, id1, id2);
+                }
+            }
+            FriendIndex index = FriendIndex.open(connection, file);
+            checkFriends(index, friendships, "friend index: built");
+
+            // a copy of the file is mapped as it is, without being rewritten
+            Files.copy(file.toPath(), copy.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            long modified = copy.lastModified();
+            checkFriends(FriendIndex.open(connection, copy), friendships, "friend index: reopened from a copy");
+            check(copy.lastModified() == modified, "friend index: an up-to-date file is not rewritten");
+
+            long[][] added = {{600L, 3L}, {601L, 700L}, {602L, 900L}, {603L, 901L}};
+            for (long[] row : added) {
+                insert(connection, FriendInsert, row[0], row[1]);
+                friendships.add(pair(row[0], row[1]));
+            }
+            index = FriendIndex.open(connection, file);
+            checkFriends(index, friendships, "friend index: reopened after friendships were added");
+
+            index = index.append(file, new long[] {5L}, new long[] {800L});
+            insert(connection, FriendInsert, 5L, 800L);
+            friendships.add(pair(5L, 800L));
+            checkFriends(index, friendships, "friend index: appended to");
+            checkFriends(FriendIndex.open(connection, file), friendships, "friend index: reopened after an append");
+
+            // turning (id1, id2) into (id2, id1) keeps the same friendship
+            long[] first = firstRow(connection, FakebookOracleConstants.FriendsTable, "user1_id", "user2_id");
+            update(connection, FakebookOracleConstants.FriendsTable, "user1_id", "user2_id", first[0], first[1],
+                first[1], first[0]);
+            checkFriends(FriendIndex.open(connection, file), friendships, "friend index: reopened after a swap");
+
+            // swapping the friends of two friendships changes both, but not the number of
+            // times each ID appears in each column
+            update(connection, FakebookOracleConstants.FriendsTable, "user1_id", "user2_id", 602L, 900L, 602L, 901L);
+            update(connection, FakebookOracleConstants.FriendsTable, "user1_id", "user2_id", 603L, 901L, 603L, 900L);
+            friendships.remove(pair(602L, 900L));
+            friendships.remove(pair(603L, 901L));
+            friendships.add(pair(602L, 901L));
+            friendships.add(pair(603L, 900L));
+            checkFriends(FriendIndex.open(connection, file), friendships,
+                "friend index: reopened after friends were swapped between friendships");
+
+            delete(connection, FakebookOracleConstants.FriendsTable, "user1_id", "user2_id", 601L, 700L);
+            friendships.remove(pair(601L, 700L));
+            index = FriendIndex.open(connection, file);
+            checkFriends(index, friendships, "friend index: reopened after a friendship was removed");
+            check(index.indexOf(601L) < 0 && index.indexOf(700L) < 0,
+                "friend index: users whose only friendship was removed are not vertices");
+        }
+        finally {
+            for (File entry : directory.listFiles()) {
+                entry.delete();
+            }
+            directory.delete();
+        }
+    }
+
+    // [Co-Tag Index Test]
+    // REQUIRES: the PUBLIC_* tables behind <connection> exist and the Tags table is empty
+    // MODIFIES: the Tags table behind <connection>
+    // EFFECTS:  builds a CoTagIndex, then reopens it after tags are added, swapped, and
+    //   removed, checking every time that its pair counts and shared photos match the table
+    void testCoTagIndex(Connection connection) throws SQLException {
+        Random random = new Random(17L);
+        Map<Long, Set<Long>> photos = new HashMap<Long, Set<Long>>();
+        for (int idx = 0; idx < 3000; idx++) {
+            long photo = random.nextInt(300);
+            long user = photo / 3 + random.nextInt(12);
+            if (tag(photos, photo, user, true)) {
+                insert(connection, TagInsert, photo, user);
+            }
+        }
+        CoTagIndex index = CoTagIndex.open(connection);
+        checkCoTags(index, photos, "co-tag index: built");
+        check(CoTagIndex.open(connection) == index, "co-tag index: an up-to-date index is reused");
+
+        long[][] added = {{7L, 1000L}, {1000L, 1001L}, {1000L, 1002L}, {1003L, 1004L}, {1003L, 1005L}};
+        for (long[] row : added) {
+            insert(connection, TagInsert, row[0], row[1]);
+            tag(photos, row[0], row[1], true);
+        }
+        check(CoTagIndex.open(connection) == index, "co-tag index: added tags are added to the same index");
+        checkCoTags(index, photos, "co-tag index: reopened after tags were added");
+
+        // tags reported through add() leave the index up to date with the table
+        long[][] reported = {{1000L, 1006L}, {1006L, 1000L}, {1006L, 1001L}};
+        for (long[] row : reported) {
+            insert(connection, TagInsert, row[0], row[1]);
+            tag(photos, row[0], row[1], true);
+            check(index.add(row[0], row[1]), "co-tag index: add() of a new tag returns true");
+        }
+        check(!index.add(1000L, 1006L), "co-tag index: add() of a recorded tag returns false");
+        check(CoTagIndex.open(connection) == index, "co-tag index: tags reported through add() need no rebuild");
+        checkCoTags(index, photos, "co-tag index: reopened after tags were reported through add()");
+
+        // swapping two users between two photos changes four pairs, but not the number of
+        // times each ID appears in each column
+        update(connection, FakebookOracleConstants.TagsTable, "tag_photo_id", "tag_subject_id", 1000L, 1001L,
+            1000L, 1004L);
+        update(connection, FakebookOracleConstants.TagsTable, "tag_photo_id", "tag_subject_id", 1003L, 1004L,
+            1003L, 1001L);
+        tag(photos, 1000L, 1001L, false);
+        tag(photos, 1003L, 1004L, false);
+        tag(photos, 1000L, 1004L, true);
+        tag(photos, 1003L, 1001L, true);
+        checkCoTags(CoTagIndex.open(connection), photos, "co-tag index: reopened after users were swapped");
+
+        delete(connection, FakebookOracleConstants.TagsTable, "tag_photo_id", "tag_subject_id", 1000L, 1002L);
+        tag(photos, 1000L, 1002L, false);
+        checkCoTags(CoTagIndex.open(connection), photos, "co-tag index: reopened after a tag was removed");
+    }
+
+    // [Aggregate Store Test]
+    // REQUIRES: the PUBLIC_* tables behind <connection> exist and the Users, Cities, and
+    //   User_Events tables are empty
+    // MODIFIES: the Users, Cities, and User_Events tables behind <connection>
+    // EFFECTS:  loads an AggregateStore, then adds, moves, and removes users and events
+    //   in the tables and reports each change to the store, checking after a few changes
+    //   and again after enough changes to rebuild its arrays that it answers Queries 0
+    //   and 7 as a store loaded afresh does
+    void testAggregateStore(Connection connection) throws SQLException {
+        Random random = new Random(7L);
+        String[] states = {"Michigan", "Ohio", "Texas", "Utah"};
+        for (int city = 0; city < 8; city++) {
+            execute(connection, CityInsert, city, states[city % states.length]);
+        }
+        // month 12 is left empty, so that the first user born in it adds a month
+        Set<Long> users = new TreeSet<Long>();
+        for (long user = 0; user < 600; user++) {
+            execute(connection, UserInsert, user, "F" + user % 50, "L" + user % 70, 1 + random.nextInt(11));
+            users.add(user);
+        }
+        Map<Long, Integer> events = new HashMap<Long, Integer>();
+        for (long event = 0; event < 300; event++) {
+            int city = random.nextInt(6);
+            execute(connection, EventInsert, event, city);
+            events.put(event, city);
+        }
+        AggregateStore.drop(connection);
+        AggregateStore store = AggregateStore.open(connection);
+
+        int changes = 0;
+        long nextUser = 600;
+        long nextEvent = 300;
+        for (int round : new int[] {10, 3000}) {
+            for (; changes < round; changes++) {
+                int change = random.nextInt(6);
+                long user = random.nextInt((int) nextUser);
+                long event = random.nextInt((int) nextEvent);
+                if (change == 0) {
+                    int month = 1 + random.nextInt(12);
+                    execute(connection, UserInsert, nextUser, "F" + nextUser % 50, "L" + nextUser % 70, month);
+                    check(store.addUser(nextUser, "F" + nextUser % 50, "L" + nextUser % 70, month),
+                        "aggregate store: addUser() of a new user returns true", false);
+                    users.add(nextUser++);
+                }
+                else if (change == 1) {
+                    execute(connection, "DELETE FROM " + FakebookOracleConstants.UsersTable + " WHERE user_id = ?", user);
+                    check(store.removeUser(user) == users.remove(user),
+                        "aggregate store: removeUser() returns whether the user was recorded", false);
+                }
+                else if (change == 2 && users.contains(user)) {
+                    int month = 1 + random.nextInt(12);
+                    execute(connection, "UPDATE " + FakebookOracleConstants.UsersTable
+                        + " SET month_of_birth = ? WHERE user_id = ?", month, user);
+                    store.addUser(user, "F" + user % 50, "L" + user % 70, month);
+                }
+                else if (change == 3) {
+                    int city = random.nextInt(8);
+                    execute(connection, EventInsert, nextEvent, city);
+                    check(store.addEvent(nextEvent, states[city % states.length]),
+                        "aggregate store: addEvent() of a new event returns true", false);
+                    events.put(nextEvent++, city);
+                }
+                else if (change == 4) {
+                    execute(connection, "DELETE FROM " + FakebookOracleConstants.EventsTable + " WHERE event_id = ?", event);
+                    check(store.removeEvent(event) == (events.remove(event) != null),
+                        "aggregate store: removeEvent() returns whether the event was recorded", false);
+                }
+                else if (change == 5 && events.containsKey(event)) {
+                    int city = random.nextInt(8);
+                    execute(connection, "UPDATE " + FakebookOracleConstants.EventsTable
+                        + " SET event_city_id = ? WHERE event_id = ?", city, event);
+                    check(store.addEvent(event, states[city % states.length])
+                        == (city % states.length != events.get(event) % states.length),
+                        "aggregate store: addEvent() returns whether the event moved", false);
+                    events.put(event, city);
+                }
+            }
+            AggregateStore.drop(connection);
+            AggregateStore loaded = AggregateStore.open(connection);
+            check(store.monthInfo().toString().equals(loaded.monthInfo().toString()),
+                "aggregate store: Query 0 after " + changes + " reported change(s) matches a fresh load");
+            check(String.valueOf(store.stateInfo()).equals(String.valueOf(loaded.stateInfo())),
+                "aggregate store: Query 7 after " + changes + " reported change(s) matches a fresh load");
+        }
+        long user = users.iterator().next();
+        check(!store.removeUser(nextUser) && !store.removeEvent(nextEvent),
+            "aggregate store: removing what was never recorded returns false");
+        check(store.removeUser(user) && store.addUser(user, "F", "L", 12) && !store.addUser(user, "F", "L", 12),
+            "aggregate store: adding a user again to the same month returns false");
+        AggregateStore.drop(connection);
+    }
+
+    // [Engine Comparison Test]
+    // REQUIRES: the PUBLIC_* tables behind <connection>, which <factory> connects to, exist
+    // MODIFIES: the PUBLIC_* tables behind <connection>
+    // EFFECTS:  fills the tables with 1,000 generated users, runs the ten queries with the
+    //   standard arguments on the in-memory, snapshot, and student engines, and checks
+    //   that they print the same output, except that the student engine is not compared
+    //   on Query 5, where the others follow the specification in FakebookOracle; the top
+    //   pairs of Query 6 are also checked against mutual friends counted pair by pair
+    void testEngines(ConnectionFactory factory, Connection connection) throws SQLException, IOException {
+        FakebookSchema.drop(connection);
+        FakebookSchema.create(connection);
+        try (FakebookConnectionPool loaders = new FakebookConnectionPool(factory, 2, 0, 30000L, 5, 30000L)) {
+            new FakebookDataGenerator(1000L, 42L).generate(new JdbcDataSink(loaders), 2,
+                FakebookDataGenerator.DefaultChunkSize);
+        }
+
+        File directory = Files.createTempDirectory("fakebook").toFile();
+        File file = new File(directory, "fakebook.snapshot");
+        String indexFile = System.getProperty("fakebook.friends.index");
+        System.setProperty("fakebook.friends.index", new File(directory, "fakebook.friends").getPath());
+        try {
+            FakebookSnapshot.export(connection, file);
+            FakebookOracle memory = new InMemoryFakebookOracle(connection);
+            FakebookOracle snapshot = new SnapshotFakebookOracle(FakebookSnapshot.open(file));
+            FakebookOracle student = new StudentFakebookOracle(connection);
+            for (int query = 0; query <= 9; query++) {
+                String expected = output(memory, query);
+                check(output(snapshot, query).equals(expected),
+                    String.format("engines: Query %d is printed alike by the in-memory and snapshot engines", query));
+                if (query != 5) {
+                    check(output(student, query).equals(expected),
+                        String.format("engines: Query %d is printed alike by the in-memory and student engines", query));
+                }
+            }
+
+            FakebookArrayList<UsersPair> pairs = mutualFriends(connection, 5);
+            StringWriter expected = new StringWriter();
+            memory.printQuery6(expected, pairs);
+            check(pairs.size() == 5 && output(memory, 6).equals(expected.toString()),
+                "engines: Query 6 finds the non-friends with the most mutual friends");
+        }
+        finally {
+            if (indexFile == null) {
+                System.clearProperty("fakebook.friends.index");
+            }
+            else {
+                System.setProperty("fakebook.friends.index", indexFile);
+            }
+            for (File entry : directory.listFiles()) {
+                entry.delete();
+            }
+            directory.delete();
+        }
+    }
+
+    // EFFECTS:  checks that <index> holds exactly the friendships in <friendships>, each
+    //   encoded by pair(), with sorted neighbor lists
+    private void checkFriends(FriendIndex index, Set<Long> friendships, String name) {
+        Set<Long> found = new HashSet<Long>();
+        boolean sorted = true;
+        boolean symmetric = true;
+        for (int v = 0; v < index.size(); v++) {
+            sorted &= v == 0 || index.idOf(v - 1) < index.idOf(v);
+            sorted &= index.indexOf(index.idOf(v)) == v;
+            for (int position = index.begin(v); position < index.end(v); position++) {
+                int u = index.neighbor(position);
+                sorted &= position == index.begin(v) || index.neighbor(position - 1) < u;
+                symmetric &= index.adjacent(u, v);
+                found.add(pair(index.idOf(u), index.idOf(v)));
+            }
+        }
+        check(sorted, name + ": vertices and neighbor lists are sorted");
+        check(symmetric, name + ": every friendship is listed under both friends");
+        check(found.equals(friendships), name + ": holds the friendships of the table");
+    }
+
+    // EFFECTS:  checks that <index> counts the photos shared by every pair of users
+    //   tagged together in <photos>, a map from each photo to the users tagged in it, and
+    //   lists those photos
+    private void checkCoTags(CoTagIndex index, Map<Long, Set<Long>> photos, String name) {
+        Map<Long, Set<Long>> expected = new HashMap<Long, Set<Long>>();
+        for (Map.Entry<Long, Set<Long>> entry : photos.entrySet()) {
+            for (long u : entry.getValue()) {
+                for (long v : entry.getValue()) {
+                    if (u < v) {
+                        Set<Long> shared = expected.get(pair(u, v));
+                        if (shared == null) {
+                            shared = new TreeSet<Long>();
+                            expected.put(pair(u, v), shared);
+                        }
+                        shared.add(entry.getKey());
+                    }
+                }
+            }
+        }
+
+        synchronized (index) {
+            int pairs = 0;
+            boolean counted = true;
+            boolean listed = true;
+            for (int slot = 0; slot < index.pairSlots(); slot++) {
+                if (index.pairCount(slot) == 0) {
+                    continue;
+                }
+                pairs++;
+                int u = index.pairFirst(slot);
+                int v = index.pairSecond(slot);
+                Set<Long> shared = expected.get(pair(index.userID(u), index.userID(v)));
+                counted &= shared != null && shared.size() == index.pairCount(slot);
+                List<Long> photoIDs = new ArrayList<Long>();
+                for (long photo : index.sharedPhotos(u, v)) {
+                    photoIDs.add(photo);
+                }
+                listed &= shared != null && photoIDs.equals(new ArrayList<Long>(shared));
+            }
+            check(pairs == expected.size(), name + ": holds every pair of users tagged together");
+            check(counted, name + ": counts the photos each pair shares");
+            check(listed, name + ": lists the photos each pair shares in ascending order");
+        }
+    }
+
+    // EFFECTS:  returns what <oracle> prints for <query> run with the standard arguments
+    private static String output(FakebookOracle oracle, int query) throws SQLException, IOException {
+        StringWriter writer = new StringWriter();
+        FakebookQueryRunner.print(oracle, writer, query, FakebookQueryRunner.execute(oracle, query));
+        return writer.toString();
+    }
+
+    // EFFECTS:  returns the <num> pairs of users behind <connection> who are not friends
+    //   but have the most friends in common, in the order of Query 6, by comparing the
+    //   friends of every two users
+    private static FakebookArrayList<UsersPair> mutualFriends(Connection connection, int num) throws SQLException {
+        Map<Long, UserInfo> users = new HashMap<Long, UserInfo>();
+        try (PreparedStatement stmt = connection.prepareStatement(
+                 "SELECT USER_ID, FIRST_NAME, LAST_NAME FROM " + FakebookOracleConstants.UsersTable);
+             ResultSet rst = stmt.executeQuery()) {
+            while (rst.next()) {
+                users.put(rst.getLong(1), new UserInfo(rst.getLong(1), rst.getString(2), rst.getString(3)));
+            }
+        }
+        Map<Long, Set<Long>> friends = new HashMap<Long, Set<Long>>();
+        try (PreparedStatement stmt = connection.prepareStatement(
+                 "SELECT USER1_ID, USER2_ID FROM " + FakebookOracleConstants.FriendsTable);
+             ResultSet rst = stmt.executeQuery()) {
+            while (rst.next()) {
+                for (int column = 1; column <= 2; column++) {
+                    Set<Long> set = friends.get(rst.getLong(column));
+                    if (set == null) {
+                        set = new TreeSet<Long>();
+                        friends.put(rst.getLong(column), set);
+                    }
+                    set.add(rst.getLong(3 - column));
+                }
+            }
+        }
+
+        List<long[]> counts = new ArrayList<long[]>();
+        for (Map.Entry<Long, Set<Long>> first : friends.entrySet()) {
+            for (Map.Entry<Long, Set<Long>> second : friends.entrySet()) {
+                if (first.getKey() >= second.getKey() || first.getValue().contains(second.getKey())) {
+                    continue;
+                }
+                long count = 0;
+                for (long friend : first.getValue()) {
+                    if (second.getValue().contains(friend)) {
+                        count++;
+                    }
+                }
+                if (count > 0) {
+                    counts.add(new long[] { count, first.getKey(), second.getKey() });
+                }
+            }
+        }
+        Collections.sort(counts, new Comparator<long[]>() {
+            public int compare(long[] a, long[] b) {
+                if (a[0] != b[0]) {
+                    return Long.compare(b[0], a[0]);
+                }
+                return a[1] != b[1] ? Long.compare(a[1], b[1]) : Long.compare(a[2], b[2]);
+            }
+        });
+
+        FakebookArrayList<UsersPair> results = new FakebookArrayList<UsersPair>("\n");
+        for (long[] count : counts.subList(0, Math.min(num, counts.size()))) {
+            UsersPair pair = new UsersPair(users.get(count[1]), users.get(count[2]));
+            for (long friend : friends.get(count[1])) {
+                if (friends.get(count[2]).contains(friend)) {
+                    pair.addSharedFriend(users.get(friend));
+                }
+            }
+            results.add(pair);
+        }
+        return results;
+    }
+
+    // EFFECTS:  adds (<add> true) or removes the tag of <user> in <photo> to or from
+    //   <photos> and returns true if <photos> changed
+    private static boolean tag(Map<Long, Set<Long>> photos, long photo, long user, boolean add) {
+        Set<Long> users = photos.get(photo);
+        if (users == null) {
+            users = new HashSet<Long>();
+            photos.put(photo, users);
+        }
+        return add ? users.add(user) : users.remove(user);
+    }
+
+    // EFFECTS:  returns the key of the unordered pair {<id1>, <id2>}; every ID used by
+    //   these tests is below 2^31
+    private static long pair(long id1, long id2) {
+        return Math.min(id1, id2) << 32 | Math.max(id1, id2);
+    }
+
+    // EFFECTS:  checks that <bitmap> contains exactly the values of <expected> between
+    //   <from> and <to>, inclusive
+    private void checkBitmap(FakebookBitmap bitmap, Set<Long> expected, long from, long to, String name) {
+        int wrong = 0;
+        for (long value = from; value <= to; value++) {
+            if (bitmap.contains(value) != expected.contains(value)) {
+                wrong++;
+            }
+        }
+        check(wrong == 0, name + ": membership of " + wrong + " value(s) is wrong");
+    }
+
+    // REQUIRES: <sql> is FriendInsert or TagInsert
+    // MODIFIES: the table <sql> inserts into
+    // EFFECTS:  inserts the friendship or tag (<value1>, <value2>)
+    private static void insert(Connection connection, String sql, long value1, long value2) throws SQLException {
+        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+            stmt.setLong(1, value1);
+            stmt.setLong(2, value2);
+            stmt.executeUpdate();
+        }
+    }
+
+    // MODIFIES: the table <sql> changes
+    // EFFECTS:  runs the statement <sql> with <values> bound to its parameters
+    private static void execute(Connection connection, String sql, Object... values) throws SQLException {
+        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+            for (int idx = 0; idx < values.length; idx++) {
+                stmt.setObject(idx + 1, values[idx]);
+            }
+            stmt.executeUpdate();
+        }
+    }
+
+    // MODIFIES: <table>
+    // EFFECTS:  replaces the row (<old1>, <old2>) of <table> with (<new1>, <new2>)
+    private static void update(Connection connection, String table, String column1, String column2,
+                               long old1, long old2, long new1, long new2) throws SQLException {
+        try (PreparedStatement stmt = connection.prepareStatement("UPDATE " + table + " SET " + column1 + " = ?, "
+            + column2 + " = ? WHERE " + column1 + " = ? AND " + column2 + " = ?")) {
+            stmt.setLong(1, new1);
+            stmt.setLong(2, new2);
+            stmt.setLong(3, old1);
+            stmt.setLong(4, old2);
+            stmt.executeUpdate();
+        }
+    }
+
+    // MODIFIES: <table>
+    // EFFECTS:  deletes the row (<value1>, <value2>) from <table>
+    private static void delete(Connection connection, String table, String column1, String column2,
+                               long value1, long value2) throws SQLException {
+        try (PreparedStatement stmt = connection.prepareStatement("DELETE FROM " + table + " WHERE " + column1
+            + " = ? AND " + column2 + " = ?")) {
+            stmt.setLong(1, value1);
+            stmt.setLong(2, value2);
+            stmt.executeUpdate();
+        }
+    }
+
+    // EFFECTS:  returns the smallest row of <table> by (<column1>, <column2>)
+    private static long[] firstRow(Connection connection, String table, String column1, String column2)
+        throws SQLException {
+        try (PreparedStatement stmt = connection.prepareStatement("SELECT " + column1 + ", " + column2 + " FROM "
+            + table + " ORDER BY " + column1 + ", " + column2)) {
+            try (ResultSet rst = stmt.executeQuery()) {
+                rst.next();
+                return new long[] {rst.getLong(1), rst.getLong(2)};
+            }
+        }
+    }
+
+    // MODIFIES: this
+    // EFFECTS:  counts a check, and prints <name> if <passed> is false
+    private void check(boolean passed, String name) {
+        check(passed, name, true);
+    }
+
+    // MODIFIES: this
+    // EFFECTS:  like check(<passed>, <name>), but a check that is not <counted> is only
+    //   counted when it fails, so checks made once per element do not swamp the total
+    private void check(boolean passed, String name, boolean counted) {
+        if (counted || !passed) {
+            checks++;
+        }
+        if (!passed) {
+            failures++;
+            System.err.println("FAILED: " + name);
+        }
+    }
+
+    /*
+        The CountingOracle class answers Queries 7 and 8 with new objects and counts
+        its calls. While <failing> is true it fails the way StudentFakebookOracle does,
+        reporting the failure and returning the ERROR AgeInfo, and <during>, unless
+        NULL, is run in the middle of every call.
+    */
+    private static final class CountingOracle extends FakebookOracle {
+        @Override
+        public AgeInfo findAgeInfo(long userID) throws SQLException {
+            calls++;
+            if (during != null) {
+                during.run();
+            }
+            if (failing) {
+                failed(new SQLException("Simulated failure of Query 8 (expected by the result cache test)"));
+                return new AgeInfo(new UserInfo(-1, "ERROR", "ERROR"), new UserInfo(-1, "ERROR", "ERROR"));
+            }
+            return new AgeInfo(new UserInfo(userID, "Oldest", "Friend"), new UserInfo(userID, "Youngest", "Friend"));
+        }
+
+        @Override
+        public EventStateInfo findEventStates() throws SQLException {
+            calls++;
+            return new EventStateInfo(calls);
+        }
+
+        @Override
+        public BirthMonthInfo findMonthOfBirthInfo() throws SQLException {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public FirstNameInfo findNameInfo() throws SQLException {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public FakebookArrayList<UserInfo> lonelyUsers() throws SQLException {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public FakebookArrayList<UserInfo> liveAwayFromHome() throws SQLException {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public FakebookArrayList<TaggedPhotoInfo> findPhotosWithMostTags(int num) throws SQLException {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public FakebookArrayList<MatchPair> matchMaker(int num, int yearDiff) throws SQLException {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public FakebookArrayList<UsersPair> suggestFriends(int num) throws SQLException {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public FakebookArrayList<SiblingInfo> findPotentialSiblings() throws SQLException {
+            throw new UnsupportedOperationException();
+        }
+
+        // Member Variables
+        private int calls;
+        private boolean failing;
+        private Runnable during;
+    }
+
+    // Member Variables
+    private static final String DefaultUrl = "jdbc:h2:mem:fakebooktests;MODE=Oracle;DB_CLOSE_DELAY=-1";
+    private static final String FriendInsert = "INSERT INTO " + FakebookOracleConstants.FriendsTable
+        + " (user1_id, user2_id) VALUES (?, ?)";
+    private static final String TagInsert = "INSERT INTO " + FakebookOracleConstants.TagsTable
+        + " (tag_photo_id, tag_subject_id, tag_created_time, tag_x, tag_y) VALUES (?, ?, CURRENT_TIMESTAMP, 0, 0)";
+    private static final String UserInsert = "INSERT INTO " + FakebookOracleConstants.UsersTable
+        + " (user_id, first_name, last_name, month_of_birth) VALUES (?, ?, ?, ?)";
+    private static final String CityInsert = "INSERT INTO " + FakebookOracleConstants.CitiesTable
+        + " (city_id, city_name, state_name, country_name) VALUES (?, 'City', ?, 'USA')";
+    private static final String EventInsert = "INSERT INTO " + FakebookOracleConstants.EventsTable
+        + " (event_id, event_creator_id, event_name, event_city_id) VALUES (?, 0, 'Event', ?)";
+    private int checks;
+    private int failures;
+}
@@ -1,13 +1,56 @@
 package project2;
 
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.Reader;
 import java.util.ArrayList;
+import java.util.Properties;
+
+/*
+    The FakebookRenderable interface is implemented by query results that can write their
+    string representation straight to an Appendable (such as the Writer passed to the
+    printQueryN functions) instead of first building it as a String. For every
+    implementation, toString() returns exactly what appendTo() writes.
+*/
+interface FakebookRenderable {
+    // [Append Function]
+    // MODIFIES: <out>
+    // EFFECTS:  appends the string representation of this object to <out>
+    void appendTo(Appendable out) throws IOException;
+
+    // [Append Helper Function]
+    // MODIFIES: <out>
+    // EFFECTS:  appends <value> to <out> the way String.format's %s would print it,
+    //   without an intermediate String for FakebookRenderable values
+    static void append(Appendable out, Object value) throws IOException {
+        if (value instanceof FakebookRenderable) {
+            ((FakebookRenderable) value).appendTo(out);
+        }
+        else {
+            out.append(String.valueOf(value));
+        }
+    }
+
+    // [Render Helper Function]
+    // EFFECTS:  returns what <value>.appendTo() writes, as a String
+    static String render(FakebookRenderable value) {
+        StringBuilder out = new StringBuilder();
+        try {
+            value.appendTo(out);
+        }
+        catch (IOException e) {
+            throw new AssertionError(e);                      // a StringBuilder never throws
+        }
+        return out.toString();
+    }
+}
 
 /*
     The FakebookArrayList class is an ArrayList that allows customization of the toString
     function, specifically the inter-item delimiter and the removal of leading/trailing
     brackets.
 */
-final class FakebookArrayList<T> extends ArrayList<T> {
+final class FakebookArrayList<T> extends ArrayList<T> implements FakebookRenderable, FakebookEncodable {
     // [Constructor]
     public FakebookArrayList(String delim) {
         super();
@@ -19,22 +62,196 @@ final class FakebookArrayList<T> extends ArrayList<T> {
     // EFFECTS:  constructs a string representation of the elements contained in this
     //   FakebookArrayList instance, each one delimited by <delimiter>
     public String toString() {
-        String result = "";
-        
+        return FakebookRenderable.render(this);
+    }
+    
+    @Override
+    // [Append Function]
+    // MODIFIES: <out>
+    // EFFECTS:  appends the elements contained in this FakebookArrayList instance to
+    //   <out>, each one delimited by <delimiter>, or "[]" if that would be empty; this
+    //   takes time linear in the length of the output
+    public void appendTo(Appendable out) throws IOException {
         int num = size();
+        if (num == 0 || (num == 1 && "".equals(get(0)))) {
+            out.append("[]");
+            return;
+        }
         for (int idx = 0; idx < num; idx++) {
             if (idx != 0) {
-                result += delimiter;
+                out.append(delimiter);
+            }
+            FakebookRenderable.append(out, get(idx));
+        }
+    }
+    
+    @Override
+    // [Encode Function]
+    // MODIFIES: <out>
+    // EFFECTS:  writes one record of <section> holding the number of elements, then the
+    //   elements as records of <section> + 1
+    public void encodeTo(FakebookRecordWriter out, int query, int section) throws IOException {
+        out.record(query, section, size());
+        encodeRows(out, query, section + 1);
+    }
+    
+    // [Row Encode Function]
+    // MODIFIES: <out>
+    // EFFECTS:  writes every element as records starting in <section>: a
+    //   FakebookEncodable element writes itself, any other element is written as a
+    //   record holding its string representation
+    public void encodeRows(FakebookRecordWriter out, int query, int section) throws IOException {
+        for (T element : this) {
+            if (element instanceof FakebookEncodable) {
+                ((FakebookEncodable) element).encodeTo(out, query, section);
+            }
+            else {
+                out.record(query, section, element == null ? null : element.toString());
             }
-            result += get(idx);
         }
-
-		if (result.equals("")) {
-			return "[]";
-		}
-	    return result;
     }
     
     // Member Variables
     private String delimiter;
 }
+
+/*
+    The FakebookRowSink interface receives the rows of a query result one at a time, in
+    result order, as a streaming query produces them. A sink may write each row out as
+    it arrives, so the rows never have to be held in memory all at once.
+*/
+interface FakebookRowSink<T> {
+    // [Accept Function]
+    // EFFECTS:  consumes the next row of the result
+    void accept(T row) throws IOException;
+}
+
+/*
+    The DelimitedRowWriter class is a FakebookRowSink that appends each row to <out> as
+    soon as it is accepted, with <delimiter> between consecutive rows. Once every row has
+    been accepted, finish() completes the output, so the rows written are exactly what a
+    FakebookArrayList holding them would print.
+*/
+final class DelimitedRowWriter<T> implements FakebookRowSink<T> {
+    // [Constructor]
+    public DelimitedRowWriter(Appendable out, String delim) {
+        this.out = out;
+        delimiter = delim;
+        rows = 0L;
+    }
+
+    @Override
+    // [Accept Function]
+    // MODIFIES: <out>
+    // EFFECTS:  appends <row> to <out>, preceded by <delimiter> unless it is the first
+    public void accept(T row) throws IOException {
+        if (rows++ != 0) {
+            out.append(delimiter);
+        }
+        FakebookRenderable.append(out, row);
+    }
+
+    // [Finish Function]
+    // MODIFIES: <out>
+    // EFFECTS:  appends "[]" to <out> if no rows were accepted
+    public void finish() throws IOException {
+        if (rows == 0) {
+            out.append("[]");
+        }
+    }
+
+    // [Row Count Accessor]
+    public long rows() {
+        return rows;
+    }
+
+    // Member Variables
+    private final Appendable out;
+    private final String delimiter;
+    private long rows;
+}
+
+/*
+    The FakebookSettings class resolves the tunable settings of the Fakebook tools. A
+    setting named "fakebook.jdbc.url" is looked up, in order, as the system property
+    fakebook.jdbc.url, the environment variable FAKEBOOK_JDBC_URL, and the key
+    fakebook.jdbc.url in the properties file named by the "fakebook.config" system
+    property (or FAKEBOOK_CONFIG environment variable), falling back to the supplied
+    default if none of them is set. This class cannot be instantiated directly.
+*/
+final class FakebookSettings {
+    // [String Setting Function]
+    // EFFECTS:  returns the value of setting <key>, or <fallback> if it is not set
+    public static String get(String key, String fallback) {
+        String value = System.getProperty(key);
+        if (value == null) {
+            value = System.getenv(key.toUpperCase().replace('.', '_'));
+        }
+        if (value == null) {
+            value = file().getProperty(key);
+        }
+        return value == null ? fallback : value.trim();
+    }
+
+    // [Integer Setting Function]
+    // EFFECTS:  returns the value of setting <key> as an int, or <fallback> if it is not
+    //   set; throws an IllegalArgumentException if it is set but is not an integer
+    public static int getInt(String key, int fallback) {
+        return (int) getLong(key, fallback);
+    }
+
+    // [Long Setting Function]
+    // EFFECTS:  returns the value of setting <key> as a long, or <fallback> if it is not
+    //   set; throws an IllegalArgumentException if it is set but is not an integer
+    public static long getLong(String key, long fallback) {
+        String value = get(key, null);
+        if (value == null) {
+            return fallback;
+        }
+        try {
+            return Long.parseLong(value);
+        }
+        catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Setting " + key + " must be an integer, not '" + value + "'");
+        }
+    }
+
+    // [Boolean Setting Function]
+    // EFFECTS:  returns true if setting <key> is "true", "yes", or "1", false if it is
+    //   set to anything else, and <fallback> if it is not set
+    public static boolean getBoolean(String key, boolean fallback) {
+        String value = get(key, null);
+        if (value == null) {
+            return fallback;
+        }
+        return value.equalsIgnoreCase("true") || value.equalsIgnoreCase("yes") || value.equals("1");
+    }
+
+    // [Settings File Accessor]
+    // EFFECTS:  returns the contents of the settings file, reading it on first use; a
+    //   missing or unreadable file is reported once and treated as empty
+    private static synchronized Properties file() {
+        if (fileSettings == null) {
+            fileSettings = new Properties();
+            String path = System.getProperty("fakebook.config", System.getenv("FAKEBOOK_CONFIG"));
+            if (path != null) {
+                try (Reader reader = new FileReader(path)) {
+                    fileSettings.load(reader);
+                }
+                catch (IOException e) {
+                    System.err.println("Could not read settings file " + path + ": " + e.getMessage());
+                }
+            }
+        }
+        return fileSettings;
+    }
+
+    // [Constructor]
+    // EFFECTS:  throws an AssertionError
+    private FakebookSettings() {
+        throw new AssertionError();
+    }
+
+    // Member Variables
+    private static Properties fileSettings;
+}
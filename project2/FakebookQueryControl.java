@@ -0,0 +1,383 @@
+package project2;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.util.ArrayDeque;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/*
+    The QueryGuard class watches one query while it runs on a connection, so that it can
+    be cancelled from another thread or when its deadline passes. cancel() goes through
+    the FakebookStatementCache of the connection, which aborts the statement executing
+    and fails any statement the query prepares afterwards. Statement.cancel() is only a
+    request, and a driver may drop one that arrives just as a statement starts, so
+    cancel() repeats it every RetryMillis until finish() is called. finish() lifts the
+    cancellation, so it must be called before the connection goes back to the pool.
+    Deadlines and retries run on one daemon timer thread shared by the whole process.
+
+    A query that runs without a connection, or spends its time computing in memory
+    rather than waiting on a statement, cannot be stopped that way, so the guard is also
+    a flag that the computation polls. start() makes the guard the current() guard of
+    the calling thread until finish(); a long loop reads current() once, hands it to any
+    fork/join tasks it splits into, and stops early once cancelled() is true, throwing
+    the SQLTimeoutException of check() as soon as it can.
+*/
+final class QueryGuard {
+    // [Constructor]
+    private QueryGuard(FakebookStatementCache statements) {
+        this.statements = statements;
+        deadline = null;
+        cancelled = false;
+        finished = false;
+    }
+
+    // [Start Function]
+    // REQUIRES: <connection> is a valid JDBC connection, or NULL if the query runs
+    //           without one
+    // MODIFIES: the current guard of the calling thread
+    // EFFECTS:  returns a guard over the query about to run in the calling thread on
+    //   <connection>, which cancels it <timeoutMillis> milliseconds from now unless
+    //   <timeoutMillis> is 0
+    public static QueryGuard start(Connection connection, long timeoutMillis) throws SQLException {
+        final QueryGuard guard = new QueryGuard(connection == null ? null : FakebookStatementCache.forConnection(connection));
+        Current.set(guard);
+        if (timeoutMillis > 0) {
+            guard.deadline = timer().schedule(new Runnable() {
+                public void run() {
+                    guard.cancel();
+                }
+            }, timeoutMillis, TimeUnit.MILLISECONDS);
+        }
+        return guard;
+    }
+
+    // [Cancel Function]
+    // MODIFIES: this
+    // EFFECTS:  cancels the query, unless it has finished, and keeps cancelling it every
+    //   RetryMillis until it does
+    public synchronized void cancel() {
+        if (finished) {
+            return;
+        }
+        cancelled = true;
+        if (statements == null) {
+            return;
+        }
+        statements.cancel();
+        try {
+            timer().schedule(new Runnable() {
+                public void run() {
+                    cancel();
+                }
+            }, RetryMillis, TimeUnit.MILLISECONDS);
+        }
+        catch (RejectedExecutionException e) {
+            // the timer only stops with the process; the cancellation already sent has to do
+        }
+    }
+
+    // [Finish Function]
+    // MODIFIES: this
+    // EFFECTS:  records that the query is over, stops its deadline and any retries,
+    //   lifts the cancellation from the connection, and stops being the current guard
+    //   of the calling thread
+    public synchronized void finish() {
+        finished = true;
+        if (deadline != null) {
+            deadline.cancel(false);
+        }
+        if (statements != null) {
+            statements.reset();
+        }
+        if (Current.get() == this) {
+            Current.remove();
+        }
+    }
+
+    // [Cancelled Accessor]
+    // EFFECTS:  returns true if the query was cancelled, by a caller or its deadline; it
+    //   takes no lock, so loops can poll it
+    public boolean cancelled() {
+        return cancelled;
+    }
+
+    // [Check Function]
+    // EFFECTS:  throws an SQLTimeoutException if the query was cancelled
+    public void check() throws SQLTimeoutException {
+        if (cancelled) {
+            throw new SQLTimeoutException("The query was cancelled");
+        }
+    }
+
+    // [Current Guard Accessor]
+    // EFFECTS:  returns the guard started in the calling thread and not yet finished, or
+    //   a guard that is never cancelled if there is none
+    public static QueryGuard current() {
+        QueryGuard guard = Current.get();
+        return guard != null ? guard : None;
+    }
+
+    // [Timer Accessor]
+    // EFFECTS:  returns the shared timer, creating its thread on first use
+    public static synchronized ScheduledExecutorService timer() {
+        if (Timer == null) {
+            Timer = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+                public Thread newThread(Runnable runnable) {
+                    Thread thread = new Thread(runnable, "fakebook-query-timer");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+        return Timer;
+    }
+
+    // Member Variables
+    private final FakebookStatementCache statements;
+    private ScheduledFuture<?> deadline;
+    private volatile boolean cancelled;
+    private boolean finished;
+    private static final ThreadLocal<QueryGuard> Current = new ThreadLocal<QueryGuard>();
+    private static final QueryGuard None = new QueryGuard(null);
+    private static ScheduledExecutorService Timer;
+    private static final long RetryMillis = 100L;
+}
+
+/*
+    The QueryAdmission class keeps the heavy queries (by default the graph queries 4, 5,
+    and 6) from crowding out the cheap ones: at most <permits> heavy queries run at once,
+    and the rest wait in arrival order. It is a counting semaphore with a FIFO queue of
+    waiters, taken before a query borrows its connection, so a heavy query that waits
+    holds neither a connection nor a permit and cheap queries such as findAgeInfo are
+    admitted at once whatever the heavy ones are doing.
+
+    A waiter either blocks its thread (the admit function that takes a deadline) or
+    leaves a Runnable that is run once a permit has been handed to it (the admit function
+    that takes one), so that an executor never has a thread parked on the queue. Every
+    heavy query counts as admitted; the ones that had to wait also count as queued, with
+    the time they waited, and the ones whose deadline passed before their turn as timed
+    out. A waiter that is interrupted leaves the queue without being counted again.
+*/
+final class QueryAdmission {
+    // [Constructor]
+    // REQUIRES: <permits> > 0 and <heavy>[q] is true for every heavy query q
+    public QueryAdmission(int permits, boolean[] heavy) {
+        this.permits = permits;
+        this.heavy = heavy.clone();
+        waiting = new ArrayDeque<Waiter>();
+        running = 0;
+    }
+
+    // [Shared Instance Accessor]
+    // EFFECTS:  returns the process's admission controller, configured on first use by
+    //   the settings "fakebook.admission.permits" (default 2) and
+    //   "fakebook.admission.heavy" (a comma-separated list of query numbers, default
+    //   "4,5,6")
+    public static synchronized QueryAdmission shared() {
+        if (Shared == null) {
+            boolean[] heavy = new boolean[10];
+            for (String query : FakebookSettings.get("fakebook.admission.heavy", "4,5,6").split(",")) {
+                if (!query.trim().isEmpty()) {
+                    heavy[Integer.parseInt(query.trim())] = true;
+                }
+            }
+            Shared = new QueryAdmission(Math.max(1, FakebookSettings.getInt("fakebook.admission.permits", 2)), heavy);
+        }
+        return Shared;
+    }
+
+    // [Heavy Query Check]
+    // EFFECTS:  returns true if <query> must be admitted before it runs
+    public boolean isHeavy(int query) {
+        return query >= 0 && query < heavy.length && heavy[query];
+    }
+
+    // [Blocking Admit Function]
+    // MODIFIES: this
+    // EFFECTS:  returns once <query> may run, waiting for a permit if it is heavy; throws
+    //   an SQLTimeoutException if no permit is handed to it within <timeoutMillis>
+    //   milliseconds (never, if <timeoutMillis> is 0), or an SQLException if the thread
+    //   is interrupted while it waits
+    public void admit(int query, long timeoutMillis) throws SQLException {
+        Waiter waiter = enqueue(query, null);
+        if (waiter == null) {
+            return;
+        }
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        InterruptedException interrupted = null;
+        synchronized (waiter) {
+            try {
+                while (!waiter.granted) {
+                    long remaining = deadline - System.nanoTime();
+                    if (timeoutMillis > 0 && remaining <= 0L) {
+                        break;
+                    }
+                    waiter.wait(timeoutMillis > 0 ? Math.max(1L, TimeUnit.NANOSECONDS.toMillis(remaining)) : 0L);
+                }
+            }
+            catch (InterruptedException e) {
+                interrupted = e;
+            }
+        }
+        // withdraw() and release() lock the controller before the waiter, so they are only
+        // called once the waiter is unlocked
+        if (interrupted != null) {
+            Thread.currentThread().interrupt();
+            if (!withdraw(waiter, false)) {
+                release(query);                               // the permit came too late
+            }
+            throw new SQLException("Interrupted while waiting to run query " + query, interrupted);
+        }
+        if (withdraw(waiter, true)) {
+            throw new SQLTimeoutException("Query " + query + " waited " + timeoutMillis +
+                " ms for one of " + permits + " heavy query permits");
+        }
+    }
+
+    // [Callback Admit Function]
+    // MODIFIES: this
+    // EFFECTS:  returns true if <query> may run now; otherwise queues it and returns
+    //   false, and <resume> is run, on the thread that releases a permit, once the
+    //   permit has been handed to <query>
+    public boolean admit(int query, Runnable resume) {
+        return enqueue(query, resume) == null;
+    }
+
+    // [Release Function]
+    // REQUIRES: <query> was admitted and has not been released
+    // MODIFIES: this
+    // EFFECTS:  gives the permit of <query>, if it is heavy, to the longest waiting query,
+    //   or back to the pool of permits if none is waiting
+    public void release(int query) {
+        if (!isHeavy(query)) {
+            return;
+        }
+        Waiter next;
+        synchronized (this) {
+            next = waiting.poll();
+            if (next == null) {
+                running--;
+                return;
+            }
+            long waited = System.nanoTime() - next.since;
+            waitNanos += waited;
+            maxWaitNanos = Math.max(maxWaitNanos, waited);
+            synchronized (next) {
+                next.granted = true;                          // withdraw() now sees it admitted
+            }
+        }
+        next.wake();
+    }
+
+    // [Statistics Accessors]
+    public synchronized int running() {
+        return running;
+    }
+
+    public synchronized int waiting() {
+        return waiting.size();
+    }
+
+    public synchronized long admitted() {
+        return admitted;
+    }
+
+    public synchronized long queued() {
+        return queued;
+    }
+
+    public synchronized long timedOut() {
+        return timedOut;
+    }
+
+    // [Statistics Report Function]
+    // EFFECTS:  returns a one-line summary of the heavy queries admitted so far
+    public synchronized String report() {
+        return String.format("Admission: %d heavy query(ies) admitted, %d queued (mean wait %.3f s, max %.3f s), "
+            + "%d timed out, %d running, %d waiting",
+            admitted, queued, queued == 0 ? 0.0 : waitNanos / 1.0e9 / queued, maxWaitNanos / 1.0e9,
+            timedOut, running, waiting.size());
+    }
+
+    // MODIFIES: this
+    // EFFECTS:  takes a permit for <query> and returns NULL if it is not heavy or a
+    //   permit is free; otherwise queues and returns a waiter that resumes with <resume>
+    private synchronized Waiter enqueue(int query, Runnable resume) {
+        if (!isHeavy(query)) {
+            return null;
+        }
+        admitted++;
+        if (running < permits && waiting.isEmpty()) {
+            running++;
+            return null;
+        }
+        queued++;
+        Waiter waiter = new Waiter(resume);
+        waiting.add(waiter);
+        return waiter;
+    }
+
+    // MODIFIES: this
+    // EFFECTS:  takes <waiter> out of the queue, counting it as timed out if <timedOut> is
+    //   true, and returns true if no permit was handed to it yet; otherwise leaves it
+    //   admitted and returns false
+    private synchronized boolean withdraw(Waiter waiter, boolean timedOut) {
+        synchronized (waiter) {
+            if (waiter.granted) {
+                return false;
+            }
+            waiting.remove(waiter);
+            if (timedOut) {
+                this.timedOut++;
+            }
+            return true;
+        }
+    }
+
+    /*
+        A Waiter is one heavy query waiting for a permit, since System.nanoTime()
+        <since>. A permit is handed to it by setting <granted> while the controller is
+        locked, and then wake() lets the thread blocked on it go or runs its <resume>
+        callback.
+    */
+    private static final class Waiter {
+        Waiter(Runnable resume) {
+            this.resume = resume;
+            since = System.nanoTime();
+            granted = false;
+        }
+
+        // REQUIRES: <granted> is true
+        // EFFECTS:  wakes the thread blocked on this waiter or runs its callback
+        void wake() {
+            synchronized (this) {
+                notifyAll();
+            }
+            if (resume != null) {
+                resume.run();
+            }
+        }
+
+        final Runnable resume;
+        final long since;
+        boolean granted;
+    }
+
+    // Member Variables
+    private final int permits;
+    private final boolean[] heavy;
+    private final ArrayDeque<Waiter> waiting;
+    private int running;
+    private long admitted;
+    private long queued;
+    private long timedOut;
+    private long waitNanos;
+    private long maxWaitNanos;
+    private static QueryAdmission Shared;
+}
@@ -0,0 +1,377 @@
+package project2;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.reflect.Method;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import javax.sql.DataSource;
+
+/*
+    The FakebookOracleFactory interface creates the FakebookOracle implementation that
+    answers queries on a particular connection.
+*/
+interface FakebookOracleFactory {
+    // REQUIRES: <connection> is a valid JDBC connection, or NULL if needsConnection()
+    //           returns false
+    FakebookOracle create(Connection connection);
+
+    // [Connection Requirement Function]
+    // EFFECTS:  returns false if the oracles this factory creates never use their
+    //   connection, so callers need not open one
+    default boolean needsConnection() {
+        return true;
+    }
+
+    // [Engine Lookup Function]
+    // EFFECTS:  returns the factory of the engine named <engine>: "student" for
+    //   StudentFakebookOracle, "memory" for InMemoryFakebookOracle, or "snapshot" for
+    //   SnapshotFakebookOracle reading the file named by the fakebook.snapshot.file
+    //   setting (default "fakebook.snapshot"); "cached:" before any of these puts one
+    //   CachingFakebookOracle.factory() cache in front of every oracle of the engine
+    static FakebookOracleFactory forEngine(String engine) {
+        if (engine.startsWith(CachedPrefix)) {
+            return CachingFakebookOracle.factory(forEngine(engine.substring(CachedPrefix.length())));
+        }
+        if (engine.equals("student")) {
+            return new FakebookOracleFactory() {
+                public FakebookOracle create(Connection connection) {
+                    return new StudentFakebookOracle(connection);
+                }
+            };
+        }
+        if (engine.equals("memory")) {
+            return new FakebookOracleFactory() {
+                public FakebookOracle create(Connection connection) {
+                    return new InMemoryFakebookOracle(connection);
+                }
+            };
+        }
+        if (engine.equals("snapshot")) {
+            return SnapshotFakebookOracle.factory(
+                new File(FakebookSettings.get("fakebook.snapshot.file", FakebookSnapshot.DefaultFile)));
+        }
+        throw new IllegalArgumentException("Unknown engine: " + engine);
+    }
+
+    // Member Variables
+    static final String CachedPrefix = "cached:";
+}
+
+/*
+    The QueryResult class holds the outcome of one query run by a FakebookQueryRunner:
+    the query number, the oracle that answered it, the value it returned, how long the
+    query itself took, and, if JdbcMetrics is enabled, what it did over JDBC.
+*/
+final class QueryResult {
+    // [Constructor]
+    public QueryResult(int query, FakebookOracle oracle, Object value, long nanos, JdbcMetrics metrics) {
+        this.query = query;
+        this.oracle = oracle;
+        this.value = value;
+        this.nanos = nanos;
+        this.metrics = metrics;
+    }
+
+    // [Print Function]
+    // EFFECTS:  writes the result to <writer> through the oracle's printQueryN function
+    public void print(Writer writer) throws IOException {
+        FakebookQueryRunner.print(oracle, writer, query, value);
+    }
+
+    // [Accessors]
+    public int query() {
+        return query;
+    }
+
+    public double seconds() {
+        return nanos / 1.0e9;
+    }
+
+    // EFFECTS:  returns the JDBC metrics of the query, or NULL if none were recorded
+    public JdbcMetrics metrics() {
+        return metrics;
+    }
+
+    // Member Variables
+    private final int query;
+    private final FakebookOracle oracle;
+    private final Object value;
+    private final long nanos;
+    private final JdbcMetrics metrics;
+}
+
+/*
+    The FakebookQueryRunner class runs the ten standard queries, each on its own
+    connection borrowed from <pool>, on the threads of <executor>. The queries are
+    independent of one another, so running them concurrently makes the wall time of a
+    full run approach that of the slowest query rather than the sum of all of them.
+    Results are handed back as futures in query order, so callers can print them in the
+    same order as a serial run. Each query is bounded by its own deadline rather than
+    the whole run by one, and the heavy graph queries take turns through QueryAdmission
+    so that they cannot hold every connection while the cheap queries wait.
+*/
+final class FakebookQueryRunner {
+    // [Constructor]
+    // REQUIRES: <pool> can lend as many connections as <executor> runs tasks at once,
+    //           or borrowers will wait for connections to be returned
+    public FakebookQueryRunner(DataSource pool, FakebookOracleFactory factory, ExecutorService executor) {
+        this.pool = pool;
+        this.factory = factory;
+        this.executor = executor;
+    }
+
+    // [Executor Factory Function]
+    // EFFECTS:  returns the executor named by the "fakebook.executor" setting: "virtual"
+    //   (one virtual thread per query, used by default when the JDK has them), "fixed"
+    //   (a pool of "fakebook.threads" platform threads, 10 by default, used by default
+    //   otherwise), or "serial" (a single thread, which runs the queries one by one)
+    public static ExecutorService newExecutor() {
+        String kind = FakebookSettings.get("fakebook.executor", null);
+        if (kind == null || kind.equals("virtual")) {
+            try {
+                Method virtual = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+                return (ExecutorService) virtual.invoke(null);
+            }
+            catch (ReflectiveOperationException e) {
+                if (kind != null) {
+                    System.err.println("Virtual threads are not available; using a fixed thread pool");
+                }
+                kind = "fixed";
+            }
+        }
+        if (kind.equals("fixed")) {
+            return Executors.newFixedThreadPool(FakebookSettings.getInt("fakebook.threads", 10));
+        }
+        if (kind.equals("serial")) {
+            return Executors.newSingleThreadExecutor();
+        }
+        throw new IllegalArgumentException("Unknown executor: " + kind);
+    }
+
+    // [Submit Function]
+    // REQUIRES: 0 <= <start> <= <stop> <= 10
+    // EFFECTS:  submits queries <start> through <stop> - 1 and returns their futures in
+    //   query order
+    public List<Future<QueryResult>> submit(int start, int stop) {
+        List<Future<QueryResult>> futures = new ArrayList<Future<QueryResult>>();
+        for (int query = start; query < stop; query++) {
+            final int number = query;
+            futures.add(executor.submit(new Callable<QueryResult>() {
+                public QueryResult call() throws SQLException {
+                    return run(number);
+                }
+            }));
+        }
+        return futures;
+    }
+
+    // [Run Function]
+    // REQUIRES: 0 <= <query> <= 9
+    // EFFECTS:  runs <query> in the calling thread on a borrowed connection, or on none
+    //   if the factory's oracles do not need one. A heavy query first waits for a permit
+    //   from the shared QueryAdmission. If the query is still running deadlineMillis(<query>)
+    //   milliseconds after it was submitted to run, it is cancelled through a QueryGuard,
+    //   and if it has not returned by then this throws an SQLTimeoutException instead of
+    //   returning whatever the oracle made of the cancellation
+    public QueryResult run(int query) throws SQLException {
+        long timeoutMillis = deadlineMillis(query);
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        QueryAdmission admission = QueryAdmission.shared();
+        admission.admit(query, timeoutMillis);
+        try (Connection connection = factory.needsConnection() ? pool.getConnection() : null) {
+            long remaining = timeoutMillis > 0 ? TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime()) : 0L;
+            QueryGuard guard = QueryGuard.start(connection, timeoutMillis > 0 ? Math.max(1L, remaining) : 0L);
+            QueryResult result;
+            try {
+                result = run(factory.create(connection), query);
+            }
+            catch (SQLException e) {
+                if (!guard.cancelled()) {
+                    throw e;
+                }
+                result = null;                                // reported as the timeout below
+            }
+            finally {
+                guard.finish();
+            }
+            if (guard.cancelled() || (timeoutMillis > 0 && System.nanoTime() - deadline > 0L)) {
+                throw new SQLTimeoutException("Query " + query + " missed its deadline of " + timeoutMillis + " ms");
+            }
+            return result;
+        }
+        finally {
+            admission.release(query);
+        }
+    }
+
+    // [Deadline Function]
+    // EFFECTS:  returns the number of milliseconds <query> may take, waiting for
+    //   admission included, from the setting "fakebook.deadlineMillis.<query>", then
+    //   "fakebook.deadlineMillis"; 0, the default, means no deadline
+    public static long deadlineMillis(int query) {
+        return FakebookSettings.getLong("fakebook.deadlineMillis." + query,
+            FakebookSettings.getLong("fakebook.deadlineMillis", 0L));
+    }
+
+    // EFFECTS:  runs <query> against <oracle> and times it, recording its JDBC metrics
+    //   if they are enabled
+    private static QueryResult run(FakebookOracle oracle, int query) throws SQLException {
+        JdbcMetrics metrics = JdbcMetrics.enabled() ? JdbcMetrics.begin(query, Methods[query]) : null;
+        long begin = System.nanoTime();
+        try {
+            Object value = execute(oracle, query);
+            return new QueryResult(query, oracle, value, System.nanoTime() - begin, metrics);
+        }
+        finally {
+            if (metrics != null) {
+                metrics.end();
+            }
+        }
+    }
+
+    // [Execute Function]
+    // REQUIRES: 0 <= <query> <= 9
+    // EFFECTS:  returns the result of running <query> against <oracle> with the standard
+    //   arguments
+    public static Object execute(FakebookOracle oracle, int query) throws SQLException {
+        switch (query) {
+            case 0:
+                return oracle.findMonthOfBirthInfo();
+            case 1:
+                return oracle.findNameInfo();
+            case 2:
+                return oracle.lonelyUsersCompact();
+            case 3:
+                return oracle.liveAwayFromHomeCompact();
+            case 4:
+                return oracle.findPhotosWithMostTags(5);
+            case 5:
+                return oracle.matchMaker(5, 2);
+            case 6:
+                return oracle.suggestFriends(5);
+            case 7:
+                return oracle.findEventStates();
+            case 8:
+                return oracle.findAgeInfo(215L);
+            case 9:
+                return oracle.findPotentialSiblingsCompact();
+            default:
+                throw new IllegalArgumentException("No such query: " + query);
+        }
+    }
+
+    // [Print Function]
+    // REQUIRES: <value> was returned by execute(<oracle>, <query>)
+    // EFFECTS:  writes <value> to <writer> through the matching printQueryN function
+    @SuppressWarnings("unchecked")
+    public static void print(FakebookOracle oracle, Writer writer, int query, Object value) throws IOException {
+        switch (query) {
+            case 0:
+                oracle.printQuery0(writer, (BirthMonthInfo) value);
+                break;
+            case 1:
+                oracle.printQuery1(writer, (FirstNameInfo) value);
+                break;
+            case 2:
+                oracle.printQuery2(writer, (FakebookUserList) value);
+                break;
+            case 3:
+                oracle.printQuery3(writer, (FakebookUserList) value);
+                break;
+            case 4:
+                oracle.printQuery4(writer, (FakebookArrayList<TaggedPhotoInfo>) value);
+                break;
+            case 5:
+                oracle.printQuery5(writer, (FakebookArrayList<MatchPair>) value);
+                break;
+            case 6:
+                oracle.printQuery6(writer, (FakebookArrayList<UsersPair>) value);
+                break;
+            case 7:
+                oracle.printQuery7(writer, (EventStateInfo) value);
+                break;
+            case 8:
+                oracle.printQuery8(writer, (AgeInfo) value);
+                break;
+            case 9:
+                oracle.printQuery9(writer, (FakebookSiblingList) value);
+                break;
+            default:
+                throw new IllegalArgumentException("No such query: " + query);
+        }
+    }
+
+    // [Stream Function]
+    // REQUIRES: 0 <= <query> <= 9
+    // EFFECTS:  runs <query> against <oracle> with the standard arguments and writes its
+    //   result to <writer>; queries 2, 3, and 9 write each row as it is produced instead
+    //   of building the whole result first
+    public static void stream(FakebookOracle oracle, Writer writer, int query) throws SQLException, IOException {
+        switch (query) {
+            case 2:
+                oracle.streamQuery2(writer);
+                break;
+            case 3:
+                oracle.streamQuery3(writer);
+                break;
+            case 9:
+                oracle.streamQuery9(writer);
+                break;
+            default:
+                print(oracle, writer, query, execute(oracle, query));
+                break;
+        }
+    }
+
+    // [Encode Function]
+    // REQUIRES: 0 <= <query> <= 9
+    // EFFECTS:  runs <query> against <oracle> with the standard arguments and writes its
+    //   result to <out> as binary records, starting with its summary record in section
+    //   0; like stream(), queries 2, 3, and 9 write each row as it is produced. A query
+    //   that returns NULL writes a summary record without fields
+    public static void encode(FakebookOracle oracle, FakebookRecordWriter out, int query) throws SQLException, IOException {
+        switch (query) {
+            case 2:
+                out.record(query, 0, oracle.countLonelyUsers());
+                oracle.lonelyUsers(new RecordRowWriter<UserInfo>(out, query, 1));
+                break;
+            case 3:
+                out.record(query, 0, oracle.countLiveAwayFromHome());
+                oracle.liveAwayFromHome(new RecordRowWriter<UserInfo>(out, query, 1));
+                break;
+            case 9:
+                out.record(query, 0, oracle.countPotentialSiblings());
+                oracle.findPotentialSiblings(new RecordRowWriter<SiblingInfo>(out, query, 1));
+                break;
+            default:
+                Object value = execute(oracle, query);
+                if (value != null) {
+                    ((FakebookEncodable) value).encodeTo(out, query, 0);
+                }
+                else {
+                    out.begin(query, 0);
+                    out.end();
+                }
+                break;
+        }
+    }
+
+    // Member Variables
+    private final DataSource pool;
+    private final FakebookOracleFactory factory;
+    private final ExecutorService executor;
+    private static final String[] Methods = {
+        "findMonthOfBirthInfo", "findNameInfo", "lonelyUsers", "liveAwayFromHome", "findPhotosWithMostTags",
+        "matchMaker", "suggestFriends", "findEventStates", "findAgeInfo", "findPotentialSiblings"
+    };
+}
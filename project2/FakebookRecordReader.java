@@ -0,0 +1,211 @@
+package project2;
+
+import java.io.Closeable;
+import java.io.FileDescriptor;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.Arrays;
+
+/*
+    The FakebookRecordReader class decodes a stream of records written by
+    FakebookRecordWriter. next() reads the records one at a time; after it returns true,
+    query() and section() identify the record and field() returns each of its fields as
+    a Long, a String, or NULL. The reader depends on nothing else in this package, so
+    this file can be handed to whoever consumes the records.
+
+    Run on its own, it prints every record of the file named by its first argument, or
+    of the standard input, as one line of tab-separated values: the query, the section,
+    and the fields, with NULL printed as "\N".
+*/
+public final class FakebookRecordReader implements Closeable {
+    // [Constructor]
+    // EFFECTS:  starts reading records from <channel>, which is closed by close(); throws
+    //   an IOException if <channel> does not start with a record stream
+    public FakebookRecordReader(ReadableByteChannel channel) throws IOException {
+        this.channel = channel;
+        buffer = ByteBuffer.allocate(1 << 16);
+        buffer.flip();
+        fields = new Object[16];
+        count = 0;
+        byte[] magic = new byte[Magic.length];
+        if (!fill(magic.length)) {
+            throw new IOException("Not a Fakebook record stream");
+        }
+        buffer.get(magic);
+        if (!Arrays.equals(magic, Magic)) {
+            throw new IOException("Not a Fakebook record stream");
+        }
+    }
+
+    // [Open Function]
+    // EFFECTS:  returns a reader of the file <file>, or of the standard input if <file>
+    //   is "-"
+    public static FakebookRecordReader open(String file) throws IOException {
+        return new FakebookRecordReader(file.equals("-") ? new FileInputStream(FileDescriptor.in).getChannel()
+            : FileChannel.open(Paths.get(file)));
+    }
+
+    // [Next Function]
+    // MODIFIES: this
+    // EFFECTS:  reads the next record and returns true, or returns false at the end of
+    //   the stream; throws an IOException if the stream ends inside a record or a
+    //   record is malformed
+    public boolean next() throws IOException {
+        if (!fill(4)) {
+            if (buffer.hasRemaining()) {
+                throw new IOException("Truncated record");
+            }
+            return false;
+        }
+        int length = buffer.getInt();
+        if (length < 2 || !fill(length)) {
+            throw new IOException("Truncated record");
+        }
+        int end = buffer.position() + length;
+        query = buffer.get() & 0xff;
+        section = buffer.get() & 0xff;
+        count = 0;
+        while (buffer.position() < end) {
+            if (count == fields.length) {
+                fields = Arrays.copyOf(fields, count * 2);
+            }
+            fields[count++] = getField();
+        }
+        if (buffer.position() != end) {
+            throw new IOException("Malformed record");
+        }
+        return true;
+    }
+
+    // [Record Accessors]
+    // REQUIRES: next() returned true
+    public int query() {
+        return query;
+    }
+
+    public int section() {
+        return section;
+    }
+
+    public int fields() {
+        return count;
+    }
+
+    // REQUIRES: 0 <= <idx> < fields()
+    // EFFECTS:  returns field <idx> of the record, a Long, a String, or NULL
+    public Object field(int idx) {
+        if (idx < 0 || idx >= count) {
+            throw new IndexOutOfBoundsException("Index: " + idx + ", Fields: " + count);
+        }
+        return fields[idx];
+    }
+
+    // [Close Function]
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    // [Main Function]
+    // Prints the records of the file named by args[0], or of the standard input if
+    // there is no argument or it is "-", one per line
+    public static void main(String[] args) {
+        try (FakebookRecordReader in = open(args.length > 0 ? args[0] : "-")) {
+            Writer out = new OutputStreamWriter(System.out, StandardCharsets.UTF_8);
+            while (in.next()) {
+                out.write(Integer.toString(in.query()));
+                out.write('\t');
+                out.write(Integer.toString(in.section()));
+                for (int idx = 0; idx < in.fields(); idx++) {
+                    out.write('\t');
+                    out.write(in.field(idx) == null ? "\\N" : in.field(idx).toString());
+                }
+                out.write('\n');
+            }
+            out.flush();
+        }
+        catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    // MODIFIES: this
+    // EFFECTS:  reads one field of the current record
+    private Object getField() throws IOException {
+        byte type = buffer.get();
+        switch (type) {
+            case NullField:
+                return null;
+            case LongField:
+                long value = getVarint();
+                return (value >>> 1) ^ -(value & 1);
+            case StringField:
+                int length = (int) getVarint();
+                String string = new String(buffer.array(), buffer.arrayOffset() + buffer.position(), length,
+                    StandardCharsets.UTF_8);
+                buffer.position(buffer.position() + length);
+                return string;
+            default:
+                throw new IOException("Unknown field type " + type);
+        }
+    }
+
+    // MODIFIES: this
+    // EFFECTS:  reads an unsigned LEB128 integer
+    private long getVarint() {
+        long value = 0L;
+        int shift = 0;
+        byte b;
+        do {
+            b = buffer.get();
+            value |= (long) (b & 0x7f) << shift;
+            shift += 7;
+        } while (b < 0);
+        return value;
+    }
+
+    // MODIFIES: this
+    // EFFECTS:  reads from the channel until at least <more> bytes are buffered, growing
+    //   the buffer if it is too small, and returns false if the stream ends first
+    private boolean fill(int more) throws IOException {
+        if (buffer.remaining() >= more) {
+            return true;
+        }
+        if (buffer.capacity() < more) {
+            ByteBuffer larger = ByteBuffer.allocate(Math.max(buffer.capacity() * 2, more));
+            larger.put(buffer);
+            buffer = larger;
+        }
+        else {
+            buffer.compact();
+        }
+        while (buffer.position() < more) {
+            if (channel.read(buffer) < 0) {
+                buffer.flip();
+                return false;
+            }
+        }
+        buffer.flip();
+        return true;
+    }
+
+    // Field Types, as written by FakebookRecordWriter
+    private static final byte NullField = 0;
+    private static final byte LongField = 1;
+    private static final byte StringField = 2;
+
+    // Member Variables
+    private static final byte[] Magic = {'F', 'B', 'R', 'E', 'C', '0', '0', '1'};
+    private final ReadableByteChannel channel;
+    private ByteBuffer buffer;
+    private Object[] fields;
+    private int count;
+    private int query;
+    private int section;
+}
@@ -0,0 +1,319 @@
+package project2;
+
+import java.io.Closeable;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/*
+    The FakebookEncodable interface is implemented by query results that can write
+    themselves as binary records through a FakebookRecordWriter, the counterpart of
+    FakebookRenderable for the binary output mode. A result writes one record for itself
+    in the section it is given and one record per element of each of its lists in the
+    sections after it, so no String is formatted for any row.
+*/
+interface FakebookEncodable {
+    // [Encode Function]
+    // MODIFIES: <out>
+    // EFFECTS:  writes this object as records of <query>, starting in <section>
+    void encodeTo(FakebookRecordWriter out, int query, int section) throws IOException;
+}
+
+/*
+    The FakebookRecordWriter class writes query results as length-prefixed binary
+    records, the format read back by FakebookRecordReader. A stream starts with the
+    8-byte magic number "FBREC001" and is followed by records, each of which is
+        - its length in bytes, not counting the length itself, as a 4-byte big-endian int,
+        - the number of the query it belongs to, as one byte,
+        - the section of the result it belongs to, as one byte, and
+        - its fields, each a one-byte type followed by its value: NullField has no value,
+          LongField a zigzag-encoded LEB128 integer, and StringField the LEB128 length of
+          its UTF-8 bytes followed by the bytes.
+    Section 0 holds one summary record per query and starts its result; see the
+    encodeTo functions of the query results for the fields and sections of each query.
+
+    Records are assembled in a direct ByteBuffer and written to the channel only when
+    the buffer is full or the writer is flushed, so a FileChannel gets them without a
+    copy through the Java heap. A record is always written whole: when the buffer fills
+    up, the complete records in it are written and the partial one is moved to the front.
+    Strings are encoded to UTF-8 straight into the buffer.
+*/
+final class FakebookRecordWriter implements Closeable {
+    // [Constructor]
+    // REQUIRES: <capacity> >= 16
+    // EFFECTS:  starts a stream of records on <channel>, which is closed by close()
+    public FakebookRecordWriter(WritableByteChannel channel, int capacity) throws IOException {
+        this.channel = channel;
+        buffer = ByteBuffer.allocateDirect(capacity);
+        recordStart = -1;
+        records = 0L;
+        bytes = 0L;
+        buffer.put(Magic);
+    }
+
+    // [Open Function]
+    // EFFECTS:  returns a writer that replaces the contents of the file <file>, or
+    //   writes to the standard output if <file> is "-", with a buffer of
+    //   "fakebook.binary.bufferSize" bytes (64 KiB by default)
+    public static FakebookRecordWriter open(String file) throws IOException {
+        FileChannel channel = file.equals("-") ? new FileOutputStream(FileDescriptor.out).getChannel()
+            : FileChannel.open(Paths.get(file), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        return new FakebookRecordWriter(channel, Math.max(16, FakebookSettings.getInt("fakebook.binary.bufferSize", 1 << 16)));
+    }
+
+    // [Begin Function]
+    // REQUIRES: 0 <= <query>, <section> <= 255 and no record is open
+    // MODIFIES: this
+    // EFFECTS:  opens a record of <section> of <query>; its fields follow
+    public void begin(int query, int section) throws IOException {
+        ensure(6);
+        recordStart = buffer.position();
+        buffer.putInt(0);
+        buffer.put((byte) query);
+        buffer.put((byte) section);
+    }
+
+    // [Field Functions]
+    // REQUIRES: a record is open
+    // MODIFIES: this
+    // EFFECTS:  append one field to the open record; putUser() appends the ID, first name,
+    //   and last name of a user as three fields, or three NULL fields if <user> is NULL
+    public void putLong(long value) throws IOException {
+        ensure(11);
+        buffer.put(LongField);
+        putVarint((value << 1) ^ (value >> 63));
+    }
+
+    public void putString(String value) throws IOException {
+        if (value == null) {
+            ensure(1);
+            buffer.put(NullField);
+            return;
+        }
+        int length = utf8Length(value);
+        ensure(11 + length);
+        buffer.put(StringField);
+        putVarint(length);
+        for (int idx = 0; idx < value.length(); idx++) {
+            char c = value.charAt(idx);
+            if (c < 0x80) {
+                buffer.put((byte) c);
+            }
+            else if (c < 0x800) {
+                buffer.put((byte) (0xc0 | (c >> 6)));
+                buffer.put((byte) (0x80 | (c & 0x3f)));
+            }
+            else if (isPair(value, idx)) {
+                int code = Character.toCodePoint(c, value.charAt(++idx));
+                buffer.put((byte) (0xf0 | (code >> 18)));
+                buffer.put((byte) (0x80 | ((code >> 12) & 0x3f)));
+                buffer.put((byte) (0x80 | ((code >> 6) & 0x3f)));
+                buffer.put((byte) (0x80 | (code & 0x3f)));
+            }
+            else if (Character.isSurrogate(c)) {
+                buffer.put((byte) '?');                       // as String.getBytes() would
+            }
+            else {
+                buffer.put((byte) (0xe0 | (c >> 12)));
+                buffer.put((byte) (0x80 | ((c >> 6) & 0x3f)));
+                buffer.put((byte) (0x80 | (c & 0x3f)));
+            }
+        }
+    }
+
+    public void putUser(long id, String firstName, String lastName) throws IOException {
+        putLong(id);
+        putString(firstName);
+        putString(lastName);
+    }
+
+    public void putUser(UserInfo user) throws IOException {
+        if (user == null) {
+            ensure(3);
+            buffer.put(NullField).put(NullField).put(NullField);
+            return;
+        }
+        putUser(user.getUserID(), user.getFirstName(), user.getLastName());
+    }
+
+    // [End Function]
+    // REQUIRES: a record is open
+    // MODIFIES: this
+    // EFFECTS:  closes the open record by filling in its length
+    public void end() {
+        buffer.putInt(recordStart, buffer.position() - recordStart - 4);
+        recordStart = -1;
+        records++;
+    }
+
+    // [Record Function]
+    // MODIFIES: this
+    // EFFECTS:  writes a record of <section> of <query> holding only <value>
+    public void record(int query, int section, long value) throws IOException {
+        begin(query, section);
+        putLong(value);
+        end();
+    }
+
+    public void record(int query, int section, String value) throws IOException {
+        begin(query, section);
+        putString(value);
+        end();
+    }
+
+    // [Flush Function]
+    // REQUIRES: no record is open
+    // MODIFIES: this
+    // EFFECTS:  writes every buffered record to the channel
+    public void flush() throws IOException {
+        drain();
+    }
+
+    // [Close Function]
+    // MODIFIES: this
+    // EFFECTS:  writes every complete record still buffered and closes the channel; a
+    //   record left open is dropped
+    public void close() throws IOException {
+        try {
+            if (recordStart >= 0) {
+                buffer.position(recordStart);
+                recordStart = -1;
+            }
+            drain();
+        }
+        finally {
+            channel.close();
+        }
+    }
+
+    // [Statistics Accessors]
+    public long records() {
+        return records;
+    }
+
+    public long bytes() {
+        return bytes + buffer.position();
+    }
+
+    // MODIFIES: this
+    // EFFECTS:  makes room for <more> bytes in the buffer, writing out the complete
+    //   records in it, or growing it if the open record alone does not leave enough room
+    private void ensure(int more) throws IOException {
+        if (buffer.remaining() >= more) {
+            return;
+        }
+        drain();
+        if (buffer.remaining() < more) {
+            ByteBuffer larger = ByteBuffer.allocateDirect(Math.max(buffer.capacity() * 2, buffer.position() + more));
+            buffer.flip();
+            larger.put(buffer);
+            buffer = larger;
+        }
+    }
+
+    // MODIFIES: this
+    // EFFECTS:  writes everything before the open record, or everything if no record is
+    //   open, to the channel and moves the rest to the front of the buffer
+    private void drain() throws IOException {
+        int end = buffer.position();
+        int keep = recordStart >= 0 ? recordStart : end;
+        buffer.flip();
+        buffer.limit(keep);
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.limit(end);
+        buffer.compact();
+        bytes += keep;
+        if (recordStart >= 0) {
+            recordStart = 0;
+        }
+    }
+
+    // REQUIRES: the buffer has room for 10 more bytes
+    // EFFECTS:  appends <value> as an unsigned LEB128 integer
+    private void putVarint(long value) {
+        while ((value & ~0x7fL) != 0L) {
+            buffer.put((byte) ((value & 0x7f) | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+    }
+
+    // EFFECTS:  returns the number of bytes in the UTF-8 encoding of <value>
+    private static int utf8Length(String value) {
+        int length = 0;
+        for (int idx = 0; idx < value.length(); idx++) {
+            char c = value.charAt(idx);
+            if (c < 0x80) {
+                length += 1;
+            }
+            else if (c < 0x800) {
+                length += 2;
+            }
+            else if (isPair(value, idx)) {
+                length += 4;
+                idx++;
+            }
+            else {
+                length += Character.isSurrogate(c) ? 1 : 3;
+            }
+        }
+        return length;
+    }
+
+    // EFFECTS:  returns true if the chars of <value> at <idx> and <idx> + 1 form a
+    //   surrogate pair
+    private static boolean isPair(String value, int idx) {
+        return Character.isHighSurrogate(value.charAt(idx)) && idx + 1 < value.length()
+            && Character.isLowSurrogate(value.charAt(idx + 1));
+    }
+
+    // Field Types
+    static final byte NullField = 0;
+    static final byte LongField = 1;
+    static final byte StringField = 2;
+
+    // Member Variables
+    public static final String DefaultFile = "fakebook.records";
+    static final byte[] Magic = {'F', 'B', 'R', 'E', 'C', '0', '0', '1'};
+    private final WritableByteChannel channel;
+    private ByteBuffer buffer;
+    private int recordStart;
+    private long records;
+    private long bytes;
+}
+
+/*
+    The RecordRowWriter class is a FakebookRowSink that writes each row it accepts to a
+    FakebookRecordWriter as soon as it is accepted, as records of <section> of <query>.
+    It lets the streaming queries write their rows in the binary output mode without
+    holding them in memory.
+*/
+final class RecordRowWriter<T extends FakebookEncodable> implements FakebookRowSink<T> {
+    // [Constructor]
+    public RecordRowWriter(FakebookRecordWriter out, int query, int section) {
+        this.out = out;
+        this.query = query;
+        this.section = section;
+    }
+
+    @Override
+    // [Accept Function]
+    // MODIFIES: <out>
+    // EFFECTS:  writes <row> to <out>
+    public void accept(T row) throws IOException {
+        row.encodeTo(out, query, section);
+    }
+
+    // Member Variables
+    private final FakebookRecordWriter out;
+    private final int query;
+    private final int section;
+}
@@ -0,0 +1,146 @@
+package project2;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/*
+    The FakebookSchema class creates and drops the eleven PUBLIC_* tables named in
+    FakebookOracleConstants, so that a local database can be given the same shape as the
+    course database. The column types are the Oracle ones and are also understood by
+    embedded databases running in Oracle compatibility mode (for example H2 with
+    MODE=Oracle). This class cannot be instantiated directly.
+*/
+final class FakebookSchema {
+    // [Create Function]
+    // REQUIRES: <connection> is a valid JDBC connection that may run DDL
+    // MODIFIES: the database behind <connection>
+    // EFFECTS:  creates every table of the schema, and on H2 also the "project2" schema
+    //   the tables live in; on Oracle that schema is the user itself and must exist
+    public static void create(Connection connection) throws SQLException {
+        try (Statement stmt = connection.createStatement()) {
+            if (connection.getMetaData().getDatabaseProductName().equals("H2")) {
+                stmt.executeUpdate("CREATE SCHEMA IF NOT EXISTS project2");
+            }
+            for (int idx = 0; idx < Tables.length; idx++) {
+                stmt.executeUpdate("CREATE TABLE " + Tables[idx] + " (" + Columns[idx] + ")");
+            }
+        }
+    }
+
+    // [Drop Function]
+    // REQUIRES: <connection> is a valid JDBC connection that may run DDL
+    // MODIFIES: the database behind <connection>
+    // EFFECTS:  drops every table of the schema that exists, in reverse creation order
+    public static void drop(Connection connection) throws SQLException {
+        try (Statement stmt = connection.createStatement()) {
+            for (int idx = Tables.length - 1; idx >= 0; idx--) {
+                try {
+                    stmt.executeUpdate("DROP TABLE " + Tables[idx]);
+                }
+                catch (SQLException e) {
+                    // the table did not exist
+                }
+            }
+        }
+    }
+
+    // [Column Count Function]
+    // REQUIRES: 0 <= <table> < Tables.length
+    // EFFECTS:  returns the number of columns of Tables[<table>]
+    public static int columns(int table) {
+        return ColumnCounts[table];
+    }
+
+    // [Primary Key Function]
+    // REQUIRES: 0 <= <table> < Tables.length
+    // EFFECTS:  returns the comma-separated primary key columns of Tables[<table>]
+    public static String primaryKey(int table) {
+        return PrimaryKeys[table];
+    }
+
+    // [Short Name Function]
+    // REQUIRES: 0 <= <table> < Tables.length
+    // EFFECTS:  returns the name of Tables[<table>] without its schema, e.g. PUBLIC_Users
+    public static String shortName(int table) {
+        return Tables[table].substring(Tables[table].indexOf('.') + 1);
+    }
+
+    // [Constructor]
+    // EFFECTS:  throws an AssertionError
+    private FakebookSchema() {
+        throw new AssertionError();
+    }
+
+    // Table Indices into Tables
+    public static final int Users = 0;
+    public static final int Friends = 1;
+    public static final int Cities = 2;
+    public static final int CurrentCities = 3;
+    public static final int HometownCities = 4;
+    public static final int Programs = 5;
+    public static final int Education = 6;
+    public static final int Events = 7;
+    public static final int Albums = 8;
+    public static final int Photos = 9;
+    public static final int Tags = 10;
+
+    // Member Variables
+    public static final String[] Tables = {
+        FakebookOracleConstants.UsersTable,
+        FakebookOracleConstants.FriendsTable,
+        FakebookOracleConstants.CitiesTable,
+        FakebookOracleConstants.CurrentCitiesTable,
+        FakebookOracleConstants.HometownCitiesTable,
+        FakebookOracleConstants.ProgramsTable,
+        FakebookOracleConstants.EducationTable,
+        FakebookOracleConstants.EventsTable,
+        FakebookOracleConstants.AlbumsTable,
+        FakebookOracleConstants.PhotosTable,
+        FakebookOracleConstants.TagsTable
+    };
+    private static final int[] ColumnCounts = { 7, 2, 4, 2, 2, 4, 3, 12, 8, 6, 5 };
+    private static final String[] PrimaryKeys = {
+        "user_id", "user1_id, user2_id", "city_id", "user_id", "user_id", "program_id",
+        "user_id, program_id", "event_id", "album_id", "photo_id", "tag_photo_id, tag_subject_id"
+    };
+    private static final String[] Columns = {
+        "user_id NUMBER PRIMARY KEY, first_name VARCHAR2(100) NOT NULL, " +
+        "last_name VARCHAR2(100) NOT NULL, year_of_birth INTEGER, month_of_birth INTEGER, " +
+        "day_of_birth INTEGER, gender VARCHAR2(100)",
+
+        "user1_id NUMBER NOT NULL, user2_id NUMBER NOT NULL, PRIMARY KEY (user1_id, user2_id)",
+
+        "city_id INTEGER PRIMARY KEY, city_name VARCHAR2(100) NOT NULL, " +
+        "state_name VARCHAR2(100) NOT NULL, country_name VARCHAR2(100) NOT NULL",
+
+        "user_id NUMBER PRIMARY KEY, current_city_id INTEGER NOT NULL",
+
+        "user_id NUMBER PRIMARY KEY, hometown_city_id INTEGER NOT NULL",
+
+        "program_id INTEGER PRIMARY KEY, institution VARCHAR2(100) NOT NULL, " +
+        "concentration VARCHAR2(100) NOT NULL, degree VARCHAR2(100) NOT NULL",
+
+        "user_id NUMBER NOT NULL, program_id INTEGER NOT NULL, program_year INTEGER NOT NULL, " +
+        "PRIMARY KEY (user_id, program_id)",
+
+        "event_id NUMBER PRIMARY KEY, event_creator_id NUMBER NOT NULL, " +
+        "event_name VARCHAR2(100) NOT NULL, event_tagline VARCHAR2(100), " +
+        "event_description VARCHAR2(100), event_host VARCHAR2(100), event_type VARCHAR2(100), " +
+        "event_subtype VARCHAR2(100), event_address VARCHAR2(2000), event_city_id INTEGER NOT NULL, " +
+        "event_start_time TIMESTAMP, event_end_time TIMESTAMP",
+
+        "album_id NUMBER PRIMARY KEY, album_owner_id NUMBER NOT NULL, " +
+        "album_name VARCHAR2(100) NOT NULL, album_created_time TIMESTAMP NOT NULL, " +
+        "album_modified_time TIMESTAMP, album_link VARCHAR2(2000) NOT NULL, " +
+        "album_visibility VARCHAR2(100) NOT NULL, cover_photo_id NUMBER NOT NULL",
+
+        "photo_id NUMBER PRIMARY KEY, album_id NUMBER NOT NULL, photo_caption VARCHAR2(2000), " +
+        "photo_created_time TIMESTAMP NOT NULL, photo_modified_time TIMESTAMP, " +
+        "photo_link VARCHAR2(2000) NOT NULL",
+
+        "tag_photo_id NUMBER NOT NULL, tag_subject_id NUMBER NOT NULL, " +
+        "tag_created_time TIMESTAMP NOT NULL, tag_x NUMBER NOT NULL, tag_y NUMBER NOT NULL, " +
+        "PRIMARY KEY (tag_photo_id, tag_subject_id)"
+    };
+}
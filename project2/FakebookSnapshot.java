@@ -0,0 +1,666 @@
+package project2;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Map;
+
+/*
+    The FakebookSnapshot class is a read-only copy of the eleven tables of FakebookSchema
+    kept in a single file, from which SnapshotFakebookOracle answers the queries without
+    a database. The file is columnar: every column of every table is one contiguous
+    block, so a query only reads the columns it uses, and
+        - integer and timestamp columns hold the zigzag-encoded difference between each
+          value and the one before it as a variable-length integer; tables are exported
+          in primary-key order, so ID columns mostly take a single byte per row,
+        - string columns are dictionary-compressed: the distinct strings are stored once,
+          in ascending order, followed by one variable-length code per row, so comparing
+          two codes compares the strings they stand for,
+        - numbers with a fractional part are stored as 8-byte doubles, and
+        - a column that holds NULLs starts with a bitmap of them; values are only stored
+          for the other rows.
+    A directory at the end of the file lists every table, its row count, and the name,
+    type, position, and length of each of its columns; the file ends with the position
+    of the directory and the same magic number that starts it.
+
+    open() memory-maps the file and reads only the directory. Each column is decoded
+    into an array the first time it is asked for and kept for later calls, so opening a
+    snapshot takes a few milliseconds whatever its size.
+*/
+final class FakebookSnapshot {
+    // [Constructor]
+    private FakebookSnapshot(Map<String, SnapshotTable> tables) {
+        this.tables = tables;
+    }
+
+    // [Export Function]
+    // REQUIRES: <connection> is a valid JDBC connection to a database holding every table
+    //           of FakebookSchema
+    // MODIFIES: the file <file>
+    // EFFECTS:  writes a snapshot of every table of FakebookSchema to <file>, reading
+    //   each table once, in primary-key order; the rows of each table are buffered in
+    //   memory while it is read, in the compact form they are written in
+    public static void export(Connection connection, File file) throws SQLException, IOException {
+        try (OutputStream out = new BufferedOutputStream(new FileOutputStream(file), 1 << 16)) {
+            SnapshotBuffer directory = new SnapshotBuffer();
+            long position = Magic.length;
+            out.write(Magic);
+
+            directory.putVarint(FakebookSchema.Tables.length);
+            for (int table = 0; table < FakebookSchema.Tables.length; table++) {
+                ColumnBuilder[] columns = read(connection, table);
+                directory.putString(FakebookSchema.shortName(table));
+                directory.putVarint(columns[0].rows());
+                directory.putVarint(columns.length);
+                for (ColumnBuilder column : columns) {
+                    SnapshotBuffer block = column.encode();
+                    directory.putString(column.name());
+                    directory.put(column.type());
+                    directory.putLong(position);
+                    directory.putVarint(block.size());
+                    block.writeTo(out);
+                    position += block.size();
+                }
+            }
+
+            directory.putLong(position);
+            directory.put(Magic);
+            directory.writeTo(out);
+        }
+    }
+
+    // [Open Function]
+    // REQUIRES: <file> was written by export()
+    // EFFECTS:  returns the snapshot stored in <file>; throws an IOException if <file> is
+    //   not a snapshot
+    public static FakebookSnapshot open(File file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long size = channel.size();
+            ByteBuffer head = ByteBuffer.allocate(Magic.length);
+            ByteBuffer tail = ByteBuffer.allocate(8 + Magic.length);
+            if (size < head.capacity() + tail.capacity()
+                    || channel.read(head, 0L) != head.capacity()
+                    || channel.read(tail, size - tail.capacity()) != tail.capacity()) {
+                throw new IOException(file + " is not a Fakebook snapshot");
+            }
+            head.flip();
+            tail.flip();
+            long directory = tail.getLong();
+            if (!head.equals(ByteBuffer.wrap(Magic)) || !tail.equals(ByteBuffer.wrap(Magic))
+                    || directory < Magic.length || directory > size - tail.capacity()) {
+                throw new IOException(file + " is not a Fakebook snapshot");
+            }
+
+            ByteBuffer in = channel.map(FileChannel.MapMode.READ_ONLY, directory, size - tail.capacity() - directory);
+            Map<String, SnapshotTable> tables = new HashMap<String, SnapshotTable>();
+            int count = (int) getVarint(in);
+            for (int table = 0; table < count; table++) {
+                String name = getString(in);
+                int rows = (int) getVarint(in);
+                SnapshotColumn[] columns = new SnapshotColumn[(int) getVarint(in)];
+                for (int idx = 0; idx < columns.length; idx++) {
+                    String column = getString(in);
+                    byte type = in.get();
+                    long offset = in.getLong();
+                    long length = getVarint(in);
+                    columns[idx] = new SnapshotColumn(column, type, rows,
+                        channel.map(FileChannel.MapMode.READ_ONLY, offset, length));
+                }
+                tables.put(name.toLowerCase(), new SnapshotTable(name, rows, columns));
+            }
+            return new FakebookSnapshot(tables);
+        }
+    }
+
+    // [Table Accessor]
+    // REQUIRES: 0 <= <table> < FakebookSchema.Tables.length
+    // EFFECTS:  returns the snapshot of FakebookSchema.Tables[<table>]
+    public SnapshotTable table(int table) {
+        SnapshotTable snapshot = tables.get(FakebookSchema.shortName(table).toLowerCase());
+        if (snapshot == null) {
+            throw new IllegalStateException("The snapshot has no table " + FakebookSchema.shortName(table));
+        }
+        return snapshot;
+    }
+
+    // [Main Function]
+    // Writes a snapshot of the database configured by the fakebook.jdbc.* settings to the
+    // file named by the fakebook.snapshot.file setting (default "fakebook.snapshot").
+    // Rows are read with the fetch size set by fakebook.fetchSize.Snapshot, if any.
+    public static void main(String[] args) {
+        File file = new File(FakebookSettings.get("fakebook.snapshot.file", DefaultFile));
+        long begin = System.nanoTime();
+
+        try (FakebookConnectionPool pool = FakebookConnectionPool.fromSettings(null, null);
+             Connection connection = pool.getConnection()) {
+            export(connection, file);
+            long exported = System.nanoTime();
+            FakebookSnapshot snapshot = open(file);
+            long opened = System.nanoTime();
+
+            for (int table = 0; table < FakebookSchema.Tables.length; table++) {
+                SnapshotTable columns = snapshot.table(table);
+                System.out.println(String.format("%-28s %12d row(s) %14d byte(s)",
+                    FakebookSchema.shortName(table), columns.rows(), columns.bytes()));
+            }
+            System.out.println(String.format("Wrote %d byte(s) to %s in %.3f s; opening it takes %.3f ms",
+                file.length(), file, (exported - begin) / 1.0e9, (opened - exported) / 1.0e6));
+        }
+        catch (SQLException e) {
+            e.printStackTrace();
+        }
+        catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    // EFFECTS:  reads every row of FakebookSchema.Tables[<table>], in primary-key order,
+    //   into one ColumnBuilder per column
+    private static ColumnBuilder[] read(Connection connection, int table) throws SQLException {
+        ResultSet rst = FakebookStatementCache.forConnection(connection).prepare("Snapshot." + FakebookSchema.shortName(table),
+            "SELECT * FROM " + FakebookSchema.Tables[table] + " ORDER BY " + FakebookSchema.primaryKey(table)).executeQuery();
+        try {
+            ResultSetMetaData meta = rst.getMetaData();
+            ColumnBuilder[] columns = new ColumnBuilder[meta.getColumnCount()];
+            for (int idx = 0; idx < columns.length; idx++) {
+                columns[idx] = new ColumnBuilder(meta.getColumnLabel(idx + 1).toLowerCase(),
+                    typeOf(meta.getColumnType(idx + 1)));
+            }
+            while (rst.next()) {
+                for (int idx = 0; idx < columns.length; idx++) {
+                    columns[idx].read(rst, idx + 1);
+                }
+            }
+            return columns;
+        }
+        finally {
+            rst.close();
+        }
+    }
+
+    // EFFECTS:  returns the snapshot column type that stores values of JDBC type <sqlType>;
+    //   numeric columns start out as IntegerColumn and become RealColumn on their first
+    //   fractional value
+    private static byte typeOf(int sqlType) {
+        switch (sqlType) {
+            case Types.CHAR:
+            case Types.VARCHAR:
+            case Types.LONGVARCHAR:
+            case Types.NCHAR:
+            case Types.NVARCHAR:
+            case Types.LONGNVARCHAR:
+            case Types.CLOB:
+            case Types.NCLOB:
+                return TextColumn;
+            case Types.DATE:
+            case Types.TIME:
+            case Types.TIMESTAMP:
+                return TimeColumn;
+            default:
+                return IntegerColumn;
+        }
+    }
+
+    // [Variable-Length Integer Decoder]
+    // MODIFIES: <in>
+    // EFFECTS:  reads an unsigned LEB128 integer from <in>
+    static long getVarint(ByteBuffer in) {
+        long value = 0L;
+        int shift = 0;
+        byte b;
+        do {
+            b = in.get();
+            value |= (long) (b & 0x7f) << shift;
+            shift += 7;
+        } while (b < 0);
+        return value;
+    }
+
+    // [String Decoder]
+    // MODIFIES: <in>
+    // EFFECTS:  reads a length-prefixed UTF-8 string from <in>
+    static String getString(ByteBuffer in) {
+        byte[] bytes = new byte[(int) getVarint(in)];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /*
+        The ColumnBuilder class collects the values of one column while a table is read
+        and encodes them in the snapshot format once the table is complete.
+    */
+    private static final class ColumnBuilder {
+        // [Constructor]
+        ColumnBuilder(String name, byte type) {
+            this.name = name;
+            this.type = type;
+            values = new LongList();
+            nulls = new BitSet();
+            names = new FakebookNameTable();
+            rows = 0;
+        }
+
+        // [Read Function]
+        // MODIFIES: this
+        // EFFECTS:  appends the value of column <column> of the current row of <rst>
+        void read(ResultSet rst, int column) throws SQLException {
+            if (type == TextColumn) {
+                String value = rst.getString(column);
+                if (value == null) {
+                    nulls.set(rows);
+                }
+                else {
+                    values.add(names.encode(value));
+                }
+            }
+            else if (type == TimeColumn) {
+                Timestamp value = rst.getTimestamp(column);
+                if (value == null) {
+                    nulls.set(rows);
+                }
+                else {
+                    values.add(value.getTime());
+                }
+            }
+            else {
+                BigDecimal value = rst.getBigDecimal(column);
+                if (value == null) {
+                    nulls.set(rows);
+                }
+                else if (type == IntegerColumn && fitsLong(value)) {
+                    values.add(value.longValue());
+                }
+                else {
+                    if (type == IntegerColumn) {
+                        convertToReal();
+                    }
+                    values.add(Double.doubleToLongBits(value.doubleValue()));
+                }
+            }
+            rows++;
+        }
+
+        // [Encode Function]
+        // EFFECTS:  returns the column's block in the snapshot format
+        SnapshotBuffer encode() {
+            SnapshotBuffer out = new SnapshotBuffer();
+            if (nulls.isEmpty()) {
+                out.put((byte) 0);
+            }
+            else {
+                out.put((byte) 1);
+                out.put(Arrays.copyOf(nulls.toByteArray(), (rows + 7) / 8));
+            }
+
+            if (type == TextColumn) {
+                String[] dictionary = new String[names.size()];
+                for (int code = 0; code < dictionary.length; code++) {
+                    dictionary[code] = names.decode(code);
+                }
+                String[] sorted = dictionary.clone();
+                Arrays.sort(sorted);
+                out.putVarint(sorted.length);
+                for (String value : sorted) {
+                    out.putString(value);
+                }
+                int[] recode = new int[dictionary.length];
+                for (int code = 0; code < dictionary.length; code++) {
+                    recode[code] = Arrays.binarySearch(sorted, dictionary[code]);
+                }
+                for (int idx = 0; idx < values.size(); idx++) {
+                    out.putVarint(recode[(int) values.get(idx)]);
+                }
+            }
+            else if (type == RealColumn) {
+                for (int idx = 0; idx < values.size(); idx++) {
+                    out.putLong(values.get(idx));
+                }
+            }
+            else {
+                long previous = 0L;
+                for (int idx = 0; idx < values.size(); idx++) {
+                    long delta = values.get(idx) - previous;
+                    out.putVarint((delta << 1) ^ (delta >> 63));
+                    previous = values.get(idx);
+                }
+            }
+            return out;
+        }
+
+        // [Accessors]
+        String name() {
+            return name;
+        }
+
+        byte type() {
+            return type;
+        }
+
+        int rows() {
+            return rows;
+        }
+
+        // EFFECTS:  returns true if <value> is a whole number that fits in a long
+        private static boolean fitsLong(BigDecimal value) {
+            try {
+                value.longValueExact();
+                return true;
+            }
+            catch (ArithmeticException e) {
+                return false;
+            }
+        }
+
+        // MODIFIES: <type>, <values>
+        // EFFECTS:  turns the integers read so far into doubles
+        private void convertToReal() {
+            LongList reals = new LongList();
+            for (int idx = 0; idx < values.size(); idx++) {
+                reals.add(Double.doubleToLongBits((double) values.get(idx)));
+            }
+            values = reals;
+            type = RealColumn;
+        }
+
+        // Member Variables
+        private final String name;
+        private byte type;
+        private LongList values;                               // non-NULL values only
+        private final BitSet nulls;
+        private final FakebookNameTable names;
+        private int rows;
+    }
+
+    /*
+        The SnapshotBuffer class is a growable byte array with the encoders used to write
+        the snapshot format.
+    */
+    private static final class SnapshotBuffer {
+        // [Constructor]
+        SnapshotBuffer() {
+            bytes = new byte[256];
+            size = 0;
+        }
+
+        void put(byte b) {
+            ensure(1);
+            bytes[size++] = b;
+        }
+
+        void put(byte[] b) {
+            ensure(b.length);
+            System.arraycopy(b, 0, bytes, size, b.length);
+            size += b.length;
+        }
+
+        // EFFECTS:  appends <value> as an unsigned LEB128 integer
+        void putVarint(long value) {
+            ensure(10);
+            while ((value & ~0x7fL) != 0L) {
+                bytes[size++] = (byte) ((value & 0x7f) | 0x80);
+                value >>>= 7;
+            }
+            bytes[size++] = (byte) value;
+        }
+
+        // EFFECTS:  appends <value> as 8 big-endian bytes
+        void putLong(long value) {
+            ensure(8);
+            for (int shift = 56; shift >= 0; shift -= 8) {
+                bytes[size++] = (byte) (value >>> shift);
+            }
+        }
+
+        // EFFECTS:  appends <value> as a length-prefixed UTF-8 string
+        void putString(String value) {
+            byte[] utf8 = value.getBytes(StandardCharsets.UTF_8);
+            putVarint(utf8.length);
+            put(utf8);
+        }
+
+        int size() {
+            return size;
+        }
+
+        void writeTo(OutputStream out) throws IOException {
+            out.write(bytes, 0, size);
+        }
+
+        private void ensure(int more) {
+            if (size + more > bytes.length) {
+                bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, size + more));
+            }
+        }
+
+        // Member Variables
+        private byte[] bytes;
+        private int size;
+    }
+
+    // Column Types
+    static final byte IntegerColumn = 1;
+    static final byte RealColumn = 2;
+    static final byte TextColumn = 3;
+    static final byte TimeColumn = 4;
+
+    // Member Variables
+    public static final String DefaultFile = "fakebook.snapshot";
+    private static final byte[] Magic = "FBSNAP01".getBytes(StandardCharsets.US_ASCII);
+    private final Map<String, SnapshotTable> tables;
+}
+
+/*
+    The SnapshotTable class gives access to the columns of one table of a FakebookSnapshot
+    by (case-insensitive) column name. The arrays it returns are decoded once and shared
+    by every caller, so they must not be modified. NULL values read as 0 (or -1 for the
+    codes of a string column); nulls() tells them apart.
+*/
+final class SnapshotTable {
+    // [Constructor]
+    SnapshotTable(String name, int rows, SnapshotColumn[] columns) {
+        this.name = name;
+        this.rows = rows;
+        this.columns = columns;
+    }
+
+    // [Row Count Function]
+    public int rows() {
+        return rows;
+    }
+
+    // [Size Function]
+    // EFFECTS:  returns the number of bytes the table takes up in the snapshot file
+    public long bytes() {
+        long total = 0L;
+        for (SnapshotColumn column : columns) {
+            total += column.bytes();
+        }
+        return total;
+    }
+
+    // [Column Accessors]
+    // REQUIRES: the table has a column named <column>
+    // EFFECTS:  longs() returns the values of a numeric or timestamp column (timestamps
+    //   in milliseconds since the epoch); strings() returns those of a string column;
+    //   codes() and dictionary() return a string column as codes into its sorted
+    //   dictionary; nulls() returns the rows whose value is NULL
+    public long[] longs(String column) {
+        return column(column).longs();
+    }
+
+    public String[] strings(String column) {
+        return column(column).strings();
+    }
+
+    public int[] codes(String column) {
+        return column(column).codes();
+    }
+
+    public String[] dictionary(String column) {
+        return column(column).dictionary();
+    }
+
+    public BitSet nulls(String column) {
+        return column(column).nulls();
+    }
+
+    // EFFECTS:  returns the column named <column>
+    private SnapshotColumn column(String column) {
+        for (SnapshotColumn candidate : columns) {
+            if (candidate.name().equalsIgnoreCase(column)) {
+                return candidate;
+            }
+        }
+        throw new IllegalArgumentException("The snapshot of " + name + " has no column " + column);
+    }
+
+    // Member Variables
+    private final String name;
+    private final int rows;
+    private final SnapshotColumn[] columns;
+}
+
+/*
+    The SnapshotColumn class is one column of a FakebookSnapshot. It keeps the mapped
+    block of the column until one of its values is first asked for, and then decodes the
+    whole block into arrays at once.
+*/
+final class SnapshotColumn {
+    // [Constructor]
+    SnapshotColumn(String name, byte type, int rows, ByteBuffer block) {
+        this.name = name;
+        this.type = type;
+        this.rows = rows;
+        this.block = block;
+        length = block.capacity();
+    }
+
+    // [Accessors]
+    String name() {
+        return name;
+    }
+
+    long bytes() {
+        return length;
+    }
+
+    synchronized long[] longs() {
+        decode();
+        if (type == FakebookSnapshot.TextColumn) {
+            throw new IllegalStateException("Column " + name + " holds strings");
+        }
+        if (type == FakebookSnapshot.RealColumn) {
+            if (truncated == null) {
+                truncated = new long[rows];
+                for (int row = 0; row < rows; row++) {
+                    truncated[row] = (long) Double.longBitsToDouble(values[row]);
+                }
+            }
+            return truncated;
+        }
+        return values;
+    }
+
+    synchronized int[] codes() {
+        decode();
+        if (type != FakebookSnapshot.TextColumn) {
+            throw new IllegalStateException("Column " + name + " does not hold strings");
+        }
+        return codes;
+    }
+
+    synchronized String[] dictionary() {
+        codes();
+        return dictionary;
+    }
+
+    synchronized String[] strings() {
+        codes();
+        if (strings == null) {
+            strings = new String[rows];
+            for (int row = 0; row < rows; row++) {
+                strings[row] = codes[row] < 0 ? null : dictionary[codes[row]];
+            }
+        }
+        return strings;
+    }
+
+    synchronized BitSet nulls() {
+        decode();
+        return nulls;
+    }
+
+    // MODIFIES: this
+    // EFFECTS:  decodes the column's block, unless that has been done already
+    private void decode() {
+        if (nulls != null) {
+            return;
+        }
+        ByteBuffer in = block.duplicate();
+        BitSet missing = new BitSet();
+        if (in.get() != 0) {
+            byte[] bitmap = new byte[(rows + 7) / 8];
+            in.get(bitmap);
+            missing = BitSet.valueOf(bitmap);
+        }
+
+        if (type == FakebookSnapshot.TextColumn) {
+            dictionary = new String[(int) FakebookSnapshot.getVarint(in)];
+            for (int code = 0; code < dictionary.length; code++) {
+                dictionary[code] = FakebookSnapshot.getString(in);
+            }
+            codes = new int[rows];
+            for (int row = 0; row < rows; row++) {
+                codes[row] = missing.get(row) ? -1 : (int) FakebookSnapshot.getVarint(in);
+            }
+        }
+        else if (type == FakebookSnapshot.RealColumn) {
+            values = new long[rows];
+            for (int row = 0; row < rows; row++) {
+                values[row] = missing.get(row) ? 0L : in.getLong();
+            }
+        }
+        else {
+            values = new long[rows];
+            long previous = 0L;
+            for (int row = 0; row < rows; row++) {
+                if (!missing.get(row)) {
+                    long zigzag = FakebookSnapshot.getVarint(in);
+                    previous += (zigzag >>> 1) ^ -(zigzag & 1);
+                    values[row] = previous;
+                }
+            }
+        }
+        nulls = missing;
+        block = null;                                          // let the mapping go
+    }
+
+    // Member Variables
+    private final String name;
+    private final byte type;
+    private final int rows;
+    private final long length;
+    private ByteBuffer block;
+    private BitSet nulls;                                      // NULL until decoded
+    private long[] values;
+    private long[] truncated;
+    private int[] codes;
+    private String[] dictionary;
+    private String[] strings;
+}
@@ -0,0 +1,230 @@
+package project2;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/*
+    The FakebookStatementCache class keeps one PreparedStatement per query ID for a
+    single physical connection, so that a query whose values are passed as bind variables
+    is parsed by the server once and then only re-executed. Statements handed out by the
+    cache belong to the cache: callers close the ResultSets they open but must never close
+    the statements themselves.
+
+    Statements are forward-only, so the driver streams rows in batches instead of caching
+    the whole result client-side. The batch size of query <id> is taken from the setting
+    "fakebook.fetchSize.<id>", then from "fakebook.fetchSize.<prefix>" where <prefix> is
+    the part of <id> before its first '.', then from "fakebook.fetchSize", and finally
+    defaults to FakebookOracleConstants.DefaultFetchSize. The driver-side limit on one
+    execution, "fakebook.queryTimeoutSeconds", is looked up the same way and is off by
+    default; QueryGuard bounds a whole query, however many statements it runs.
+
+    Caches are shared by everything that uses the same physical connection, including
+    successive loans of a pooled connection, and count their hits and misses both
+    individually and across all connections. When JdbcMetrics is enabled, the cached
+    statements are instrumented.
+*/
+final class FakebookStatementCache {
+    // [Constructor]
+    // REQUIRES: <connection> is a valid, physical JDBC connection
+    private FakebookStatementCache(Connection connection) {
+        this.connection = connection;
+        statements = new HashMap<String, PreparedStatement>();
+        hits = 0L;
+        misses = 0L;
+        cancelled = false;
+    }
+
+    // [Cache Lookup Function]
+    // REQUIRES: <connection> is a valid JDBC connection
+    // EFFECTS:  returns the statement cache of the physical connection behind
+    //   <connection>, creating it on first use
+    public static FakebookStatementCache forConnection(Connection connection) throws SQLException {
+        Connection physical = connection.isWrapperFor(Connection.class) ? connection.unwrap(Connection.class) : connection;
+        synchronized (caches) {
+            FakebookStatementCache cache = caches.get(physical);
+            if (cache == null) {
+                purgeClosed();
+                cache = new FakebookStatementCache(physical);
+                caches.put(physical, cache);
+            }
+            return cache;
+        }
+    }
+
+    // EFFECTS:  forgets the caches of connections that have been closed; the cached
+    //   statements keep their connection reachable, so a weak map would never let go
+    private static void purgeClosed() throws SQLException {
+        Iterator<Connection> it = caches.keySet().iterator();
+        while (it.hasNext()) {
+            if (it.next().isClosed()) {
+                it.remove();
+            }
+        }
+    }
+
+    // [Prepare Function]
+    // REQUIRES: every call with the same <queryID> passes the same <sql>
+    // MODIFIES: this
+    // EFFECTS:  returns the cached statement for <queryID> with its parameters cleared,
+    //   preparing <sql> as a read-only, forward-only statement on a miss
+    public synchronized PreparedStatement prepare(String queryID, String sql) throws SQLException {
+        if (cancelled) {
+            throw new SQLException("Query " + queryID + " was cancelled");
+        }
+        PreparedStatement stmt = statements.get(queryID);
+        if (stmt != null && !stmt.isClosed()) {
+            hits++;
+            totalHits.incrementAndGet();
+            stmt.clearParameters();
+            return stmt;
+        }
+
+        misses++;
+        totalMisses.incrementAndGet();
+        long begin = System.nanoTime();
+        stmt = connection.prepareStatement(sql, FakebookOracleConstants.ForwardOnly, FakebookOracleConstants.ReadOnly);
+        stmt.setFetchSize(fetchSize(queryID));
+        int timeout = queryTimeout(queryID);
+        if (timeout > 0) {
+            stmt.setQueryTimeout(timeout);
+        }
+        stmt = JdbcMetrics.instrument(stmt, System.nanoTime() - begin);
+        statements.put(queryID, stmt);
+        return stmt;
+    }
+
+    // [Fetch Size Function]
+    // EFFECTS:  returns the number of rows to fetch per round trip for <queryID>
+    public static int fetchSize(String queryID) {
+        return setting("fakebook.fetchSize", queryID, FakebookOracleConstants.DefaultFetchSize);
+    }
+
+    // [Query Timeout Function]
+    // EFFECTS:  returns the number of seconds the driver lets one execution of <queryID>
+    //   run before cancelling it, where 0, the default, means no limit
+    public static int queryTimeout(String queryID) {
+        return setting("fakebook.queryTimeoutSeconds", queryID, 0);
+    }
+
+    // EFFECTS:  returns the setting "<name>.<queryID>", then "<name>.<prefix>" where
+    //   <prefix> is the part of <queryID> before its first '.', then "<name>", and
+    //   finally <fallback>
+    private static int setting(String name, String queryID, int fallback) {
+        fallback = FakebookSettings.getInt(name, fallback);
+        int dot = queryID.indexOf('.');
+        if (dot >= 0) {
+            fallback = FakebookSettings.getInt(name + "." + queryID.substring(0, dot), fallback);
+        }
+        return FakebookSettings.getInt(name + "." + queryID, fallback);
+    }
+
+    // [Placeholder List Function]
+    // EFFECTS:  returns <count> comma-separated bind variable placeholders, for building
+    //   IN-lists of a fixed length
+    public static String placeholders(int count) {
+        StringBuilder list = new StringBuilder();
+        for (int idx = 0; idx < count; idx++) {
+            list.append(idx == 0 ? "?" : ", ?");
+        }
+        return list.toString();
+    }
+
+    // [IN-list Size Function]
+    // REQUIRES: <count> > 0 and <limit> > 0
+    // EFFECTS:  returns how many placeholders an IN-list of <count> values should have:
+    //   the smallest power of 4 that holds them, but at most <limit>; the values are
+    //   padded up to that size, so lists of any length share a handful of statements
+    public static int inListSize(int count, int limit) {
+        int size = 1;
+        while (size < count && size < limit) {
+            size *= 4;
+        }
+        return Math.min(size, limit);
+    }
+
+    // [Cancel Functions]
+    // MODIFIES: this
+    // EFFECTS:  cancel() asks the database to abort whichever cached statement is
+    //   executing, if any, and makes prepare() throw an SQLException until reset() is
+    //   called, so a query that had not reached its statement yet fails as soon as it
+    //   does. A connection runs one statement at a time, so this cancels whatever query
+    //   is using it
+    public void cancel() {
+        PreparedStatement[] running;
+        synchronized (this) {
+            cancelled = true;
+            running = statements.values().toArray(new PreparedStatement[statements.size()]);
+        }
+        for (PreparedStatement stmt : running) {
+            try {
+                stmt.cancel();
+            }
+            catch (SQLException e) {
+                System.err.println(e.getMessage());
+            }
+        }
+    }
+
+    public synchronized void reset() {
+        cancelled = false;
+    }
+
+    // [Close Function]
+    // MODIFIES: this
+    // EFFECTS:  closes every cached statement and forgets this cache
+    public void close() {
+        synchronized (caches) {
+            caches.remove(connection);
+        }
+        synchronized (this) {
+            for (PreparedStatement stmt : statements.values()) {
+                try {
+                    stmt.close();
+                }
+                catch (SQLException e) {
+                    System.err.println(e.getMessage());
+                }
+            }
+            statements.clear();
+        }
+    }
+
+    // [Statistics Accessors]
+    public synchronized long hits() {
+        return hits;
+    }
+
+    public synchronized long misses() {
+        return misses;
+    }
+
+    public static long totalHits() {
+        return totalHits.get();
+    }
+
+    public static long totalMisses() {
+        return totalMisses.get();
+    }
+
+    // [Statistics Report Function]
+    // EFFECTS:  returns a one-line summary of the hits and misses across all connections
+    public static String report() {
+        return String.format("Statement cache: %d hit(s), %d miss(es)", totalHits(), totalMisses());
+    }
+
+    // Member Variables
+    private static final Map<Connection, FakebookStatementCache> caches = new IdentityHashMap<Connection, FakebookStatementCache>();
+    private static final AtomicLong totalHits = new AtomicLong();
+    private static final AtomicLong totalMisses = new AtomicLong();
+    private final Connection connection;
+    private final Map<String, PreparedStatement> statements;
+    private long hits;
+    private long misses;
+    private boolean cancelled;
+}
@@ -0,0 +1,868 @@
+package project2;
+
+import java.io.File;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/*
+    The InMemoryFakebookOracle class is derived from the FakebookOracle class and answers
+    the graph-heavy queries from in-memory structures, instead of re-deriving them with
+    self-joins on every call. Queries 2, 5, 6, 8, and 9 read the Friends table through a
+    FriendIndex, which is kept in the file named by the fakebook.friends.index setting
+    (default "fakebook.friends") and only rebuilt when the table changes. Once the index
+    exists, each call checks it with one aggregate scan of the Friends table that
+    computes its fingerprint, but no friendship is transferred or sorted again. Query 5
+    also reads the Tags table through a CoTagIndex, which only takes in the tags added
+    since its last call. Queries 0 and 7 can be answered from an AggregateStore (see
+    Query 0). Queries that have no in-memory implementation are forwarded to a
+    StudentFakebookOracle that shares the same <connection>. The output of every query is
+    identical to that of StudentFakebookOracle except for Query 5, where the SQL query
+    reports every pair of users in both orders and this class reports it once, with the
+    user with the smaller ID first.
+*/
+public final class InMemoryFakebookOracle extends FakebookOracle {
+    // [Constructor]
+    // REQUIRES: <connection> is a valid JDBC connection
+    public InMemoryFakebookOracle(Connection connection) {
+        oracle = connection;
+        sql = new StudentFakebookOracle(connection);
+    }
+
+    @Override
+    // The queries this engine hands to a StudentFakebookOracle count their failures
+    // there, so they are added to this oracle's own
+    public long failures() {
+        return super.failures() + sql.failures();
+    }
+
+    @Override
+    // Query 0
+    // -----------------------------------------------------------------------------------
+    // StudentFakebookOracle answers Queries 0 and 1 with one window-function statement
+    // each, which scans the Users table once and sends back only the rows that make up
+    // the answer. If the fakebook.memory.scanUsers setting is on, the Users table is
+    // instead streamed once into a UsersSummary, which answers both queries on this
+    // oracle from primitive counters; that trades network transfer for server work. If
+    // the fakebook.memory.aggregates setting is on, Query 0 is answered from the
+    // process's AggregateStore instead, which only walks the months.
+    public BirthMonthInfo findMonthOfBirthInfo() throws SQLException {
+        if (!Aggregates && !ScanUsers) {
+            return sql.findMonthOfBirthInfo();
+        }
+        try {
+            return Aggregates ? AggregateStore.open(oracle).monthInfo() : usersSummary().monthInfo();
+        }
+        catch (SQLException e) {
+            failed(e);
+            return new BirthMonthInfo(-1, -1, -1);
+        }
+    }
+
+    @Override
+    // Query 1
+    // -----------------------------------------------------------------------------------
+    // See Query 0
+    public FirstNameInfo findNameInfo() throws SQLException {
+        if (!ScanUsers) {
+            return sql.findNameInfo();
+        }
+        try {
+            return usersSummary().nameInfo();
+        }
+        catch (SQLException e) {
+            failed(e);
+            return new FirstNameInfo();
+        }
+    }
+
+    @Override
+    // Query 2
+    // -----------------------------------------------------------------------------------
+    // The IDs of the users who have friends are the vertices of the friend index. They
+    // are put into a FakebookBitmap once, and the Users table is scanned in whatever
+    // order the database prefers, keeping each user whose ID is not in the bitmap
+    public FakebookArrayList<UserInfo> lonelyUsers() throws SQLException {
+        return lonelyUsersCompact().toArrayList();
+    }
+
+    @Override
+    public FakebookUserList lonelyUsersCompact() throws SQLException {
+        FakebookUserList results = new FakebookUserList(", ");
+        try {
+            lonelyUsers(results, null);
+        }
+        catch (IOException e) {
+            throw new AssertionError(e);                      // adding to a list never throws
+        }
+        return results;
+    }
+
+    @Override
+    public long countLonelyUsers() throws SQLException {
+        try {
+            return lonelyUsers(null, null);
+        }
+        catch (IOException e) {
+            throw new AssertionError(e);                      // nothing is written
+        }
+    }
+
+    @Override
+    public void lonelyUsers(FakebookRowSink<UserInfo> sink) throws SQLException, IOException {
+        lonelyUsers(null, sink);
+    }
+
+    @Override
+    public FakebookArrayList<UserInfo> liveAwayFromHome() throws SQLException {
+        return sql.liveAwayFromHome();
+    }
+
+    @Override
+    public FakebookUserList liveAwayFromHomeCompact() throws SQLException {
+        return sql.liveAwayFromHomeCompact();
+    }
+
+    @Override
+    public long countLiveAwayFromHome() throws SQLException {
+        return sql.countLiveAwayFromHome();
+    }
+
+    @Override
+    public void liveAwayFromHome(FakebookRowSink<UserInfo> sink) throws SQLException, IOException {
+        sql.liveAwayFromHome(sink);
+    }
+
+    @Override
+    public FakebookArrayList<TaggedPhotoInfo> findPhotosWithMostTags(int num) throws SQLException {
+        return sql.findPhotosWithMostTags(num);
+    }
+
+    @Override
+    // Query 5
+    // -----------------------------------------------------------------------------------
+    // The number of photos every pair of users shares comes from a CoTagIndex that is kept
+    // up to date with the Tags table across instances. The Users table is read once in ID
+    // order to rank the users and learn their genders and birth years, and every pair that
+    // could still make the top <num> is checked for the same gender, the <yearDiff>
+    // window, and finally against the friend index. Only the photos of the winning pairs
+    // are looked up.
+    public FakebookArrayList<MatchPair> matchMaker(int num, int yearDiff) throws SQLException {
+        FakebookArrayList<MatchPair> results = new FakebookArrayList<MatchPair>("\n");
+
+        try {
+            CoTagIndex index = CoTagIndex.open(oracle);
+            FriendAdjacency graph = adjacency();
+            TopPairHeap top = new TopPairHeap(Math.max(num, 0));
+            long[] ids;
+            long[] years;
+            long[][] shared;
+
+            // Step 1: read the users with a known gender and birth year in ID order, outside
+            // the index's lock so that concurrent calls do not wait on each other's scans
+            LongList userIDs = new LongList();
+            LongList userGenders = new LongList();
+            LongList userYears = new LongList();
+            FakebookNameTable genderCodes = new FakebookNameTable();
+            ResultSet rst = FakebookStatementCache.forConnection(oracle).prepare("Memory.matches",
+                "SELECT user_id, gender, year_of_birth " +
+                "FROM " + UsersTable + " " +
+                "ORDER BY user_id").executeQuery();
+            try {
+                while (rst.next()) {
+                    String gender = rst.getString(2);
+                    long year = rst.getLong(3);
+                    if (gender == null || rst.wasNull()) {
+                        continue;
+                    }
+                    userIDs.add(rst.getLong(1));
+                    userGenders.add(genderCodes.encode(gender));
+                    userYears.add(year);
+                }
+            }
+            finally {
+                rst.close();
+            }
+
+            synchronized (index) {
+                // Step 1 (continued): rank the tagged users among them by ID
+                int n = index.users();
+                int[] ranks = new int[n];
+                int[] genders = new int[n];
+                years = new long[n];
+                ids = new long[n];
+                Arrays.fill(ranks, -1);
+                int ranked = 0;
+                for (int idx = 0; idx < userIDs.size(); idx++) {
+                    int u = index.userNumber(userIDs.get(idx));
+                    if (u < 0) {
+                        continue;
+                    }
+                    ranks[u] = ranked;
+                    genders[u] = (int) userGenders.get(idx);
+                    ids[ranked] = userIDs.get(idx);
+                    years[ranked++] = userYears.get(idx);
+                }
+
+                // Step 2: keep the best <num> eligible pairs, ordered by rank within a pair
+                QueryGuard guard = QueryGuard.current();
+                for (int slot = 0; slot < index.pairSlots(); slot++) {
+                    guard.check();
+                    int count = index.pairCount(slot);
+                    if (count == 0 || !top.admits(count)) {
+                        continue;
+                    }
+                    int u = ranks[index.pairFirst(slot)];
+                    int v = ranks[index.pairSecond(slot)];
+                    if (u < 0 || v < 0 || genders[index.pairFirst(slot)] != genders[index.pairSecond(slot)]
+                            || Math.abs(years[u] - years[v]) > yearDiff || areFriends(graph, ids[u], ids[v])) {
+                        continue;
+                    }
+                    top.offer(count, Math.min(u, v), Math.max(u, v));
+                }
+                top.sortBestFirst();
+
+                shared = new long[top.size()][];
+                for (int idx = 0; idx < top.size(); idx++) {
+                    shared[idx] = index.sharedPhotos(index.userNumber(ids[top.first(idx)]),
+                        index.userNumber(ids[top.second(idx)]));
+                }
+            }
+
+            // Step 3: look up the names of the winners and their shared photos
+            TreeSet<Long> wantedUsers = new TreeSet<Long>();
+            TreeSet<Long> wantedPhotos = new TreeSet<Long>();
+            for (int idx = 0; idx < top.size(); idx++) {
+                wantedUsers.add(ids[top.first(idx)]);
+                wantedUsers.add(ids[top.second(idx)]);
+                for (long photoID : shared[idx]) {
+                    wantedPhotos.add(photoID);
+                }
+            }
+            Map<Long, UserInfo> users = fetchUsers(wantedUsers, null);
+            Map<Long, PhotoInfo> photos = fetchPhotos(wantedPhotos);
+
+            for (int idx = 0; idx < top.size(); idx++) {
+                int u = top.first(idx);
+                int v = top.second(idx);
+                UserInfo user1 = users.get(ids[u]);
+                UserInfo user2 = users.get(ids[v]);
+                if (user1 == null || user2 == null) {
+                    continue;
+                }
+                MatchPair pair = new MatchPair(user1, years[u], user2, years[v]);
+                for (long photoID : shared[idx]) {
+                    PhotoInfo photo = photos.get(photoID);
+                    if (photo != null) {
+                        pair.addSharedPhoto(photo);
+                    }
+                }
+                results.add(pair);
+            }
+        }
+        catch (SQLException e) {
+            failed(e);
+        }
+
+        return results;
+    }
+
+    @Override
+    // Query 6
+    // -----------------------------------------------------------------------------------
+    // Mutual friends are counted from the friend index for every pair of non-friends with
+    // a bounded heap, and the database is only visited to look up the names of the users
+    // that made it into the top <num> pairs.
+    public FakebookArrayList<UsersPair> suggestFriends(int num) throws SQLException {
+        FakebookArrayList<UsersPair> results = new FakebookArrayList<UsersPair>("\n");
+
+        try {
+            FriendAdjacency graph = adjacency();
+            TopPairHeap top = new MutualFriendCounter(graph).topPairs(num);
+
+            int[][] shared = new int[top.size()][];
+            TreeSet<Long> wanted = new TreeSet<Long>();
+            for (int idx = 0; idx < top.size(); idx++) {
+                shared[idx] = graph.commonNeighbors(top.first(idx), top.second(idx));
+                wanted.add(graph.idOf(top.first(idx)));
+                wanted.add(graph.idOf(top.second(idx)));
+                for (int v : shared[idx]) {
+                    wanted.add(graph.idOf(v));
+                }
+            }
+            Map<Long, UserInfo> users = fetchUsers(wanted, null);
+
+            for (int idx = 0; idx < top.size(); idx++) {
+                UserInfo user1 = users.get(graph.idOf(top.first(idx)));
+                UserInfo user2 = users.get(graph.idOf(top.second(idx)));
+                if (user1 == null || user2 == null) {
+                    continue;
+                }
+                UsersPair pair = new UsersPair(user1, user2);
+                for (int v : shared[idx]) {
+                    UserInfo friend = users.get(graph.idOf(v));
+                    if (friend != null) {
+                        pair.addSharedFriend(friend);
+                    }
+                }
+                results.add(pair);
+            }
+        }
+        catch (SQLException e) {
+            failed(e);
+        }
+
+        return results;
+    }
+
+    @Override
+    // Query 7
+    // -----------------------------------------------------------------------------------
+    // If the fakebook.memory.aggregates setting is on, the number of events in each state
+    // is kept in the process's AggregateStore, so the answer only walks the states
+    public EventStateInfo findEventStates() throws SQLException {
+        if (!Aggregates) {
+            return sql.findEventStates();
+        }
+        try {
+            return AggregateStore.open(oracle).stateInfo();
+        }
+        catch (SQLException e) {
+            failed(e);
+            return new EventStateInfo(-1);
+        }
+    }
+
+    @Override
+    // Query 8
+    // -----------------------------------------------------------------------------------
+    // The friends of <userID> come from the friend index in O(degree), and the database is
+    // only asked for their names and birthdays, by primary key
+    public AgeInfo findAgeInfo(long userID) throws SQLException {
+        try {
+            List<Long> friendIDs = friendsOf(adjacency(), userID);
+            Map<Long, int[]> birthdays = new HashMap<Long, int[]>();
+            AgeInfo info = ageInfo(friendIDs, fetchUsers(friendIDs, birthdays), birthdays);
+            if (info == null) {
+                throw new SQLException("User " + userID + " has no friends");
+            }
+            return info;
+        }
+        catch (SQLException e) {
+            failed(e);
+            return new AgeInfo(new UserInfo(-1, "ERROR", "ERROR"), new UserInfo(-1, "ERROR", "ERROR"));
+        }
+    }
+
+    @Override
+    // Query 8, for many users at once
+    // -----------------------------------------------------------------------------------
+    // The friends of every user are gathered from the friend index first, so each of them
+    // is looked up once however many of the users they are friends with
+    public Map<Long, AgeInfo> findAgeInfo(long[] userIDs) throws SQLException {
+        Map<Long, AgeInfo> results = new LinkedHashMap<Long, AgeInfo>();
+        Map<Long, List<Long>> friends = new HashMap<Long, List<Long>>();
+        Map<Long, UserInfo> users = new HashMap<Long, UserInfo>();
+        Map<Long, int[]> birthdays = new HashMap<Long, int[]>();
+
+        try {
+            FriendAdjacency graph = adjacency();
+            Set<Long> wanted = new HashSet<Long>();
+            for (long userID : userIDs) {
+                if (!friends.containsKey(userID)) {
+                    List<Long> friendIDs = friendsOf(graph, userID);
+                    friends.put(userID, friendIDs);
+                    wanted.addAll(friendIDs);
+                }
+            }
+            users = fetchUsers(wanted, birthdays);
+        }
+        catch (SQLException e) {
+            failed(e);
+        }
+
+        for (long userID : userIDs) {
+            List<Long> friendIDs = friends.get(userID);
+            AgeInfo info = friendIDs == null ? null : ageInfo(friendIDs, users, birthdays);
+            if (info == null) {
+                info = new AgeInfo(new UserInfo(-1, "ERROR", "ERROR"), new UserInfo(-1, "ERROR", "ERROR"));
+            }
+            results.put(userID, info);
+        }
+        return results;
+    }
+
+    @Override
+    // Query 9
+    // -----------------------------------------------------------------------------------
+    // Users with a known birth year are read once with their hometowns and handed to a
+    // SiblingFinder, which partitions them by last name and hometown, pairs the users of
+    // each partition born less than 10 years apart, and keeps the pairs of friends. The
+    // Friends table stores each friendship with user1_id < user2_id, so the undirected
+    // friend index finds exactly the friendships the join in StudentFakebookOracle does.
+    public FakebookArrayList<SiblingInfo> findPotentialSiblings() throws SQLException {
+        return findPotentialSiblingsCompact().toArrayList();
+    }
+
+    @Override
+    public FakebookSiblingList findPotentialSiblingsCompact() throws SQLException {
+        FakebookSiblingList results = new FakebookSiblingList("\n");
+        try {
+            potentialSiblings(results, null);
+        }
+        catch (IOException e) {
+            throw new AssertionError(e);                      // adding to a list never throws
+        }
+        return results;
+    }
+
+    @Override
+    public long countPotentialSiblings() throws SQLException {
+        try {
+            return potentialSiblings(null, null);
+        }
+        catch (IOException e) {
+            throw new AssertionError(e);                      // nothing is written
+        }
+    }
+
+    @Override
+    public void findPotentialSiblings(FakebookRowSink<SiblingInfo> sink) throws SQLException, IOException {
+        potentialSiblings(null, sink);
+    }
+
+    // [Friend Adjacency Accessor]
+    // MODIFIES: <friends>
+    // EFFECTS:  returns the friend index, opening it on first use; if its file cannot be
+    //   read or written, the Friends table is loaded into a FriendGraph instead
+    private FriendAdjacency adjacency() throws SQLException {
+        if (friends == null) {
+            try {
+                friends = FriendIndex.open(oracle, new File(FakebookSettings.get("fakebook.friends.index", DefaultIndexFile)));
+            }
+            catch (IOException e) {
+                System.err.println(e.getMessage());
+                friends = FriendGraph.load(oracle);
+            }
+        }
+        return friends;
+    }
+
+    // [Users Summary Accessor]
+    // MODIFIES: <summary>
+    // EFFECTS:  returns the summary of the Users table, streaming the table on first use
+    private UsersSummary usersSummary() throws SQLException {
+        if (summary == null) {
+            ResultSet rst = FakebookStatementCache.forConnection(oracle).prepare("Memory.users.scan",
+                "SELECT user_id, first_name, last_name, month_of_birth " +
+                "FROM " + UsersTable + " " +
+                "ORDER BY user_id").executeQuery();
+            try {
+                summary = new UsersSummary(rst);
+            }
+            finally {
+                rst.close();
+            }
+        }
+        return summary;
+    }
+
+    // [Friended Users Accessor]
+    // MODIFIES: <friended>
+    // EFFECTS:  returns the bitmap of the users who have friends, building it from the
+    //   friend index on first use
+    private FakebookBitmap friended() throws SQLException {
+        if (friended == null) {
+            FriendAdjacency graph = adjacency();
+            FakebookBitmap bitmap = new FakebookBitmap();
+            for (int v = 0; v < graph.size(); v++) {
+                bitmap.add(graph.idOf(v));
+            }
+            friended = bitmap;
+        }
+        return friended;
+    }
+
+    // [Lonely Users Function]
+    // MODIFIES: <results>, <sink>
+    // EFFECTS:  adds every user without friends to <results> and hands it to <sink>,
+    //   skipping either one that is NULL, and returns how many there are; names are only
+    //   read if one of them is given
+    private long lonelyUsers(FakebookUserList results, FakebookRowSink<UserInfo> sink) throws SQLException, IOException {
+        long count = 0L;
+        try {
+            FakebookBitmap friended = friended();
+            boolean names = results != null || sink != null;
+            ResultSet rst = FakebookStatementCache.forConnection(oracle).prepare(names ? "Memory.lonely" : "Memory.lonely.count",
+                "SELECT user_id" + (names ? ", first_name, last_name" : "") + " " +
+                "FROM " + UsersTable).executeQuery();
+            try {
+                while (rst.next()) {
+                    long userID = rst.getLong(1);
+                    if (friended.contains(userID)) {
+                        continue;
+                    }
+                    count++;
+                    if (results != null) {
+                        results.add(userID, rst.getString(2), rst.getString(3));
+                    }
+                    if (sink != null) {
+                        sink.accept(new UserInfo(userID, rst.getString(2), rst.getString(3)));
+                    }
+                }
+            }
+            finally {
+                rst.close();
+            }
+        }
+        catch (SQLException e) {
+            failed(e);
+        }
+        return count;
+    }
+
+    // [Potential Siblings Function]
+    // MODIFIES: <results>, <sink>
+    // EFFECTS:  adds every pair of potential siblings to <results> and hands it to
+    //   <sink>, skipping either one that is NULL, and returns how many there are
+    private long potentialSiblings(FakebookSiblingList results, FakebookRowSink<SiblingInfo> sink)
+        throws SQLException, IOException {
+        long count = 0L;
+        try {
+            FriendAdjacency graph = adjacency();
+            FakebookNameTable names = new FakebookNameTable();
+            FakebookUserList users = new FakebookUserList(", ", names);
+            LongIntMap cities = new LongIntMap();
+            LongList keys = new LongList();
+            LongList years = new LongList();
+            ResultSet rst = FakebookStatementCache.forConnection(oracle).prepare("Memory.siblings",
+                "SELECT U.user_id, U.first_name, U.last_name, U.year_of_birth, H.hometown_city_id " +
+                "FROM " + UsersTable + " U " +
+                "JOIN " + FakebookOracleConstants.HometownCitiesTable + " H ON H.user_id = U.user_id " +
+                "WHERE U.year_of_birth IS NOT NULL " +
+                "ORDER BY U.user_id").executeQuery();
+            try {
+                while (rst.next()) {
+                    // users without friends cannot have siblings
+                    if (graph.indexOf(rst.getLong(1)) < 0) {
+                        continue;
+                    }
+                    int city = cities.get(rst.getLong(5));
+                    if (city == 0) {
+                        city = cities.size() + 1;
+                        cities.put(rst.getLong(5), city);
+                    }
+                    users.add(rst.getLong(1), rst.getString(2), rst.getString(3));
+                    keys.add(((long) names.encode(rst.getString(3)) << 32) | city);
+                    years.add(rst.getInt(4));
+                }
+            }
+            finally {
+                rst.close();
+            }
+
+            long[] ids = new long[users.size()];
+            int[] birthYears = new int[users.size()];
+            for (int row = 0; row < ids.length; row++) {
+                ids[row] = users.getUserID(row);
+                birthYears[row] = (int) years.get(row);
+            }
+            for (long pair : new SiblingFinder(graph, ids, keys.toArray(), birthYears).find()) {
+                count++;
+                if (results != null || sink != null) {
+                    SiblingInfo siblings = new SiblingInfo(users.get((int) (pair >>> 32)), users.get((int) pair));
+                    if (results != null) {
+                        results.add(siblings);
+                    }
+                    if (sink != null) {
+                        sink.accept(siblings);
+                    }
+                }
+            }
+        }
+        catch (SQLException e) {
+            failed(e);
+        }
+        return count;
+    }
+
+    // EFFECTS:  returns the IDs of the friends of <userID>, in ascending order
+    private static List<Long> friendsOf(FriendAdjacency graph, long userID) {
+        List<Long> friendIDs = new ArrayList<Long>();
+        int v = graph.indexOf(userID);
+        if (v >= 0) {
+            for (int p = graph.begin(v); p < graph.end(v); p++) {
+                friendIDs.add(graph.idOf(graph.neighbor(p)));
+            }
+        }
+        return friendIDs;
+    }
+
+    // EFFECTS:  returns true if <userID1> and <userID2> are friends in <graph>
+    private static boolean areFriends(FriendAdjacency graph, long userID1, long userID2) {
+        int u = graph.indexOf(userID1);
+        int v = graph.indexOf(userID2);
+        return u >= 0 && v >= 0 && graph.adjacent(u, v);
+    }
+
+    // [Age Info Function]
+    // EFFECTS:  returns the oldest and youngest of the users in <friendIDs> found in
+    //   <users>, ordering unknown birthday fields after known ones and breaking ties by
+    //   the larger ID, exactly like StudentFakebookOracle; returns NULL if none is found
+    private static AgeInfo ageInfo(List<Long> friendIDs, Map<Long, UserInfo> users, Map<Long, int[]> birthdays) {
+        long oldest = -1L;
+        long youngest = -1L;
+        for (long friendID : friendIDs) {
+            if (!users.containsKey(friendID)) {
+                continue;
+            }
+            int[] birthday = birthdays.get(friendID);
+            if (oldest < 0) {
+                oldest = friendID;
+                youngest = friendID;
+                continue;
+            }
+            int older = compareBirthdays(birthday, birthdays.get(oldest));
+            if (older < 0 || (older == 0 && friendID > oldest)) {
+                oldest = friendID;
+            }
+            int younger = compareBirthdays(birthday, birthdays.get(youngest));
+            if (younger > 0 || (younger == 0 && friendID > youngest)) {
+                youngest = friendID;
+            }
+        }
+        return oldest < 0 ? null : new AgeInfo(users.get(oldest), users.get(youngest));
+    }
+
+    // EFFECTS:  compares two (year, month, day) birthdays field by field
+    private static int compareBirthdays(int[] a, int[] b) {
+        for (int idx = 0; idx < a.length; idx++) {
+            if (a[idx] != b[idx]) {
+                return a[idx] < b[idx] ? -1 : 1;
+            }
+        }
+        return 0;
+    }
+
+    // [User Lookup Function]
+    // MODIFIES: <birthdays>
+    // EFFECTS:  returns the ID, first name, and last name of each user in <userIDs> that
+    //   exists, keyed by user ID, and puts their birth year, month, and day into
+    //   <birthdays> unless it is NULL, with Integer.MAX_VALUE standing for an unknown
+    //   field; IDs are bound into an IN-list of exactly <InListLimit> placeholders,
+    //   padding the last chunk by repeating its final ID, so every lookup reuses the same
+    //   cached statement
+    private Map<Long, UserInfo> fetchUsers(Collection<Long> userIDs, Map<Long, int[]> birthdays) throws SQLException {
+        Map<Long, UserInfo> users = new HashMap<Long, UserInfo>();
+        if (userIDs.isEmpty()) {
+            return users;
+        }
+
+        PreparedStatement stmt = FakebookStatementCache.forConnection(oracle).prepare("Memory.users",
+            "SELECT user_id, first_name, last_name, year_of_birth, month_of_birth, day_of_birth " +
+            "FROM " + UsersTable + " " +
+            "WHERE user_id IN (" + FakebookStatementCache.placeholders(InListLimit) + ")");
+        Iterator<Long> it = userIDs.iterator();
+        while (it.hasNext()) {
+            long userID = 0L;
+            for (int idx = 1; idx <= InListLimit; idx++) {
+                if (it.hasNext()) {
+                    userID = it.next();
+                }
+                stmt.setLong(idx, userID);
+            }
+            ResultSet rst = stmt.executeQuery();
+            while (rst.next()) {
+                users.put(rst.getLong(1), new UserInfo(rst.getLong(1), rst.getString(2), rst.getString(3)));
+                if (birthdays != null) {
+                    int[] birthday = new int[3];
+                    for (int idx = 0; idx < birthday.length; idx++) {
+                        birthday[idx] = rst.getInt(4 + idx);
+                        if (rst.wasNull()) {
+                            birthday[idx] = Integer.MAX_VALUE;
+                        }
+                    }
+                    birthdays.put(rst.getLong(1), birthday);
+                }
+            }
+            rst.close();
+        }
+        return users;
+    }
+
+    // [Photo Lookup Function]
+    // EFFECTS:  returns the ID, album ID, link, and album name of each photo in <photoIDs>
+    //   that exists and whose album exists, keyed by photo ID; IDs are bound into an
+    //   IN-list the same way as by fetchUsers()
+    private Map<Long, PhotoInfo> fetchPhotos(Collection<Long> photoIDs) throws SQLException {
+        Map<Long, PhotoInfo> photos = new HashMap<Long, PhotoInfo>();
+        if (photoIDs.isEmpty()) {
+            return photos;
+        }
+
+        PreparedStatement stmt = FakebookStatementCache.forConnection(oracle).prepare("Memory.photos",
+            "SELECT P.photo_id, P.album_id, P.photo_link, A.album_name " +
+            "FROM " + FakebookOracleConstants.PhotosTable + " P " +
+            "JOIN " + FakebookOracleConstants.AlbumsTable + " A ON A.album_id = P.album_id " +
+            "WHERE P.photo_id IN (" + FakebookStatementCache.placeholders(InListLimit) + ")");
+        Iterator<Long> it = photoIDs.iterator();
+        while (it.hasNext()) {
+            long photoID = 0L;
+            for (int idx = 1; idx <= InListLimit; idx++) {
+                if (it.hasNext()) {
+                    photoID = it.next();
+                }
+                stmt.setLong(idx, photoID);
+            }
+            ResultSet rst = stmt.executeQuery();
+            while (rst.next()) {
+                photos.put(rst.getLong(1), new PhotoInfo(rst.getLong(1), rst.getLong(2), rst.getString(3), rst.getString(4)));
+            }
+            rst.close();
+        }
+        return photos;
+    }
+
+    /*
+        A UsersSummary holds everything Queries 0 and 1 need from one pass over the Users
+        table in ID order: the users born in each month, as one FakebookUserList per
+        month, and the number of users holding each first name, indexed by the name's
+        code in the FakebookNameTable that the lists share.
+    */
+    private static final class UsersSummary {
+        UsersSummary(ResultSet rst) throws SQLException {
+            names = new FakebookNameTable();
+            months = new TreeMap<Integer, FakebookUserList>();
+            nameCounts = new int[16];
+            while (rst.next()) {
+                int code = names.encode(rst.getString(2));
+                if (code >= nameCounts.length) {
+                    nameCounts = Arrays.copyOf(nameCounts, Math.max(2 * nameCounts.length, code + 1));
+                }
+                if (code >= 0) {
+                    nameCounts[code]++;
+                }
+                int month = rst.getInt(4);
+                if (rst.wasNull()) {
+                    continue;
+                }
+                FakebookUserList users = months.get(month);
+                if (users == null) {
+                    users = new FakebookUserList(", ", names);
+                    months.put(month, users);
+                }
+                users.add(rst.getLong(1), rst.getString(2), rst.getString(3));
+            }
+        }
+
+        // EFFECTS:  returns the answer to Query 0; ties for the most popular month go to
+        //   the earliest month and ties for the least popular month to the latest one
+        BirthMonthInfo monthInfo() {
+            long total = 0;
+            int mostMonth = 0;
+            int leastMonth = 0;
+            for (Map.Entry<Integer, FakebookUserList> entry : months.entrySet()) {
+                int size = entry.getValue().size();
+                total += size;
+                if (total == size || size > months.get(mostMonth).size()) {
+                    mostMonth = entry.getKey();
+                }
+                if (total == size || size <= months.get(leastMonth).size()) {
+                    leastMonth = entry.getKey();
+                }
+            }
+            BirthMonthInfo info = new BirthMonthInfo(total, mostMonth, leastMonth);
+            if (total > 0) {
+                for (UserInfo user : months.get(mostMonth)) {
+                    info.addMostPopularBirthMonthUser(user);
+                }
+                for (UserInfo user : months.get(leastMonth)) {
+                    info.addLeastPopularBirthMonthUser(user);
+                }
+            }
+            return info;
+        }
+
+        // EFFECTS:  returns the answer to Query 1, listing every name in ascending order
+        FirstNameInfo nameInfo() {
+            int longest = -1;
+            int shortest = Integer.MAX_VALUE;
+            int common = 0;
+            for (int code = 0; code < names.size(); code++) {
+                if (code < nameCounts.length && nameCounts[code] > 0) {
+                    int length = length(code);
+                    longest = Math.max(longest, length);
+                    shortest = Math.min(shortest, length);
+                    common = Math.max(common, nameCounts[code]);
+                }
+            }
+
+            TreeSet<String> longNames = new TreeSet<String>();
+            TreeSet<String> shortNames = new TreeSet<String>();
+            TreeSet<String> commonNames = new TreeSet<String>();
+            for (int code = 0; code < names.size(); code++) {
+                if (code < nameCounts.length && nameCounts[code] > 0) {
+                    if (length(code) == longest) {
+                        longNames.add(names.decode(code));
+                    }
+                    if (length(code) == shortest) {
+                        shortNames.add(names.decode(code));
+                    }
+                    if (nameCounts[code] == common) {
+                        commonNames.add(names.decode(code));
+                    }
+                }
+            }
+
+            FirstNameInfo info = new FirstNameInfo();
+            for (String name : longNames) {
+                info.addLongName(name);
+            }
+            for (String name : shortNames) {
+                info.addShortName(name);
+            }
+            for (String name : commonNames) {
+                info.addCommonName(name);
+                info.setCommonNameCount(common);
+            }
+            return info;
+        }
+
+        // EFFECTS:  returns the number of characters of the name <code>, as SQL LENGTH
+        //   counts them
+        private int length(int code) {
+            String name = names.decode(code);
+            return name.codePointCount(0, name.length());
+        }
+
+        private final FakebookNameTable names;
+        private final TreeMap<Integer, FakebookUserList> months;
+        private int[] nameCounts;
+    }
+
+    // Member Variables
+    private Connection oracle;
+    private StudentFakebookOracle sql;
+    private FriendAdjacency friends;
+    private FakebookBitmap friended;
+    private UsersSummary summary;
+    private static final boolean Aggregates = FakebookSettings.getBoolean("fakebook.memory.aggregates", false);
+    private static final boolean ScanUsers = FakebookSettings.getBoolean("fakebook.memory.scanUsers", false);
+    private static final String DefaultIndexFile = "fakebook.friends";
+    private final int InListLimit = FakebookOracleConstants.InListLimit;
+    private final String UsersTable = FakebookOracleConstants.UsersTable;
+}
@@ -25,11 +25,19 @@ final class FakebookOracleConstants {
     public static final String PhotosTable = String.format("%s%s", prefix, "Photos");
     public static final String TagsTable = String.format("%s%s", prefix, "Tags");
     
+    // Fetch Size Constants
+    public static final int DefaultFetchSize = 100;
+    
+    // Bind Variable Constants
+    public static final int InListLimit = 1000;                        // Oracle's limit on IN-list entries
+    
     // Printing Constants
     public static final String PrintDecoration = ">>>>>>>>>>>>>>>";
+    public static final String NewLine = System.lineSeparator();   // what String.format prints for %n
     
     // Result Set Constants Renamed
     public static final int AllScroll = ResultSet.TYPE_SCROLL_INSENSITIVE;
+    public static final int ForwardOnly = ResultSet.TYPE_FORWARD_ONLY;
     public static final int ReadOnly = ResultSet.CONCUR_READ_ONLY;
     
     // [Constructor]
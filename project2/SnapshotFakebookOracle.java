@@ -0,0 +1,665 @@
+package project2;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.BitSet;
+
+/*
+    The SnapshotFakebookOracle class is derived from the FakebookOracle class and answers
+    all ten queries from a FakebookSnapshot instead of a database, so it needs no
+    connection at all. It works on the snapshot's columns as arrays and relies on every
+    table being in primary-key order, as FakebookSnapshot.export writes it, so that rows
+    can be found by binary search and tables merged in key order. The FriendGraph used
+    by Queries 2, 5, 6, and 8 is built once, on first use; after that an instance is
+    never modified and may answer queries from several threads at once.
+
+    Queries 0-4 and 6-9 produce exactly what StudentFakebookOracle produces on the
+    database the snapshot was taken from, with the users of Query 2 in ID order.
+    Query 5 produces what its GOALS describe: the top <num> pairs by number of shared
+    photos, each with all of those photos.
+*/
+public final class SnapshotFakebookOracle extends FakebookOracle {
+    // [Constructor]
+    // REQUIRES: <snapshot> is not NULL
+    public SnapshotFakebookOracle(FakebookSnapshot snapshot) {
+        this.snapshot = snapshot;
+    }
+
+    // [Factory Function]
+    // EFFECTS:  returns a factory that opens the snapshot <file> on first use and hands
+    //   out the same oracle for every connection afterwards; it needs no connection
+    static FakebookOracleFactory factory(final File file) {
+        return new FakebookOracleFactory() {
+            public synchronized FakebookOracle create(Connection connection) {
+                if (oracle == null) {
+                    try {
+                        oracle = new SnapshotFakebookOracle(FakebookSnapshot.open(file));
+                    }
+                    catch (IOException e) {
+                        throw new UncheckedIOException("Could not open snapshot " + file, e);
+                    }
+                }
+                return oracle;
+            }
+
+            public boolean needsConnection() {
+                return false;
+            }
+
+            private SnapshotFakebookOracle oracle;
+        };
+    }
+
+    @Override
+    // Query 0
+    // -----------------------------------------------------------------------------------
+    // The known birth months are sorted and counted in runs; among months with equally
+    // many users the smallest is the most popular and the largest the least popular,
+    // as with the ORDER BY of StudentFakebookOracle
+    public BirthMonthInfo findMonthOfBirthInfo() throws SQLException {
+        SnapshotTable users = snapshot.table(FakebookSchema.Users);
+        long[] months = users.longs("month_of_birth");
+        BitSet unknown = users.nulls("month_of_birth");
+        long[] known = new long[users.rows() - unknown.cardinality()];
+        int total = 0;
+        for (int row = 0; row < users.rows(); row++) {
+            if (!unknown.get(row)) {
+                known[total++] = months[row];
+            }
+        }
+        Arrays.sort(known);
+
+        long mostMonth = 0L;
+        long leastMonth = 0L;
+        int mostUsers = 0;
+        int leastUsers = Integer.MAX_VALUE;
+        for (int start = 0, end; start < known.length; start = end) {
+            end = start + 1;
+            while (end < known.length && known[end] == known[start]) {
+                end++;
+            }
+            if (end - start > mostUsers) {
+                mostUsers = end - start;
+                mostMonth = known[start];
+            }
+            if (end - start <= leastUsers) {
+                leastUsers = end - start;
+                leastMonth = known[start];
+            }
+        }
+
+        BirthMonthInfo info = new BirthMonthInfo(total, (int) mostMonth, (int) leastMonth);
+        for (int row = 0; row < users.rows(); row++) {
+            if (!unknown.get(row) && months[row] == mostMonth) {
+                info.addMostPopularBirthMonthUser(user(row));
+            }
+        }
+        for (int row = 0; row < users.rows(); row++) {
+            if (!unknown.get(row) && months[row] == leastMonth) {
+                info.addLeastPopularBirthMonthUser(user(row));
+            }
+        }
+        return info;
+    }
+
+    @Override
+    // Query 1
+    // -----------------------------------------------------------------------------------
+    // The first names are dictionary codes, and the dictionary is sorted, so one pass
+    // over the codes counts every name and one pass over the dictionary lists the
+    // answers in ascending order
+    public FirstNameInfo findNameInfo() throws SQLException {
+        SnapshotTable users = snapshot.table(FakebookSchema.Users);
+        int[] codes = users.codes("first_name");
+        String[] names = users.dictionary("first_name");
+        int[] counts = new int[names.length];
+        for (int code : codes) {
+            if (code >= 0) {
+                counts[code]++;
+            }
+        }
+
+        int longest = -1;
+        int shortest = Integer.MAX_VALUE;
+        int common = 0;
+        for (int code = 0; code < names.length; code++) {
+            if (counts[code] != 0) {
+                longest = Math.max(longest, length(names[code]));
+                shortest = Math.min(shortest, length(names[code]));
+                common = Math.max(common, counts[code]);
+            }
+        }
+
+        FirstNameInfo info = new FirstNameInfo();
+        for (int code = 0; code < names.length; code++) {
+            if (counts[code] != 0 && length(names[code]) == longest) {
+                info.addLongName(names[code]);
+            }
+        }
+        for (int code = 0; code < names.length; code++) {
+            if (counts[code] != 0 && length(names[code]) == shortest) {
+                info.addShortName(names[code]);
+            }
+        }
+        for (int code = 0; code < names.length; code++) {
+            if (counts[code] != 0 && counts[code] == common) {
+                info.addCommonName(names[code]);
+                info.setCommonNameCount(common);
+            }
+        }
+        return info;
+    }
+
+    @Override
+    // Query 2
+    // -----------------------------------------------------------------------------------
+    // A user is lonely if the friend graph has no vertex for them
+    public FakebookArrayList<UserInfo> lonelyUsers() throws SQLException {
+        return lonelyUsersCompact().toArrayList();
+    }
+
+    @Override
+    public FakebookUserList lonelyUsersCompact() throws SQLException {
+        return users(lonelyRows());
+    }
+
+    @Override
+    public long countLonelyUsers() throws SQLException {
+        return lonelyRows().length;
+    }
+
+    @Override
+    public void lonelyUsers(FakebookRowSink<UserInfo> sink) throws SQLException, IOException {
+        for (int row : lonelyRows()) {
+            sink.accept(user(row));
+        }
+    }
+
+    @Override
+    // Query 3
+    // -----------------------------------------------------------------------------------
+    // Users, current cities, and hometowns are all in user ID order, so they are merged
+    // in one pass
+    public FakebookArrayList<UserInfo> liveAwayFromHome() throws SQLException {
+        return liveAwayFromHomeCompact().toArrayList();
+    }
+
+    @Override
+    public FakebookUserList liveAwayFromHomeCompact() throws SQLException {
+        return users(awayFromHomeRows());
+    }
+
+    @Override
+    public long countLiveAwayFromHome() throws SQLException {
+        return awayFromHomeRows().length;
+    }
+
+    @Override
+    public void liveAwayFromHome(FakebookRowSink<UserInfo> sink) throws SQLException, IOException {
+        for (int row : awayFromHomeRows()) {
+            sink.accept(user(row));
+        }
+    }
+
+    @Override
+    // Query 4
+    // -----------------------------------------------------------------------------------
+    // The tags are in (photo, subject) order, so the tags of each photo are one run; the
+    // runs of photos in existing albums are offered to a bounded heap by length, and the
+    // winning runs list their subjects in ID order
+    public FakebookArrayList<TaggedPhotoInfo> findPhotosWithMostTags(int num) throws SQLException {
+        FakebookArrayList<TaggedPhotoInfo> results = new FakebookArrayList<TaggedPhotoInfo>("\n");
+        SnapshotTable tags = snapshot.table(FakebookSchema.Tags);
+        long[] tagPhotos = tags.longs("tag_photo_id");
+        long[] tagSubjects = tags.longs("tag_subject_id");
+
+        TopPairHeap top = new TopPairHeap(num);
+        for (int start = 0, end; start < tagPhotos.length; start = end) {
+            end = start + 1;
+            while (end < tagPhotos.length && tagPhotos[end] == tagPhotos[start]) {
+                end++;
+            }
+            int photo = photoRow(tagPhotos[start]);
+            if (photo >= 0 && albumRow(photo) >= 0 && top.admits(end - start)) {
+                top.offer(end - start, photo, start);
+            }
+        }
+        top.sortBestFirst();
+
+        for (int idx = 0; idx < top.size(); idx++) {
+            TaggedPhotoInfo info = new TaggedPhotoInfo(photo(top.first(idx)));
+            for (int tag = top.second(idx); tag < top.second(idx) + top.count(idx); tag++) {
+                int user = userRow(tagSubjects[tag]);
+                if (user >= 0) {
+                    info.addTaggedUser(user(user));
+                }
+            }
+            results.add(info);
+        }
+        return results;
+    }
+
+    @Override
+    // Query 5
+    // -----------------------------------------------------------------------------------
+    // The tags are indexed by user as well as by photo. For every user <u>, the photos of
+    // <u> lead to the other users tagged in them; the tags of a photo are in subject ID
+    // order, so the users <v> > <u> are those tagged after <u>. Shared photos are counted
+    // for every such <v> in a dense array that is reset through a touched-list, and
+    // eligible pairs are offered to a bounded heap, as in MutualFriendCounter, which
+    // stops between users once the query's QueryGuard is cancelled
+    public FakebookArrayList<MatchPair> matchMaker(int num, int yearDiff) throws SQLException {
+        FakebookArrayList<MatchPair> results = new FakebookArrayList<MatchPair>("\n");
+        SnapshotTable users = snapshot.table(FakebookSchema.Users);
+        SnapshotTable tags = snapshot.table(FakebookSchema.Tags);
+        int[] genders = users.codes("gender");
+        long[] years = users.longs("year_of_birth");
+        BitSet unknownYears = users.nulls("year_of_birth");
+        long[] tagPhotos = tags.longs("tag_photo_id");
+        long[] tagSubjects = tags.longs("tag_subject_id");
+        int n = users.rows();
+        int numTags = tags.rows();
+
+        // Step 1: the user row of every tag, the run of tags on the same photo, and
+        // every user's tags in photo order
+        int[] tagUsers = new int[numTags];
+        int[] runEnds = new int[numTags];
+        int[] offsets = new int[n + 1];
+        for (int tag = 0; tag < numTags; tag++) {
+            tagUsers[tag] = userRow(tagSubjects[tag]);
+            if (tagUsers[tag] >= 0) {
+                offsets[tagUsers[tag] + 1]++;
+            }
+        }
+        for (int tag = numTags - 1; tag >= 0; tag--) {
+            boolean last = tag == numTags - 1 || tagPhotos[tag + 1] != tagPhotos[tag];
+            runEnds[tag] = last ? tag + 1 : runEnds[tag + 1];
+        }
+        for (int row = 0; row < n; row++) {
+            offsets[row + 1] += offsets[row];
+        }
+        int[] userTags = new int[offsets[n]];
+        int[] cursor = Arrays.copyOf(offsets, n);
+        for (int tag = 0; tag < numTags; tag++) {
+            if (tagUsers[tag] >= 0) {
+                userTags[cursor[tagUsers[tag]]++] = tag;
+            }
+        }
+        cursor = null;
+
+        // Step 2: count shared photos for every pair and keep the best <num>
+        FriendGraph graph = friendGraph();
+        TopPairHeap top = new TopPairHeap(num);
+        int[] counts = new int[n];
+        int[] touched = new int[n];
+        QueryGuard guard = QueryGuard.current();
+        for (int u = 0; u < n; u++) {
+            guard.check();
+            if (genders[u] < 0 || unknownYears.get(u)) {
+                continue;
+            }
+            int numTouched = 0;
+            for (int p = offsets[u]; p < offsets[u + 1]; p++) {
+                int tag = userTags[p];
+                for (int other = tag; other < runEnds[tag]; other++) {
+                    int v = tagUsers[other];
+                    if (v > u && counts[v]++ == 0) {
+                        touched[numTouched++] = v;
+                    }
+                }
+            }
+            for (int t = 0; t < numTouched; t++) {
+                int v = touched[t];
+                if (top.admits(counts[v]) && genders[v] == genders[u] && !unknownYears.get(v)
+                        && Math.abs(years[u] - years[v]) <= yearDiff && !friends(graph, u, v)) {
+                    top.offer(counts[v], u, v);
+                }
+                counts[v] = 0;
+            }
+        }
+        top.sortBestFirst();
+
+        // Step 3: list the photos of every winning pair by merging their tags
+        for (int idx = 0; idx < top.size(); idx++) {
+            int u = top.first(idx);
+            int v = top.second(idx);
+            MatchPair pair = new MatchPair(user(u), years[u], user(v), years[v]);
+            int p = offsets[u];
+            int q = offsets[v];
+            while (p < offsets[u + 1] && q < offsets[v + 1]) {
+                long photoU = tagPhotos[userTags[p]];
+                long photoV = tagPhotos[userTags[q]];
+                if (photoU < photoV) {
+                    p++;
+                }
+                else if (photoU > photoV) {
+                    q++;
+                }
+                else {
+                    int photo = photoRow(photoU);
+                    if (photo >= 0 && albumRow(photo) >= 0) {
+                        pair.addSharedPhoto(photo(photo));
+                    }
+                    p++;
+                    q++;
+                }
+            }
+            results.add(pair);
+        }
+        return results;
+    }
+
+    @Override
+    // Query 6
+    // -----------------------------------------------------------------------------------
+    // Mutual friends are counted with a MutualFriendCounter, exactly as in
+    // InMemoryFakebookOracle, and the names are read from the snapshot
+    public FakebookArrayList<UsersPair> suggestFriends(int num) throws SQLException {
+        FakebookArrayList<UsersPair> results = new FakebookArrayList<UsersPair>("\n");
+        FriendGraph graph = friendGraph();
+        TopPairHeap top = new MutualFriendCounter(graph).topPairs(num);
+
+        for (int idx = 0; idx < top.size(); idx++) {
+            int user1 = userRow(graph.idOf(top.first(idx)));
+            int user2 = userRow(graph.idOf(top.second(idx)));
+            if (user1 < 0 || user2 < 0) {
+                continue;
+            }
+            UsersPair pair = new UsersPair(user(user1), user(user2));
+            for (int v : graph.commonNeighbors(top.first(idx), top.second(idx))) {
+                int friend = userRow(graph.idOf(v));
+                if (friend >= 0) {
+                    pair.addSharedFriend(user(friend));
+                }
+            }
+            results.add(pair);
+        }
+        return results;
+    }
+
+    @Override
+    // Query 7
+    // -----------------------------------------------------------------------------------
+    // Events are counted per state through the sorted dictionary of state names, so the
+    // states with the most events come out in ascending order; like
+    // StudentFakebookOracle, it returns NULL if there are no events at all
+    public EventStateInfo findEventStates() throws SQLException {
+        SnapshotTable events = snapshot.table(FakebookSchema.Events);
+        SnapshotTable cities = snapshot.table(FakebookSchema.Cities);
+        long[] eventCities = events.longs("event_city_id");
+        long[] cityIDs = cities.longs("city_id");
+        int[] states = cities.codes("state_name");
+        String[] stateNames = cities.dictionary("state_name");
+
+        int[] counts = new int[stateNames.length];
+        int most = 0;
+        for (long city : eventCities) {
+            int row = Arrays.binarySearch(cityIDs, city);
+            if (row >= 0 && states[row] >= 0) {
+                most = Math.max(most, ++counts[states[row]]);
+            }
+        }
+        if (most == 0) {
+            return null;
+        }
+
+        EventStateInfo info = new EventStateInfo(most);
+        for (int state = 0; state < stateNames.length; state++) {
+            if (counts[state] == most) {
+                info.addState(stateNames[state]);
+            }
+        }
+        return info;
+    }
+
+    @Override
+    // Query 8
+    // -----------------------------------------------------------------------------------
+    // The friends of <userID> are its neighbors in the friend graph; birthdays compare
+    // with missing parts last and ties go to the larger user ID, as in the ORDER BY of
+    // StudentFakebookOracle
+    public AgeInfo findAgeInfo(long userID) throws SQLException {
+        FriendGraph graph = friendGraph();
+        int v = graph.indexOf(userID);
+        int oldest = -1;
+        int youngest = -1;
+        if (v >= 0) {
+            long[] ids = snapshot.table(FakebookSchema.Users).longs("user_id");
+            for (int p = graph.begin(v); p < graph.end(v); p++) {
+                int friend = userRow(graph.idOf(graph.neighbor(p)));
+                if (friend < 0) {
+                    continue;
+                }
+                if (oldest < 0 || compareBirthdays(friend, oldest) < 0
+                        || (compareBirthdays(friend, oldest) == 0 && ids[friend] > ids[oldest])) {
+                    oldest = friend;
+                }
+                if (youngest < 0 || compareBirthdays(friend, youngest) > 0
+                        || (compareBirthdays(friend, youngest) == 0 && ids[friend] > ids[youngest])) {
+                    youngest = friend;
+                }
+            }
+        }
+        if (oldest < 0) {
+            System.err.println("User " + userID + " has no friends");
+            return new AgeInfo(new UserInfo(-1, "ERROR", "ERROR"), new UserInfo(-1, "ERROR", "ERROR"));
+        }
+        return new AgeInfo(user(oldest), user(youngest));
+    }
+
+    @Override
+    // Query 9
+    // -----------------------------------------------------------------------------------
+    // The friendships are in (user1, user2) order, which is the order of the result, so
+    // each one is checked in turn against the users and their hometowns
+    public FakebookArrayList<SiblingInfo> findPotentialSiblings() throws SQLException {
+        return findPotentialSiblingsCompact().toArrayList();
+    }
+
+    @Override
+    public FakebookSiblingList findPotentialSiblingsCompact() throws SQLException {
+        FakebookSiblingList results = new FakebookSiblingList("\n");
+        int[] pairs = siblingRows();
+        for (int idx = 0; idx < pairs.length; idx += 2) {
+            results.add(new SiblingInfo(user(pairs[idx]), user(pairs[idx + 1])));
+        }
+        return results;
+    }
+
+    @Override
+    public long countPotentialSiblings() throws SQLException {
+        return siblingRows().length / 2;
+    }
+
+    @Override
+    public void findPotentialSiblings(FakebookRowSink<SiblingInfo> sink) throws SQLException, IOException {
+        int[] pairs = siblingRows();
+        for (int idx = 0; idx < pairs.length; idx += 2) {
+            sink.accept(new SiblingInfo(user(pairs[idx]), user(pairs[idx + 1])));
+        }
+    }
+
+    // EFFECTS:  returns the rows of the users without friends, in user ID order
+    private int[] lonelyRows() {
+        FriendGraph graph = friendGraph();
+        long[] ids = snapshot.table(FakebookSchema.Users).longs("user_id");
+        int[] rows = new int[ids.length];
+        int count = 0;
+        for (int row = 0; row < ids.length; row++) {
+            if (graph.indexOf(ids[row]) < 0) {
+                rows[count++] = row;
+            }
+        }
+        return Arrays.copyOf(rows, count);
+    }
+
+    // EFFECTS:  returns the rows of the users whose current city and hometown are both
+    //   known and differ, in user ID order
+    private int[] awayFromHomeRows() {
+        long[] ids = snapshot.table(FakebookSchema.Users).longs("user_id");
+        SnapshotTable current = snapshot.table(FakebookSchema.CurrentCities);
+        SnapshotTable hometown = snapshot.table(FakebookSchema.HometownCities);
+        long[] currentUsers = current.longs("user_id");
+        long[] currentCities = current.longs("current_city_id");
+        BitSet unknownCurrent = current.nulls("current_city_id");
+        long[] hometownUsers = hometown.longs("user_id");
+        long[] hometownCities = hometown.longs("hometown_city_id");
+        BitSet unknownHometown = hometown.nulls("hometown_city_id");
+
+        int[] rows = new int[ids.length];
+        int count = 0;
+        int c = 0;
+        int h = 0;
+        for (int row = 0; row < ids.length; row++) {
+            while (c < currentUsers.length && currentUsers[c] < ids[row]) {
+                c++;
+            }
+            while (h < hometownUsers.length && hometownUsers[h] < ids[row]) {
+                h++;
+            }
+            if (c < currentUsers.length && currentUsers[c] == ids[row] && !unknownCurrent.get(c)
+                    && h < hometownUsers.length && hometownUsers[h] == ids[row] && !unknownHometown.get(h)
+                    && currentCities[c] != hometownCities[h]) {
+                rows[count++] = row;
+            }
+        }
+        return Arrays.copyOf(rows, count);
+    }
+
+    // EFFECTS:  returns the user rows of the pairs of potential siblings, two entries
+    //   per pair, in (user1, user2) order
+    private int[] siblingRows() {
+        SnapshotTable users = snapshot.table(FakebookSchema.Users);
+        SnapshotTable friends = snapshot.table(FakebookSchema.Friends);
+        SnapshotTable hometown = snapshot.table(FakebookSchema.HometownCities);
+        int[] lastNames = users.codes("last_name");
+        long[] years = users.longs("year_of_birth");
+        BitSet unknownYears = users.nulls("year_of_birth");
+        long[] user1 = friends.longs("user1_id");
+        long[] user2 = friends.longs("user2_id");
+        long[] hometownUsers = hometown.longs("user_id");
+        long[] hometownCities = hometown.longs("hometown_city_id");
+        BitSet unknownHometown = hometown.nulls("hometown_city_id");
+
+        LongList pairs = new LongList();
+        for (int idx = 0; idx < user1.length; idx++) {
+            if (user1[idx] >= user2[idx]) {
+                continue;
+            }
+            int u = userRow(user1[idx]);
+            int v = userRow(user2[idx]);
+            if (u < 0 || v < 0 || lastNames[u] < 0 || lastNames[u] != lastNames[v]
+                    || unknownYears.get(u) || unknownYears.get(v) || Math.abs(years[u] - years[v]) >= 10) {
+                continue;
+            }
+            int h1 = Arrays.binarySearch(hometownUsers, user1[idx]);
+            int h2 = Arrays.binarySearch(hometownUsers, user2[idx]);
+            if (h1 >= 0 && h2 >= 0 && !unknownHometown.get(h1) && !unknownHometown.get(h2)
+                    && hometownCities[h1] == hometownCities[h2]) {
+                pairs.add(u);
+                pairs.add(v);
+            }
+        }
+        int[] rows = new int[pairs.size()];
+        for (int idx = 0; idx < rows.length; idx++) {
+            rows[idx] = (int) pairs.get(idx);
+        }
+        return rows;
+    }
+
+    // EFFECTS:  returns a negative number, zero, or a positive number as the user in row
+    //   <a> was born before, on the same day as, or after the user in row <b>, comparing
+    //   years, then months, then days, with unknown values after every known one
+    private int compareBirthdays(int a, int b) {
+        SnapshotTable users = snapshot.table(FakebookSchema.Users);
+        String[] columns = { "year_of_birth", "month_of_birth", "day_of_birth" };
+        for (String column : columns) {
+            BitSet unknown = users.nulls(column);
+            if (unknown.get(a) != unknown.get(b)) {
+                return unknown.get(a) ? 1 : -1;
+            }
+            long[] values = users.longs(column);
+            if (!unknown.get(a) && values[a] != values[b]) {
+                return values[a] < values[b] ? -1 : 1;
+            }
+        }
+        return 0;
+    }
+
+    // EFFECTS:  returns true if the users in rows <u> and <v> are friends
+    private boolean friends(FriendGraph graph, int u, int v) {
+        long[] ids = snapshot.table(FakebookSchema.Users).longs("user_id");
+        int x = graph.indexOf(ids[u]);
+        int y = graph.indexOf(ids[v]);
+        return x >= 0 && y >= 0 && graph.adjacent(x, y);
+    }
+
+    // EFFECTS:  returns the users in <rows> as a FakebookUserList
+    private FakebookUserList users(int[] rows) {
+        SnapshotTable users = snapshot.table(FakebookSchema.Users);
+        long[] ids = users.longs("user_id");
+        String[] firstNames = users.strings("first_name");
+        String[] lastNames = users.strings("last_name");
+        FakebookUserList results = new FakebookUserList(", ");
+        for (int row : rows) {
+            results.add(ids[row], firstNames[row], lastNames[row]);
+        }
+        return results;
+    }
+
+    // EFFECTS:  returns the user in row <row> of the Users table
+    private UserInfo user(int row) {
+        SnapshotTable users = snapshot.table(FakebookSchema.Users);
+        return new UserInfo(users.longs("user_id")[row], users.strings("first_name")[row], users.strings("last_name")[row]);
+    }
+
+    // EFFECTS:  returns the photo in row <row> of the Photos table, which must be in an
+    //   existing album
+    private PhotoInfo photo(int row) {
+        SnapshotTable photos = snapshot.table(FakebookSchema.Photos);
+        SnapshotTable albums = snapshot.table(FakebookSchema.Albums);
+        return new PhotoInfo(photos.longs("photo_id")[row], photos.longs("album_id")[row],
+            photos.strings("photo_link")[row], albums.strings("album_name")[albumRow(row)]);
+    }
+
+    // EFFECTS:  returns the row of user <userID>, or a negative number if there is none
+    private int userRow(long userID) {
+        return Arrays.binarySearch(snapshot.table(FakebookSchema.Users).longs("user_id"), userID);
+    }
+
+    // EFFECTS:  returns the row of photo <photoID>, or a negative number if there is none
+    private int photoRow(long photoID) {
+        return Arrays.binarySearch(snapshot.table(FakebookSchema.Photos).longs("photo_id"), photoID);
+    }
+
+    // EFFECTS:  returns the row of the album holding the photo in row <photo>, or a
+    //   negative number if that album does not exist
+    private int albumRow(int photo) {
+        long album = snapshot.table(FakebookSchema.Photos).longs("album_id")[photo];
+        return Arrays.binarySearch(snapshot.table(FakebookSchema.Albums).longs("album_id"), album);
+    }
+
+    // EFFECTS:  returns the number of characters in <name>
+    private static int length(String name) {
+        return name.codePointCount(0, name.length());
+    }
+
+    // [Friend Graph Accessor]
+    // MODIFIES: <graph>
+    // EFFECTS:  returns the friend graph, building it from the snapshot on first use
+    private synchronized FriendGraph friendGraph() {
+        if (graph == null) {
+            SnapshotTable friends = snapshot.table(FakebookSchema.Friends);
+            graph = FriendGraph.build(friends.longs("user1_id"), friends.longs("user2_id"));
+        }
+        return graph;
+    }
+
+    // Member Variables
+    private final FakebookSnapshot snapshot;
+    private FriendGraph graph;
+}
@@ -1,16 +1,31 @@
 package project2;
 
+import java.io.IOException;
 import java.sql.Connection;
+import java.sql.PreparedStatement;
 import java.sql.SQLException;
-import java.sql.Statement;
 import java.sql.ResultSet;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 /*
 
     The StudentFakebookOracle class is derived from the FakebookOracle class and implements
     the abstract query functions that investigate the database provided via the <connection>
     parameter of the constructor to discover specific information.
+
+    Every query runs through a PreparedStatement obtained from the connection's
+    FakebookStatementCache under a fixed query ID, with any argument-dependent values
+    passed as bind variables, so the server parses each query text only once.
+
+    Queries 2, 3, and 9 produce their rows straight from the cursor into a
+    FakebookRowSink; the list-returning versions simply collect what the sink receives.
 */
 public final class StudentFakebookOracle extends FakebookOracle {
     // [Constructor]
@@ -30,74 +45,78 @@ public final class StudentFakebookOracle extends FakebookOracle {
     //        (E) Find the IDs, first names, and last name of users born in the month
     //            identified in (C)
     //
-    // This query is provided to you completed for reference. Below you will find the appropriate
-    // mechanisms for opening up a statement, executing a query, walking through results, extracting
-    // data, and more things that you will need to do for the remaining nine queries
+    // The months are counted and ranked once in a grouped subquery, and the users born
+    // in the top-ranked months are joined back to it, so the whole query is a single
+    // statement and one round trip. Each returned row carries the total and the ranks of
+    // its month, which place it in the most popular list, the least popular list, or both.
     public BirthMonthInfo findMonthOfBirthInfo() throws SQLException {
-        try (Statement stmt = oracle.createStatement(FakebookOracleConstants.AllScroll, FakebookOracleConstants.ReadOnly)) {
+        try {
             // Step 1
             // ------------
-            // * Find the total number of users with birth month info
-            // * Find the month in which the most users were born
-            // * Find the month in which the fewest (but at least 1) users were born
-            ResultSet rst = stmt.executeQuery(
-                "SELECT COUNT(*) AS Birthed, Month_of_Birth " +         // select birth months and number of uses with that birth month
-                "FROM " + UsersTable + " " +                            // from all users
-                "WHERE Month_of_Birth IS NOT NULL " +                   // for which a birth month is available
-                "GROUP BY Month_of_Birth " +                            // group into buckets by birth month
-                "ORDER BY Birthed DESC, Month_of_Birth ASC");           // sort by users born in that month, descending; break ties by birth month
-            
+            // * Count the users born in each month, and in all months with a window over
+            //   those counts, in one grouped pass over the Users table
+            // * Rank the months by those counts: the most popular month is the one with the
+            //   most users (ties go to the earliest month), and the least popular month is
+            //   the one with the fewest (ties go to the latest month, as the last row of the
+            //   counts sorted by users born, descending, then by month, ascending, would)
+            // * Join the twelve ranked months back to the users born in the top-ranked ones,
+            //   smaller IDs first, so one round trip answers the whole query (ranking every
+            //   user row instead would sort the whole table)
+            PreparedStatement stmt = statements().prepare("Q0",
+                "SELECT U.User_ID, U.First_Name, U.Last_Name, M.Month_of_Birth, M.Total, M.Most_Rank, M.Least_Rank " +
+                "FROM " + UsersTable + " U " +
+                "JOIN (" +
+                    "SELECT Month_of_Birth, " +
+                    "SUM(COUNT(*)) OVER () AS Total, " +                                // users with a birth month
+                    "DENSE_RANK() OVER (ORDER BY COUNT(*) DESC, Month_of_Birth ASC) AS Most_Rank, " +
+                    "DENSE_RANK() OVER (ORDER BY COUNT(*) ASC, Month_of_Birth DESC) AS Least_Rank " +
+                    "FROM " + UsersTable + " " +
+                    "WHERE Month_of_Birth IS NOT NULL " +
+                    "GROUP BY Month_of_Birth" +
+                ") M ON U.Month_of_Birth = M.Month_of_Birth " +
+                "WHERE M.Most_Rank = 1 OR M.Least_Rank = 1 " +
+                "ORDER BY U.User_ID");
+            ResultSet rst = stmt.executeQuery();
+
+            // Step 2
+            // ------------
+            // * Every row carries the total and the month it belongs to, so the first row
+            //   gives the total and each row is added to the list(s) of its month
+            List<UserInfo> most = new ArrayList<UserInfo>();
+            List<UserInfo> least = new ArrayList<UserInfo>();
             int mostMonth = 0;
             int leastMonth = 0;
-            int total = 0;
-            while (rst.next()) {                       // step through result rows/records one by one
-                if (rst.isFirst()) {                   // if first record
-                    mostMonth = rst.getInt(2);         //   it is the month with the most
+            long total = 0;
+            while (rst.next()) {
+                UserInfo user = new UserInfo(rst.getLong(1), rst.getString(2), rst.getString(3));
+                total = rst.getLong(5);
+                if (rst.getInt(6) == 1) {
+                    mostMonth = rst.getInt(4);
+                    most.add(user);
                 }
-                if (rst.isLast()) {                    // if last record
-                    leastMonth = rst.getInt(2);        //   it is the month with the least
+                if (rst.getInt(7) == 1) {
+                    leastMonth = rst.getInt(4);
+                    least.add(user);
                 }
-                total += rst.getInt(1);                // get the first field's value as an integer
-            }
-            BirthMonthInfo info = new BirthMonthInfo(total, mostMonth, leastMonth);
-            
-            // Step 2
-            // ------------
-            // * Get the names of users born in the most popular birth month
-            rst = stmt.executeQuery(
-                "SELECT User_ID, First_Name, Last_Name " +                // select ID, first name, and last name
-                "FROM " + UsersTable + " " +                              // from all users
-                "WHERE Month_of_Birth = " + mostMonth + " " +             // born in the most popular birth month
-                "ORDER BY User_ID");                                      // sort smaller IDs first
-                
-            while (rst.next()) {
-                info.addMostPopularBirthMonthUser(new UserInfo(rst.getLong(1), rst.getString(2), rst.getString(3)));
             }
 
             // Step 3
             // ------------
-            // * Get the names of users born in the least popular birth month
-            rst = stmt.executeQuery(
-                "SELECT User_ID, First_Name, Last_Name " +                // select ID, first name, and last name
-                "FROM " + UsersTable + " " +                              // from all users
-                "WHERE Month_of_Birth = " + leastMonth + " " +            // born in the least popular birth month
-                "ORDER BY User_ID");                                      // sort smaller IDs first
-                
-            while (rst.next()) {
-                info.addLeastPopularBirthMonthUser(new UserInfo(rst.getLong(1), rst.getString(2), rst.getString(3)));
-            }
-
-            // Step 4
-            // ------------
             // * Close resources being used
-            rst.close();
-            stmt.close();                            // if you close the statement first, the result set gets closed automatically
+            rst.close();                             // the statements belong to the statement cache and stay open
 
+            BirthMonthInfo info = new BirthMonthInfo(total, mostMonth, leastMonth);
+            for (UserInfo user : most) {
+                info.addMostPopularBirthMonthUser(user);
+            }
+            for (UserInfo user : least) {
+                info.addLeastPopularBirthMonthUser(user);
+            }
             return info;
 
         }
         catch (SQLException e) {
-            System.err.println(e.getMessage());
+            failed(e);
             return new BirthMonthInfo(-1, -1, -1);
         }
     }
@@ -109,52 +128,45 @@ public final class StudentFakebookOracle extends FakebookOracle {
     //        (B) The first name(s) with the fewest letters
     //        (C) The first name held by the most users
     //        (D) The number of users whose first name is that identified in (C)
+    //
+    // The first names are grouped once, and each distinct name is ranked by its length
+    // in both directions and by the number of users holding it, so the Users table is
+    // scanned once and only the names that rank first in some way come back.
     public FirstNameInfo findNameInfo() throws SQLException {
-        try (Statement stmt = oracle.createStatement(FakebookOracleConstants.AllScroll, FakebookOracleConstants.ReadOnly)) {
+        try {
 
             FirstNameInfo info = new FirstNameInfo();
-            ResultSet rst = stmt.executeQuery( 
-                "SELECT DISTINCT first_name " +
-                "FROM " + UsersTable + " " +
-                "WHERE LENGTH(first_name) = " +
-                "(SELECT MAX(LENGTH(first_name)) FROM " + UsersTable + ") " +
-                "ORDER BY first_name ASC");
-            
-            while (rst.next()) {  
-                info.addLongName(rst.getString(1));
-            }
-
-            rst = stmt.executeQuery( 
-                "SELECT DISTINCT first_name " +
-                "FROM " + UsersTable + " " +
-                "WHERE LENGTH(first_name) = " +
-                "(SELECT MIN(LENGTH(first_name)) FROM " + UsersTable + ") " +
-                "ORDER BY first_name ASC");
+            ResultSet rst = statements().prepare("Q1",
+                "SELECT first_name, name_count, long_rank, short_rank, common_rank " +
+                "FROM (" +
+                    "SELECT first_name, COUNT(*) AS name_count, " +
+                    "RANK() OVER (ORDER BY LENGTH(first_name) DESC) AS long_rank, " +
+                    "RANK() OVER (ORDER BY LENGTH(first_name) ASC) AS short_rank, " +
+                    "RANK() OVER (ORDER BY COUNT(*) DESC) AS common_rank " +
+                    "FROM " + UsersTable + " " +
+                    "GROUP BY first_name" +
+                ") " +
+                "WHERE long_rank = 1 OR short_rank = 1 OR common_rank = 1 " +
+                "ORDER BY first_name ASC").executeQuery();
 
             while (rst.next()) {
-                info.addShortName(rst.getString(1));
-            }
-
-            rst = stmt.executeQuery(
-                "SELECT DISTINCT COUNT(*), first_name " +
-                "FROM " + UsersTable + " " +
-                "GROUP BY first_name " +
-                "HAVING COUNT(*) = " +
-                "(SELECT MAX(COUNT(*)) FROM " + UsersTable + " " +
-                "GROUP BY first_name) " +
-                "ORDER BY first_name ASC ");
-
-            while (rst.next()) {
-                info.addCommonName(rst.getString(2));
-                info.setCommonNameCount(rst.getInt(1));
+                if (rst.getInt(3) == 1) {
+                    info.addLongName(rst.getString(1));
+                }
+                if (rst.getInt(4) == 1) {
+                    info.addShortName(rst.getString(1));
+                }
+                if (rst.getInt(5) == 1) {
+                    info.addCommonName(rst.getString(1));
+                    info.setCommonNameCount(rst.getLong(2));
+                }
             }
 
             rst.close();
-            stmt.close();
             return info;
         }
         catch (SQLException e) {
-            System.err.println(e.getMessage());
+            failed(e);
             return new FirstNameInfo();
         }
     }
@@ -168,30 +180,46 @@ public final class StudentFakebookOracle extends FakebookOracle {
     // the one entry (U1, U2) where U1 < U2.
     public FakebookArrayList<UserInfo> lonelyUsers() throws SQLException {
         FakebookArrayList<UserInfo> results = new FakebookArrayList<UserInfo>(", ");
-        
-        try (Statement stmt = oracle.createStatement(FakebookOracleConstants.AllScroll, FakebookOracleConstants.ReadOnly)) {
-
-            ResultSet rst = stmt.executeQuery( 
-                "SELECT user_id, first_name, last_name " +
-                "FROM " + UsersTable + " " +
-                "WHERE user_id NOT IN " +
-                "(SELECT user1_id FROM " + FriendsTable + " " +
-                "UNION " +
-                "SELECT user2_id FROM " + FriendsTable + ")"
-            );
-            while(rst.next()) {
-                results.add(new UserInfo(rst.getLong(1), rst.getString(2), rst.getString(3)));
+        collect(results, new RowCollector<UserInfo>() {
+            public void run(FakebookRowSink<UserInfo> sink) throws SQLException, IOException {
+                lonelyUsers(sink);
+            }
+        });
+        return results;
+    }
+    
+    @Override
+    public FakebookUserList lonelyUsersCompact() throws SQLException {
+        FakebookUserList results = new FakebookUserList(", ");
+        collect(results, new RowCollector<UserInfo>() {
+            public void run(FakebookRowSink<UserInfo> sink) throws SQLException, IOException {
+                lonelyUsers(sink);
+            }
+        });
+        return results;
+    }
+    
+    @Override
+    public long countLonelyUsers() throws SQLException {
+        return count("Q2.count", LonelyUsersQuery);
+    }
+    
+    @Override
+    public void lonelyUsers(FakebookRowSink<UserInfo> sink) throws SQLException, IOException {
+        try {
+            ResultSet rst = statements().prepare("Q2", LonelyUsersQuery).executeQuery();
+            try {
+                while (rst.next()) {
+                    sink.accept(new UserInfo(rst.getLong(1), rst.getString(2), rst.getString(3)));
+                }
+            }
+            finally {
+                rst.close();
             }
-            rst.close();
-            stmt.close();
-
-
         }
         catch (SQLException e) {
-            System.err.println(e.getMessage());
+            failed(e);
         }
-        
-        return results;
     }
     
     @Override
@@ -201,37 +229,46 @@ public final class StudentFakebookOracle extends FakebookOracle {
     //            in their hometown (i.e. their current city and their hometown are different)
     public FakebookArrayList<UserInfo> liveAwayFromHome() throws SQLException {
         FakebookArrayList<UserInfo> results = new FakebookArrayList<UserInfo>(", ");
-
-        try (Statement stmt = oracle.createStatement(FakebookOracleConstants.AllScroll, FakebookOracleConstants.ReadOnly)) {
-
-            ResultSet rst = stmt.executeQuery(
-                "SELECT U.user_id, U.first_name, U.last_name " +
-                "FROM " + CurrentCitiesTable + " C " +
-                "JOIN " + UsersTable + " U " +
-                "ON U.user_id = C.user_id " +
-                "JOIN " + HometownCitiesTable + " H " +
-                "ON U.user_id = H.user_id " +
-                "WHERE " +
-                "C.current_city_id <> H.hometown_city_id AND " +
-                "C.current_city_id IS NOT NULL AND " +
-                "H.hometown_city_id IS NOT NULL " +
-                "ORDER BY U.user_id ASC "
-            );
-
-            while(rst.next()) {
-                results.add(new UserInfo(rst.getLong(1), rst.getString(2), rst.getString(3)));
+        collect(results, new RowCollector<UserInfo>() {
+            public void run(FakebookRowSink<UserInfo> sink) throws SQLException, IOException {
+                liveAwayFromHome(sink);
+            }
+        });
+        return results;
+    }
+    
+    @Override
+    public FakebookUserList liveAwayFromHomeCompact() throws SQLException {
+        FakebookUserList results = new FakebookUserList(", ");
+        collect(results, new RowCollector<UserInfo>() {
+            public void run(FakebookRowSink<UserInfo> sink) throws SQLException, IOException {
+                liveAwayFromHome(sink);
+            }
+        });
+        return results;
+    }
+    
+    @Override
+    public long countLiveAwayFromHome() throws SQLException {
+        return count("Q3.count", AwayFromHomeQuery);
+    }
+    
+    @Override
+    public void liveAwayFromHome(FakebookRowSink<UserInfo> sink) throws SQLException, IOException {
+        try {
+            ResultSet rst = statements().prepare("Q3", AwayFromHomeQuery).executeQuery();
+            try {
+                while (rst.next()) {
+                    sink.accept(new UserInfo(rst.getLong(1), rst.getString(2), rst.getString(3)));
+                }
+            }
+            finally {
+                rst.close();
             }
-
-            rst.close();
-            stmt.close();
-
         }
         catch (SQLException e) {
-            System.err.println(e.getMessage());
+            failed(e);
         }
-
-        return results;
-
     }
     
     @Override
@@ -241,82 +278,90 @@ public final class StudentFakebookOracle extends FakebookOracle {
     //            <num> photos with the most tagged users
     //        (B) For each photo identified in (A), find the IDs, first names, and last names
     //            of the users therein tagged
+    //
+    // Tags are counted per photo in a LongIntMap while the Tags table streams past, a
+    // TopCountHeap keeps the best <num> photos, and only then are those photos, their
+    // albums, and their tagged users fetched by ID, so no more than <num> photos are ever
+    // sorted. A photo that is missing from the Photos or Albums table is ruled out and
+    // the selection repeated, as the join it replaces never ranked such a photo. The IDs
+    // are sent in IN-lists of up to InListLimit, each sized by inListSize() to the IDs
+    // it holds, so the server never matches hundreds of copies of one padding ID.
     public FakebookArrayList<TaggedPhotoInfo> findPhotosWithMostTags(int num) throws SQLException {
         FakebookArrayList<TaggedPhotoInfo> results = new FakebookArrayList<TaggedPhotoInfo>("\n");
         
-        try (Statement stmt = oracle.createStatement(FakebookOracleConstants.AllScroll, FakebookOracleConstants.ReadOnly)) {
-
-            ResultSet rst = stmt.executeQuery(
-                
-                "SELECT PHOTO.num_users, PHOTO.photo_id, PHOTO.album_id, " +
-                "PHOTO.photo_link, PHOTO.album_name, U.user_id, U.first_name, U.last_name " +
-                "FROM " + UsersTable + " U, " + TagsTable + " T, " +
-                "(SELECT COUNT(*) AS num_users, P.photo_id, A.album_id, P.photo_link, A.album_name " +
-                "FROM " + PhotosTable + " P, " + AlbumsTable + " A, " + TagsTable + " T " +
-                "WHERE P.album_id = A.album_id AND P.photo_id = T.tag_photo_id " +
-                "GROUP BY P.photo_id, A.album_id, P.photo_link, A.album_name" +
-                ") PHOTO " +
-                "WHERE T.tag_subject_id = U.user_id " +
-                "AND T.tag_photo_id = PHOTO.photo_id " +
-                "ORDER BY PHOTO.num_users DESC, PHOTO.photo_id, U.user_id"
-            
-            );
-
-                // num_users  ... user
-                // num_users ... user 
-
-                // create PhotoInfo
-                // create tagged 
-                // do { add user to tag } while 
-
-
-            int current_photo = 0;
-            // while (rst.next() && current_photo < num) {
+        try {
+            LongIntMap counts = new LongIntMap();
+            ResultSet rst = statements().prepare("Q4.tags",
+                "SELECT tag_photo_id FROM " + TagsTable).executeQuery();
             while (rst.next()) {
-                if (current_photo < num) {
-                    PhotoInfo p = new PhotoInfo(
-                        rst.getLong(2),
-                        rst.getLong(3),
-                        rst.getString(4),
-                        rst.getString(5)
-                    );
-                    TaggedPhotoInfo tp = new TaggedPhotoInfo(p);
-
-                    int current_user = 0;
-                    int total_users = rst.getInt(1);
-                    do {
-                        if ( current_user < total_users) {
-                            tp.addTaggedUser(
-                                new UserInfo(
-                                    rst.getLong(6),
-                                    rst.getString(7),
-                                    rst.getString(8)
-                                )
-                            );
-                            current_user += 1;
-                        } else {
-                            break;
-                        }
-                    // } while (rst.next() && current_user < total_users);
-                    } while (rst.next());
-                    
-                    results.add(tp);
-                //     rst.previous();
-                    current_photo += 1;
-                } else {
-                    break;
-                }
-
+                counts.increment(rst.getLong(1));
             }
             rst.close();
-            stmt.close();
 
+            Map<Long, TaggedPhotoInfo> photos = new HashMap<Long, TaggedPhotoInfo>();
+            Set<Long> missing = new HashSet<Long>();
+            long[] top;
+            do {
+                TopCountHeap heap = new TopCountHeap(Math.max(num, 0));
+                for (int slot = 0; slot < counts.capacity(); slot++) {
+                    int count = counts.valueAt(slot);
+                    if (count > 0 && heap.admits(count)
+                            && (missing.isEmpty() || !missing.contains(counts.keyAt(slot)))) {
+                        heap.offer(count, counts.keyAt(slot));
+                    }
+                }
+                heap.sortBestFirst();
+                top = new long[heap.size()];
+                for (int idx = 0; idx < top.length; idx++) {
+                    top[idx] = heap.id(idx);
+                }
 
-            
+                photos.clear();
+                for (int start = 0; start < top.length; start += InListLimit) {
+                    int size = FakebookStatementCache.inListSize(top.length - start, InListLimit);
+                    PreparedStatement photoStmt = statements().prepare("Q4.photos." + size,
+                        "SELECT P.photo_id, P.album_id, P.photo_link, A.album_name " +
+                        "FROM " + PhotosTable + " P " +
+                        "JOIN " + AlbumsTable + " A ON A.album_id = P.album_id " +
+                        "WHERE P.photo_id IN (" + FakebookStatementCache.placeholders(size) + ")");
+                    bindIDs(photoStmt, top, start, size);
+                    rst = photoStmt.executeQuery();
+                    while (rst.next()) {
+                        photos.put(rst.getLong(1), new TaggedPhotoInfo(
+                            new PhotoInfo(rst.getLong(1), rst.getLong(2), rst.getString(3), rst.getString(4))));
+                    }
+                    rst.close();
+                }
+                for (long photoID : top) {
+                    if (!photos.containsKey(photoID)) {
+                        missing.add(photoID);
+                    }
+                }
+            } while (photos.size() < top.length);
+
+            for (int start = 0; start < top.length; start += InListLimit) {
+                int size = FakebookStatementCache.inListSize(top.length - start, InListLimit);
+                PreparedStatement userStmt = statements().prepare("Q4.users." + size,
+                    "SELECT T.tag_photo_id, U.user_id, U.first_name, U.last_name " +
+                    "FROM " + TagsTable + " T " +
+                    "JOIN " + UsersTable + " U ON U.user_id = T.tag_subject_id " +
+                    "WHERE T.tag_photo_id IN (" + FakebookStatementCache.placeholders(size) + ") " +
+                    "ORDER BY T.tag_photo_id, U.user_id");
+                bindIDs(userStmt, top, start, size);
+                rst = userStmt.executeQuery();
+                while (rst.next()) {
+                    photos.get(rst.getLong(1)).addTaggedUser(
+                        new UserInfo(rst.getLong(2), rst.getString(3), rst.getString(4)));
+                }
+                rst.close();
+            }
 
+            for (long photoID : top) {
+                results.add(photos.get(photoID));
+            }
         }
         catch (SQLException e) {
-            System.err.println(e.getMessage());
+            failed(e);
         }
         
         return results;
@@ -337,9 +382,9 @@ public final class StudentFakebookOracle extends FakebookOracle {
     public FakebookArrayList<MatchPair> matchMaker(int num, int yearDiff) throws SQLException {
         FakebookArrayList<MatchPair> results = new FakebookArrayList<MatchPair>("\n");
         
-        try (Statement stmt = oracle.createStatement(FakebookOracleConstants.AllScroll, FakebookOracleConstants.ReadOnly)) {
+        try {
 
-            ResultSet rst = stmt.executeQuery(
+            PreparedStatement stmt = statements().prepare("Q5",
                 "SELECT "+
                 "T.FIRST, T.SECOND, "+
                 "U1.FIRST_NAME, U1.LAST_NAME, U1.YEAR_OF_BIRTH, "+
@@ -351,13 +396,13 @@ public final class StudentFakebookOracle extends FakebookOracle {
                 "WHERE "+
                 "U1.USER_ID = T1.TAG_SUBJECT_ID AND U2.USER_ID = T2.TAG_SUBJECT_ID AND T1.TAG_PHOTO_ID = T2.TAG_PHOTO_ID AND "+
                 "U1.GENDER = U2.GENDER AND U1.USER_ID <> U2.USER_ID AND "+
-                "ABS(U1.year_of_birth - U2.year_of_birth) <= " + yearDiff +
+                "ABS(U1.year_of_birth - U2.year_of_birth) <= ? "+
                 "AND NOT EXISTS "+
                 "(SELECT * FROM " + FriendsTable + " F "+
                 "WHERE (F.USER1_ID = U1.USER_ID AND F.USER2_ID = U2.USER_ID) OR (F.USER1_ID = U2.USER_ID AND F.USER2_ID = U1.USER_ID)) " +
                 "GROUP BY U1.USER_ID, U2.USER_ID "+
                 "ORDER BY COUNT(T1.TAG_PHOTO_ID) DESC, U1.USER_ID ASC, U2.USER_ID ASC) "+
-                "WHERE ROWNUM <= " + num + ") T, " + UsersTable + " U1, " + UsersTable + " U2, " + TagsTable + " T1, " + TagsTable + " T2, " + PhotosTable + " P, " + AlbumsTable + " A " +
+                "WHERE ROWNUM <= ?) T, " + UsersTable + " U1, " + UsersTable + " U2, " + TagsTable + " T1, " + TagsTable + " T2, " + PhotosTable + " P, " + AlbumsTable + " A " +
                 "WHERE "+
                 "T.FIRST = U1.USER_ID AND T.SECOND = U2.USER_ID AND "+
                 "T.FIRST = T1.TAG_SUBJECT_ID AND T.SECOND = T2.TAG_SUBJECT_ID AND "+
@@ -365,64 +410,38 @@ public final class StudentFakebookOracle extends FakebookOracle {
                 "P.ALBUM_ID = A.ALBUM_ID "+
                 "ORDER BY T.FIRST ASC, T.SECOND ASC"
             );
-
-
-            Long user1ID = null;
-            Long user2ID = null;
-            MatchPair pair = null;
-
-            while (rst.next()) {
-                
-                if (user1ID == null || (!user1ID.equals(rst.getLong(1)) && !user2ID.equals(rst.getLong(2)))) {
-                    if (pair != null) {
-                        results.add(pair);
-                    }
-                    user1ID = rst.getLong(1);
-                    user2ID = rst.getLong(2);
-                    pair = new MatchPair(new UserInfo(user1ID, rst.getString(3), rst.getString(4)),
-                            rst.getInt(5), new UserInfo(user2ID, rst.getString(6), rst.getString(7)), rst.getInt(8));
-                }
-
-                pair.addSharedPhoto(new PhotoInfo(rst.getInt(9), rst.getInt(10),
-                        rst.getString(11), rst.getString(12)));
-            }
-            if (pair != null) {
-                results.add(pair);
-            }
-
-            rst.next();
-            user1ID = rst.getLong(1);
-            user2ID = rst.getLong(2);
-            pair = new MatchPair(new UserInfo(user1ID, rst.getString(3), rst.getString(4)), 
+            stmt.setInt(1, yearDiff);
+            stmt.setInt(2, num);
+            ResultSet rst = stmt.executeQuery();
+            try {
+                Long user1ID = null;
+                Long user2ID = null;
+                MatchPair pair = null;
+
+                while (rst.next()) {
+                    if (user1ID == null || !user1ID.equals(rst.getLong(1)) || !user2ID.equals(rst.getLong(2))) {
+                        if (pair != null) {
+                            results.add(pair);
+                        }
+                        user1ID = rst.getLong(1);
+                        user2ID = rst.getLong(2);
+                        pair = new MatchPair(new UserInfo(user1ID, rst.getString(3), rst.getString(4)),
                                 rst.getInt(5), new UserInfo(user2ID, rst.getString(6), rst.getString(7)), rst.getInt(8));
-            pair.addSharedPhoto(new PhotoInfo(rst.getInt(9), rst.getInt(10),
-                            rst.getString(11), rst.getString(12)));
+                    }
 
-            while(rst.next()) {
-                if  (user1ID.equals(rst.getLong(1))) {
-                    pair.addSharedPhoto(new PhotoInfo(rst.getInt(9), rst.getInt(10), rst.getString(11), rst.getString(12)));
-                }
-                else {
-                    user1ID = rst.getLong(1);
-                    user2ID = rst.getLong(2);
-                    pair = new MatchPair(new UserInfo(user1ID, rst.getString(3), rst.getString(4)), 
-                                rst.getInt(5), new UserInfo(user2ID, rst.getString(6), rst.getString(7)), rst.getInt(8));
                     pair.addSharedPhoto(new PhotoInfo(rst.getInt(9), rst.getInt(10),
                             rst.getString(11), rst.getString(12)));
                 }
+                if (pair != null) {
+                    results.add(pair);
+                }
+            }
+            finally {
+                rst.close();
             }
-
-
-            rst.close();
-            stmt.close();
-
-
-
-
-
         }
         catch (SQLException e) {
-            System.err.println(e.getMessage());
+            failed(e);
         }
         
         return results;
@@ -439,10 +458,10 @@ public final class StudentFakebookOracle extends FakebookOracle {
     public FakebookArrayList<UsersPair> suggestFriends(int num) throws SQLException {
         FakebookArrayList<UsersPair> results = new FakebookArrayList<UsersPair>("\n");
         
-        try (Statement stmt = oracle.createStatement(FakebookOracleConstants.AllScroll, FakebookOracleConstants.ReadOnly)) {
+        try {
 
 
-            ResultSet rst = stmt.executeQuery(
+            PreparedStatement stmt = statements().prepare("Q6",
                 "SELECT U1_ID, U2_ID, U3_ID, F1, L1, F2, L2, F3, L3 "+
                                     "FROM " +
                                     "(SELECT T.SUM AS SUM, "+
@@ -468,7 +487,7 @@ public final class StudentFakebookOracle extends FakebookOracle {
                                     "WHERE NOT EXISTS(SELECT * FROM " + FriendsTable + " F WHERE F.USER1_ID = U1_ID AND F.USER2_ID = U2_ID) " +
                                     "GROUP BY U1_ID, U2_ID " +
                                     "ORDER BY SUM DESC, U1_ID ASC, U2_ID ASC) " +
-                                    "WHERE ROWNUM <= " + num
+                                    "WHERE ROWNUM <= ?"
                                     +") T, "+
                                     "("+
                                     "SELECT F1.USER1_ID AS U1_ID, F2.USER1_ID AS U2_ID, F1.USER2_ID AS U3_ID " +
@@ -492,6 +511,8 @@ public final class StudentFakebookOracle extends FakebookOracle {
                                     "T.U2_ID = U2.USER_ID AND "+
                                     "F.U3_ID = U3.USER_ID " +
                                     "ORDER BY T.SUM DESC, T.U1_ID ASC, T.U2_ID ASC, U3_ID ASC)");
+            stmt.setInt(1, num);
+            ResultSet rst = stmt.executeQuery();
 
             Long user1_id = null;
             Long user2_id = null;
@@ -512,11 +533,10 @@ public final class StudentFakebookOracle extends FakebookOracle {
             }
 
             rst.close();
-            stmt.close();
 
         }
         catch (SQLException e) {
-            System.err.println(e.getMessage());
+            failed(e);
         }
         
         return results;
@@ -528,20 +548,20 @@ public final class StudentFakebookOracle extends FakebookOracle {
     // GOALS: (A) Find the name of the state or states in which the most events are held
     //        (B) Find the number of events held in the states identified in (A)
     public EventStateInfo findEventStates() throws SQLException {
-        try (Statement stmt = oracle.createStatement(FakebookOracleConstants.AllScroll, FakebookOracleConstants.ReadOnly)) {
+        try {
             
-            ResultSet rst = stmt.executeQuery(
+            ResultSet rst = statements().prepare("Q7",
                 "SELECT DISTINCT COUNT(*) AS count, C.state_name " +
                 "FROM " + EventsTable + " E, "  + CitiesTable  + " C " +
                 "WHERE C.city_id = E.event_city_id " +
                 "GROUP BY C.state_name " +
                 "ORDER BY count DESC, C.state_name ASC"
-            );
+            ).executeQuery();
 
             int max = 0;
             EventStateInfo info = null;
             while(rst.next()) {
-                if(rst.isFirst()) {
+                if(info == null) {
                     max = rst.getInt(1);
                     info = new EventStateInfo(rst.getInt(1));
                     info.addState(rst.getString(2));
@@ -553,11 +573,10 @@ public final class StudentFakebookOracle extends FakebookOracle {
             }
 
             rst.close();
-            stmt.close();
             return info;
         }
         catch (SQLException e) {
-            System.err.println(e.getMessage());
+            failed(e);
             return new EventStateInfo(-1);
         }
     }
@@ -570,47 +589,135 @@ public final class StudentFakebookOracle extends FakebookOracle {
     //        (B) Find the ID, first name, and last name of the youngest friend of the user
     //            with User ID <userID>
     public AgeInfo findAgeInfo(long userID) throws SQLException {
-        try (Statement stmt = oracle.createStatement(FakebookOracleConstants.AllScroll, FakebookOracleConstants.ReadOnly)) {
+        try {
 
-            ResultSet rst = stmt.executeQuery(
+            PreparedStatement stmt = statements().prepare("Q8",
                 "SELECT U.user_id, U.first_name, U.last_name, U.year_of_birth, U.month_of_birth, U.day_of_birth " +
                 "FROM " + 
                 FriendsTable + " F, " + UsersTable + " U " +
                 "WHERE "+
-                "(F.user1_id = " + userID + " AND U.user_id = F.user2_id) OR "+
-                "(F.user2_id = " + userID + " AND U.user_id = F.user1_id) " +
-                "ORDER BY U.year_of_birth, U.month_of_birth, U.day_of_birth, U.user_id DESC"
+                "(F.user1_id = ? AND U.user_id = F.user2_id) OR "+
+                "(F.user2_id = ? AND U.user_id = F.user1_id) " +
+                "ORDER BY U.year_of_birth ASC NULLS LAST, U.month_of_birth ASC NULLS LAST, " +
+                "U.day_of_birth ASC NULLS LAST, U.user_id DESC"
             );
+            stmt.setLong(1, userID);
+            stmt.setLong(2, userID);
+            ResultSet rst = stmt.executeQuery();
             UserInfo oldest = null;
             UserInfo youngest = null;
-            if(rst.next()) {
-                oldest = new UserInfo(rst.getLong(1), rst.getString(2), rst.getString(3));
-            }
+            long youngestYear = 0L;
+            long youngestMonth = 0L;
+            long youngestDay = 0L;
 
-            rst.last();
-            //set minimum 
-            Long minYear = rst.getLong(4);
-            Long minMonth = rst.getLong(5);
-            Long minDay = rst.getLong(6);
-            rst.previous();
-
-            while (rst.previous() && rst.getLong(4) == minYear && rst.getLong(5) == minMonth && rst.getLong(6) == minDay) {
-                continue;
+            // The rows arrive oldest first, with equal birthdays ordered by user ID
+            // descending, so the youngest friend is the first row of the last birthday
+            // seen; a single forward pass finds it without scrolling back
+            while (rst.next()) {
+                long year = rst.getLong(4);
+                long month = rst.getLong(5);
+                long day = rst.getLong(6);
+                if (youngest == null || year != youngestYear || month != youngestMonth || day != youngestDay) {
+                    youngest = new UserInfo(rst.getLong(1), rst.getString(2), rst.getString(3));
+                    youngestYear = year;
+                    youngestMonth = month;
+                    youngestDay = day;
+                }
+                if (oldest == null) {
+                    oldest = youngest;
+                }
             }
-            rst.next();
-            youngest = new UserInfo(rst.getLong(1), rst.getString(2), rst.getString(3));
-
             rst.close();
-            stmt.close();
+
+            if (oldest == null) {
+                throw new SQLException("User " + userID + " has no friends");
+            }
             return new AgeInfo(oldest, youngest);
 
         }
         catch (SQLException e) {
-            System.err.println(e.getMessage());
+            failed(e);
             return new AgeInfo(new UserInfo(-1, "ERROR", "ERROR"), new UserInfo(-1, "ERROR", "ERROR"));
         }
     }
     
+    @Override
+    // Query 8, for many users at once
+    // -----------------------------------------------------------------------------------
+    // The distinct IDs are bound InListLimit at a time (the last chunk padded by repeating
+    // its final ID) into one cached statement. It ranks the friends of every user in the
+    // chunk with two ROW_NUMBER() windows, ordered exactly like the single-user query and
+    // its reverse, so only each user's oldest and youngest friend leave the server.
+    public Map<Long, AgeInfo> findAgeInfo(long[] userIDs) throws SQLException {
+        Map<Long, AgeInfo> results = new LinkedHashMap<Long, AgeInfo>();
+        long[] distinct = userIDs.clone();
+        Arrays.sort(distinct);
+        int count = 0;
+        for (int idx = 0; idx < distinct.length; idx++) {
+            if (idx == 0 || distinct[idx] != distinct[idx - 1]) {
+                distinct[count++] = distinct[idx];
+            }
+        }
+        Map<Long, UserInfo> oldest = new HashMap<Long, UserInfo>();
+        Map<Long, UserInfo> youngest = new HashMap<Long, UserInfo>();
+
+        try {
+            PreparedStatement stmt = statements().prepare("Q8.batch",
+                "SELECT owner_id, user_id, first_name, last_name, oldest_rank, youngest_rank " +
+                "FROM (" +
+                    "SELECT P.owner_id, U.user_id, U.first_name, U.last_name, " +
+                    "ROW_NUMBER() OVER (PARTITION BY P.owner_id ORDER BY " +
+                        "U.year_of_birth ASC NULLS LAST, U.month_of_birth ASC NULLS LAST, " +
+                        "U.day_of_birth ASC NULLS LAST, U.user_id DESC) AS oldest_rank, " +
+                    "ROW_NUMBER() OVER (PARTITION BY P.owner_id ORDER BY " +
+                        "U.year_of_birth DESC NULLS FIRST, U.month_of_birth DESC NULLS FIRST, " +
+                        "U.day_of_birth DESC NULLS FIRST, U.user_id DESC) AS youngest_rank " +
+                    "FROM (" +
+                        "SELECT F.user1_id AS owner_id, F.user2_id AS friend_id FROM " + FriendsTable + " F " +
+                        "WHERE F.user1_id IN (" + FakebookStatementCache.placeholders(InListLimit) + ") " +
+                        "UNION ALL " +
+                        "SELECT F.user2_id AS owner_id, F.user1_id AS friend_id FROM " + FriendsTable + " F " +
+                        "WHERE F.user2_id IN (" + FakebookStatementCache.placeholders(InListLimit) + ")" +
+                    ") P " +
+                    "JOIN " + UsersTable + " U ON U.user_id = P.friend_id" +
+                ") " +
+                "WHERE oldest_rank = 1 OR youngest_rank = 1");
+
+            for (int start = 0; start < count; start += InListLimit) {
+                for (int idx = 0; idx < InListLimit; idx++) {
+                    long userID = distinct[Math.min(start + idx, count - 1)];
+                    stmt.setLong(idx + 1, userID);
+                    stmt.setLong(InListLimit + idx + 1, userID);
+                }
+
+                ResultSet rst = stmt.executeQuery();
+                while (rst.next()) {
+                    UserInfo friend = new UserInfo(rst.getLong(2), rst.getString(3), rst.getString(4));
+                    if (rst.getLong(5) == 1) {
+                        oldest.put(rst.getLong(1), friend);
+                    }
+                    if (rst.getLong(6) == 1) {
+                        youngest.put(rst.getLong(1), friend);
+                    }
+                }
+                rst.close();
+            }
+        }
+        catch (SQLException e) {
+            failed(e);
+        }
+
+        for (long userID : userIDs) {
+            if (oldest.containsKey(userID) && youngest.containsKey(userID)) {
+                results.put(userID, new AgeInfo(oldest.get(userID), youngest.get(userID)));
+            }
+            else {
+                results.put(userID, new AgeInfo(new UserInfo(-1, "ERROR", "ERROR"), new UserInfo(-1, "ERROR", "ERROR")));
+            }
+        }
+        return results;
+    }
+    
     @Override
     // Query 9
     // -----------------------------------------------------------------------------------
@@ -621,51 +728,117 @@ public final class StudentFakebookOracle extends FakebookOracle {
     //              (iv) less than 10 birth years apart
     public FakebookArrayList<SiblingInfo> findPotentialSiblings() throws SQLException {
         FakebookArrayList<SiblingInfo> results = new FakebookArrayList<SiblingInfo>("\n");
-        
-        try (Statement stmt = oracle.createStatement(FakebookOracleConstants.AllScroll, FakebookOracleConstants.ReadOnly)) {
-
-            ResultSet rst = stmt.executeQuery(
-                "SELECT "+
-                "U1.user_id, U1.first_name, U1.last_name, "+
-                "U2.user_id, U2.first_name, U2.last_name " +
-                "FROM " + 
-                UsersTable + " U1, " + UsersTable + " U2, " + 
-                FriendsTable + " F," + 
-                HometownCitiesTable + " H1, " + HometownCitiesTable + " H2 " +
-                "WHERE " +
-                "U1.last_name = U2.last_name AND " +
-                "H1.hometown_city_id = H2.hometown_city_id AND " +
-                "U1.user_id = H1.user_id AND " +
-                "U2.user_id = H2.user_id AND " +
-                "U1.user_id < U2.user_id AND " +
-                "U1.user_id = F.user1_id AND " + 
-                "U2.user_id = F.user2_id AND " +
-                "ABS(U1.year_of_birth - U2.year_of_birth) < 10 " +
-                "ORDER BY U1.user_id ASC, U2.user_id ASC"
-            );
-
-            while(rst.next()){
-                results.add(
-                    new SiblingInfo(
-                        new UserInfo(rst.getLong(1), rst.getString(2), rst.getString(3)),
-                        new UserInfo(rst.getLong(4), rst.getString(5), rst.getString(6))
-                    )
-                );
+        collect(results, new RowCollector<SiblingInfo>() {
+            public void run(FakebookRowSink<SiblingInfo> sink) throws SQLException, IOException {
+                findPotentialSiblings(sink);
+            }
+        });
+        return results;
+    }
+    
+    @Override
+    public FakebookSiblingList findPotentialSiblingsCompact() throws SQLException {
+        FakebookSiblingList results = new FakebookSiblingList("\n");
+        collect(results, new RowCollector<SiblingInfo>() {
+            public void run(FakebookRowSink<SiblingInfo> sink) throws SQLException, IOException {
+                findPotentialSiblings(sink);
+            }
+        });
+        return results;
+    }
+    
+    @Override
+    public long countPotentialSiblings() throws SQLException {
+        return count("Q9.count", SiblingsQuery);
+    }
+    
+    @Override
+    public void findPotentialSiblings(FakebookRowSink<SiblingInfo> sink) throws SQLException, IOException {
+        try {
+            ResultSet rst = statements().prepare("Q9", SiblingsQuery).executeQuery();
+            try {
+                while (rst.next()) {
+                    sink.accept(
+                        new SiblingInfo(
+                            new UserInfo(rst.getLong(1), rst.getString(2), rst.getString(3)),
+                            new UserInfo(rst.getLong(4), rst.getString(5), rst.getString(6))
+                        )
+                    );
+                }
+            }
+            finally {
+                rst.close();
+            }
+        }
+        catch (SQLException e) {
+            failed(e);
+        }
+    }
+    
+    // [Row Count Function]
+    // EFFECTS:  returns the number of rows <sql> produces, counted by the server, or 0
+    //   if the count fails
+    private long count(String queryID, String sql) throws SQLException {
+        long rows = 0L;
+        try {
+            ResultSet rst = statements().prepare(queryID, "SELECT COUNT(*) FROM (" + sql + ")").executeQuery();
+            if (rst.next()) {
+                rows = rst.getLong(1);
             }
             rst.close();
-            stmt.close();
-            
-
         }
         catch (SQLException e) {
-            System.err.println(e.getMessage());
+            failed(e);
         }
-        
-        return results;
+        return rows;
+    }
+    
+    // [ID Binding Function]
+    // MODIFIES: <stmt>
+    // EFFECTS:  binds <ids>[<start>] onwards to the first <size> parameters of <stmt>,
+    //   repeating the last ID of <ids> once they run out, so that a chunk shorter than
+    //   <size> can use the cached statement of that size
+    private void bindIDs(PreparedStatement stmt, long[] ids, int start, int size) throws SQLException {
+        for (int idx = 0; idx < size; idx++) {
+            stmt.setLong(idx + 1, ids[Math.min(start + idx, ids.length - 1)]);
+        }
+    }
+    
+    // [Row Collecting Function]
+    // MODIFIES: <results>
+    // EFFECTS:  runs <query> with a sink that adds every row to <results>
+    private static <T> void collect(final List<T> results, RowCollector<T> query) throws SQLException {
+        try {
+            query.run(new FakebookRowSink<T>() {
+                public void accept(T row) {
+                    results.add(row);
+                }
+            });
+        }
+        catch (IOException e) {
+            throw new AssertionError(e);                      // adding to a list never throws
+        }
+    }
+    
+    // A streaming query that can be run against any sink
+    private interface RowCollector<T> {
+        void run(FakebookRowSink<T> sink) throws SQLException, IOException;
+    }
+    
+    // [Statement Cache Accessor]
+    // MODIFIES: <statements>
+    // EFFECTS:  returns the statement cache of <oracle>, looking it up on first use
+    private FakebookStatementCache statements() throws SQLException {
+        if (statements == null) {
+            statements = FakebookStatementCache.forConnection(oracle);
+        }
+        return statements;
     }
     
     // Member Variables
     private Connection oracle;
+    private FakebookStatementCache statements;
+    private final int InListLimit = FakebookOracleConstants.InListLimit;
     private final String UsersTable = FakebookOracleConstants.UsersTable;
     private final String CitiesTable = FakebookOracleConstants.CitiesTable;
     private final String FriendsTable = FakebookOracleConstants.FriendsTable;
@@ -677,4 +850,41 @@ public final class StudentFakebookOracle extends FakebookOracle {
     private final String AlbumsTable = FakebookOracleConstants.AlbumsTable;
     private final String PhotosTable = FakebookOracleConstants.PhotosTable;
     private final String TagsTable = FakebookOracleConstants.TagsTable;
+    private final String LonelyUsersQuery =
+        "SELECT user_id, first_name, last_name " +
+        "FROM " + UsersTable + " " +
+        "WHERE user_id NOT IN " +
+        "(SELECT user1_id FROM " + FriendsTable + " " +
+        "UNION " +
+        "SELECT user2_id FROM " + FriendsTable + ")";
+    private final String AwayFromHomeQuery =
+        "SELECT U.user_id, U.first_name, U.last_name " +
+        "FROM " + CurrentCitiesTable + " C " +
+        "JOIN " + UsersTable + " U " +
+        "ON U.user_id = C.user_id " +
+        "JOIN " + HometownCitiesTable + " H " +
+        "ON U.user_id = H.user_id " +
+        "WHERE " +
+        "C.current_city_id <> H.hometown_city_id AND " +
+        "C.current_city_id IS NOT NULL AND " +
+        "H.hometown_city_id IS NOT NULL " +
+        "ORDER BY U.user_id ASC";
+    private final String SiblingsQuery =
+        "SELECT " +
+        "U1.user_id AS user1_id, U1.first_name AS first_name1, U1.last_name AS last_name1, " +
+        "U2.user_id AS user2_id, U2.first_name AS first_name2, U2.last_name AS last_name2 " +
+        "FROM " +
+        UsersTable + " U1, " + UsersTable + " U2, " +
+        FriendsTable + " F, " +
+        HometownCitiesTable + " H1, " + HometownCitiesTable + " H2 " +
+        "WHERE " +
+        "U1.last_name = U2.last_name AND " +
+        "H1.hometown_city_id = H2.hometown_city_id AND " +
+        "U1.user_id = H1.user_id AND " +
+        "U2.user_id = H2.user_id AND " +
+        "U1.user_id < U2.user_id AND " +
+        "U1.user_id = F.user1_id AND " +
+        "U2.user_id = F.user2_id AND " +
+        "ABS(U1.year_of_birth - U2.year_of_birth) < 10 " +
+        "ORDER BY U1.user_id ASC, U2.user_id ASC";
 }